@@ -0,0 +1,42 @@
+package metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+// A running count, safe to add to from several threads at once. Adding does
+// nothing while metrics are disabled.
+public class Counter {
+    private final Metrics owner;
+    private final LongAdder count = new LongAdder();
+
+    // EFFECTS: constructs a counter at zero, recording while owner is enabled
+    Counter(Metrics owner) {
+        this.owner = owner;
+    }
+
+    // MODIFIES: this
+    // EFFECTS: adds one to the count if metrics are enabled
+    public void inc() {
+        if (owner.isEnabled()) {
+            count.increment();
+        }
+    }
+
+    // MODIFIES: this
+    // EFFECTS: adds n to the count if metrics are enabled
+    public void add(long n) {
+        if (owner.isEnabled()) {
+            count.add(n);
+        }
+    }
+
+    // EFFECTS: returns the count
+    public long get() {
+        return count.sum();
+    }
+
+    // MODIFIES: this
+    // EFFECTS: sets the count back to zero
+    void reset() {
+        count.reset();
+    }
+}
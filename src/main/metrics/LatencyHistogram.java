@@ -0,0 +1,116 @@
+package metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+// A histogram of operation latencies in nanoseconds, safe to record into
+// from several threads at once. Latencies are counted in buckets by power
+// of two, so percentiles are accurate to within a factor of two. Timing
+// does nothing while metrics are disabled.
+//
+// Typical use:
+//     long t = histogram.start();
+//     ... the operation ...
+//     histogram.stop(t);
+public class LatencyHistogram {
+    private static final int BUCKETS = Long.SIZE;
+
+    private final Metrics owner;
+    // bucket k counts latencies in [2^(k-1), 2^k), bucket 0 counts zero
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder total = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    // EFFECTS: constructs an empty histogram, recording while owner is enabled
+    LatencyHistogram(Metrics owner) {
+        this.owner = owner;
+    }
+
+    // EFFECTS: returns the start time of an operation to pass to stop, or 0
+    // if metrics are disabled
+    public long start() {
+        return owner.isEnabled() ? System.nanoTime() : 0;
+    }
+
+    // MODIFIES: this
+    // EFFECTS: records the time since start, unless start is 0
+    public void stop(long start) {
+        if (start != 0) {
+            record(System.nanoTime() - start);
+        }
+    }
+
+    // MODIFIES: this
+    // EFFECTS: records one latency of the given nanoseconds if metrics are
+    // enabled; negative latencies count as zero
+    public void record(long nanos) {
+        if (!owner.isEnabled()) {
+            return;
+        }
+        long n = Math.max(nanos, 0);
+        buckets.incrementAndGet(BUCKETS - Long.numberOfLeadingZeros(n));
+        count.increment();
+        total.add(n);
+        max.accumulate(n);
+    }
+
+    // EFFECTS: returns the number of latencies recorded
+    public long getCount() {
+        return count.sum();
+    }
+
+    // EFFECTS: returns the mean latency in nanoseconds, or 0 if none were
+    // recorded
+    public double getMean() {
+        long n = count.sum();
+        return n == 0 ? 0 : (double) total.sum() / n;
+    }
+
+    // EFFECTS: returns the longest latency recorded, in nanoseconds
+    public long getMax() {
+        return max.get();
+    }
+
+    // REQUIRES: 0 <= p <= 100
+    // EFFECTS: returns an upper bound, within a factor of two, on the latency
+    // in nanoseconds that p percent of the recorded latencies do not exceed;
+    // 0 if none were recorded
+    public long getPercentile(double p) {
+        long n = 0;
+        long[] snapshot = new long[BUCKETS];
+        for (int k = 0; k < BUCKETS; k++) {
+            snapshot[k] = buckets.get(k);
+            n += snapshot[k];
+        }
+        long rank = Math.max(1, (long) Math.ceil(p / 100 * n));
+        long seen = 0;
+        for (int k = 0; k < BUCKETS; k++) {
+            seen += snapshot[k];
+            if (seen >= rank) {
+                return k == 0 ? 0 : Math.min((1L << k) - 1, max.get());
+            }
+        }
+        return 0;
+    }
+
+    // MODIFIES: this
+    // EFFECTS: forgets every recorded latency
+    void reset() {
+        for (int k = 0; k < BUCKETS; k++) {
+            buckets.set(k, 0);
+        }
+        count.reset();
+        total.reset();
+        max.reset();
+    }
+
+    // EFFECTS: returns a one-line summary of the recorded latencies, in
+    // milliseconds
+    @Override
+    public String toString() {
+        return String.format("count=%d mean=%.3fms p50=%.3fms p99=%.3fms max=%.3fms",
+                getCount(), getMean() / 1e6, getPercentile(50) / 1e6, getPercentile(99) / 1e6, getMax() / 1e6);
+    }
+}
@@ -0,0 +1,207 @@
+package metrics;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+// The registry of the application's counters, latency histograms and gauges.
+// There is one registry for the whole application, from getInstance. It can
+// be read through JMX once registered, and dumped to a file periodically.
+//
+// Recording is off by default. While it is off, counters and histograms
+// cost one volatile read per call and record nothing; gauges are only read
+// when the metrics are.
+public class Metrics implements MetricsMXBean {
+    public static final String OBJECT_NAME = "BetterUrPicture:type=Metrics";
+    // system property that turns recording on at startup when "true"
+    public static final String ENABLED_PROPERTY = "bup.metrics";
+    // system property naming a file to dump the metrics to periodically
+    public static final String DUMP_PROPERTY = "bup.metrics.dump";
+    // system property giving the dump period in milliseconds
+    public static final String DUMP_MILLIS_PROPERTY = "bup.metrics.dumpMillis";
+    private static final long DEFAULT_DUMP_MILLIS = 60000;
+
+    private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+    private final Map<String, LatencyHistogram> histograms = new ConcurrentHashMap<>();
+    private final Map<String, LongSupplier> gauges = new ConcurrentHashMap<>();
+    private volatile boolean enabled;
+    private ScheduledExecutorService dumper;
+
+    // EFFECTS: constructs an empty registry with recording off
+    Metrics() {
+        gauge("jvm.heap.used", () -> Runtime.getRuntime().totalMemory() - Runtime.getRuntime().freeMemory());
+    }
+
+    // EFFECTS: returns the registry of the application
+    public static Metrics getInstance() {
+        return Holder.INSTANCE;
+    }
+
+    // Holds the registry of the application, created when first used.
+    private static class Holder {
+        private static final Metrics INSTANCE = new Metrics();
+    }
+
+    // MODIFIES: this
+    // EFFECTS: applies the metrics system properties: turns recording on and
+    // registers the MBean if ENABLED_PROPERTY is "true", and starts dumping
+    // to the file named by DUMP_PROPERTY if set
+    public void configureFromSystemProperties() {
+        if (Boolean.getBoolean(ENABLED_PROPERTY)) {
+            setEnabled(true);
+            registerMBean();
+        }
+        String dump = System.getProperty(DUMP_PROPERTY);
+        if (dump != null && !dump.isBlank()) {
+            startDump(Paths.get(dump), Long.getLong(DUMP_MILLIS_PROPERTY, DEFAULT_DUMP_MILLIS));
+        }
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    // MODIFIES: this
+    // EFFECTS: returns the counter with the given name, creating it if needed
+    public Counter counter(String name) {
+        return counters.computeIfAbsent(name, k -> new Counter(this));
+    }
+
+    // MODIFIES: this
+    // EFFECTS: returns the latency histogram with the given name, creating it
+    // if needed
+    public LatencyHistogram histogram(String name) {
+        return histograms.computeIfAbsent(name, k -> new LatencyHistogram(this));
+    }
+
+    // MODIFIES: this
+    // EFFECTS: registers a gauge that reads its value from supplier whenever
+    // the metrics are read, replacing any gauge with the same name
+    public void gauge(String name, LongSupplier supplier) {
+        gauges.put(name, supplier);
+    }
+
+    @Override
+    public Map<String, Long> getCounters() {
+        Map<String, Long> result = new TreeMap<>();
+        for (Map.Entry<String, Counter> e : counters.entrySet()) {
+            result.put(e.getKey(), e.getValue().get());
+        }
+        return result;
+    }
+
+    @Override
+    public Map<String, Long> getGauges() {
+        Map<String, Long> result = new TreeMap<>();
+        for (Map.Entry<String, LongSupplier> e : gauges.entrySet()) {
+            try {
+                result.put(e.getKey(), e.getValue().getAsLong());
+            } catch (RuntimeException ex) {
+                // a gauge that cannot be read right now is left out
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public Map<String, String> getHistograms() {
+        Map<String, String> result = new TreeMap<>();
+        for (Map.Entry<String, LatencyHistogram> e : histograms.entrySet()) {
+            result.put(e.getKey(), e.getValue().toString());
+        }
+        return result;
+    }
+
+    @Override
+    public void reset() {
+        for (Counter c : counters.values()) {
+            c.reset();
+        }
+        for (LatencyHistogram h : histograms.values()) {
+            h.reset();
+        }
+    }
+
+    @Override
+    public String dump() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("# metrics ").append(enabled ? "enabled" : "disabled").append("\n");
+        for (Map.Entry<String, Long> e : getCounters().entrySet()) {
+            sb.append("counter ").append(e.getKey()).append(" = ").append(e.getValue()).append("\n");
+        }
+        for (Map.Entry<String, Long> e : getGauges().entrySet()) {
+            sb.append("gauge ").append(e.getKey()).append(" = ").append(e.getValue()).append("\n");
+        }
+        for (Map.Entry<String, String> e : getHistograms().entrySet()) {
+            sb.append("latency ").append(e.getKey()).append(": ").append(e.getValue()).append("\n");
+        }
+        return sb.toString();
+    }
+
+    // EFFECTS: registers this registry with the platform MBean server under
+    // OBJECT_NAME; returns false if it could not be registered, and true if
+    // it is registered, including by an earlier call
+    public boolean registerMBean() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName(OBJECT_NAME));
+            return true;
+        } catch (InstanceAlreadyExistsException e) {
+            return true;
+        } catch (JMException e) {
+            return false;
+        }
+    }
+
+    // MODIFIES: this, filesystem
+    // EFFECTS: writes dump() to file every periodMillis milliseconds, on a
+    // background thread, replacing any dump already started; write errors
+    // are ignored and retried at the next period
+    public synchronized void startDump(Path file, long periodMillis) {
+        stopDump();
+        dumper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "metrics-dump");
+            t.setDaemon(true);
+            return t;
+        });
+        dumper.scheduleAtFixedRate(() -> writeDump(file), periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+    }
+
+    // MODIFIES: this
+    // EFFECTS: stops the periodic dump, if started
+    public synchronized void stopDump() {
+        if (dumper != null) {
+            dumper.shutdown();
+            dumper = null;
+        }
+    }
+
+    // MODIFIES: filesystem
+    // EFFECTS: writes dump() to file, ignoring errors
+    void writeDump(Path file) {
+        try {
+            Files.write(file, dump().getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            // try again at the next period
+        }
+    }
+}
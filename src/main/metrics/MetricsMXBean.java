@@ -0,0 +1,29 @@
+package metrics;
+
+import java.util.Map;
+
+// The management interface of Metrics, as seen through JMX.
+public interface MetricsMXBean {
+    // EFFECTS: returns true if metrics are being recorded
+    boolean isEnabled();
+
+    // MODIFIES: this
+    // EFFECTS: turns recording on or off
+    void setEnabled(boolean enabled);
+
+    // EFFECTS: returns each counter by name
+    Map<String, Long> getCounters();
+
+    // EFFECTS: returns the current value of each gauge by name
+    Map<String, Long> getGauges();
+
+    // EFFECTS: returns a one-line summary of each latency histogram by name
+    Map<String, String> getHistograms();
+
+    // MODIFIES: this
+    // EFFECTS: sets every counter and histogram back to empty
+    void reset();
+
+    // EFFECTS: returns every metric as multi-line text
+    String dump();
+}
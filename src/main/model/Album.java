@@ -1,6 +1,9 @@
 package model;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
 
 import org.json.JSONArray;
 import org.json.JSONObject;
@@ -10,41 +13,93 @@ import persistence.Writable;
 // the album of photos
 public class Album implements Writable {
     private String albumName;
-    private ArrayList<Photo> photos;
+    // members by reference, in the order they were added
+    private LinkedHashSet<Photo> photos;
+    private List<Photo> photoView;
+    // libraries holding this album; created on first registration
+    private ArrayList<AlbumObserver> observers;
 
     // EFFECTS: construct a session of photos with date and problem type recorded
     public Album(String name) {
         this.albumName = name;
-        photos = new ArrayList<>();
+        photos = new LinkedHashSet<>();
     }
 
     // MODIFIES: this
     // EFFECTS: add the given photo to the photo library if not already in the
     // collection
     public void addPhoto(Photo p) {
-        if (!this.photos.contains(p)) {
-            this.photos.add(p);
-            EventLog.getInstance().logEvent(
-                    new Event("Photo " + p.getPhotoname() + " added to album " + getAlbumName()));
-            ;
+        if (this.photos.add(p)) {
+            photoView = null;
+            if (observers != null) {
+                for (AlbumObserver o : observers) {
+                    o.photoAdded(this, p);
+                }
+            }
+            EventLog.getInstance().logEvent(EventType.PHOTO_ADDED_TO_ALBUM, p.getPhotoname(), getAlbumName());
         }
     }
 
     // MODIFIES: this
     // EFFECTS: remove the given photo from the photo library if contains
     public void removePhoto(Photo p) {
-        this.photos.remove(p);
-        EventLog.getInstance().logEvent(
-                new Event("Photo " + p.getPhotoname() + " removed from album " + getAlbumName()));
+        if (this.photos.remove(p)) {
+            photoView = null;
+            if (observers != null) {
+                for (AlbumObserver o : observers) {
+                    o.photoRemoved(this, p);
+                }
+            }
+        }
+        EventLog.getInstance().logEvent(EventType.PHOTO_REMOVED_FROM_ALBUM, p.getPhotoname(), getAlbumName());
+
+    }
+
+    // MODIFIES: this
+    // EFFECTS: registers o to be told about photos added to or removed from
+    // this album
+    void addObserver(AlbumObserver o) {
+        if (observers == null) {
+            observers = new ArrayList<>(1);
+        }
+        observers.add(o);
+    }
+
+    // MODIFIES: this
+    // EFFECTS: stops telling o about changes to this album
+    void removeObserver(AlbumObserver o) {
+        if (observers != null) {
+            observers.remove(o);
+        }
+    }
 
+    // MODIFIES: this
+    // EFFECTS: changes the name of this album
+    void setAlbumName(String name) {
+        this.albumName = name;
     }
 
     public String getAlbumName() {
         return albumName;
     }
 
-    public ArrayList<Photo> getPhotos() {
-        return photos;
+    // EFFECTS: returns true if the given photo is in this album
+    public boolean containsPhoto(Photo p) {
+        return photos.contains(p);
+    }
+
+    // EFFECTS: returns a read-only list of the photos in the order they were
+    // added
+    public List<Photo> getPhotos() {
+        if (photoView == null) {
+            photoView = Collections.unmodifiableList(new ArrayList<>(photos));
+        }
+        return photoView;
+    }
+
+    // EFFECTS: returns the number of photos in this album
+    public int numPhotos() {
+        return photos.size();
     }
 
     @Override
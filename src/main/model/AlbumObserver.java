@@ -0,0 +1,10 @@
+package model;
+
+// Receives membership changes made to an observed album.
+interface AlbumObserver {
+    // EFFECTS: called after photo was added to album
+    void photoAdded(Album album, Photo photo);
+
+    // EFFECTS: called after photo was removed from album
+    void photoRemoved(Album album, Photo photo);
+}
@@ -0,0 +1,107 @@
+package model;
+
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+// Records which photos and albums of a PhotoLibrary have changed since it
+// was last cleared, so that a save can write only what changed. Register it
+// with PhotoLibrary.addListener. Photos and albums are reported in the order
+// they were first changed, so photos added to the library come in library
+// order.
+public class ChangeTracker implements LibraryListener {
+    private final Set<Photo> changedPhotos = new LinkedHashSet<>();
+    private final Set<Photo> removedPhotos = new LinkedHashSet<>();
+    private final Set<Album> changedAlbums = new LinkedHashSet<>();
+    private final Set<Album> removedAlbums = new LinkedHashSet<>();
+    private boolean albumListChanged;
+
+    // EFFECTS: returns true if nothing has changed since the last clear
+    public boolean isClean() {
+        return changedPhotos.isEmpty() && removedPhotos.isEmpty() && changedAlbums.isEmpty()
+                && removedAlbums.isEmpty() && !albumListChanged;
+    }
+
+    // EFFECTS: returns a read-only set of the photos added to the library or
+    // whose reflection changed; a photo removed and added again is also
+    // among the removed photos
+    public Set<Photo> getChangedPhotos() {
+        return Collections.unmodifiableSet(changedPhotos);
+    }
+
+    // EFFECTS: returns a read-only set of the photos removed from the library
+    public Set<Photo> getRemovedPhotos() {
+        return Collections.unmodifiableSet(removedPhotos);
+    }
+
+    // EFFECTS: returns a read-only set of the albums added to the library or
+    // whose photos changed
+    public Set<Album> getChangedAlbums() {
+        return Collections.unmodifiableSet(changedAlbums);
+    }
+
+    // EFFECTS: returns a read-only set of the albums removed from the library
+    public Set<Album> getRemovedAlbums() {
+        return Collections.unmodifiableSet(removedAlbums);
+    }
+
+    // EFFECTS: returns true if albums were added, removed or renamed, which
+    // changes the list of albums rather than just their photos
+    public boolean isAlbumListChanged() {
+        return albumListChanged;
+    }
+
+    // MODIFIES: this
+    // EFFECTS: forgets every change recorded so far
+    public void clear() {
+        changedPhotos.clear();
+        removedPhotos.clear();
+        changedAlbums.clear();
+        removedAlbums.clear();
+        albumListChanged = false;
+    }
+
+    @Override
+    public void photoAdded(Photo p) {
+        changedPhotos.add(p);
+    }
+
+    @Override
+    public void photoRemoved(Photo p) {
+        changedPhotos.remove(p);
+        removedPhotos.add(p);
+    }
+
+    @Override
+    public void albumAdded(Album a) {
+        changedAlbums.add(a);
+        albumListChanged = true;
+    }
+
+    @Override
+    public void albumRemoved(Album a) {
+        changedAlbums.remove(a);
+        removedAlbums.add(a);
+        albumListChanged = true;
+    }
+
+    @Override
+    public void albumRenamed(Album a, String oldName) {
+        albumListChanged = true;
+    }
+
+    @Override
+    public void photoAddedToAlbum(Album a, Photo p) {
+        changedAlbums.add(a);
+    }
+
+    @Override
+    public void photoRemovedFromAlbum(Album a, Photo p) {
+        changedAlbums.add(a);
+    }
+
+    @Override
+    public void reflectionChanged(Photo p) {
+        changedPhotos.add(p);
+    }
+}
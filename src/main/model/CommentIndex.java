@@ -0,0 +1,263 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+// A full-text inverted index over reflection comments. Maps each word to the
+// library slots whose comments use it, with the number of uses per slot.
+// Words are kept sorted so that prefix searches read one range of the index.
+class CommentIndex {
+    private final TreeMap<String, HashMap<Integer, Integer>> postings = new TreeMap<>();
+
+    // EFFECTS: splits text into lower-case words made of letters and digits
+    static List<String> tokenize(String text) {
+        List<String> words = new ArrayList<>();
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean inWord = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (inWord && start < 0) {
+                start = i;
+            } else if (!inWord && start >= 0) {
+                words.add(text.substring(start, i).toLowerCase(Locale.ROOT));
+                start = -1;
+            }
+        }
+        return words;
+    }
+
+    // EFFECTS: returns how many times each word is used in the comments of r;
+    // empty if r is null
+    static Map<String, Integer> wordCounts(Reflection r) {
+        Map<String, Integer> counts = new HashMap<>();
+        if (r != null) {
+            for (String c : r.getComments()) {
+                for (String w : tokenize(c)) {
+                    counts.merge(w, 1, Integer::sum);
+                }
+            }
+        }
+        return counts;
+    }
+
+    // MODIFIES: this
+    // EFFECTS: records every comment of r under the given slot; does nothing if
+    // r is null
+    void add(int slot, Reflection r) {
+        if (r != null) {
+            for (String c : r.getComments()) {
+                add(slot, c);
+            }
+        }
+    }
+
+    // MODIFIES: this
+    // EFFECTS: forgets every comment of r under the given slot; does nothing if
+    // r is null
+    void remove(int slot, Reflection r) {
+        if (r != null) {
+            for (String c : r.getComments()) {
+                remove(slot, c);
+            }
+        }
+    }
+
+    // MODIFIES: this
+    // EFFECTS: records the words of comment under the given slot
+    void add(int slot, String comment) {
+        for (String w : tokenize(comment)) {
+            postings.computeIfAbsent(w, k -> new HashMap<>(2)).merge(slot, 1, Integer::sum);
+        }
+    }
+
+    // MODIFIES: this
+    // EFFECTS: forgets one use of each word of comment under the given slot
+    void remove(int slot, String comment) {
+        for (String w : tokenize(comment)) {
+            HashMap<Integer, Integer> slots = postings.get(w);
+            if (slots == null) {
+                continue;
+            }
+            Integer n = slots.get(slot);
+            if (n == null) {
+                continue;
+            }
+            if (n > 1) {
+                slots.put(slot, n - 1);
+            } else {
+                slots.remove(slot);
+                if (slots.isEmpty()) {
+                    postings.remove(w);
+                }
+            }
+        }
+    }
+
+    // MODIFIES: this
+    // EFFECTS: records precomputed word counts under the given slot
+    void addCounts(int slot, Map<String, Integer> counts) {
+        for (Map.Entry<String, Integer> e : counts.entrySet()) {
+            postings.computeIfAbsent(e.getKey(), k -> new HashMap<>(2)).merge(slot, e.getValue(), Integer::sum);
+        }
+    }
+
+    // MODIFIES: this
+    // EFFECTS: forgets every recorded comment
+    void clear() {
+        postings.clear();
+    }
+
+    // EFFECTS: returns the slots whose comments match every clause of query,
+    // best match first. A clause is a word, a word ending in * that matches
+    // any word with that prefix, or a "quoted phrase" whose words must appear
+    // next to each other in one comment. Matches are scored by how often
+    // each clause is used, weighted towards rarer words; equal scores keep
+    // slot order. slots gives the photo in each slot and total the number of
+    // photos in the library.
+    List<Integer> search(String query, List<Photo> slots, int total) {
+        Map<Integer, Double> scores = null;
+        for (Clause c : parse(query)) {
+            Map<Integer, Double> matched = match(c, slots, total);
+            if (scores == null) {
+                scores = matched;
+            } else {
+                scores.keySet().retainAll(matched.keySet());
+                for (Map.Entry<Integer, Double> e : scores.entrySet()) {
+                    e.setValue(e.getValue() + matched.get(e.getKey()));
+                }
+            }
+            if (scores.isEmpty()) {
+                break;
+            }
+        }
+        List<Integer> ranked = new ArrayList<>();
+        if (scores == null) {
+            return ranked;
+        }
+        ranked.addAll(scores.keySet());
+        final Map<Integer, Double> finalScores = scores;
+        ranked.sort((a, b) -> {
+            int byScore = Double.compare(finalScores.get(b), finalScores.get(a));
+            return byScore != 0 ? byScore : Integer.compare(a, b);
+        });
+        return ranked;
+    }
+
+    // EFFECTS: returns the score of each slot matching clause c
+    private Map<Integer, Double> match(Clause c, List<Photo> slots, int total) {
+        if (c.prefix) {
+            Map<Integer, Double> scores = new HashMap<>();
+            for (HashMap<Integer, Integer> posting : withPrefix(c.words.get(0)).values()) {
+                addScores(scores, posting, total);
+            }
+            return scores;
+        }
+        Map<Integer, Double> scores = null;
+        for (String w : c.words) {
+            Map<Integer, Double> matched = new HashMap<>();
+            HashMap<Integer, Integer> posting = postings.get(w);
+            if (posting != null) {
+                addScores(matched, posting, total);
+            }
+            if (scores == null) {
+                scores = matched;
+            } else {
+                scores.keySet().retainAll(matched.keySet());
+                for (Map.Entry<Integer, Double> e : scores.entrySet()) {
+                    e.setValue(e.getValue() + matched.get(e.getKey()));
+                }
+            }
+        }
+        if (c.words.size() > 1) {
+            scores.keySet().removeIf(slot -> !hasPhrase(slots.get(slot), c.words));
+        }
+        return scores;
+    }
+
+    // MODIFIES: scores
+    // EFFECTS: adds the weighted use count of one word for each slot in posting
+    private void addScores(Map<Integer, Double> scores, HashMap<Integer, Integer> posting, int total) {
+        double weight = Math.log(1 + (double) total / posting.size());
+        for (Map.Entry<Integer, Integer> e : posting.entrySet()) {
+            scores.merge(e.getKey(), e.getValue() * weight, Double::sum);
+        }
+    }
+
+    // EFFECTS: returns the postings of every word starting with prefix
+    private SortedMap<String, HashMap<Integer, Integer>> withPrefix(String prefix) {
+        return postings.subMap(prefix, prefix + Character.MAX_VALUE);
+    }
+
+    // EFFECTS: returns true if one comment on p uses the given words in a row
+    private static boolean hasPhrase(Photo p, List<String> phrase) {
+        Reflection r = p.getReflection();
+        if (r == null) {
+            return false;
+        }
+        for (String c : r.getComments()) {
+            List<String> words = tokenize(c);
+            for (int i = 0; i + phrase.size() <= words.size(); i++) {
+                if (words.subList(i, i + phrase.size()).equals(phrase)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    // EFFECTS: splits query into its word, prefix and phrase clauses
+    private static List<Clause> parse(String query) {
+        List<Clause> clauses = new ArrayList<>();
+        int i = 0;
+        while (i < query.length()) {
+            char ch = query.charAt(i);
+            if (Character.isWhitespace(ch)) {
+                i++;
+            } else if (ch == '"') {
+                int end = query.indexOf('"', i + 1);
+                end = end < 0 ? query.length() : end;
+                List<String> words = tokenize(query.substring(i + 1, end));
+                if (!words.isEmpty()) {
+                    clauses.add(new Clause(words, false));
+                }
+                i = end + 1;
+            } else {
+                int end = i;
+                while (end < query.length() && !Character.isWhitespace(query.charAt(end))) {
+                    end++;
+                }
+                addWordClauses(clauses, query.substring(i, end));
+                i = end;
+            }
+        }
+        return clauses;
+    }
+
+    // MODIFIES: clauses
+    // EFFECTS: adds one clause for each word of an unquoted query term; if the
+    // term ends in *, its last word becomes a prefix clause
+    private static void addWordClauses(List<Clause> clauses, String term) {
+        boolean prefix = term.endsWith("*");
+        List<String> words = tokenize(term);
+        for (int k = 0; k < words.size(); k++) {
+            List<String> one = new ArrayList<>(1);
+            one.add(words.get(k));
+            clauses.add(new Clause(one, prefix && k == words.size() - 1));
+        }
+    }
+
+    // One search clause: a single word, a word prefix, or a phrase.
+    private static class Clause {
+        private final List<String> words;
+        private final boolean prefix;
+
+        Clause(List<String> words, boolean prefix) {
+            this.words = words;
+            this.prefix = prefix;
+        }
+    }
+}
@@ -1,17 +1,23 @@
 package model;
 
-import java.util.Calendar;
 import java.util.Date;
 
 import ca.ubc.cs.ExcludeFromJacocoGeneratedReport;
 
 /**
  * Represents an alarm system event.
+ * 
+ * An event records its type, up to two arguments and the time it was
+ * logged. Its description is formatted from these only when first asked
+ * for, so logging an event costs no string building.
  */
 @ExcludeFromJacocoGeneratedReport
 public class Event {
     private static final int HASH_CONSTANT = 13;
-    private Date dateLogged;
+    private final long timeLogged;
+    private final EventType type;
+    private final String arg1;
+    private final String arg2;
     private String description;
 
     /**
@@ -21,17 +27,76 @@ public class Event {
      * @param description a description of the event
      */
     public Event(String description) {
-        dateLogged = Calendar.getInstance().getTime();
+        this(System.currentTimeMillis(), EventType.MESSAGE, description, null);
         this.description = description;
     }
 
+    /**
+     * Creates an event of the given type and arguments
+     * with the current date/time stamp.
+     * 
+     * @param type the type of the event
+     * @param arg1 the first argument of the event, or null
+     * @param arg2 the second argument of the event, or null
+     */
+    public Event(EventType type, String arg1, String arg2) {
+        this(System.currentTimeMillis(), type, arg1, arg2);
+    }
+
+    /**
+     * Creates an event with the given description logged at the given
+     * date/time stamp, as when reading back an event saved earlier.
+     * 
+     * @param dateLogged  the date/time the event was logged
+     * @param description a description of the event
+     */
+    Event(Date dateLogged, String description) {
+        this(dateLogged.getTime(), EventType.MESSAGE, description, null);
+        this.description = description;
+    }
+
+    private Event(long timeLogged, EventType type, String arg1, String arg2) {
+        this.timeLogged = timeLogged;
+        this.type = type;
+        this.arg1 = arg1;
+        this.arg2 = arg2;
+    }
+
     /**
      * Gets the date of this event (includes time).
      * 
      * @return the date of the event
      */
     public Date getDate() {
-        return dateLogged;
+        return new Date(timeLogged);
+    }
+
+    /**
+     * Gets the time this event was logged.
+     * 
+     * @return the time of the event, in milliseconds since the epoch
+     */
+    public long getTime() {
+        return timeLogged;
+    }
+
+    /**
+     * Gets the type of this event.
+     * 
+     * @return the type of the event
+     */
+    public EventType getType() {
+        return type;
+    }
+
+    /**
+     * Gets one argument of this event.
+     * 
+     * @param index 1 for the first argument, 2 for the second
+     * @return the argument, or null if the event has none there
+     */
+    public String getArgument(int index) {
+        return index == 1 ? arg1 : index == 2 ? arg2 : null;
     }
 
     /**
@@ -40,6 +105,9 @@ public class Event {
      * @return the description of the event
      */
     public String getDescription() {
+        if (description == null) {
+            description = type.format(arg1, arg2);
+        }
         return description;
     }
 
@@ -55,18 +123,18 @@ public class Event {
 
         Event otherEvent = (Event) other;
 
-        return (this.dateLogged.equals(otherEvent.dateLogged)
+        return (this.timeLogged == otherEvent.timeLogged
                 &&
-                this.description.equals(otherEvent.description));
+                this.getDescription().equals(otherEvent.getDescription()));
     }
 
     @Override
     public int hashCode() {
-        return (HASH_CONSTANT * dateLogged.hashCode() + description.hashCode());
+        return (HASH_CONSTANT * Long.hashCode(timeLogged) + getDescription().hashCode());
     }
 
     @Override
     public String toString() {
-        return dateLogged.toString() + "\n" + description;
+        return getDate().toString() + "\n" + getDescription();
     }
 }
@@ -1,26 +1,74 @@
 package model;
 
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
-import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
 import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * Represents a log of alarm system events.
  * We use the Singleton Design Pattern to ensure that there is only
  * one EventLog in the system and that the system has global access
  * to the single instance of the EventLog.
+ * 
+ * The log keeps at most a fixed number of events in memory, in a ring
+ * buffer. When it is full, the oldest event is either dropped or spilled
+ * to a file on disk, depending on the overflow policy.
+ * 
+ * The log is safe to use from several threads. Logging an event never
+ * blocks: it is added to a lock-free queue, which is drained into the ring
+ * buffer by whichever thread next reads the log, or by a logging thread
+ * once the queue grows as long as the buffer.
  */
 public class EventLog implements Iterable<Event> {
-    /** the only EventLog in the system (Singleton Design Pattern) */
-    private static EventLog theLog;
-    private Collection<Event> events;
+    /** the number of events kept in memory unless configured otherwise */
+    public static final int DEFAULT_CAPACITY = 10000;
+
+    /**
+     * What happens to the oldest event when the log is full.
+     */
+    public enum OverflowPolicy {
+        /** forget the oldest event */
+        DROP_OLDEST,
+        /** append the oldest event to the spill file */
+        SPILL_TO_DISK
+    }
+
+    private final ConcurrentLinkedQueue<Event> pending;
+    private final AtomicInteger pendingCount;
+    private volatile boolean capturing;
+    // guards everything below; held while draining pending events
+    private final ReentrantLock lock;
+    private volatile Event[] events;
+    private int head;
+    private int size;
+    private OverflowPolicy policy;
+    private File spillFile;
+    private BufferedWriter spillOut;
+    private long dropped;
 
     /**
      * Prevent external construction.
      * (Singleton Design Pattern).
      */
     private EventLog() {
-        events = new ArrayList<Event>();
+        pending = new ConcurrentLinkedQueue<>();
+        pendingCount = new AtomicInteger();
+        capturing = true;
+        lock = new ReentrantLock();
+        events = new Event[DEFAULT_CAPACITY];
+        policy = OverflowPolicy.DROP_OLDEST;
     }
 
     /**
@@ -31,32 +79,366 @@ public class EventLog implements Iterable<Event> {
      * @return instance of EventLog
      */
     public static EventLog getInstance() {
-        if (theLog == null) {
-            theLog = new EventLog();
+        return Holder.THE_LOG;
+    }
+
+    /**
+     * Holds the only EventLog in the system, created when first used.
+     * (Singleton Design Pattern)
+     */
+    private static class Holder {
+        private static final EventLog THE_LOG = new EventLog();
+    }
+
+    /**
+     * Sets how many events are kept in memory and what happens to the
+     * oldest one when the log is full. If the log holds more events than
+     * the new capacity, the oldest are dropped or spilled right away.
+     * 
+     * @param capacity  the number of events kept in memory; at least 1
+     * @param policy    the overflow policy
+     * @param spillFile the file overflowing events are appended to under
+     *                  SPILL_TO_DISK, or null for a temporary file; ignored
+     *                  under DROP_OLDEST
+     * @throws IllegalArgumentException if capacity is less than 1
+     */
+    public void configure(int capacity, OverflowPolicy policy, File spillFile) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be at least 1: " + capacity);
+        }
+        lock.lock();
+        try {
+            drain();
+            resize(capacity, policy, spillFile);
+        } finally {
+            lock.unlock();
         }
+    }
 
-        return theLog;
+    /**
+     * Applies a new configuration; see configure. Requires the lock.
+     */
+    private void resize(int capacity, OverflowPolicy policy, File spillFile) {
+        if (policy != this.policy || spillFile != null && !spillFile.equals(this.spillFile)) {
+            closeSpill();
+            this.spillFile = spillFile;
+        }
+        this.policy = policy;
+        while (size > capacity) {
+            evictOldest();
+        }
+        Event[] resized = new Event[capacity];
+        for (int i = 0; i < size; i++) {
+            resized[i] = events[(head + i) % events.length];
+        }
+        events = resized;
+        head = 0;
     }
 
     /**
-     * Adds an event to the event log.
+     * Gets the number of events kept in memory.
+     * 
+     * @return the maximum number of events held in memory
+     */
+    public int getCapacity() {
+        lock.lock();
+        try {
+            return events.length;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gets the overflow policy.
+     * 
+     * @return what happens to the oldest event when the log is full
+     */
+    public OverflowPolicy getOverflowPolicy() {
+        lock.lock();
+        try {
+            return policy;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gets the number of events forgotten since the log was last cleared,
+     * either under DROP_OLDEST or because they could not be spilled.
+     * 
+     * @return the number of events dropped
+     */
+    public long getDroppedCount() {
+        lock.lock();
+        try {
+            drain();
+            return dropped;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Turns event capture on or off. While it is off, events logged are
+     * ignored; turn it off around bulk operations whose individual steps
+     * need not be recorded.
+     * 
+     * @param capturing true to record events, false to ignore them
+     */
+    public void setCapturing(boolean capturing) {
+        this.capturing = capturing;
+    }
+
+    /**
+     * Tells whether events are being recorded.
+     * 
+     * @return true unless capture has been turned off
+     */
+    public boolean isCapturing() {
+        return capturing;
+    }
+
+    /**
+     * Adds an event of the given type to the event log, unless capture is
+     * off, in which case no event is even created.
+     * 
+     * @param type the type of the event
+     * @param arg  the argument of the event
+     */
+    public void logEvent(EventType type, String arg) {
+        if (capturing) {
+            logEvent(new Event(type, arg, null));
+        }
+    }
+
+    /**
+     * Adds an event of the given type to the event log, unless capture is
+     * off, in which case no event is even created.
+     * 
+     * @param type the type of the event
+     * @param arg1 the first argument of the event
+     * @param arg2 the second argument of the event
+     */
+    public void logEvent(EventType type, String arg1, String arg2) {
+        if (capturing) {
+            logEvent(new Event(type, arg1, arg2));
+        }
+    }
+
+    /**
+     * Adds an event to the event log, unless capture is off. Never waits
+     * for other threads.
      * 
      * @param e the event to be added
      */
     public void logEvent(Event e) {
-        events.add(e);
+        if (!capturing) {
+            return;
+        }
+        pending.offer(e);
+        if (pendingCount.incrementAndGet() >= drainThreshold() && lock.tryLock()) {
+            try {
+                drain();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Gets the queue length at which logging threads drain the queue. Read
+     * without the lock; a stale value only moves the next drain.
+     */
+    private int drainThreshold() {
+        return events.length;
+    }
+
+    /**
+     * Moves every queued event into the ring buffer, in the order they were
+     * logged. Requires the lock.
+     */
+    private void drain() {
+        Event e;
+        while ((e = pending.poll()) != null) {
+            pendingCount.decrementAndGet();
+            append(e);
+        }
+    }
+
+    /**
+     * Adds an event to the ring buffer, evicting the oldest if it is full.
+     * Requires the lock.
+     */
+    private void append(Event e) {
+        if (size == events.length) {
+            evictOldest();
+        }
+        events[(head + size) % events.length] = e;
+        size++;
     }
 
     /**
      * Clears the event log and logs the event.
      */
     public void clear() {
-        events.clear();
+        lock.lock();
+        try {
+            drain();
+            reset();
+        } finally {
+            lock.unlock();
+        }
         logEvent(new Event("Event log cleared."));
     }
 
+    /**
+     * Forgets every event held in memory or spilled. Requires the lock.
+     */
+    private void reset() {
+        closeSpill();
+        if (spillFile != null) {
+            spillFile.delete();
+        }
+        for (int i = 0; i < events.length; i++) {
+            events[i] = null;
+        }
+        head = 0;
+        size = 0;
+        dropped = 0;
+    }
+
+    /**
+     * Returns an iterator over a snapshot of the log, oldest event first:
+     * the spilled events, if any, then those held in memory. Events logged
+     * while iterating do not show up and do not disturb the iteration, and
+     * taking the snapshot does not hold up threads logging events.
+     * 
+     * @return an iterator over the events of the log
+     */
     @Override
     public Iterator<Event> iterator() {
-        return events.iterator();
+        List<Event> snapshot;
+        lock.lock();
+        try {
+            drain();
+            snapshot = new ArrayList<>(size);
+            readSpilled(snapshot);
+            for (int i = 0; i < size; i++) {
+                snapshot.add(events[(head + i) % events.length]);
+            }
+        } finally {
+            lock.unlock();
+        }
+        return Collections.unmodifiableList(snapshot).iterator();
+    }
+
+    /**
+     * Removes the oldest event held in memory, spilling it to disk under
+     * SPILL_TO_DISK and dropping it otherwise. Requires the lock.
+     */
+    private void evictOldest() {
+        Event oldest = events[head];
+        events[head] = null;
+        head = (head + 1) % events.length;
+        size--;
+        if (policy == OverflowPolicy.SPILL_TO_DISK && spill(oldest)) {
+            return;
+        }
+        dropped++;
+    }
+
+    /**
+     * Appends an event to the spill file, opening it first if needed.
+     * 
+     * @param e the event to spill
+     * @return true if the event was written, false if writing failed
+     */
+    private boolean spill(Event e) {
+        try {
+            if (spillOut == null) {
+                if (spillFile == null) {
+                    spillFile = File.createTempFile("events", ".log");
+                    spillFile.deleteOnExit();
+                }
+                spillOut = Files.newBufferedWriter(spillFile.toPath(), StandardCharsets.UTF_8,
+                        StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            }
+            spillOut.write(Long.toString(e.getDate().getTime()));
+            spillOut.write('\t');
+            spillOut.write(escape(e.getDescription()));
+            spillOut.newLine();
+            return true;
+        } catch (IOException ex) {
+            closeSpill();
+            return false;
+        }
+    }
+
+    /**
+     * Reads every spilled event back from disk, oldest first. Lines that
+     * cannot be read are skipped.
+     * 
+     * @param into the list the events are added to
+     */
+    private void readSpilled(List<Event> into) {
+        if (spillFile == null || !spillFile.exists()) {
+            return;
+        }
+        try {
+            if (spillOut != null) {
+                spillOut.flush();
+            }
+            try (BufferedReader in = Files.newBufferedReader(spillFile.toPath(), StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = in.readLine()) != null) {
+                    int tab = line.indexOf('\t');
+                    if (tab > 0) {
+                        Date date = new Date(Long.parseLong(line.substring(0, tab)));
+                        into.add(new Event(date, unescape(line.substring(tab + 1))));
+                    }
+                }
+            }
+        } catch (IOException | NumberFormatException ex) {
+            // the spilled part of the log is lost; keep what is in memory
+        }
+    }
+
+    /**
+     * Closes the spill file, if open, ignoring errors.
+     */
+    private void closeSpill() {
+        if (spillOut != null) {
+            try {
+                spillOut.close();
+            } catch (IOException ex) {
+                // nothing more can be written to it either way
+            }
+            spillOut = null;
+        }
+    }
+
+    /**
+     * Escapes backslashes and line breaks so a description fits on one line.
+     */
+    private static String escape(String s) {
+        return s.replace("\\", "\\\\").replace("\n", "\\n").replace("\r", "\\r");
+    }
+
+    /**
+     * Reverses escape.
+     */
+    private static String unescape(String s) {
+        StringBuilder sb = new StringBuilder(s.length());
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '\\' && i + 1 < s.length()) {
+                char next = s.charAt(++i);
+                sb.append(next == 'n' ? '\n' : next == 'r' ? '\r' : next);
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
     }
 }
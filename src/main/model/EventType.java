@@ -0,0 +1,54 @@
+package model;
+
+/**
+ * The kinds of event logged by the model, each with the text template its
+ * description is formatted from. In a template, {1} and {2} stand for the
+ * first and second argument of the event.
+ */
+public enum EventType {
+    /** a free-text message; its only argument is the description */
+    MESSAGE("{1}"),
+    /** a photo added to the library; argument: photo name */
+    PHOTO_ADDED("Add photo to library: {1}"),
+    /** a photo removed from the library; argument: photo name */
+    PHOTO_REMOVED("Remove photo frim library: {1}"),
+    /** an album added to the library; argument: album name */
+    ALBUM_ADDED("Add album: {1}"),
+    /** an album removed from the library; argument: album name */
+    ALBUM_REMOVED("Remove album: {1}"),
+    /** an album renamed; arguments: old name, new name */
+    ALBUM_RENAMED("Rename album: {1} to {2}"),
+    /** a photo added to an album; arguments: photo name, album name */
+    PHOTO_ADDED_TO_ALBUM("Photo {1} added to album {2}"),
+    /** a photo removed from an album; arguments: photo name, album name */
+    PHOTO_REMOVED_FROM_ALBUM("Photo {1} removed from album {2}"),
+    /** a reflection set on a photo; argument: photo name */
+    REFLECTION_UPDATED("Reflection updated for photo {1}");
+
+    private final String template;
+
+    EventType(String template) {
+        this.template = template;
+    }
+
+    /**
+     * Formats the description of an event of this type.
+     * 
+     * @param arg1 the first argument, or null
+     * @param arg2 the second argument, or null
+     * @return the template with its placeholders replaced by the arguments
+     */
+    String format(String arg1, String arg2) {
+        StringBuilder sb = new StringBuilder(template.length() + 32);
+        for (int i = 0; i < template.length(); i++) {
+            char c = template.charAt(i);
+            if (c == '{' && i + 2 < template.length() && template.charAt(i + 2) == '}') {
+                sb.append(template.charAt(i + 1) == '1' ? arg1 : arg2);
+                i += 2;
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,30 @@
+package model;
+
+// Receives every change made to a PhotoLibrary, its albums and the
+// reflections of its photos, after the change has been made.
+public interface LibraryListener {
+    // EFFECTS: called after photo p was added to the library
+    void photoAdded(Photo p);
+
+    // EFFECTS: called after photo p was removed from the library
+    void photoRemoved(Photo p);
+
+    // EFFECTS: called after album a was added to the library
+    void albumAdded(Album a);
+
+    // EFFECTS: called after album a was removed from the library
+    void albumRemoved(Album a);
+
+    // EFFECTS: called after album a, formerly named oldName, was renamed
+    void albumRenamed(Album a, String oldName);
+
+    // EFFECTS: called after photo p was added to album a of the library
+    void photoAddedToAlbum(Album a, Photo p);
+
+    // EFFECTS: called after photo p was removed from album a of the library
+    void photoRemovedFromAlbum(Album a, Photo p);
+
+    // EFFECTS: called after the reflection of photo p was replaced, or its
+    // score, problems or comments were changed
+    void reflectionChanged(Photo p);
+}
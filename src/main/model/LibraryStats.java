@@ -0,0 +1,234 @@
+package model;
+
+import java.time.YearMonth;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+
+// Learning statistics over the reflected photos of a PhotoLibrary. The library
+// keeps them up to date as photos and reflections change, so reading them
+// never rescans the photos.
+public class LibraryStats {
+    // nominal f-numbers of the full stops, from f/1
+    private static final double[] F_STOPS = {1.0, 1.4, 2.0, 2.8, 4.0, 5.6, 8.0, 11, 16, 22, 32, 45, 64};
+    private static final int TYPES = ProblemType.values().length;
+
+    private final int[] problemCounts = new int[TYPES];
+    private final ScoreStats overall = new ScoreStats();
+    private final Map<String, ScoreStats> byCamera = new HashMap<>();
+    private final Map<Integer, ScoreStats> byIsoBucket = new TreeMap<>();
+    private final Map<Double, ScoreStats> byApertureBucket = new TreeMap<>();
+    private final Map<YearMonth, int[]> problemsByMonth = new TreeMap<>();
+
+    // EFFECTS: returns the ISO bucket of iso: the largest of 100, 200, 400,
+    // ... not above iso, or 0 for iso below 100
+    public static int isoBucket(int iso) {
+        return iso < 100 ? 0 : 100 * Integer.highestOneBit(iso / 100);
+    }
+
+    // EFFECTS: returns the aperture bucket of aperture: the nominal f-number of
+    // the nearest full stop
+    public static double apertureBucket(double aperture) {
+        int stop = (int) Math.round(2 * Math.log(aperture) / Math.log(2));
+        if (stop < 0) {
+            return F_STOPS[0];
+        }
+        if (stop < F_STOPS.length) {
+            return F_STOPS[stop];
+        }
+        return Math.pow(Math.sqrt(2), stop);
+    }
+
+    // EFFECTS: returns the number of reflected photos recording problem t
+    public int getProblemCount(ProblemType t) {
+        return problemCounts[t.ordinal()];
+    }
+
+    // EFFECTS: returns the scores of every reflected photo
+    public ScoreStats getScores() {
+        return overall;
+    }
+
+    // EFFECTS: returns the scores of the reflected photos taken with the
+    // given camera, or null if there are none
+    public ScoreStats getScoresForCamera(String camera) {
+        return byCamera.get(camera);
+    }
+
+    // EFFECTS: returns a read-only map from camera to the scores of the
+    // reflected photos taken with it
+    public Map<String, ScoreStats> getScoresByCamera() {
+        return Collections.unmodifiableMap(byCamera);
+    }
+
+    // EFFECTS: returns a read-only map, in ISO order, from ISO bucket (see
+    // isoBucket) to the scores of the reflected photos in it
+    public Map<Integer, ScoreStats> getScoresByIsoBucket() {
+        return Collections.unmodifiableMap(byIsoBucket);
+    }
+
+    // EFFECTS: returns a read-only map, in aperture order, from aperture
+    // bucket (see apertureBucket) to the scores of the reflected photos in it
+    public Map<Double, ScoreStats> getScoresByApertureBucket() {
+        return Collections.unmodifiableMap(byApertureBucket);
+    }
+
+    // EFFECTS: returns how many photos taken in the given month record
+    // problem t
+    public int getProblemCount(YearMonth month, ProblemType t) {
+        int[] counts = problemsByMonth.get(month);
+        return counts == null ? 0 : counts[t.ordinal()];
+    }
+
+    // EFFECTS: returns a read-only map, in date order, from month to the
+    // number of photos taken in it that record each problem type, indexed by
+    // ProblemType.ordinal(); only months with a recorded problem appear
+    public Map<YearMonth, int[]> getProblemCountsByMonth() {
+        return Collections.unmodifiableMap(problemsByMonth);
+    }
+
+    // EFFECTS: returns a short multi-line text report of these statistics
+    public String summary() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("Reflected photos: ").append(overall.getCount());
+        sb.append(String.format(" (mean score %.1f, median %d)%n", overall.getMean(), overall.getMedian()));
+        sb.append("Problems:\n");
+        for (ProblemType t : ProblemType.values()) {
+            sb.append("  ").append(t.name()).append(": ").append(getProblemCount(t)).append("\n");
+        }
+        sb.append("Scores by camera:\n");
+        for (Map.Entry<String, ScoreStats> e : new TreeMap<>(byCamera).entrySet()) {
+            appendScores(sb, e.getKey(), e.getValue());
+        }
+        sb.append("Scores by ISO:\n");
+        for (Map.Entry<Integer, ScoreStats> e : byIsoBucket.entrySet()) {
+            appendScores(sb, "ISO " + e.getKey() + "+", e.getValue());
+        }
+        sb.append("Scores by aperture:\n");
+        for (Map.Entry<Double, ScoreStats> e : byApertureBucket.entrySet()) {
+            appendScores(sb, "f/" + e.getKey(), e.getValue());
+        }
+        return sb.toString();
+    }
+
+    // MODIFIES: sb
+    // EFFECTS: appends one line describing the scores of a group
+    private void appendScores(StringBuilder sb, String label, ScoreStats s) {
+        sb.append(String.format("  %s: %d photo(s), mean %.1f, median %d, p90 %d%n",
+                label, s.getCount(), s.getMean(), s.getMedian(), s.getPercentile(90)));
+    }
+
+    // MODIFIES: this
+    // EFFECTS: counts photo p if it has a reflection
+    void photoAdded(Photo p) {
+        if (p.hasReflection()) {
+            count(p, p.getReflectionScore(), p.getReflectionProblems(), 1);
+        }
+    }
+
+    // MODIFIES: this
+    // EFFECTS: stops counting photo p
+    void photoRemoved(Photo p) {
+        if (p.hasReflection()) {
+            count(p, p.getReflectionScore(), p.getReflectionProblems(), -1);
+        }
+    }
+
+    // MODIFIES: this
+    // EFFECTS: counts photo p under its current reflection instead of old
+    void reflectionChanged(Photo p, Reflection old) {
+        if (old != null) {
+            count(p, old.getScore(), old.getProblemMask(), -1);
+        }
+        photoAdded(p);
+    }
+
+    // MODIFIES: this
+    // EFFECTS: counts problem t for photo p
+    void problemAdded(Photo p, ProblemType t) {
+        countProblems(p, t.bit(), 1);
+    }
+
+    // MODIFIES: this
+    // EFFECTS: stops counting problem t for photo p
+    void problemRemoved(Photo p, ProblemType t) {
+        countProblems(p, t.bit(), -1);
+    }
+
+    // MODIFIES: this
+    // EFFECTS: counts the current score of photo p instead of oldScore
+    void scoreChanged(Photo p, int oldScore) {
+        forEachGroup(p, g -> g.remove(oldScore));
+        forEachGroup(p, g -> g.add(p.getReflectionScore()));
+    }
+
+    // MODIFIES: this
+    // EFFECTS: counts a reflection with the given score and problem mask for
+    // photo p if delta is 1, or stops counting it if delta is -1
+    private void count(Photo p, int score, int mask, int delta) {
+        if (delta > 0) {
+            forEachGroup(p, g -> g.add(score));
+        } else {
+            forEachGroup(p, g -> g.remove(score));
+        }
+        countProblems(p, mask, delta);
+    }
+
+    // MODIFIES: this
+    // EFFECTS: adds delta to the overall and monthly count of each problem in
+    // mask for photo p
+    private void countProblems(Photo p, int mask, int delta) {
+        if (mask == 0) {
+            return;
+        }
+        int[] monthly = null;
+        if (p.getDate() != null) {
+            monthly = problemsByMonth.computeIfAbsent(YearMonth.from(p.getDate()), k -> new int[TYPES]);
+        }
+        for (int m = mask; m != 0; m &= m - 1) {
+            int ordinal = Integer.numberOfTrailingZeros(m);
+            problemCounts[ordinal] += delta;
+            if (monthly != null) {
+                monthly[ordinal] += delta;
+            }
+        }
+        if (monthly != null && isEmpty(monthly)) {
+            problemsByMonth.remove(YearMonth.from(p.getDate()));
+        }
+    }
+
+    // MODIFIES: this
+    // EFFECTS: applies change to every score group photo p belongs to, and
+    // drops groups left empty
+    private void forEachGroup(Photo p, Consumer<ScoreStats> change) {
+        change.accept(overall);
+        if (p.getCamera() != null) {
+            applyToGroup(byCamera, p.getCamera(), change);
+        }
+        applyToGroup(byIsoBucket, isoBucket(p.getIso()), change);
+        applyToGroup(byApertureBucket, apertureBucket(p.getAperture()), change);
+    }
+
+    // MODIFIES: groups
+    // EFFECTS: applies change to the group under key, creating it if needed
+    // and dropping it if left empty
+    private static <K> void applyToGroup(Map<K, ScoreStats> groups, K key, Consumer<ScoreStats> change) {
+        ScoreStats g = groups.computeIfAbsent(key, k -> new ScoreStats());
+        change.accept(g);
+        if (g.getCount() == 0) {
+            groups.remove(key);
+        }
+    }
+
+    // EFFECTS: returns true if every count is zero
+    private static boolean isEmpty(int[] counts) {
+        for (int c : counts) {
+            if (c != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -1,6 +1,9 @@
 package model;
 
+import java.lang.ref.SoftReference;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.json.JSONArray;
 import org.json.JSONObject;
@@ -10,18 +13,31 @@ import persistence.Writable;
 // photo imported by the user
 
 public class Photo implements Writable {
+    private static final AtomicInteger NEXT_ID = new AtomicInteger();
+
+    private final int id;
     private String photoname;
     private String camera;
     private Reflection reflection;
+    // a reflection kept in storage until first needed, with its score and
+    // problems, and the unchanged copy loaded from it, which may be dropped
+    // when memory runs low; see setStoredReflection
+    private ReflectionLoader storedReflection;
+    private int storedScore;
+    private int storedProblems;
+    private SoftReference<Reflection> loadedReflection;
     private int iso;
     private double aperture;
     private double shutterspeed;
     private Boolean reflect;
     private LocalDate date;
+    // libraries tracking this photo; created on first registration
+    private ArrayList<PhotoObserver> observers;
 
     // REQUIRES: iso, aperture, shutterspeed> 0
     // EFFECTS: create a photo with information recorded
     public Photo(String photoname, String camera, int iso, double aperture, double shutterspeed, LocalDate date) {
+        this.id = NEXT_ID.getAndIncrement();
         this.photoname = photoname;
         this.camera = camera;
         this.iso = iso;
@@ -36,11 +52,164 @@ public class Photo implements Writable {
 
     // EFFECTS: write the reflection for photo and set the photo to be reflected
     public void setReflection(Reflection reflection) {
+        Reflection old = getReflection();
+        if (old != null) {
+            old.detach(this);
+        }
+        storedReflection = null;
+        loadedReflection = null;
         this.reflection = reflection;
+        if (reflection != null) {
+            reflection.attach(this);
+        }
         setReflect(true);
-        EventLog.getInstance().logEvent(
-                new Event("Reflection updated for photo " + getPhotoname()));
+        if (observers != null) {
+            for (PhotoObserver o : observers) {
+                o.reflectionChanged(this, old);
+            }
+        }
+        EventLog.getInstance().logEvent(EventType.REFLECTION_UPDATED, getPhotoname());
+
+    }
+
+    // REQUIRES: this photo is in no library
+    // MODIFIES: this
+    // EFFECTS: gives this photo a reflection with the given score and
+    // problem mask that stays in storage until getReflection first needs it,
+    // and sets the photo to be reflected. Until the loaded reflection is
+    // changed, it may be dropped again when memory runs low, and is loaded
+    // afresh when next needed.
+    public void setStoredReflection(int score, int problemMask, ReflectionLoader loader) {
+        if (reflection != null) {
+            reflection.detach(this);
+        }
+        reflection = null;
+        storedReflection = loader;
+        storedScore = score;
+        storedProblems = problemMask;
+        loadedReflection = null;
+        reflect = true;
+        EventLog.getInstance().logEvent(EventType.REFLECTION_UPDATED, getPhotoname());
+    }
+
+    // EFFECTS: returns true if this photo has a reflection, whether or not it
+    // has been loaded from storage
+    boolean hasReflection() {
+        return reflection != null || storedReflection != null;
+    }
+
+    // REQUIRES: hasReflection()
+    // EFFECTS: returns the score of the reflection, without loading it
+    int getReflectionScore() {
+        return reflection != null ? reflection.getScore() : storedScore;
+    }
+
+    // REQUIRES: hasReflection()
+    // EFFECTS: returns the problem mask of the reflection, without loading it
+    int getReflectionProblems() {
+        return reflection != null ? reflection.getProblemMask() : storedProblems;
+    }
+
+    // MODIFIES: this
+    // EFFECTS: returns the stored reflection, loading it if it is not in
+    // memory
+    private synchronized Reflection loadReflection() {
+        Reflection r = loadedReflection == null ? null : loadedReflection.get();
+        if (r == null) {
+            r = storedReflection.load();
+            r.attach(this);
+            loadedReflection = new SoftReference<>(r);
+        }
+        return r;
+    }
+
+    // MODIFIES: this
+    // EFFECTS: keeps a loaded stored reflection for good, as it has been
+    // changed and no longer matches storage
+    private void keepLoadedReflection() {
+        if (storedReflection != null && loadedReflection != null) {
+            reflection = loadedReflection.get();
+            storedReflection = null;
+            loadedReflection = null;
+        }
+    }
+
+    // MODIFIES: this
+    // EFFECTS: registers o to be told about changes to this photo
+    void addObserver(PhotoObserver o) {
+        if (observers == null) {
+            observers = new ArrayList<>(1);
+        }
+        observers.add(o);
+    }
+
+    // MODIFIES: this
+    // EFFECTS: stops telling o about changes to this photo
+    void removeObserver(PhotoObserver o) {
+        if (observers != null) {
+            observers.remove(o);
+        }
+    }
+
+    // EFFECTS: tells every observer that problem type t was added to this
+    // photo's reflection
+    void notifyProblemAdded(ProblemType t) {
+        keepLoadedReflection();
+        if (observers != null) {
+            for (PhotoObserver o : observers) {
+                o.problemAdded(this, t);
+            }
+        }
+    }
+
+    // EFFECTS: tells every observer that problem type t was removed from this
+    // photo's reflection
+    void notifyProblemRemoved(ProblemType t) {
+        keepLoadedReflection();
+        if (observers != null) {
+            for (PhotoObserver o : observers) {
+                o.problemRemoved(this, t);
+            }
+        }
+    }
 
+    // EFFECTS: tells every observer that comment c was added to this photo's
+    // reflection
+    void notifyCommentAdded(String c) {
+        keepLoadedReflection();
+        if (observers != null) {
+            for (PhotoObserver o : observers) {
+                o.commentAdded(this, c);
+            }
+        }
+    }
+
+    // EFFECTS: tells every observer that comment c was removed from this
+    // photo's reflection
+    void notifyCommentRemoved(String c) {
+        keepLoadedReflection();
+        if (observers != null) {
+            for (PhotoObserver o : observers) {
+                o.commentRemoved(this, c);
+            }
+        }
+    }
+
+    // EFFECTS: tells every observer that this photo's reflection score changed
+    // from oldScore
+    void notifyScoreChanged(int oldScore) {
+        keepLoadedReflection();
+        if (observers != null) {
+            for (PhotoObserver o : observers) {
+                o.scoreChanged(this, oldScore);
+            }
+        }
+    }
+
+    // EFFECTS: returns the id generated for this photo; ids are unique for the
+    // lifetime of the program and never change
+    public int getId() {
+        return id;
     }
 
     public Boolean getReflect() {
@@ -49,6 +218,11 @@ public class Photo implements Writable {
 
     public void setReflect(Boolean reflect) {
         this.reflect = reflect;
+        if (observers != null) {
+            for (PhotoObserver o : observers) {
+                o.reflectChanged(this);
+            }
+        }
     }
 
     public int getIso() {
@@ -64,6 +238,9 @@ public class Photo implements Writable {
     }
 
     public Reflection getReflection() {
+        if (reflection == null && storedReflection != null) {
+            return loadReflection();
+        }
         return reflection;
     }
 
@@ -100,27 +277,28 @@ public class Photo implements Writable {
 
     // EFFECTS: adds reflection object if not null
     private void addReflectionIfPresent(JSONObject json) {
+        Reflection reflection = getReflection();
         if (reflection == null) {
             return;
         }
         JSONObject ref = new JSONObject();
         ref.put("score", reflection.getScore());
-        ref.put("problems", buildProblemsArray());
-        ref.put("comments", buildCommentsArray());
+        ref.put("problems", buildProblemsArray(reflection));
+        ref.put("comments", buildCommentsArray(reflection));
         json.put("reflection", ref);
     }
 
     // EFFECTS: builds JSONArray for problems
-    private JSONArray buildProblemsArray() {
+    private JSONArray buildProblemsArray(Reflection reflection) {
         JSONArray probs = new JSONArray();
-        for (ProblemType pt : reflection.getProblems()) {
-            probs.put(pt.name());
+        for (int m = reflection.getProblemMask(); m != 0; m &= m - 1) {
+            probs.put(ProblemType.ofOrdinal(Integer.numberOfTrailingZeros(m)).name());
         }
         return probs;
     }
 
     // EFFECTS: builds JSONArray for comments
-    private JSONArray buildCommentsArray() {
+    private JSONArray buildCommentsArray(Reflection reflection) {
         JSONArray comms = new JSONArray();
         for (String c : reflection.getComments()) {
             comms.put(c);
@@ -0,0 +1,323 @@
+package model;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+// A column-wise snapshot of the photos of a PhotoLibrary for analytical scans
+// over large libraries. Each attribute is held in its own primitive array, one
+// row per photo in library order, so filters and aggregates run as tight
+// loops over contiguous memory instead of visiting every Photo object.
+// Cameras are dictionary-encoded as small int codes. The snapshot does not
+// follow later changes to the library.
+//
+// Filters narrow a row mask, as returned by allRows(), in place; aggregates
+// read the rows a mask keeps.
+public class PhotoColumns {
+    // epoch day of a photo with no date
+    public static final int NO_DATE = Integer.MIN_VALUE;
+    // score of a photo with no reflection
+    public static final int NO_SCORE = Integer.MIN_VALUE;
+    // camera code of a photo with no camera
+    public static final int NO_CAMERA = -1;
+    // number of ISO buckets: 0, then 100 << k for k in 0..30
+    private static final int ISO_BUCKETS = 32;
+
+    private final Photo[] photos;
+    private final int size;
+    private final int[] iso;
+    private final double[] aperture;
+    private final double[] shutterspeed;
+    private final int[] epochDay;
+    private final int[] camera;
+    private final String[] cameraNames;
+    private final int[] score;
+    private final int[] problems;
+    private final boolean[] reflected;
+
+    // EFFECTS: takes a snapshot of the photos of lib, in library order
+    public PhotoColumns(PhotoLibrary lib) {
+        List<Photo> source = lib.getPhotos();
+        size = source.size();
+        photos = source.toArray(new Photo[size]);
+        iso = new int[size];
+        aperture = new double[size];
+        shutterspeed = new double[size];
+        epochDay = new int[size];
+        camera = new int[size];
+        score = new int[size];
+        problems = new int[size];
+        reflected = new boolean[size];
+        Map<String, Integer> codes = new LinkedHashMap<>();
+        for (int i = 0; i < size; i++) {
+            Photo p = photos[i];
+            iso[i] = p.getIso();
+            aperture[i] = p.getAperture();
+            shutterspeed[i] = p.getShutterspeed();
+            epochDay[i] = p.getDate() == null ? NO_DATE : (int) p.getDate().toEpochDay();
+            camera[i] = p.getCamera() == null ? NO_CAMERA : codes.computeIfAbsent(p.getCamera(), k -> codes.size());
+            score[i] = p.hasReflection() ? p.getReflectionScore() : NO_SCORE;
+            problems[i] = p.hasReflection() ? p.getReflectionProblems() : 0;
+            reflected[i] = Boolean.TRUE.equals(p.getReflect());
+        }
+        cameraNames = codes.keySet().toArray(new String[0]);
+    }
+
+    // EFFECTS: returns the number of rows
+    public int size() {
+        return size;
+    }
+
+    // REQUIRES: 0 <= row < size()
+    // EFFECTS: returns the photo in the given row
+    public Photo getPhoto(int row) {
+        return photos[row];
+    }
+
+    // REQUIRES: 0 <= row < size()
+    // EFFECTS: returns the ISO of the given row
+    public int getIso(int row) {
+        return iso[row];
+    }
+
+    // REQUIRES: 0 <= row < size()
+    // EFFECTS: returns the aperture of the given row
+    public double getAperture(int row) {
+        return aperture[row];
+    }
+
+    // REQUIRES: 0 <= row < size()
+    // EFFECTS: returns the shutter speed of the given row
+    public double getShutterspeed(int row) {
+        return shutterspeed[row];
+    }
+
+    // REQUIRES: 0 <= row < size()
+    // EFFECTS: returns the date of the given row as an epoch day, or NO_DATE
+    public int getEpochDay(int row) {
+        return epochDay[row];
+    }
+
+    // REQUIRES: 0 <= row < size()
+    // EFFECTS: returns the camera code of the given row, or NO_CAMERA
+    public int getCameraCode(int row) {
+        return camera[row];
+    }
+
+    // REQUIRES: 0 <= row < size()
+    // EFFECTS: returns the reflection score of the given row, or NO_SCORE
+    public int getScore(int row) {
+        return score[row];
+    }
+
+    // REQUIRES: 0 <= row < size()
+    // EFFECTS: returns the problem mask of the given row; 0 if it has no
+    // reflection
+    public int getProblemMask(int row) {
+        return problems[row];
+    }
+
+    // EFFECTS: returns the number of distinct cameras
+    public int numCameras() {
+        return cameraNames.length;
+    }
+
+    // REQUIRES: 0 <= code < numCameras()
+    // EFFECTS: returns the camera with the given code
+    public String cameraName(int code) {
+        return cameraNames[code];
+    }
+
+    // EFFECTS: returns the code of the given camera, or NO_CAMERA if no row
+    // uses it
+    public int cameraCode(String name) {
+        for (int c = 0; c < cameraNames.length; c++) {
+            if (cameraNames[c].equals(name)) {
+                return c;
+            }
+        }
+        return NO_CAMERA;
+    }
+
+    // EFFECTS: returns a row mask keeping every row
+    public boolean[] allRows() {
+        boolean[] mask = new boolean[size];
+        Arrays.fill(mask, true);
+        return mask;
+    }
+
+    // MODIFIES: mask
+    // EFFECTS: keeps only the rows taken with the given camera
+    public void keepCamera(boolean[] mask, String name) {
+        int code = cameraCode(name);
+        if (code == NO_CAMERA) {
+            Arrays.fill(mask, false);
+            return;
+        }
+        for (int i = 0; i < size; i++) {
+            mask[i] &= camera[i] == code;
+        }
+    }
+
+    // MODIFIES: mask
+    // EFFECTS: keeps only the rows with lo <= ISO <= hi
+    public void keepIsoBetween(boolean[] mask, int lo, int hi) {
+        for (int i = 0; i < size; i++) {
+            mask[i] &= iso[i] >= lo & iso[i] <= hi;
+        }
+    }
+
+    // MODIFIES: mask
+    // EFFECTS: keeps only the rows with lo <= aperture <= hi
+    public void keepApertureBetween(boolean[] mask, double lo, double hi) {
+        for (int i = 0; i < size; i++) {
+            mask[i] &= aperture[i] >= lo & aperture[i] <= hi;
+        }
+    }
+
+    // MODIFIES: mask
+    // EFFECTS: keeps only the rows with lo <= shutter speed <= hi
+    public void keepShutterspeedBetween(boolean[] mask, double lo, double hi) {
+        for (int i = 0; i < size; i++) {
+            mask[i] &= shutterspeed[i] >= lo & shutterspeed[i] <= hi;
+        }
+    }
+
+    // MODIFIES: mask
+    // EFFECTS: keeps only the rows dated from..to, inclusive
+    public void keepDateBetween(boolean[] mask, LocalDate from, LocalDate to) {
+        int lo = (int) from.toEpochDay();
+        int hi = (int) to.toEpochDay();
+        for (int i = 0; i < size; i++) {
+            mask[i] &= epochDay[i] >= lo & epochDay[i] <= hi;
+        }
+    }
+
+    // MODIFIES: mask
+    // EFFECTS: keeps only the rows with a reflection scored lo..hi, inclusive
+    public void keepScoreBetween(boolean[] mask, int lo, int hi) {
+        for (int i = 0; i < size; i++) {
+            mask[i] &= score[i] != NO_SCORE & score[i] >= lo & score[i] <= hi;
+        }
+    }
+
+    // MODIFIES: mask
+    // EFFECTS: keeps only the rows whose reflect flag is wanted
+    public void keepReflected(boolean[] mask, boolean wanted) {
+        for (int i = 0; i < size; i++) {
+            mask[i] &= reflected[i] == wanted;
+        }
+    }
+
+    // MODIFIES: mask
+    // EFFECTS: keeps only the rows recording every given problem type
+    public void keepAllProblems(boolean[] mask, ProblemType... types) {
+        int wanted = ProblemType.maskOf(types);
+        for (int i = 0; i < size; i++) {
+            mask[i] &= (problems[i] & wanted) == wanted;
+        }
+    }
+
+    // MODIFIES: mask
+    // EFFECTS: keeps only the rows recording any of the given problem types
+    public void keepAnyProblem(boolean[] mask, ProblemType... types) {
+        int wanted = ProblemType.maskOf(types);
+        for (int i = 0; i < size; i++) {
+            mask[i] &= (problems[i] & wanted) != 0;
+        }
+    }
+
+    // EFFECTS: returns the number of rows mask keeps
+    public int count(boolean[] mask) {
+        int n = 0;
+        for (int i = 0; i < size; i++) {
+            n += mask[i] ? 1 : 0;
+        }
+        return n;
+    }
+
+    // EFFECTS: returns the photos of the rows mask keeps, in row order
+    public List<Photo> photos(boolean[] mask) {
+        List<Photo> result = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            if (mask[i]) {
+                result.add(photos[i]);
+            }
+        }
+        return result;
+    }
+
+    // EFFECTS: returns the mean score of the reflected rows mask keeps, or 0
+    // if there are none
+    public double meanScore(boolean[] mask) {
+        long sum = 0;
+        int n = 0;
+        for (int i = 0; i < size; i++) {
+            int keep = mask[i] & score[i] != NO_SCORE ? 1 : 0;
+            sum += keep * score[i];
+            n += keep;
+        }
+        return n == 0 ? 0 : (double) sum / n;
+    }
+
+    // EFFECTS: returns how many rows mask keeps record each problem type,
+    // indexed by ProblemType.ordinal()
+    public int[] problemCounts(boolean[] mask) {
+        int[] counts = new int[ProblemType.values().length];
+        for (int t = 0; t < counts.length; t++) {
+            int bit = 1 << t;
+            int n = 0;
+            for (int i = 0; i < size; i++) {
+                n += mask[i] & (problems[i] & bit) != 0 ? 1 : 0;
+            }
+            counts[t] = n;
+        }
+        return counts;
+    }
+
+    // EFFECTS: returns a map, in camera order, from camera to the mean score of
+    // the reflected rows mask keeps that were taken with it
+    public Map<String, Double> meanScoreByCamera(boolean[] mask) {
+        long[] sums = new long[cameraNames.length];
+        int[] counts = new int[cameraNames.length];
+        for (int i = 0; i < size; i++) {
+            if (mask[i] && score[i] != NO_SCORE && camera[i] != NO_CAMERA) {
+                sums[camera[i]] += score[i];
+                counts[camera[i]]++;
+            }
+        }
+        Map<String, Double> result = new TreeMap<>();
+        for (int c = 0; c < cameraNames.length; c++) {
+            if (counts[c] > 0) {
+                result.put(cameraNames[c], (double) sums[c] / counts[c]);
+            }
+        }
+        return result;
+    }
+
+    // EFFECTS: returns a map, in ISO order, from ISO bucket (see
+    // LibraryStats.isoBucket) to the mean score of the reflected rows mask
+    // keeps that fall in it
+    public Map<Integer, Double> meanScoreByIsoBucket(boolean[] mask) {
+        long[] sums = new long[ISO_BUCKETS];
+        int[] counts = new int[ISO_BUCKETS];
+        for (int i = 0; i < size; i++) {
+            if (mask[i] && score[i] != NO_SCORE) {
+                int b = iso[i] < 100 ? 0 : Integer.SIZE - Integer.numberOfLeadingZeros(iso[i] / 100);
+                sums[b] += score[i];
+                counts[b]++;
+            }
+        }
+        Map<Integer, Double> result = new TreeMap<>();
+        for (int b = 0; b < ISO_BUCKETS; b++) {
+            if (counts[b] > 0) {
+                result.put(b == 0 ? 0 : 100 << (b - 1), (double) sums[b] / counts[b]);
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,384 @@
+package model;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+// The secondary indexes of a PhotoLibrary, kept over its photo slots. Answers
+// problem lookups, comment searches and PhotoQuery searches without scanning
+// every photo.
+class PhotoIndex {
+    private final BitSet live = new BitSet();
+    private int liveCount;
+    private final BitSet reflected = new BitSet();
+    private final ProblemIndex problems = new ProblemIndex();
+    private final RangeIndex<String> cameras = new RangeIndex<>();
+    private final RangeIndex<Integer> isos = new RangeIndex<>();
+    private final RangeIndex<Double> apertures = new RangeIndex<>();
+    private final RangeIndex<Double> shutterspeeds = new RangeIndex<>();
+    private final RangeIndex<LocalDate> dates = new RangeIndex<>();
+    private final RangeIndex<Integer> scores = new RangeIndex<>();
+    private final CommentIndex comments = new CommentIndex();
+    // true while comment changes are not being recorded
+    private boolean commentsStale;
+
+    // MODIFIES: this
+    // EFFECTS: records photo p under the given slot in every index
+    void add(int slot, Photo p) {
+        live.set(slot);
+        liveCount++;
+        cameras.add(p.getCamera(), slot);
+        isos.add(p.getIso(), slot);
+        apertures.add(p.getAperture(), slot);
+        shutterspeeds.add(p.getShutterspeed(), slot);
+        dates.add(p.getDate(), slot);
+        reflectChanged(slot, p);
+        addReflection(slot, p);
+    }
+
+    // MODIFIES: this
+    // EFFECTS: forgets photo p under the given slot in every index
+    void remove(int slot, Photo p) {
+        live.clear(slot);
+        liveCount--;
+        cameras.remove(p.getCamera(), slot);
+        isos.remove(p.getIso(), slot);
+        apertures.remove(p.getAperture(), slot);
+        shutterspeeds.remove(p.getShutterspeed(), slot);
+        dates.remove(p.getDate(), slot);
+        reflected.clear(slot);
+        if (p.hasReflection()) {
+            scores.remove(p.getReflectionScore(), slot);
+            problems.remove(slot);
+            if (!commentsStale) {
+                comments.remove(slot, p.getReflection());
+            }
+        }
+    }
+
+    // MODIFIES: this
+    // EFFECTS: forgets every photo
+    void clear() {
+        live.clear();
+        liveCount = 0;
+        reflected.clear();
+        problems.clear();
+        cameras.clear();
+        isos.clear();
+        apertures.clear();
+        shutterspeeds.clear();
+        dates.clear();
+        scores.clear();
+        comments.clear();
+    }
+
+    // MODIFIES: this
+    // EFFECTS: moves the photo in the given slot from reflection old to its
+    // current reflection
+    void reflectionChanged(int slot, Photo p, Reflection old) {
+        removeReflection(slot, old);
+        addReflection(slot, p);
+    }
+
+    // MODIFIES: this
+    // EFFECTS: records problem t under the given slot
+    void problemAdded(int slot, ProblemType t) {
+        problems.add(slot, t);
+    }
+
+    // MODIFIES: this
+    // EFFECTS: forgets problem t under the given slot
+    void problemRemoved(int slot, ProblemType t) {
+        problems.remove(slot, t);
+    }
+
+    // MODIFIES: this
+    // EFFECTS: records comment c under the given slot
+    void commentAdded(int slot, String c) {
+        if (!commentsStale) {
+            comments.add(slot, c);
+        }
+    }
+
+    // MODIFIES: this
+    // EFFECTS: forgets comment c under the given slot
+    void commentRemoved(int slot, String c) {
+        if (!commentsStale) {
+            comments.remove(slot, c);
+        }
+    }
+
+    // MODIFIES: this
+    // EFFECTS: stops recording comments until the comment index is rebuilt
+    void deferComments() {
+        commentsStale = true;
+        comments.clear();
+    }
+
+    // MODIFIES: this
+    // EFFECTS: rebuilds the comment index from the photos in slots, splitting
+    // the comments into words on several threads at once
+    void rebuildComments(List<Photo> slots) {
+        List<Map<String, Integer>> counts = IntStream.range(0, slots.size())
+                .parallel()
+                .mapToObj(i -> slots.get(i) == null ? null : CommentIndex.wordCounts(slots.get(i).getReflection()))
+                .collect(Collectors.toList());
+        comments.clear();
+        for (int i = 0; i < counts.size(); i++) {
+            if (counts.get(i) != null) {
+                comments.addCounts(i, counts.get(i));
+            }
+        }
+        commentsStale = false;
+    }
+
+    // EFFECTS: returns the slots whose comments match query, best first; see
+    // CommentIndex.search for the query syntax
+    List<Integer> searchComments(String query, List<Photo> slots) {
+        if (commentsStale) {
+            rebuildComments(slots);
+        }
+        return comments.search(query, slots, liveCount);
+    }
+
+    // MODIFIES: this
+    // EFFECTS: moves the given slot from oldScore to newScore
+    void scoreChanged(int slot, int oldScore, int newScore) {
+        scores.remove(oldScore, slot);
+        scores.add(newScore, slot);
+    }
+
+    // MODIFIES: this
+    // EFFECTS: records the reflect flag of photo p under the given slot
+    void reflectChanged(int slot, Photo p) {
+        if (Boolean.TRUE.equals(p.getReflect())) {
+            reflected.set(slot);
+        } else {
+            reflected.clear(slot);
+        }
+    }
+
+    // REQUIRES: mask != 0
+    // EFFECTS: returns the slots whose reflection records every type in mask
+    BitSet withAllProblems(int mask) {
+        return problems.matchAll(mask);
+    }
+
+    // EFFECTS: returns the slots whose reflection records any type in mask
+    BitSet withAnyProblem(int mask) {
+        return problems.matchAny(mask);
+    }
+
+    // EFFECTS: returns the slots of the photos matching q. Starts from the
+    // criterion with the fewest matches, intersects further index results
+    // while the candidates are many, then tests the rest photo by photo.
+    BitSet select(PhotoQuery q, List<Photo> slots) {
+        List<Condition> conditions = conditionsFor(q);
+        if (conditions.isEmpty()) {
+            return (BitSet) live.clone();
+        }
+        conditions.sort(Comparator.comparingInt(c -> c.estimate));
+        if (conditions.get(0).estimate == 0) {
+            return new BitSet();
+        }
+        BitSet candidates = conditions.get(0).match();
+        int words = slots.size() / Long.SIZE + 1;
+        int next = 1;
+        while (next < conditions.size() && candidates.cardinality() > words) {
+            candidates.and(conditions.get(next).match());
+            next++;
+        }
+        if (next < conditions.size()) {
+            testRemaining(candidates, conditions.subList(next, conditions.size()), slots);
+        }
+        return candidates;
+    }
+
+    // MODIFIES: candidates
+    // EFFECTS: clears each candidate slot whose photo fails one of conditions
+    private void testRemaining(BitSet candidates, List<Condition> conditions, List<Photo> slots) {
+        for (int i = candidates.nextSetBit(0); i >= 0; i = candidates.nextSetBit(i + 1)) {
+            Photo p = slots.get(i);
+            for (Condition c : conditions) {
+                if (!c.test(p)) {
+                    candidates.clear(i);
+                    break;
+                }
+            }
+        }
+    }
+
+    // EFFECTS: returns one condition for each criterion set in q
+    private List<Condition> conditionsFor(PhotoQuery q) {
+        List<Condition> conditions = new ArrayList<>();
+        if (q.getCamera() != null) {
+            conditions.add(new RangeCondition<>(cameras, q.getCamera(), q.getCamera(), Photo::getCamera));
+        }
+        if (q.getMinIso() != null) {
+            conditions.add(new RangeCondition<>(isos, q.getMinIso(), q.getMaxIso(), Photo::getIso));
+        }
+        if (q.getMinAperture() != null) {
+            conditions.add(new RangeCondition<>(apertures, q.getMinAperture(), q.getMaxAperture(),
+                    Photo::getAperture));
+        }
+        if (q.getMinShutterspeed() != null) {
+            conditions.add(new RangeCondition<>(shutterspeeds, q.getMinShutterspeed(), q.getMaxShutterspeed(),
+                    Photo::getShutterspeed));
+        }
+        if (q.getFromDate() != null || q.getToDate() != null) {
+            LocalDate from = q.getFromDate() != null ? q.getFromDate() : LocalDate.MIN;
+            LocalDate to = q.getToDate() != null ? q.getToDate() : LocalDate.MAX;
+            conditions.add(new RangeCondition<>(dates, from, to, Photo::getDate));
+        }
+        if (q.getMinScore() != null) {
+            conditions.add(new RangeCondition<>(scores, q.getMinScore(), q.getMaxScore(), PhotoIndex::scoreOf));
+        }
+        if (q.getReflected() != null) {
+            conditions.add(new ReflectedCondition(q.getReflected()));
+        }
+        if (q.getAllProblems() != 0) {
+            conditions.add(new ProblemCondition(q.getAllProblems(), true));
+        }
+        if (q.getAnyProblems() != 0) {
+            conditions.add(new ProblemCondition(q.getAnyProblems(), false));
+        }
+        return conditions;
+    }
+
+    // MODIFIES: this
+    // EFFECTS: records the score, problems and comments of the reflection of
+    // p under the given slot; does nothing if p has no reflection. A stored
+    // reflection is loaded only if its comments are to be recorded.
+    private void addReflection(int slot, Photo p) {
+        if (p.hasReflection()) {
+            scores.add(p.getReflectionScore(), slot);
+            problems.add(slot, p.getReflectionProblems());
+            if (!commentsStale) {
+                comments.add(slot, p.getReflection());
+            }
+        }
+    }
+
+    // MODIFIES: this
+    // EFFECTS: forgets the score, problems and comments of r under the given
+    // slot; does nothing if r is null
+    private void removeReflection(int slot, Reflection r) {
+        if (r != null) {
+            scores.remove(r.getScore(), slot);
+            problems.remove(slot);
+            if (!commentsStale) {
+                comments.remove(slot, r);
+            }
+        }
+    }
+
+    // EFFECTS: returns the reflection score of p, or null if p has no reflection
+    private static Integer scoreOf(Photo p) {
+        return p.hasReflection() ? p.getReflectionScore() : null;
+    }
+
+    // One criterion of a query, with the number of slots it is expected to
+    // match.
+    private abstract static class Condition {
+        protected int estimate;
+
+        // EFFECTS: returns the slots matching this condition
+        abstract BitSet match();
+
+        // EFFECTS: returns true if photo p matches this condition
+        abstract boolean test(Photo p);
+    }
+
+    // A criterion that an attribute falls within [lo, hi].
+    private static class RangeCondition<K extends Comparable<? super K>> extends Condition {
+        private final RangeIndex<K> index;
+        private final K lo;
+        private final K hi;
+        private final Function<Photo, K> attribute;
+
+        RangeCondition(RangeIndex<K> index, K lo, K hi, Function<Photo, K> attribute) {
+            this.index = index;
+            this.lo = lo;
+            this.hi = hi;
+            this.attribute = attribute;
+            this.estimate = index.count(lo, hi);
+        }
+
+        @Override
+        BitSet match() {
+            return index.match(lo, hi);
+        }
+
+        @Override
+        boolean test(Photo p) {
+            K value = attribute.apply(p);
+            return value != null && value.compareTo(lo) >= 0 && value.compareTo(hi) <= 0;
+        }
+    }
+
+    // A criterion on the reflect flag.
+    private class ReflectedCondition extends Condition {
+        private final boolean wanted;
+
+        ReflectedCondition(boolean wanted) {
+            this.wanted = wanted;
+            int count = reflected.cardinality();
+            this.estimate = wanted ? count : liveCount - count;
+        }
+
+        @Override
+        BitSet match() {
+            if (wanted) {
+                return (BitSet) reflected.clone();
+            }
+            BitSet result = (BitSet) live.clone();
+            result.andNot(reflected);
+            return result;
+        }
+
+        @Override
+        boolean test(Photo p) {
+            return Boolean.TRUE.equals(p.getReflect()) == wanted;
+        }
+    }
+
+    // A criterion that the reflection records all, or any, of a set of
+    // problem types.
+    private class ProblemCondition extends Condition {
+        private final int mask;
+        private final boolean all;
+
+        ProblemCondition(int mask, boolean all) {
+            this.mask = mask;
+            this.all = all;
+            int min = Integer.MAX_VALUE;
+            int sum = 0;
+            for (int m = mask; m != 0; m &= m - 1) {
+                int count = problems.count(ProblemType.ofOrdinal(Integer.numberOfTrailingZeros(m)));
+                min = Math.min(min, count);
+                sum += count;
+            }
+            this.estimate = all ? min : sum;
+        }
+
+        @Override
+        BitSet match() {
+            return all ? problems.matchAll(mask) : problems.matchAny(mask);
+        }
+
+        @Override
+        boolean test(Photo p) {
+            if (!p.hasReflection()) {
+                return false;
+            }
+            int held = p.getReflectionProblems() & mask;
+            return all ? held == mask : held != 0;
+        }
+    }
+}
@@ -1,23 +1,61 @@
 package model;
 
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
 
 import org.json.JSONArray;
 import org.json.JSONObject;
 
+import persistence.JsonWriter;
 import persistence.Writable;
 
 // the collection of all photos and albums
 public class PhotoLibrary implements Writable {
+    // compact the slot list once at least this many slots are removed and they
+    // outnumber the live photos
+    private static final int MIN_COMPACT = 64;
+
     private String libName;
-    private ArrayList<Photo> photos;
-    private ArrayList<Album> albums;
+    // photos in insertion order; a removed photo leaves a null slot behind
+    private ArrayList<Photo> slots;
+    private HashMap<Integer, Integer> slotById;
+    private HashMap<String, ArrayList<Photo>> photosByName;
+    private int removedSlots;
+    private List<Photo> photoView;
+    private final PhotoIndex index;
+    private final PhotoObserver tracker;
+    private final LibraryStats stats;
+    private final ArrayList<LibraryListener> listeners;
+    // albums by reference, in the order they were added
+    private LinkedHashSet<Album> albums;
+    private List<Album> albumView;
+    // albums keyed by normalized name, see normalizeAlbumName
+    private HashMap<String, ArrayList<Album>> albumsByName;
+    // the albums holding each photo, keyed by photo id
+    private final HashMap<Integer, LinkedHashSet<Album>> albumsByPhoto;
+    private final AlbumObserver membershipTracker;
 
     // EFFECTS: construct an empty session of photos
     public PhotoLibrary(String libName) {
         this.libName = libName;
-        this.photos = new ArrayList<Photo>();
-        this.albums = new ArrayList<Album>();
+        this.slots = new ArrayList<Photo>();
+        this.slotById = new HashMap<>();
+        this.photosByName = new HashMap<>();
+        this.index = new PhotoIndex();
+        this.tracker = new IndexTracker();
+        this.stats = new LibraryStats();
+        this.listeners = new ArrayList<>();
+        this.albums = new LinkedHashSet<Album>();
+        this.albumsByName = new HashMap<>();
+        this.albumsByPhoto = new HashMap<>();
+        this.membershipTracker = new MembershipTracker();
 
     }
 
@@ -25,55 +63,305 @@ public class PhotoLibrary implements Writable {
     // EFFECTS: add the given photo to the photo library if not already in the
     // collection
     public void addPhoto(Photo p) {
-        if (!this.photos.contains(p)) {
-            this.photos.add(p);
-            EventLog.getInstance().logEvent(new Event("Add photo to library: " + p.getPhotoname()));
+        if (!containsPhoto(p)) {
+            int slot = slots.size();
+            slotById.put(p.getId(), slot);
+            slots.add(p);
+            photosByName.computeIfAbsent(p.getPhotoname(), k -> new ArrayList<>(1)).add(p);
+            index.add(slot, p);
+            stats.photoAdded(p);
+            p.addObserver(tracker);
+            photoView = null;
+            EventLog.getInstance().logEvent(EventType.PHOTO_ADDED, p.getPhotoname());
+            for (LibraryListener l : listeners) {
+                l.photoAdded(p);
+            }
         }
     }
 
     // MODIFIES: this
     // EFFECTS: remove the given photo from the photo library if contains
     public void removePhoto(Photo p) {
-        this.photos.remove(p);
-        EventLog.getInstance().logEvent(new Event("Remove photo frim library: " + p.getPhotoname()));
+        Integer slot = slotById.remove(p.getId());
+        if (slot != null) {
+            slots.set(slot, null);
+            removedSlots++;
+            unindexName(p);
+            index.remove(slot, p);
+            stats.photoRemoved(p);
+            p.removeObserver(tracker);
+            photoView = null;
+            compactIfSparse();
+            for (LibraryListener l : listeners) {
+                l.photoRemoved(p);
+            }
+        }
+        EventLog.getInstance().logEvent(EventType.PHOTO_REMOVED, p.getPhotoname());
+
+    }
+
+    // EFFECTS: returns true if the given photo is in this library
+    public boolean containsPhoto(Photo p) {
+        return slotById.containsKey(p.getId());
+    }
 
+    // EFFECTS: returns the earliest added photo with the given name, or null if
+    // there is none
+    public Photo getPhoto(String photoname) {
+        ArrayList<Photo> named = photosByName.get(photoname);
+        return named == null ? null : named.get(0);
+    }
+
+    // MODIFIES: this
+    // EFFECTS: removes p from the name index
+    private void unindexName(Photo p) {
+        ArrayList<Photo> named = photosByName.get(p.getPhotoname());
+        named.remove(p);
+        if (named.isEmpty()) {
+            photosByName.remove(p.getPhotoname());
+        }
+    }
+
+    // MODIFIES: this
+    // EFFECTS: drops the null slots left by removed photos once they make up
+    // most of the slot list, keeping the photos in insertion order and
+    // re-indexing them under the new slots
+    private void compactIfSparse() {
+        if (removedSlots < MIN_COMPACT || removedSlots <= slotById.size()) {
+            return;
+        }
+        ArrayList<Photo> live = new ArrayList<>(slotById.size());
+        index.clear();
+        for (Photo p : slots) {
+            if (p != null) {
+                slotById.put(p.getId(), live.size());
+                index.add(live.size(), p);
+                live.add(p);
+            }
+        }
+        slots = live;
+        removedSlots = 0;
+    }
+
+    // EFFECTS: returns the photos in the given slots, in insertion order
+    private ArrayList<Photo> photosInSlots(BitSet matched) {
+        ArrayList<Photo> result = new ArrayList<>(matched.cardinality());
+        for (int i = matched.nextSetBit(0); i >= 0; i = matched.nextSetBit(i + 1)) {
+            result.add(slots.get(i));
+        }
+        return result;
     }
 
     // MODIFIES: this
     // EFFECTS: add the given album to the photo library if not already in the
     // collection
     public void addAlbum(Album a) {
-        if (!this.albums.contains(a)) {
-            this.albums.add(a);
-            EventLog.getInstance().logEvent(new Event("Add album: " + a.getAlbumName()));
+        if (this.albums.add(a)) {
+            albumView = null;
+            albumsByName.computeIfAbsent(normalizeAlbumName(a.getAlbumName()), k -> new ArrayList<>(1)).add(a);
+            for (Photo p : a.getPhotos()) {
+                indexMembership(a, p);
+            }
+            a.addObserver(membershipTracker);
+            EventLog.getInstance().logEvent(EventType.ALBUM_ADDED, a.getAlbumName());
+            for (LibraryListener l : listeners) {
+                l.albumAdded(a);
+            }
         }
     }
 
     // MODIFIES: this
     // EFFECTS: remove the given album from the photo library if contains
     public void removeAlbum(Album a) {
-        this.albums.remove(a);
-        EventLog.getInstance().logEvent(new Event("Remove album: " + a.getAlbumName()));
+        if (this.albums.remove(a)) {
+            albumView = null;
+            unindexAlbumName(a);
+            a.removeObserver(membershipTracker);
+            for (Photo p : a.getPhotos()) {
+                unindexMembership(a, p);
+            }
+            for (LibraryListener l : listeners) {
+                l.albumRemoved(a);
+            }
+        }
+        EventLog.getInstance().logEvent(EventType.ALBUM_REMOVED, a.getAlbumName());
+
+    }
 
+    // MODIFIES: this
+    // EFFECTS: renames album a, which keeps its photos and its place in the
+    // album list
+    public void renameAlbum(Album a, String newName) {
+        String oldName = a.getAlbumName();
+        boolean indexed = albums.contains(a);
+        if (indexed) {
+            unindexAlbumName(a);
+        }
+        a.setAlbumName(newName);
+        if (indexed) {
+            albumsByName.computeIfAbsent(normalizeAlbumName(newName), k -> new ArrayList<>(1)).add(a);
+        }
+        EventLog.getInstance().logEvent(EventType.ALBUM_RENAMED, oldName, newName);
+        if (indexed) {
+            for (LibraryListener l : listeners) {
+                l.albumRenamed(a, oldName);
+            }
+        }
+    }
+
+    // MODIFIES: this
+    // EFFECTS: registers l to be told about every later change to this
+    // library, its albums and the reflections of its photos
+    public void addListener(LibraryListener l) {
+        listeners.add(l);
+    }
+
+    // MODIFIES: this
+    // EFFECTS: stops telling l about changes to this library
+    public void removeListener(LibraryListener l) {
+        listeners.remove(l);
+    }
+
+    // EFFECTS: tells every listener that the reflection of photo p changed
+    private void fireReflectionChanged(Photo p) {
+        for (LibraryListener l : listeners) {
+            l.reflectionChanged(p);
+        }
+    }
+
+    // EFFECTS: returns the earliest added album whose name matches the given
+    // name ignoring case and surrounding whitespace, or null if there is none
+    public Album getAlbum(String name) {
+        ArrayList<Album> named = albumsByName.get(normalizeAlbumName(name));
+        return named == null ? null : named.get(0);
+    }
+
+    // EFFECTS: returns true if an album's name matches the given name ignoring
+    // case and surrounding whitespace
+    public boolean hasAlbumNamed(String name) {
+        return albumsByName.containsKey(normalizeAlbumName(name));
+    }
+
+    // EFFECTS: returns name trimmed and lower-cased, the key under which
+    // albums are indexed
+    private static String normalizeAlbumName(String name) {
+        return name.trim().toLowerCase(Locale.ROOT);
+    }
+
+    // MODIFIES: this
+    // EFFECTS: removes album a from the name index
+    private void unindexAlbumName(Album a) {
+        String key = normalizeAlbumName(a.getAlbumName());
+        ArrayList<Album> named = albumsByName.get(key);
+        named.remove(a);
+        if (named.isEmpty()) {
+            albumsByName.remove(key);
+        }
+    }
+
+    // EFFECTS: returns a read-only set of the albums in this library that
+    // contain photo p
+    public Set<Album> getAlbumsContaining(Photo p) {
+        LinkedHashSet<Album> holders = albumsByPhoto.get(p.getId());
+        return holders == null ? Collections.emptySet() : Collections.unmodifiableSet(holders);
+    }
+
+    // MODIFIES: this, albums holding p
+    // EFFECTS: removes photo p from every album in this library that contains
+    // it, then from the library itself
+    public void deletePhoto(Photo p) {
+        LinkedHashSet<Album> holders = albumsByPhoto.get(p.getId());
+        if (holders != null) {
+            for (Album a : new ArrayList<>(holders)) {
+                a.removePhoto(p);
+            }
+        }
+        removePhoto(p);
+    }
+
+    // MODIFIES: this
+    // EFFECTS: records that album a contains photo p
+    private void indexMembership(Album a, Photo p) {
+        albumsByPhoto.computeIfAbsent(p.getId(), k -> new LinkedHashSet<>(2)).add(a);
+    }
+
+    // MODIFIES: this
+    // EFFECTS: forgets that album a contains photo p
+    private void unindexMembership(Album a, Photo p) {
+        LinkedHashSet<Album> holders = albumsByPhoto.get(p.getId());
+        if (holders != null) {
+            holders.remove(a);
+            if (holders.isEmpty()) {
+                albumsByPhoto.remove(p.getId());
+            }
+        }
     }
 
     // EFFECTS: generate a new classified album based on the common issues from the
     // given photo library
     public ArrayList<Photo> findCommonPhotos(ProblemType t) {
-        ArrayList<Photo> classifiedAlbum = new ArrayList<>();
-        for (Photo p : photos) {
-            Reflection r = p.getReflection();
-            if (r == null) {
-                continue;
-            }
-            for (ProblemType pt : r.getProblems()) {
-                if (pt.equals(t)) {
-                    classifiedAlbum.add(p);
-                    break;
-                }
-            }
+        return photosInSlots(index.withAllProblems(t.bit()));
+    }
+
+    // EFFECTS: returns the photos whose reflection records every one of the
+    // given problem types, in insertion order; with no types, returns all photos
+    public ArrayList<Photo> findPhotosWithAllProblems(ProblemType... types) {
+        if (types.length == 0) {
+            return new ArrayList<>(getPhotos());
         }
-        return classifiedAlbum;
+        return photosInSlots(index.withAllProblems(ProblemType.maskOf(types)));
+    }
+
+    // EFFECTS: returns the photos matching every criterion of q, in insertion
+    // order
+    public ArrayList<Photo> query(PhotoQuery q) {
+        return photosInSlots(index.select(q, slots));
+    }
+
+    // EFFECTS: returns the photos whose reflection comments match query, best
+    // match first. The query is a list of words that must all appear; a word
+    // ending in * matches any word with that prefix, and a "quoted phrase"
+    // must appear word for word in one comment. Case and punctuation are
+    // ignored.
+    public ArrayList<Photo> searchComments(String query) {
+        ArrayList<Photo> result = new ArrayList<>();
+        for (int slot : index.searchComments(query, slots)) {
+            result.add(slots.get(slot));
+        }
+        return result;
+    }
+
+    // MODIFIES: this
+    // EFFECTS: stops updating the comment search index on every change; it is
+    // rebuilt in full by rebuildCommentIndex or by the next searchComments.
+    // Use while adding many photos at once.
+    public void deferCommentIndex() {
+        index.deferComments();
+    }
+
+    // MODIFIES: this
+    // EFFECTS: rebuilds the comment search index from every photo, using
+    // several threads, and resumes updating it on every change
+    public void rebuildCommentIndex() {
+        index.rebuildComments(slots);
+    }
+
+    // EFFECTS: returns the photos whose reflection records at least one of the
+    // given problem types, in insertion order
+    public ArrayList<Photo> findPhotosWithAnyProblem(ProblemType... types) {
+        return photosInSlots(index.withAnyProblem(ProblemType.maskOf(types)));
+    }
+
+    // EFFECTS: returns the learning statistics of this library, which stay up
+    // to date as photos and reflections change
+    public LibraryStats getStats() {
+        return stats;
+    }
+
+    // EFFECTS: returns a column-wise snapshot of the photos of this library
+    // for analytical scans; it does not follow later changes
+    public PhotoColumns columns() {
+        return new PhotoColumns(this);
     }
 
     public String getLibName() {
@@ -82,54 +370,175 @@ public class PhotoLibrary implements Writable {
 
 
 
-    public ArrayList<Album> getAlbums() {
-        return albums;
+    // EFFECTS: returns a read-only list of the albums in the order they were
+    // added
+    public List<Album> getAlbums() {
+        if (albumView == null) {
+            albumView = Collections.unmodifiableList(new ArrayList<>(albums));
+        }
+        return albumView;
     }
 
 
 
-    public ArrayList<Photo> getPhotos() {
-        return photos;
+    // EFFECTS: returns a read-only list of the photos in the order they were
+    // added
+    public List<Photo> getPhotos() {
+        if (photoView == null) {
+            ArrayList<Photo> live = new ArrayList<>(slotById.size());
+            for (Photo p : slots) {
+                if (p != null) {
+                    live.add(p);
+                }
+            }
+            photoView = Collections.unmodifiableList(live);
+        }
+        return photoView;
     }
 
 
+    // EFFECTS: returns this library as JSON in the format JsonWriter writes:
+    // each photo once, with an id, and albums listing the ids of their
+    // photos; album photos not in this library are embedded in the album
     @Override
     public JSONObject toJson() {
+        Map<Integer, Integer> fileIds = new HashMap<>();
         JSONObject json = new JSONObject();
+        json.put("version", JsonWriter.FORMAT_VERSION);
         json.put("name", libName);
-        json.put("photos", photosToJson());
-        json.put("albums", albumsToJson());
+        json.put("photos", photosToJson(fileIds));
+        json.put("albums", albumsToJson(fileIds));
         return json;
     }
 
-    // EFFECTS: returns things in this library as a JSON array
-    private JSONArray photosToJson() {
+    // MODIFIES: fileIds
+    // EFFECTS: returns the photos in this library as a JSON array, numbering
+    // them from 0 and recording each number in fileIds under the photo id
+    private JSONArray photosToJson(Map<Integer, Integer> fileIds) {
         JSONArray jsonArray = new JSONArray();
 
-        for (Photo p : photos) {
-            jsonArray.put(p.toJson());
+        for (Photo p : getPhotos()) {
+            int id = fileIds.size();
+            fileIds.put(p.getId(), id);
+            jsonArray.put(p.toJson().put("id", id));
         }
 
         return jsonArray;
     }
 
-    // EFFECTS: returns things in this library as a JSON array
-    private JSONArray albumsToJson() {
+    // EFFECTS: returns the albums in this library as a JSON array, referring
+    // to their photos by the numbers in fileIds
+    private JSONArray albumsToJson(Map<Integer, Integer> fileIds) {
         JSONArray jsonArray = new JSONArray();
 
         for (Album a : albums) {
-            jsonArray.put(a.toJson());
+            JSONArray members = new JSONArray();
+            for (Photo p : a.getPhotos()) {
+                Integer id = fileIds.get(p.getId());
+                members.put(id != null ? id : p.toJson());
+            }
+            jsonArray.put(new JSONObject().put("albumName", a.getAlbumName()).put("photos", members));
         }
 
         return jsonArray;
     }
 
     public Integer numPhotos() {
-        return this.photos.size();
+        return this.slotById.size();
     }
 
     public Integer numAlbums() {
         return this.albums.size();
     }
 
+    // Keeps the secondary indexes and statistics in step with changes to the
+    // photos of this library, and passes reflection changes on to listeners.
+    private class IndexTracker implements PhotoObserver {
+        @Override
+        public void reflectionChanged(Photo photo, Reflection old) {
+            Integer slot = slotById.get(photo.getId());
+            if (slot != null) {
+                index.reflectionChanged(slot, photo, old);
+                stats.reflectionChanged(photo, old);
+                fireReflectionChanged(photo);
+            }
+        }
+
+        @Override
+        public void problemAdded(Photo photo, ProblemType t) {
+            Integer slot = slotById.get(photo.getId());
+            if (slot != null) {
+                index.problemAdded(slot, t);
+                stats.problemAdded(photo, t);
+                fireReflectionChanged(photo);
+            }
+        }
+
+        @Override
+        public void problemRemoved(Photo photo, ProblemType t) {
+            Integer slot = slotById.get(photo.getId());
+            if (slot != null) {
+                index.problemRemoved(slot, t);
+                stats.problemRemoved(photo, t);
+                fireReflectionChanged(photo);
+            }
+        }
+
+        @Override
+        public void commentAdded(Photo photo, String c) {
+            Integer slot = slotById.get(photo.getId());
+            if (slot != null) {
+                index.commentAdded(slot, c);
+                fireReflectionChanged(photo);
+            }
+        }
+
+        @Override
+        public void commentRemoved(Photo photo, String c) {
+            Integer slot = slotById.get(photo.getId());
+            if (slot != null) {
+                index.commentRemoved(slot, c);
+                fireReflectionChanged(photo);
+            }
+        }
+
+        @Override
+        public void scoreChanged(Photo photo, int oldScore) {
+            Integer slot = slotById.get(photo.getId());
+            if (slot != null) {
+                index.scoreChanged(slot, oldScore, photo.getReflectionScore());
+                stats.scoreChanged(photo, oldScore);
+                fireReflectionChanged(photo);
+            }
+        }
+
+        @Override
+        public void reflectChanged(Photo photo) {
+            Integer slot = slotById.get(photo.getId());
+            if (slot != null) {
+                index.reflectChanged(slot, photo);
+            }
+        }
+    }
+
+    // Keeps the photo-to-albums index in step with the albums of this library,
+    // and passes membership changes on to listeners.
+    private class MembershipTracker implements AlbumObserver {
+        @Override
+        public void photoAdded(Album album, Photo photo) {
+            indexMembership(album, photo);
+            for (LibraryListener l : listeners) {
+                l.photoAddedToAlbum(album, photo);
+            }
+        }
+
+        @Override
+        public void photoRemoved(Album album, Photo photo) {
+            unindexMembership(album, photo);
+            for (LibraryListener l : listeners) {
+                l.photoRemovedFromAlbum(album, photo);
+            }
+        }
+    }
+
 }
@@ -0,0 +1,27 @@
+package model;
+
+// Receives changes made to an observed photo and its reflection.
+interface PhotoObserver {
+    // EFFECTS: called after the reflection of photo has been replaced; old is
+    // the previous reflection and may be null
+    void reflectionChanged(Photo photo, Reflection old);
+
+    // EFFECTS: called after problem type t was added to the reflection of photo
+    void problemAdded(Photo photo, ProblemType t);
+
+    // EFFECTS: called after problem type t was removed from the reflection of
+    // photo
+    void problemRemoved(Photo photo, ProblemType t);
+
+    // EFFECTS: called after comment c was added to the reflection of photo
+    void commentAdded(Photo photo, String c);
+
+    // EFFECTS: called after comment c was removed from the reflection of photo
+    void commentRemoved(Photo photo, String c);
+
+    // EFFECTS: called after the reflection score of photo changed from oldScore
+    void scoreChanged(Photo photo, int oldScore);
+
+    // EFFECTS: called after the reflect flag of photo was set
+    void reflectChanged(Photo photo);
+}
@@ -0,0 +1,156 @@
+package model;
+
+import java.time.LocalDate;
+
+// A set of criteria for finding photos in a PhotoLibrary. Every criterion that
+// is set must hold for a photo to match; range bounds are inclusive.
+public class PhotoQuery {
+    private String camera;
+    private Integer minIso;
+    private Integer maxIso;
+    private Double minAperture;
+    private Double maxAperture;
+    private Double minShutterspeed;
+    private Double maxShutterspeed;
+    private LocalDate fromDate;
+    private LocalDate toDate;
+    private Integer minScore;
+    private Integer maxScore;
+    private Boolean reflected;
+    private int allProblems;
+    private int anyProblems;
+
+    // EFFECTS: constructs a query with no criteria, matching every photo
+    public PhotoQuery() {
+    }
+
+    // MODIFIES: this
+    // EFFECTS: only match photos taken with the given camera; returns this
+    public PhotoQuery camera(String camera) {
+        this.camera = camera;
+        return this;
+    }
+
+    // MODIFIES: this
+    // EFFECTS: only match photos with lo <= iso <= hi; returns this
+    public PhotoQuery isoBetween(int lo, int hi) {
+        this.minIso = lo;
+        this.maxIso = hi;
+        return this;
+    }
+
+    // MODIFIES: this
+    // EFFECTS: only match photos with lo <= aperture <= hi; returns this
+    public PhotoQuery apertureBetween(double lo, double hi) {
+        this.minAperture = lo;
+        this.maxAperture = hi;
+        return this;
+    }
+
+    // MODIFIES: this
+    // EFFECTS: only match photos with lo <= shutter speed <= hi; returns this
+    public PhotoQuery shutterspeedBetween(double lo, double hi) {
+        this.minShutterspeed = lo;
+        this.maxShutterspeed = hi;
+        return this;
+    }
+
+    // MODIFIES: this
+    // EFFECTS: only match photos taken on a day in [from, to]; a null bound
+    // leaves that end of the range open, and two null bounds match any
+    // date; returns this
+    public PhotoQuery dateBetween(LocalDate from, LocalDate to) {
+        this.fromDate = from;
+        this.toDate = to;
+        return this;
+    }
+
+    // MODIFIES: this
+    // EFFECTS: only match photos with a reflection scored in [lo, hi]; returns
+    // this
+    public PhotoQuery scoreBetween(int lo, int hi) {
+        this.minScore = lo;
+        this.maxScore = hi;
+        return this;
+    }
+
+    // MODIFIES: this
+    // EFFECTS: only match photos whose reflect flag equals the given value;
+    // returns this
+    public PhotoQuery reflected(boolean reflected) {
+        this.reflected = reflected;
+        return this;
+    }
+
+    // MODIFIES: this
+    // EFFECTS: only match photos whose reflection records every given problem
+    // type; returns this
+    public PhotoQuery withAllProblems(ProblemType... types) {
+        this.allProblems = ProblemType.maskOf(types);
+        return this;
+    }
+
+    // MODIFIES: this
+    // EFFECTS: only match photos whose reflection records at least one given
+    // problem type; with no types, this criterion is dropped; returns this
+    public PhotoQuery withAnyProblem(ProblemType... types) {
+        this.anyProblems = ProblemType.maskOf(types);
+        return this;
+    }
+
+    String getCamera() {
+        return camera;
+    }
+
+    Integer getMinIso() {
+        return minIso;
+    }
+
+    Integer getMaxIso() {
+        return maxIso;
+    }
+
+    Double getMinAperture() {
+        return minAperture;
+    }
+
+    Double getMaxAperture() {
+        return maxAperture;
+    }
+
+    Double getMinShutterspeed() {
+        return minShutterspeed;
+    }
+
+    Double getMaxShutterspeed() {
+        return maxShutterspeed;
+    }
+
+    LocalDate getFromDate() {
+        return fromDate;
+    }
+
+    LocalDate getToDate() {
+        return toDate;
+    }
+
+    Integer getMinScore() {
+        return minScore;
+    }
+
+    Integer getMaxScore() {
+        return maxScore;
+    }
+
+    Boolean getReflected() {
+        return reflected;
+    }
+
+    int getAllProblems() {
+        return allProblems;
+    }
+
+    int getAnyProblems() {
+        return anyProblems;
+    }
+}
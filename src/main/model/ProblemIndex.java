@@ -0,0 +1,84 @@
+package model;
+
+import java.util.BitSet;
+import java.util.EnumMap;
+
+// An inverted index from each problem type to the library slots of the photos
+// whose reflection records that problem.
+class ProblemIndex {
+    private final EnumMap<ProblemType, BitSet> postings;
+
+    // EFFECTS: constructs an index with no photos in it
+    ProblemIndex() {
+        postings = new EnumMap<>(ProblemType.class);
+        for (ProblemType t : ProblemType.values()) {
+            postings.put(t, new BitSet());
+        }
+    }
+
+    // MODIFIES: this
+    // EFFECTS: records every problem in mask, a mask of ProblemType.bit()
+    // values, under the given slot
+    void add(int slot, int mask) {
+        for (int m = mask; m != 0; m &= m - 1) {
+            add(slot, ProblemType.ofOrdinal(Integer.numberOfTrailingZeros(m)));
+        }
+    }
+
+    // MODIFIES: this
+    // EFFECTS: records problem t under the given slot
+    void add(int slot, ProblemType t) {
+        postings.get(t).set(slot);
+    }
+
+    // MODIFIES: this
+    // EFFECTS: forgets problem t under the given slot
+    void remove(int slot, ProblemType t) {
+        postings.get(t).clear(slot);
+    }
+
+    // MODIFIES: this
+    // EFFECTS: forgets every problem recorded under the given slot
+    void remove(int slot) {
+        for (BitSet slots : postings.values()) {
+            slots.clear(slot);
+        }
+    }
+
+    // MODIFIES: this
+    // EFFECTS: forgets every recorded problem
+    void clear() {
+        for (BitSet slots : postings.values()) {
+            slots.clear();
+        }
+    }
+
+    // EFFECTS: returns the number of slots recorded under problem t
+    int count(ProblemType t) {
+        return postings.get(t).cardinality();
+    }
+
+    // REQUIRES: mask != 0
+    // EFFECTS: returns the slots recorded under every type in the mask
+    BitSet matchAll(int mask) {
+        BitSet result = null;
+        for (int m = mask; m != 0; m &= m - 1) {
+            BitSet slots = postings.get(ProblemType.ofOrdinal(Integer.numberOfTrailingZeros(m)));
+            if (result == null) {
+                result = (BitSet) slots.clone();
+            } else {
+                result.and(slots);
+            }
+        }
+        return result;
+    }
+
+    // EFFECTS: returns the slots recorded under at least one type in the mask
+    BitSet matchAny(int mask) {
+        BitSet result = new BitSet();
+        for (int m = mask; m != 0; m &= m - 1) {
+            result.or(postings.get(ProblemType.ofOrdinal(Integer.numberOfTrailingZeros(m))));
+        }
+        return result;
+    }
+}
@@ -7,5 +7,27 @@ public enum ProblemType {
     SHARPNESS,     
     COLOR,         
     COMPOSITION,  
-    OTHER 
+    OTHER;
+
+    private static final ProblemType[] VALUES = values();
+
+    // EFFECTS: returns the bit that stands for this type in a problem mask
+    public int bit() {
+        return 1 << ordinal();
+    }
+
+    // EFFECTS: returns the problem mask holding exactly the given types
+    public static int maskOf(ProblemType... types) {
+        int mask = 0;
+        for (ProblemType t : types) {
+            mask |= t.bit();
+        }
+        return mask;
+    }
+
+    // REQUIRES: 0 <= ordinal < number of problem types
+    // EFFECTS: returns the problem type with the given ordinal
+    public static ProblemType ofOrdinal(int ordinal) {
+        return VALUES[ordinal];
+    }
 }
@@ -0,0 +1,114 @@
+package model;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+// A sorted secondary index from a photo attribute value to the library slots
+// of the photos holding that value; null values are not indexed.
+class RangeIndex<K extends Comparable<? super K>> {
+    private final TreeMap<K, Posting> postings = new TreeMap<>();
+
+    // MODIFIES: this
+    // EFFECTS: records the given slot under key
+    void add(K key, int slot) {
+        if (key == null) {
+            return;
+        }
+        postings.computeIfAbsent(key, k -> new Posting()).add(slot);
+    }
+
+    // MODIFIES: this
+    // EFFECTS: forgets the given slot under key
+    void remove(K key, int slot) {
+        if (key == null) {
+            return;
+        }
+        Posting p = postings.get(key);
+        if (p != null && p.remove(slot) && p.count == 0) {
+            postings.remove(key);
+        }
+    }
+
+    // MODIFIES: this
+    // EFFECTS: forgets every recorded slot
+    void clear() {
+        postings.clear();
+    }
+
+    // EFFECTS: returns the number of slots recorded under keys in [lo, hi]
+    int count(K lo, K hi) {
+        int n = 0;
+        for (Posting p : range(lo, hi).values()) {
+            n += p.count;
+        }
+        return n;
+    }
+
+    // EFFECTS: returns the slots recorded under keys in [lo, hi]
+    BitSet match(K lo, K hi) {
+        BitSet result = new BitSet();
+        for (Posting p : range(lo, hi).values()) {
+            for (int i = 0; i < p.count; i++) {
+                result.set(p.slots[i]);
+            }
+        }
+        return result;
+    }
+
+    // EFFECTS: returns the postings with keys in [lo, hi]; empty if lo > hi
+    private NavigableMap<K, Posting> range(K lo, K hi) {
+        if (lo.compareTo(hi) > 0) {
+            return new TreeMap<>();
+        }
+        return postings.subMap(lo, true, hi, true);
+    }
+
+    // The slots recorded under one key, in ascending order in the first
+    // count entries of slots. Most keys hold a few slots, so a sorted array
+    // takes far less memory than a bit set spanning the whole library.
+    private static class Posting {
+        private int[] slots = new int[1];
+        private int count;
+
+        // MODIFIES: this
+        // EFFECTS: records slot unless it is already recorded
+        void add(int slot) {
+            if (count > 0 && slots[count - 1] < slot) {
+                insert(count, slot);
+                return;
+            }
+            int i = Arrays.binarySearch(slots, 0, count, slot);
+            if (i < 0) {
+                insert(-i - 1, slot);
+            }
+        }
+
+        // MODIFIES: this
+        // EFFECTS: forgets slot and returns true if it was recorded
+        boolean remove(int slot) {
+            int i = Arrays.binarySearch(slots, 0, count, slot);
+            if (i < 0) {
+                return false;
+            }
+            System.arraycopy(slots, i + 1, slots, i, count - i - 1);
+            count--;
+            if (count > 0 && count <= slots.length / 4) {
+                slots = Arrays.copyOf(slots, slots.length / 2);
+            }
+            return true;
+        }
+
+        // MODIFIES: this
+        // EFFECTS: inserts slot at index i, growing slots if it is full
+        private void insert(int i, int slot) {
+            if (count == slots.length) {
+                slots = Arrays.copyOf(slots, count + (count >> 1) + 1);
+            }
+            System.arraycopy(slots, i, slots, i + 1, count - i);
+            slots[i] = slot;
+            count++;
+        }
+    }
+}
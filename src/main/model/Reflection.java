@@ -1,59 +1,156 @@
 package model;
 
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
 // A reflection for the photo taken
 
 public class Reflection {
-    private ArrayList<ProblemType> problems;
+    // one bit per ProblemType, see ProblemType.bit()
+    private int problems;
     private ArrayList<String> comments;
     private int score;
+    // photos currently using this reflection; created on first attach
+    private ArrayList<Photo> owners;
 
     // EFFECTS: construct a reflection of a photos defining the problems and set the
     // photo to be reflected
     public Reflection() {
-        this.problems = new ArrayList<ProblemType>();
+        this.problems = 0;
         this.comments = new ArrayList<>();
         this.score = 0;
 
     }
 
     // MODIFIES: this
-    // EFFECTS: add given problemype to the photo reflection
+    // EFFECTS: add given problemype to the photo reflection if not already
+    // recorded
     public void addProblemType(ProblemType p) {
-        this.problems.add(p);
-        
+        if (hasProblem(p)) {
+            return;
+        }
+        this.problems |= p.bit();
+        if (owners != null) {
+            for (Photo owner : owners) {
+                owner.notifyProblemAdded(p);
+            }
+        }
+    }
+
+    // MODIFIES: this
+    // EFFECTS: remove given problemtype from the photo reflection if recorded
+    public void removeProblemType(ProblemType p) {
+        if (!hasProblem(p)) {
+            return;
+        }
+        this.problems &= ~p.bit();
+        if (owners != null) {
+            for (Photo owner : owners) {
+                owner.notifyProblemRemoved(p);
+            }
+        }
+    }
+
+    // EFFECTS: returns true if the given problemtype is recorded
+    public boolean hasProblem(ProblemType p) {
+        return (problems & p.bit()) != 0;
     }
 
     // MODIFIES: this
     // EFFECTS: add discriptions and comments to the photo reflection
     public void addComment(String comment) {
         this.comments.add(comment);
+        if (owners != null) {
+            for (Photo owner : owners) {
+                owner.notifyCommentAdded(comment);
+            }
+        }
     }
 
     // MODIFIES: this
     // EFFECTS: remove discriptions and comments to the photo reflection if exist
     public void removeComment(String comment) {
-        this.comments.remove(comment);
+        if (this.comments.remove(comment) && owners != null) {
+            for (Photo owner : owners) {
+                owner.notifyCommentRemoved(comment);
+            }
+        }
     }
 
+    // MODIFIES: this
+    // EFFECTS: records that photo p now uses this reflection
+    void attach(Photo p) {
+        if (owners == null) {
+            owners = new ArrayList<>(1);
+        }
+        owners.add(p);
+    }
 
-    public ArrayList<String> getComments() {
-        return comments;
+    // MODIFIES: this
+    // EFFECTS: records that photo p no longer uses this reflection
+    void detach(Photo p) {
+        if (owners != null) {
+            owners.remove(p);
+        }
     }
 
-    public ArrayList<ProblemType> getProblems() {
-        return problems;
+    // EFFECTS: returns a read-only view of the comments in the order they were
+    // added
+    public List<String> getComments() {
+        return Collections.unmodifiableList(comments);
     }
 
+    // EFFECTS: returns a read-only view of the recorded problem types in
+    // declaration order; the view follows later changes to this reflection
+    public List<ProblemType> getProblems() {
+        return new ProblemView();
+    }
 
+    // EFFECTS: returns the recorded problem types as a mask of
+    // ProblemType.bit() values
+    public int getProblemMask() {
+        return problems;
+    }
 
     public int getScore() {
         return score;
     }
 
     public void setScore(int score) {
+        int old = this.score;
         this.score = score;
+        if (owners != null && old != score) {
+            for (Photo owner : owners) {
+                owner.notifyScoreChanged(old);
+            }
+        }
+    }
+
+    // A list view over the problem bits of this reflection.
+    private class ProblemView extends AbstractList<ProblemType> {
+        @Override
+        public ProblemType get(int index) {
+            if (index < 0 || index >= size()) {
+                throw new IndexOutOfBoundsException("Index: " + index);
+            }
+            int m = problems;
+            for (int i = 0; i < index; i++) {
+                m &= m - 1;
+            }
+            return ProblemType.ofOrdinal(Integer.numberOfTrailingZeros(m));
+        }
+
+        @Override
+        public int size() {
+            return Integer.bitCount(problems);
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return o instanceof ProblemType && hasProblem((ProblemType) o);
+        }
     }
 
 }
@@ -0,0 +1,9 @@
+package model;
+
+// Loads a reflection that is kept in storage until it is first needed; see
+// Photo.setStoredReflection.
+public interface ReflectionLoader {
+    // EFFECTS: returns a new Reflection read from storage; throws
+    // UncheckedIOException if it cannot be read
+    Reflection load();
+}
@@ -0,0 +1,63 @@
+package model;
+
+// Running statistics over a group of reflection scores, kept as a histogram of
+// the scores 0 to 100 so that means and percentiles read in constant time.
+public class ScoreStats {
+    private static final int MAX_SCORE = 100;
+
+    private final int[] histogram = new int[MAX_SCORE + 1];
+    private int count;
+    private long sum;
+
+    // MODIFIES: this
+    // EFFECTS: adds one score to the group; scores outside 0..100 count
+    // towards the mean as given but sit at the nearest end of the histogram
+    void add(int score) {
+        histogram[clamp(score)]++;
+        count++;
+        sum += score;
+    }
+
+    // REQUIRES: score was added to this group before
+    // MODIFIES: this
+    // EFFECTS: removes one score from the group
+    void remove(int score) {
+        histogram[clamp(score)]--;
+        count--;
+        sum -= score;
+    }
+
+    // EFFECTS: returns the number of scores in the group
+    public int getCount() {
+        return count;
+    }
+
+    // EFFECTS: returns the mean score, or 0 if the group is empty
+    public double getMean() {
+        return count == 0 ? 0 : (double) sum / count;
+    }
+
+    // REQUIRES: 0 <= p <= 100
+    // EFFECTS: returns the smallest score such that at least p percent of the
+    // group scores at or below it, or 0 if the group is empty
+    public int getPercentile(double p) {
+        long rank = Math.max(1, (long) Math.ceil(p / 100 * count));
+        long seen = 0;
+        for (int s = 0; s <= MAX_SCORE; s++) {
+            seen += histogram[s];
+            if (seen >= rank) {
+                return s;
+            }
+        }
+        return 0;
+    }
+
+    // EFFECTS: returns the median score, or 0 if the group is empty
+    public int getMedian() {
+        return getPercentile(50);
+    }
+
+    private static int clamp(int score) {
+        return Math.max(0, Math.min(MAX_SCORE, score));
+    }
+}
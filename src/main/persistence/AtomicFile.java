@@ -0,0 +1,121 @@
+package persistence;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicLong;
+
+// A file that is replaced in one step. New contents are written to a
+// temporary file next to the target; committing forces them to disk and
+// renames the temporary file over the target. A crash at any point leaves
+// either the old contents or the new, never a mix.
+public class AtomicFile {
+    private static final AtomicLong NEXT_TMP = new AtomicLong();
+
+    private final Path target;
+    private final Path tmp;
+    private FileOutputStream out;
+
+    // EFFECTS: constructs an atomic file replacing target
+    public AtomicFile(Path target) {
+        this.target = target;
+        this.tmp = target.resolveSibling(target.getFileName() + ".tmp" + NEXT_TMP.incrementAndGet());
+    }
+
+    // MODIFIES: filesystem
+    // EFFECTS: writes data to target in one step; throws IOException if it
+    // cannot be written
+    public static void write(Path target, byte[] data) throws IOException {
+        AtomicFile f = new AtomicFile(target);
+        try {
+            f.openStream().write(data);
+            f.commit();
+        } catch (IOException e) {
+            f.discard();
+            throw e;
+        }
+    }
+
+    // EFFECTS: returns the file being replaced
+    public Path getTarget() {
+        return target;
+    }
+
+    // MODIFIES: this, filesystem
+    // EFFECTS: creates the temporary file and returns a stream writing to it;
+    // throws FileNotFoundException if it cannot be created
+    public OutputStream openStream() throws IOException {
+        if (target.getParent() != null) {
+            Files.createDirectories(target.getParent());
+        }
+        out = new FileOutputStream(tmp.toFile());
+        return out;
+    }
+
+    // MODIFIES: this
+    // EFFECTS: closes the stream without forcing it to disk, so the new
+    // contents can be committed later, possibly from another thread
+    public void closeStream() throws IOException {
+        if (out != null) {
+            out.close();
+            out = null;
+        }
+    }
+
+    // MODIFIES: this, filesystem
+    // EFFECTS: forces the new contents to disk and renames them over the
+    // target, then forces the directory entry to disk where the platform
+    // allows it; throws IOException if any step fails
+    public void commit() throws IOException {
+        if (out != null) {
+            out.flush();
+            out.getFD().sync();
+            closeStream();
+        } else {
+            try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+                ch.force(true);
+            }
+        }
+        try {
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+        syncDirectory(target.toAbsolutePath().getParent());
+    }
+
+    // MODIFIES: this, filesystem
+    // EFFECTS: abandons the new contents, leaving the target as it was
+    public void discard() {
+        try {
+            closeStream();
+        } catch (IOException e) {
+            // the file is being thrown away
+        }
+        try {
+            Files.deleteIfExists(tmp);
+        } catch (IOException e) {
+            // a stray temporary file does no harm
+        }
+    }
+
+    // MODIFIES: filesystem
+    // EFFECTS: forces the entries of dir to disk; does nothing on platforms
+    // that cannot open a directory
+    static void syncDirectory(Path dir) {
+        if (dir == null) {
+            return;
+        }
+        try (FileChannel ch = FileChannel.open(dir, StandardOpenOption.READ)) {
+            ch.force(true);
+        } catch (IOException e) {
+            // not supported here, e.g. on Windows
+        }
+    }
+}
@@ -0,0 +1,269 @@
+package persistence;
+
+import metrics.LatencyHistogram;
+import metrics.Metrics;
+import model.Album;
+import model.Photo;
+import model.PhotoLibrary;
+import model.ProblemType;
+import model.Reflection;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+
+import org.json.JSONException;
+
+// Represents a reader that reads a PhotoLibrary from a file in the binary
+// library format; see BinaryWriter. The file is memory-mapped if it is large
+// (see MappedFile) and decoded straight from memory, and each string in the
+// string table is decoded once however many photos refer to it.
+//
+// A malformed file is reported with a JSONException, as JsonReader reports
+// a malformed JSON file.
+public class BinaryReader {
+    private static final LatencyHistogram READ_TIME = Metrics.getInstance().histogram("binary.read");
+
+    private final String source;
+    // the journal checkpoint recorded in the last file read, or 0
+    private long checkpoint;
+
+    // the file being read, its segment being decoded, and the offset in the
+    // file of that segment
+    private MappedFile file;
+    private int nextSegment;
+    private ByteBuffer segment;
+    private long segmentStart;
+    private byte[] scratch = new byte[256];
+    private String[] strings;
+
+    // EFFECTS: constructs reader to read from source file
+    public BinaryReader(String source) {
+        this.source = source;
+    }
+
+    // EFFECTS: returns true if the file at path starts with the magic bytes
+    // of the binary format; throws IOException if it cannot be read
+    public static boolean isBinary(Path path) throws IOException {
+        byte[] magic = BinaryWriter.MAGIC;
+        try (InputStream s = Channels.newInputStream(FileChannel.open(path, StandardOpenOption.READ))) {
+            for (byte b : magic) {
+                if (s.read() != (b & 0xff)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    // EFFECTS: reads PhotoLibrary from file and returns it; throws
+    // IOException if an error occurs reading data from file, or
+    // JSONException if the file is not a library in a format version this
+    // reader knows
+    public PhotoLibrary read() throws IOException {
+        try (MappedFile mapped = new MappedFile(Paths.get(source))) {
+            return read(mapped);
+        }
+    }
+
+    // EFFECTS: reads PhotoLibrary from the mapped file and returns it; see
+    // read()
+    PhotoLibrary read(MappedFile mapped) throws IOException {
+        long t = READ_TIME.start();
+        checkpoint = 0;
+        file = mapped;
+        nextSegment = 0;
+        segment = ByteBuffer.allocate(0);
+        segmentStart = 0;
+        try {
+            return parsePhotoLibrary();
+        } finally {
+            file = null;
+            segment = null;
+            strings = null;
+            READ_TIME.stop(t);
+        }
+    }
+
+    // EFFECTS: returns the journal checkpoint recorded in the file last read,
+    // or 0 if it had none; see Journal
+    long getCheckpoint() {
+        return checkpoint;
+    }
+
+    // EFFECTS: decodes the library, from its header to its last album
+    private PhotoLibrary parsePhotoLibrary() throws IOException {
+        for (byte b : BinaryWriter.MAGIC) {
+            if (readByte() != (b & 0xff)) {
+                throw error("Not a binary library file");
+            }
+        }
+        long version = readVarint();
+        if (version < 1 || version > BinaryWriter.FORMAT_VERSION) {
+            throw error("Unsupported binary library format version " + version);
+        }
+        checkpoint = readVarint();
+        PhotoLibrary lib = new PhotoLibrary(JsonReader.required(readString(), "name"));
+        strings = new String[count()];
+        for (int i = 0; i < strings.length; i++) {
+            strings[i] = readString();
+        }
+        lib.deferCommentIndex();
+        Photo[] photos = new Photo[count()];
+        for (int i = 0; i < photos.length; i++) {
+            photos[i] = readPhoto();
+            lib.addPhoto(photos[i]);
+        }
+        int albums = count();
+        for (int i = 0; i < albums; i++) {
+            Album a = new Album(JsonReader.required(readString(), "albumName"));
+            int members = count();
+            for (int k = 0; k < members; k++) {
+                long position = readVarint();
+                if (position == 0) {
+                    a.addPhoto(readPhoto());
+                } else if (position <= photos.length) {
+                    a.addPhoto(photos[(int) position - 1]);
+                } else {
+                    throw error("Album " + a.getAlbumName() + " refers to unknown photo " + (position - 1));
+                }
+            }
+            lib.addAlbum(a);
+        }
+        lib.rebuildCommentIndex();
+        return lib;
+    }
+
+    // EFFECTS: decodes a photo and its reflection, if it has one
+    private Photo readPhoto() throws IOException {
+        int flags = (int) readVarint();
+        String name = readString();
+        String camera = tableString(readVarint() - 1, true);
+        int iso = (int) unzigzag(readVarint());
+        double aperture = readDouble();
+        double shutterspeed = readDouble();
+        LocalDate date = (flags & BinaryWriter.HAS_DATE) != 0 ? LocalDate.ofEpochDay(unzigzag(readVarint())) : null;
+        Photo p = new Photo(name, camera, iso, aperture, shutterspeed, date);
+        if ((flags & BinaryWriter.HAS_REFLECTION) != 0) {
+            Reflection r = new Reflection();
+            r.setScore((int) unzigzag(readVarint()));
+            long mask = readVarint();
+            if (mask >>> ProblemType.values().length != 0) {
+                throw error("Unknown problem types in mask " + mask);
+            }
+            for (long m = mask; m != 0; m &= m - 1) {
+                r.addProblemType(ProblemType.ofOrdinal(Long.numberOfTrailingZeros(m)));
+            }
+            int comments = count();
+            for (int i = 0; i < comments; i++) {
+                r.addComment(tableString(readVarint(), false));
+            }
+            p.setReflection(r);
+        }
+        return p;
+    }
+
+    // EFFECTS: returns the string at index i of the string table; null if
+    // i is -1 and nullable
+    private String tableString(long i, boolean nullable) {
+        if (i == -1 && nullable) {
+            return null;
+        }
+        if (i < 0 || i >= strings.length) {
+            throw error("Unknown string " + i);
+        }
+        return strings[(int) i];
+    }
+
+    // EFFECTS: returns n with its zigzag encoding undone
+    static long unzigzag(long n) {
+        return (n >>> 1) ^ -(n & 1);
+    }
+
+    // EFFECTS: decodes a count; each thing counted takes at least one byte,
+    // so it must not exceed the bytes left in the file
+    private int count() throws IOException {
+        long n = readVarint();
+        if (n > remaining()) {
+            throw error("Count out of range: " + n);
+        }
+        return (int) n;
+    }
+
+    // EFFECTS: returns the number of bytes of the file not yet read
+    private long remaining() {
+        return file.size() - (segmentStart + segment.position());
+    }
+
+    // EFFECTS: decodes a varint; see BinaryWriter
+    private long readVarint() throws IOException {
+        long n = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = readByte();
+            n |= (long) (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                return n;
+            }
+        }
+        throw error("Malformed varint");
+    }
+
+    // EFFECTS: decodes the eight bytes of a double, lowest first
+    private double readDouble() throws IOException {
+        long bits = 0;
+        for (int i = 0; i < 8; i++) {
+            bits |= (long) readByte() << (8 * i);
+        }
+        return Double.longBitsToDouble(bits);
+    }
+
+    // EFFECTS: decodes a string, or null; see BinaryWriter
+    private String readString() throws IOException {
+        long n = readVarint();
+        if (n == 0) {
+            return null;
+        }
+        if (n - 1 > file.size()) {
+            throw error("String length out of range: " + (n - 1));
+        }
+        int len = (int) (n - 1);
+        if (scratch.length < len) {
+            scratch = new byte[Math.max(len, 2 * scratch.length)];
+        }
+        if (segment.remaining() >= len) {
+            segment.get(scratch, 0, len);
+        } else {
+            for (int i = 0; i < len; i++) {
+                scratch[i] = (byte) readByte();
+            }
+        }
+        return new String(scratch, 0, len, StandardCharsets.UTF_8);
+    }
+
+    // EFFECTS: returns the next byte, moving on to the next segment as
+    // needed; throws EOFException if the file ends first
+    private int readByte() throws IOException {
+        if (!segment.hasRemaining()) {
+            if (nextSegment == file.numSegments()) {
+                throw new EOFException("Binary library ends early at byte " + file.size());
+            }
+            segmentStart += segment.limit();
+            segment = file.segment(nextSegment++);
+        }
+        return segment.get() & 0xff;
+    }
+
+    // EFFECTS: returns an exception describing a malformed file at the
+    // current position
+    private JSONException error(String message) {
+        return new JSONException(message + " at byte " + (segmentStart + segment.position()));
+    }
+}
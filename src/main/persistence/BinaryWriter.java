@@ -0,0 +1,260 @@
+package persistence;
+
+import metrics.LatencyHistogram;
+import metrics.Metrics;
+import model.Album;
+import model.Photo;
+import model.PhotoLibrary;
+import model.Reflection;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Represents a writer that writes a PhotoLibrary to file in the compact
+// binary library format, which holds the same data as the JSON format in a
+// fraction of the space. The file starts with the magic bytes "BUPL" and the
+// format version, by which readers tell it from JSON; see BinaryReader.
+//
+// Numbers are written as varints, signed ones zigzag-encoded, and decimals
+// as their eight IEEE bytes, so they read back exactly; dates are written as
+// epoch days and problems as the bitmask of the reflection. Cameras and
+// comments repeat across photos, so each distinct one is written once, in a
+// string table ahead of the photos, and referred to by its index. Albums
+// refer to library photos by their position in the file, and embed photos
+// that are not in the library.
+//
+// Like JsonWriter, the destination is replaced atomically when the writer is
+// closed after a complete library was written.
+public class BinaryWriter {
+    // the format version written; see BinaryReader for the versions it reads
+    public static final int FORMAT_VERSION = 1;
+    static final byte[] MAGIC = {'B', 'U', 'P', 'L'};
+    // bits of the flags written ahead of each photo
+    static final int HAS_DATE = 1;
+    static final int HAS_REFLECTION = 2;
+    private static final LatencyHistogram WRITE_TIME = Metrics.getInstance().histogram("binary.write");
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final String destination;
+    private AtomicFile file;
+    private OutputStream out;
+    private final byte[] buf = new byte[BUFFER_SIZE];
+    private int pos;
+    private boolean complete;
+
+    // EFFECTS: constructs writer to write to destination file
+    public BinaryWriter(String destination) {
+        this.destination = destination;
+    }
+
+    // MODIFIES: this
+    // EFFECTS: opens writer on a temporary file next to the destination;
+    // throws IOException if it cannot be created
+    public void open() throws IOException {
+        try {
+            file = new AtomicFile(Paths.get(destination));
+        } catch (InvalidPathException e) {
+            throw new FileNotFoundException(e.getMessage());
+        }
+        out = file.openStream();
+        complete = false;
+    }
+
+    // MODIFIES: this
+    // EFFECTS: writes the library to file; throws IOException if it cannot be
+    // written
+    public void write(PhotoLibrary lib) throws IOException {
+        write(lib, 0);
+    }
+
+    // MODIFIES: this
+    // EFFECTS: writes the library to file, recording the given journal
+    // checkpoint; throws IOException if it cannot be written
+    void write(PhotoLibrary lib, long checkpoint) throws IOException {
+        long t = WRITE_TIME.start();
+        try {
+            Map<String, Integer> strings = new HashMap<>();
+            List<String> table = new ArrayList<>();
+            for (Photo p : lib.getPhotos()) {
+                collectStrings(p, strings, table);
+            }
+            for (Album a : lib.getAlbums()) {
+                for (Photo p : a.getPhotos()) {
+                    collectStrings(p, strings, table);
+                }
+            }
+
+            writeBytes(MAGIC, 0, MAGIC.length);
+            writeVarint(FORMAT_VERSION);
+            writeVarint(checkpoint);
+            writeString(lib.getLibName());
+            writeVarint(table.size());
+            for (String s : table) {
+                writeString(s);
+            }
+            Map<Integer, Integer> positions = new HashMap<>();
+            writeVarint(lib.numPhotos());
+            for (Photo p : lib.getPhotos()) {
+                positions.put(p.getId(), positions.size());
+                writePhoto(p, strings);
+            }
+            writeVarint(lib.numAlbums());
+            for (Album a : lib.getAlbums()) {
+                writeString(a.getAlbumName());
+                writeVarint(a.numPhotos());
+                for (Photo p : a.getPhotos()) {
+                    Integer position = positions.get(p.getId());
+                    if (position != null) {
+                        writeVarint(position + 1);
+                    } else {
+                        writeVarint(0);
+                        writePhoto(p, strings);
+                    }
+                }
+            }
+            drain();
+            out.flush();
+            complete = true;
+        } finally {
+            WRITE_TIME.stop(t);
+        }
+    }
+
+    // MODIFIES: this, filesystem
+    // EFFECTS: closes writer and, if a library was written in full, forces
+    // it to disk and renames it over the destination; otherwise leaves the
+    // destination as it was. Throws IOException if the file cannot be
+    // committed.
+    public void close() throws IOException {
+        AtomicFile written = file;
+        file = null;
+        if (!complete) {
+            written.discard();
+            return;
+        }
+        try {
+            written.commit();
+        } catch (IOException e) {
+            written.discard();
+            throw e;
+        }
+    }
+
+    // MODIFIES: strings, table
+    // EFFECTS: adds the camera and comments of p that are not in the table
+    // yet to its end, recording their indexes in strings
+    private static void collectStrings(Photo p, Map<String, Integer> strings, List<String> table) {
+        if (p.getCamera() != null && strings.putIfAbsent(p.getCamera(), table.size()) == null) {
+            table.add(p.getCamera());
+        }
+        Reflection r = p.getReflection();
+        if (r != null) {
+            for (String c : r.getComments()) {
+                if (strings.putIfAbsent(c, table.size()) == null) {
+                    table.add(c);
+                }
+            }
+        }
+    }
+
+    // MODIFIES: this
+    // EFFECTS: writes a photo and its reflection, if it has one, referring to
+    // its camera and comments by their indexes in strings
+    private void writePhoto(Photo p, Map<String, Integer> strings) throws IOException {
+        Reflection r = p.getReflection();
+        writeVarint((p.getDate() != null ? HAS_DATE : 0) | (r != null ? HAS_REFLECTION : 0));
+        writeString(p.getPhotoname());
+        writeVarint(p.getCamera() == null ? 0 : strings.get(p.getCamera()) + 1);
+        writeVarint(zigzag(p.getIso()));
+        writeDouble(p.getAperture());
+        writeDouble(p.getShutterspeed());
+        if (p.getDate() != null) {
+            writeVarint(zigzag(p.getDate().toEpochDay()));
+        }
+        if (r != null) {
+            writeVarint(zigzag(r.getScore()));
+            writeVarint(r.getProblemMask());
+            writeVarint(r.getComments().size());
+            for (String c : r.getComments()) {
+                writeVarint(strings.get(c));
+            }
+        }
+    }
+
+    // EFFECTS: returns n zigzag-encoded, so that small negative numbers are
+    // small too
+    static long zigzag(long n) {
+        return (n << 1) ^ (n >> 63);
+    }
+
+    // MODIFIES: this
+    // EFFECTS: writes n, read as unsigned, seven bits a byte from the lowest,
+    // with the high bit set on every byte but the last
+    private void writeVarint(long n) throws IOException {
+        while ((n & ~0x7fL) != 0) {
+            writeByte((int) (n & 0x7f) | 0x80);
+            n >>>= 7;
+        }
+        writeByte((int) n);
+    }
+
+    // MODIFIES: this
+    // EFFECTS: writes the eight bytes of d, lowest first
+    private void writeDouble(double d) throws IOException {
+        long bits = Double.doubleToRawLongBits(d);
+        for (int i = 0; i < 8; i++) {
+            writeByte((int) (bits >>> (8 * i)));
+        }
+    }
+
+    // MODIFIES: this
+    // EFFECTS: writes s as its length in UTF-8 bytes plus one, or 0 if s is
+    // null, followed by those bytes
+    private void writeString(String s) throws IOException {
+        if (s == null) {
+            writeVarint(0);
+            return;
+        }
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        writeVarint(bytes.length + 1L);
+        writeBytes(bytes, 0, bytes.length);
+    }
+
+    // MODIFIES: this
+    // EFFECTS: writes len bytes of b from off
+    private void writeBytes(byte[] b, int off, int len) throws IOException {
+        if (len > buf.length - pos) {
+            drain();
+            if (len > buf.length) {
+                out.write(b, off, len);
+                return;
+            }
+        }
+        System.arraycopy(b, off, buf, pos, len);
+        pos += len;
+    }
+
+    // MODIFIES: this
+    // EFFECTS: writes one byte into the buffer, draining it first if full
+    private void writeByte(int b) throws IOException {
+        if (pos == buf.length) {
+            drain();
+        }
+        buf[pos++] = (byte) b;
+    }
+
+    // MODIFIES: this
+    // EFFECTS: hands the buffered bytes to the stream
+    private void drain() throws IOException {
+        out.write(buf, 0, pos);
+        pos = 0;
+    }
+}
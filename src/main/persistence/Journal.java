@@ -0,0 +1,808 @@
+package persistence;
+
+import model.Album;
+import model.EventLog;
+import model.LibraryListener;
+import model.Photo;
+import model.PhotoLibrary;
+import model.ProblemType;
+import model.Reflection;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+// A write-ahead journal of the changes made to a PhotoLibrary since it was
+// last saved as a snapshot: by default a single JSON file, or any other
+// SnapshotStore. Each change is appended to the journal file as one line of
+// JSON. Changes are forced to disk in batches: once batchSize of them are
+// waiting, or maxDelayMillis after the first of them, whichever comes first.
+// Opening the journal loads the snapshot and replays the journal on top of
+// it, so a crash loses at most the last unforced batch. Once the journal
+// grows past compactThreshold bytes, it is folded into a new snapshot and
+// emptied. Compaction is handed to a compactor, outside the change that
+// triggered it, and must run on the thread that changes the library.
+//
+// Saving takes only as long as capturing the library for the snapshot;
+// writing it to disk and putting it in place happen on a SaveQueue. To
+// keep every change recoverable meanwhile, saving first moves the journal
+// aside to a numbered segment file, <journal>.<n>, and starts an empty
+// journal. The snapshot records n as its checkpoint, and covers every
+// segment numbered n or lower, which are deleted once it is in place. On
+// opening, segments the snapshot does not cover are replayed before the
+// journal, so a crash at any point of a save loses nothing.
+//
+// Photos and albums are identified in the journal by key, not by name, as
+// names need not be unique. Keys number the photos and albums of the library
+// in order as of the start of each journal file, which is the order the
+// snapshot or the segment before it leaves them in; photos and albums added
+// later take the next keys, and keys are never reused within a file, even
+// across reopening it. A photo outside the library, kept only by an
+// album, is recorded whole instead.
+public class Journal implements LibraryListener {
+    public static final int DEFAULT_BATCH_SIZE = 32;
+    public static final long DEFAULT_MAX_DELAY_MILLIS = 100;
+    public static final long DEFAULT_COMPACT_THRESHOLD = 1 << 20;
+    private static final String DEFAULT_LIBRARY_NAME = "my library";
+
+    private final SnapshotStore store;
+    private final String journal;
+    private final int batchSize;
+    private final long maxDelayMillis;
+    private final long compactThreshold;
+    private final SaveQueue saves;
+
+    private PhotoLibrary lib;
+    private final Keys keys = new Keys();
+    // the checkpoint of the latest save; segments up to it are moved aside
+    private long checkpoint;
+    private FileChannel out;
+    private ScheduledExecutorService flusher;
+    private final ByteArrayOutputStream batch = new ByteArrayOutputStream();
+    private int batched;
+    private IOException failure;
+    private volatile Executor compactor = Runnable::run;
+    private boolean compactScheduled;
+
+    // EFFECTS: constructs a journal of changes to the library saved in the
+    // snapshot file, kept in the journal file, with the default batching
+    // and compaction settings
+    public Journal(String snapshot, String journal) {
+        this(snapshot, journal, new SaveQueue());
+    }
+
+    // EFFECTS: constructs a journal of changes to the library saved in the
+    // snapshot file, kept in the journal file, with the default batching
+    // and compaction settings, that saves on the given queue
+    public Journal(String snapshot, String journal, SaveQueue saves) {
+        this(new JsonSnapshot(snapshot), journal, saves);
+    }
+
+    // EFFECTS: constructs a journal of changes to the library saved in the
+    // given store, kept in the journal file, with the default batching and
+    // compaction settings, that saves on the given queue
+    public Journal(SnapshotStore store, String journal, SaveQueue saves) {
+        this(store, journal, DEFAULT_BATCH_SIZE, DEFAULT_MAX_DELAY_MILLIS, DEFAULT_COMPACT_THRESHOLD, saves);
+    }
+
+    // REQUIRES: batchSize >= 1, maxDelayMillis >= 1, compactThreshold >= 0
+    // EFFECTS: constructs a journal of changes to the library saved in the
+    // snapshot file, kept in the journal file
+    public Journal(String snapshot, String journal, int batchSize, long maxDelayMillis, long compactThreshold) {
+        this(snapshot, journal, batchSize, maxDelayMillis, compactThreshold, new SaveQueue());
+    }
+
+    // REQUIRES: batchSize >= 1, maxDelayMillis >= 1, compactThreshold >= 0
+    // EFFECTS: constructs a journal of changes to the library saved in the
+    // snapshot file, kept in the journal file, that saves on the given queue
+    public Journal(String snapshot, String journal, int batchSize, long maxDelayMillis, long compactThreshold,
+                   SaveQueue saves) {
+        this(new JsonSnapshot(snapshot), journal, batchSize, maxDelayMillis, compactThreshold, saves);
+    }
+
+    // REQUIRES: batchSize >= 1, maxDelayMillis >= 1, compactThreshold >= 0
+    // EFFECTS: constructs a journal of changes to the library saved in the
+    // given store, kept in the journal file, that saves on the given queue
+    public Journal(SnapshotStore store, String journal, int batchSize, long maxDelayMillis, long compactThreshold,
+                   SaveQueue saves) {
+        this.saves = saves;
+        this.store = store;
+        this.journal = journal;
+        this.batchSize = batchSize;
+        this.maxDelayMillis = maxDelayMillis;
+        this.compactThreshold = compactThreshold;
+    }
+
+    // MODIFIES: this
+    // EFFECTS: loads the library from the snapshot, or starts an empty
+    // library if there is none, replays the journal onto it, and records
+    // every later change to it; returns the library. A torn record at the
+    // end of the journal, left by a crash, is discarded. Throws IOException
+    // if the snapshot or journal cannot be read, holds a record that cannot
+    // be applied, or cannot be opened for writing.
+    public synchronized PhotoLibrary open() throws IOException {
+        detach();
+        PhotoLibrary loaded = new PhotoLibrary(DEFAULT_LIBRARY_NAME);
+        long covered = 0;
+        if (store.exists()) {
+            loaded = store.read();
+            covered = store.getCheckpoint();
+        }
+        checkpoint = covered;
+        for (long n : segments()) {
+            checkpoint = Math.max(checkpoint, n);
+            if (n <= covered) {
+                Files.deleteIfExists(segment(n));
+            } else {
+                replay(loaded, segment(n), keys);
+            }
+        }
+        // the journal goes on in the key space its records started
+        long intact = replay(loaded, Paths.get(journal), keys);
+        attach(loaded);
+        out.truncate(intact);
+        return loaded;
+    }
+
+    // MODIFIES: this, filesystem
+    // EFFECTS: writes lib to the snapshot, empties the journal, and
+    // records every later change to lib; returns once the snapshot is on
+    // disk. Throws IOException if either file cannot be written.
+    public void save(PhotoLibrary lib) throws IOException {
+        SaveQueue.await(saveAsync(lib));
+    }
+
+    // MODIFIES: this, filesystem
+    // EFFECTS: captures lib for the snapshot, empties the journal, and
+    // records every later change to lib; then returns a future that
+    // completes once the snapshot has been forced to disk and put in place
+    // by the save queue. Throws IOException if the journal cannot be written
+    // or the library cannot be captured.
+    public synchronized CompletableFuture<Void> saveAsync(PhotoLibrary lib) throws IOException {
+        if (lib != this.lib) {
+            detach();
+            attach(lib);
+        }
+        return checkpoint();
+    }
+
+    // MODIFIES: this, filesystem
+    // EFFECTS: forces every waiting change to disk; throws IOException if
+    // this or an earlier write to the journal failed
+    public synchronized void sync() throws IOException {
+        if (out != null && batched > 0) {
+            try {
+                out.write(ByteBuffer.wrap(batch.toByteArray()));
+                out.force(false);
+            } catch (IOException e) {
+                failure = e;
+            }
+            batch.reset();
+            batched = 0;
+        }
+        if (failure != null) {
+            IOException e = failure;
+            failure = null;
+            throw e;
+        }
+    }
+
+    // MODIFIES: this, filesystem
+    // EFFECTS: forces every waiting change to disk and stops recording
+    // changes; throws IOException if a write to the journal failed
+    public void close() throws IOException {
+        synchronized (this) {
+            try {
+                sync();
+            } finally {
+                detach();
+            }
+        }
+        saves.flush();
+    }
+
+    // MODIFIES: this
+    // EFFECTS: hands later compactions to compactor, which must run them on
+    // the thread that changes the library, e.g. SwingUtilities::invokeLater
+    // for a library changed on the event thread. By default they run on that
+    // thread as soon as the change that triggered them has been recorded.
+    public void setCompactor(Executor compactor) {
+        this.compactor = compactor;
+    }
+
+    // EFFECTS: returns the size of the journal file in bytes, counting the
+    // changes not yet forced to disk
+    public synchronized long size() throws IOException {
+        return (out == null ? 0 : out.size()) + batch.size();
+    }
+
+    @Override
+    public void photoAdded(Photo p) {
+        append(record("addPhoto").put("key", keys.add(p)).put("photo", p.toJson()));
+    }
+
+    @Override
+    public void photoRemoved(Photo p) {
+        append(record("removePhoto").put("key", keys.remove(p)));
+    }
+
+    @Override
+    public void albumAdded(Album a) {
+        JSONArray photos = new JSONArray();
+        for (Photo p : a.getPhotos()) {
+            photos.put(photoRef(p));
+        }
+        append(record("addAlbum").put("album", keys.add(a)).put("name", a.getAlbumName()).put("photos", photos));
+    }
+
+    @Override
+    public void albumRemoved(Album a) {
+        append(record("removeAlbum").put("album", keys.remove(a)));
+    }
+
+    @Override
+    public void albumRenamed(Album a, String oldName) {
+        append(record("renameAlbum").put("album", keys.keyOf(a)).put("to", a.getAlbumName()));
+    }
+
+    @Override
+    public void photoAddedToAlbum(Album a, Photo p) {
+        append(record("addToAlbum").put("album", keys.keyOf(a)).put("photo", photoRef(p)));
+    }
+
+    @Override
+    public void photoRemovedFromAlbum(Album a, Photo p) {
+        append(record("removeFromAlbum").put("album", keys.keyOf(a)).put("photo", photoRef(p)));
+    }
+
+    @Override
+    public void reflectionChanged(Photo p) {
+        JSONObject rec = record("reflection").put("key", keys.keyOf(p));
+        Reflection r = p.getReflection();
+        if (r != null) {
+            rec.put("reflection", reflectionToJson(r));
+        }
+        append(rec);
+    }
+
+    // MODIFIES: this
+    // EFFECTS: starts recording changes to lib, appending to the journal file
+    private void attach(PhotoLibrary lib) throws IOException {
+        openJournal();
+        this.lib = lib;
+        lib.addListener(this);
+        flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "journal-flusher");
+            t.setDaemon(true);
+            return t;
+        });
+        flusher.scheduleWithFixedDelay(this::flushQuietly, maxDelayMillis, maxDelayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    // MODIFIES: this
+    // EFFECTS: opens the journal file for appending, creating it if needed
+    private void openJournal() throws IOException {
+        Path path = Paths.get(journal);
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        out = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        out.position(out.size());
+    }
+
+    // MODIFIES: this
+    // EFFECTS: stops recording changes, dropping any not yet forced to disk
+    private void detach() throws IOException {
+        if (lib != null) {
+            lib.removeListener(this);
+            lib = null;
+        }
+        if (flusher != null) {
+            flusher.shutdown();
+            flusher = null;
+        }
+        if (out != null) {
+            out.close();
+            out = null;
+        }
+        batch.reset();
+        batched = 0;
+    }
+
+    // MODIFIES: this
+    // EFFECTS: forces waiting changes to disk; a failure is kept for the
+    // next call to sync
+    private synchronized void flushQuietly() {
+        try {
+            sync();
+        } catch (IOException e) {
+            failure = e;
+        }
+    }
+
+    // MODIFIES: this, filesystem
+    // EFFECTS: records one change, and hands compacting the journal to the
+    // compactor once it passes compactThreshold
+    private void append(JSONObject rec) {
+        if (enqueue(rec)) {
+            compactor.execute(this::compact);
+        }
+    }
+
+    // MODIFIES: this, filesystem
+    // EFFECTS: adds one change to the current batch, forcing the batch to
+    // disk once it is full; returns true if the journal has passed
+    // compactThreshold and no compaction is waiting yet
+    private synchronized boolean enqueue(JSONObject rec) {
+        byte[] line = (rec.toString() + "\n").getBytes(StandardCharsets.UTF_8);
+        batch.write(line, 0, line.length);
+        batched++;
+        if (batched < batchSize) {
+            return false;
+        }
+        try {
+            sync();
+            if (out.size() >= compactThreshold && !compactScheduled) {
+                compactScheduled = true;
+                return true;
+            }
+        } catch (IOException e) {
+            failure = e;
+        }
+        return false;
+    }
+
+    // MODIFIES: this, filesystem
+    // EFFECTS: folds the journal into a new snapshot if it is still past
+    // compactThreshold; a failure is kept for the next call to sync
+    private synchronized void compact() {
+        compactScheduled = false;
+        try {
+            if (out != null && out.size() >= compactThreshold) {
+                checkpoint().whenComplete((v, e) -> {
+                    if (e != null) {
+                        recordFailure(e);
+                    }
+                });
+            }
+        } catch (IOException e) {
+            failure = e;
+        }
+    }
+
+    // MODIFIES: this
+    // EFFECTS: keeps the failure of a background save for the next call to
+    // sync
+    private synchronized void recordFailure(Throwable e) {
+        failure = e instanceof IOException ? (IOException) e : new IOException(e);
+    }
+
+    // MODIFIES: this, filesystem
+    // EFFECTS: forces the journal to disk, moves it aside as the next
+    // segment and starts an empty journal, then captures the library for the
+    // snapshot and queues saving it; returns the future of the save
+    private CompletableFuture<Void> checkpoint() throws IOException {
+        sync();
+        long n = checkpoint + 1;
+        out.close();
+        out = null;
+        Files.move(Paths.get(journal), segment(n));
+        checkpoint = n;
+        openJournal();
+        keys.number(lib);
+        AtomicFile.syncDirectory(Paths.get(journal).toAbsolutePath().getParent());
+
+        SaveQueue.Task snapshot = store.prepare(lib, n);
+        return saves.submit(store.getKey(), new SaveQueue.Task() {
+            @Override
+            public void run() throws IOException {
+                snapshot.run();
+                for (long k : segments()) {
+                    if (k <= n) {
+                        Files.deleteIfExists(segment(k));
+                    }
+                }
+            }
+
+            @Override
+            public void discard() {
+                snapshot.discard();
+            }
+        });
+    }
+
+    // MODIFIES: lib, keys
+    // EFFECTS: numbers keys from lib, then applies every intact record of the
+    // given journal or segment file to lib, with event capture turned off,
+    // leaving keys as the records leave them; returns the length in bytes of
+    // the intact records, or 0 if there is no such file. An unterminated
+    // last line is a torn write and is left out; throws IOException if any
+    // other record cannot be applied, leaving the file as it is.
+    private long replay(PhotoLibrary lib, Path path, Keys fileKeys) throws IOException {
+        fileKeys.number(lib);
+        if (!Files.exists(path)) {
+            return 0;
+        }
+        EventLog log = EventLog.getInstance();
+        boolean capturing = log.isCapturing();
+        log.setCapturing(false);
+        long size = Files.size(path);
+        long intact = 0;
+        int lineNumber = 0;
+        try (BufferedReader in = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                lineNumber++;
+                long length = line.getBytes(StandardCharsets.UTF_8).length;
+                try {
+                    apply(lib, fileKeys, new JSONObject(line));
+                } catch (JSONException e) {
+                    if (intact + length >= size) {
+                        break;
+                    }
+                    throw new IOException("Bad record at line " + lineNumber + " of " + path, e);
+                }
+                intact += length + 1;
+            }
+        } finally {
+            log.setCapturing(capturing);
+        }
+        return Math.min(intact, size);
+    }
+
+    // EFFECTS: returns the path of segment n of the journal
+    private Path segment(long n) {
+        return Paths.get(journal + "." + n);
+    }
+
+    // EFFECTS: returns the numbers of the segment files on disk, in order
+    private List<Long> segments() throws IOException {
+        Path path = Paths.get(journal).toAbsolutePath();
+        String prefix = path.getFileName() + ".";
+        List<Long> found = new ArrayList<>();
+        if (!Files.isDirectory(path.getParent())) {
+            return found;
+        }
+        try (DirectoryStream<Path> dir = Files.newDirectoryStream(path.getParent(), prefix + "*")) {
+            for (Path p : dir) {
+                String suffix = p.getFileName().toString().substring(prefix.length());
+                if (!suffix.isEmpty() && suffix.chars().allMatch(Character::isDigit)) {
+                    found.add(Long.parseLong(suffix));
+                }
+            }
+        }
+        Collections.sort(found);
+        return found;
+    }
+
+    // MODIFIES: lib, keys
+    // EFFECTS: applies one journal record to lib, resolving the keys in it
+    // with keys; records naming photos or albums that do not exist are
+    // skipped
+    private void apply(PhotoLibrary lib, Keys keys, JSONObject rec) {
+        switch (rec.getString("op")) {
+            case "addPhoto":
+                addPhoto(lib, keys, rec.getInt("key"), rec.getJSONObject("photo"));
+                break;
+            case "removePhoto":
+                removePhoto(lib, keys, keys.photo(rec.getInt("key")));
+                break;
+            case "addAlbum":
+                addAlbum(lib, keys, rec.getInt("album"), rec.getString("name"), rec.getJSONArray("photos"));
+                break;
+            case "removeAlbum":
+                removeAlbum(lib, keys, keys.album(rec.getInt("album")));
+                break;
+            case "renameAlbum":
+                renameAlbum(lib, keys.album(rec.getInt("album")), rec.getString("to"));
+                break;
+            case "addToAlbum":
+                addToAlbum(keys.album(rec.getInt("album")), resolvePhoto(keys, rec.get("photo")));
+                break;
+            case "removeFromAlbum":
+                removeFromAlbum(lib, keys, keys.album(rec.getInt("album")), rec.get("photo"));
+                break;
+            case "reflection":
+                setReflection(keys.photo(rec.getInt("key")), rec.optJSONObject("reflection"));
+                break;
+            default:
+                throw new JSONException("Unknown journal record: " + rec);
+        }
+    }
+
+    // MODIFIES: lib, keys
+    // EFFECTS: adds the photo in json to lib under the given key
+    private void addPhoto(PhotoLibrary lib, Keys keys, int key, JSONObject json) {
+        Photo p = JsonReader.parsePhoto(json);
+        lib.addPhoto(p);
+        keys.put(p, key);
+    }
+
+    // MODIFIES: lib, keys
+    // EFFECTS: removes photo p from lib, unless it is null
+    private void removePhoto(PhotoLibrary lib, Keys keys, Photo p) {
+        if (p != null) {
+            lib.removePhoto(p);
+            keys.remove(p);
+        }
+    }
+
+    // MODIFIES: lib, keys
+    // EFFECTS: adds an album with the given name and photos to lib under the
+    // given key
+    private void addAlbum(PhotoLibrary lib, Keys keys, int key, String name, JSONArray photos) {
+        Album a = new Album(name);
+        for (int i = 0; i < photos.length(); i++) {
+            Photo p = resolvePhoto(keys, photos.get(i));
+            if (p != null) {
+                a.addPhoto(p);
+            }
+        }
+        lib.addAlbum(a);
+        keys.put(a, key);
+    }
+
+    // MODIFIES: lib, keys
+    // EFFECTS: removes album a from lib, unless it is null
+    private void removeAlbum(PhotoLibrary lib, Keys keys, Album a) {
+        if (a != null) {
+            lib.removeAlbum(a);
+            keys.remove(a);
+        }
+    }
+
+    // MODIFIES: lib
+    // EFFECTS: renames album a to the given name, unless it is null
+    private void renameAlbum(PhotoLibrary lib, Album a, String to) {
+        if (a != null) {
+            lib.renameAlbum(a, to);
+        }
+    }
+
+    // MODIFIES: a
+    // EFFECTS: adds photo p to album a, unless either is null
+    private void addToAlbum(Album a, Photo p) {
+        if (a != null && p != null) {
+            a.addPhoto(p);
+        }
+    }
+
+    // MODIFIES: lib
+    // EFFECTS: removes the referenced photo from album a, unless a is null:
+    // the photo with the given key, or else the first photo of a outside lib
+    // that is equal to the recorded photo
+    private void removeFromAlbum(PhotoLibrary lib, Keys keys, Album a, Object ref) {
+        if (a == null) {
+            return;
+        }
+        if (!(ref instanceof JSONObject)) {
+            Photo p = keys.photo(photoKey(ref));
+            if (p != null) {
+                a.removePhoto(p);
+            }
+            return;
+        }
+        JSONObject recorded = JsonReader.parsePhoto((JSONObject) ref).toJson();
+        for (Photo p : a.getPhotos()) {
+            if (!lib.containsPhoto(p) && p.toJson().similar(recorded)) {
+                a.removePhoto(p);
+                return;
+            }
+        }
+    }
+
+    // MODIFIES: p
+    // EFFECTS: gives photo p the reflection in json, or none if json is null;
+    // does nothing if p is null
+    private void setReflection(Photo p, JSONObject json) {
+        if (p != null) {
+            p.setReflection(json == null ? null : JsonReader.parseReflection(json));
+        }
+    }
+
+    // EFFECTS: returns a reference to photo p for an album record: its key if
+    // p is in the library, or the whole photo if it is not
+    private Object photoRef(Photo p) {
+        Integer key = keys.keyOf(p);
+        return key != null ? key : p.toJson();
+    }
+
+    // EFFECTS: returns the photo a reference from photoRef stands for, or
+    // null if its key is not known
+    private Photo resolvePhoto(Keys keys, Object ref) {
+        if (ref instanceof JSONObject) {
+            return JsonReader.parsePhoto((JSONObject) ref);
+        }
+        return keys.photo(photoKey(ref));
+    }
+
+    // EFFECTS: returns the key a photo reference holds; throws JSONException
+    // if it is not a key
+    private static int photoKey(Object ref) {
+        if (!(ref instanceof Number)) {
+            throw new JSONException("Not a photo key: " + ref);
+        }
+        return ((Number) ref).intValue();
+    }
+
+    // EFFECTS: returns a new journal record for the given operation
+    private static JSONObject record(String op) {
+        return new JSONObject().put("op", op);
+    }
+
+    // EFFECTS: returns r as JSON, in the form the snapshot uses
+    private static JSONObject reflectionToJson(Reflection r) {
+        JSONArray problems = new JSONArray();
+        for (ProblemType t : r.getProblems()) {
+            problems.put(t.name());
+        }
+        JSONObject json = new JSONObject();
+        json.put("score", r.getScore());
+        json.put("problems", problems);
+        json.put("comments", new JSONArray(r.getComments()));
+        return json;
+    }
+
+    // The keys that identify photos and albums in journal records.
+    private static class Keys {
+        private final Map<Photo, Integer> photoKeys = new HashMap<>();
+        private final Map<Integer, Photo> photos = new HashMap<>();
+        private final Map<Album, Integer> albumKeys = new HashMap<>();
+        private final Map<Integer, Album> albums = new HashMap<>();
+        private int nextPhoto;
+        private int nextAlbum;
+
+        // MODIFIES: this
+        // EFFECTS: forgets every key, then numbers the photos and the albums
+        // of lib in order, from 0
+        void number(PhotoLibrary lib) {
+            photoKeys.clear();
+            photos.clear();
+            albumKeys.clear();
+            albums.clear();
+            nextPhoto = 0;
+            nextAlbum = 0;
+            for (Photo p : lib.getPhotos()) {
+                add(p);
+            }
+            for (Album a : lib.getAlbums()) {
+                add(a);
+            }
+        }
+
+        // MODIFIES: this
+        // EFFECTS: gives p the next photo key and returns it
+        int add(Photo p) {
+            int key = nextPhoto;
+            put(p, key);
+            return key;
+        }
+
+        // MODIFIES: this
+        // EFFECTS: gives p the given key; later photos get higher keys
+        void put(Photo p, int key) {
+            photoKeys.put(p, key);
+            photos.put(key, p);
+            nextPhoto = Math.max(nextPhoto, key + 1);
+        }
+
+        // MODIFIES: this
+        // EFFECTS: forgets the key of p and returns it, or null if p had none
+        Integer remove(Photo p) {
+            Integer key = photoKeys.remove(p);
+            if (key != null) {
+                photos.remove(key);
+            }
+            return key;
+        }
+
+        // EFFECTS: returns the key of p, or null if it has none
+        Integer keyOf(Photo p) {
+            return photoKeys.get(p);
+        }
+
+        // EFFECTS: returns the photo with the given key, or null if there is
+        // none
+        Photo photo(int key) {
+            return photos.get(key);
+        }
+
+        // MODIFIES: this
+        // EFFECTS: gives a the next album key and returns it
+        int add(Album a) {
+            int key = nextAlbum;
+            put(a, key);
+            return key;
+        }
+
+        // MODIFIES: this
+        // EFFECTS: gives a the given key; later albums get higher keys
+        void put(Album a, int key) {
+            albumKeys.put(a, key);
+            albums.put(key, a);
+            nextAlbum = Math.max(nextAlbum, key + 1);
+        }
+
+        // MODIFIES: this
+        // EFFECTS: forgets the key of a and returns it, or null if a had none
+        Integer remove(Album a) {
+            Integer key = albumKeys.remove(a);
+            if (key != null) {
+                albums.remove(key);
+            }
+            return key;
+        }
+
+        // EFFECTS: returns the key of a, or null if it has none
+        Integer keyOf(Album a) {
+            return albumKeys.get(a);
+        }
+
+        // EFFECTS: returns the album with the given key, or null if there is
+        // none
+        Album album(int key) {
+            return albums.get(key);
+        }
+    }
+
+    // The default snapshot store: the whole library in one JSON file, which
+    // is replaced in one step. The library is serialised to memory when the
+    // save is prepared, and the file is written on the save queue.
+    private static class JsonSnapshot implements SnapshotStore {
+        private final String file;
+        private final JsonReader reader;
+
+        JsonSnapshot(String file) {
+            this.file = file;
+            this.reader = new JsonReader(file);
+        }
+
+        @Override
+        public boolean exists() {
+            return Files.exists(Paths.get(file));
+        }
+
+        @Override
+        public PhotoLibrary read() throws IOException {
+            return reader.read();
+        }
+
+        @Override
+        public long getCheckpoint() {
+            return reader.getCheckpoint();
+        }
+
+        @Override
+        public SaveQueue.Task prepare(PhotoLibrary lib, long checkpoint) throws IOException {
+            byte[] data = JsonWriter.toBytes(lib, checkpoint, true);
+            return () -> AtomicFile.write(Paths.get(file), data);
+        }
+
+        @Override
+        public String getKey() {
+            return file;
+        }
+    }
+}
@@ -0,0 +1,534 @@
+package persistence;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.regex.Pattern;
+
+import org.json.JSONException;
+
+// A pull parser that reads JSON text as a stream of tokens. The caller asks
+// for the next token, and the parser reads only as much of its source as
+// that token needs, so documents of any size are read in bounded memory.
+// Malformed text is reported as a JSONException.
+class JsonPullParser implements Closeable {
+    // The kinds of token the parser returns.
+    enum Token {
+        BEGIN_OBJECT, END_OBJECT, BEGIN_ARRAY, END_ARRAY, NAME, STRING, NUMBER, BOOLEAN, NULL, END_DOCUMENT
+    }
+
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final Pattern NUMBER = Pattern.compile("-?(0|[1-9][0-9]*)(\\.[0-9]+)?([eE][+-]?[0-9]+)?");
+
+    // the scopes the parser can be in
+    private static final int EMPTY_DOCUMENT = 0;
+    private static final int NONEMPTY_DOCUMENT = 1;
+    private static final int EMPTY_ARRAY = 2;
+    private static final int NONEMPTY_ARRAY = 3;
+    private static final int EMPTY_OBJECT = 4;
+    private static final int NONEMPTY_OBJECT = 5;
+    private static final int DANGLING_NAME = 6;
+
+    private final Reader in;
+    // true if the source holds the elements of an array without its brackets
+    private final boolean elements;
+    private final char[] buf;
+    private int pos;
+    private int limit;
+    // characters read before buf
+    private long offset;
+    // true if the UTF-8 length of the text read is being counted; the length
+    // up to buf[counted]
+    private boolean countBytes;
+    private long bytes;
+    private int counted;
+    // true while skipping a value, whose strings need not be built
+    private boolean skipping;
+
+    private int[] stack = new int[32];
+    private int depth = 1;
+
+    private Token peeked;
+    private String value;
+    private final StringBuilder text = new StringBuilder();
+
+    // EFFECTS: constructs a parser reading JSON text from in
+    JsonPullParser(Reader in) {
+        this(in, false);
+    }
+
+    // EFFECTS: constructs a parser reading JSON text from in; if elements,
+    // the text is the comma-separated elements of an array without its
+    // brackets, which the parser reads as if inside that array, ending it at
+    // the end of the text
+    JsonPullParser(Reader in, boolean elements) {
+        this(in, elements, BUFFER_SIZE);
+    }
+
+    // REQUIRES: bufferSize > 0
+    // EFFECTS: constructs a parser as JsonPullParser(in, elements) does,
+    // reading bufferSize characters at a time
+    JsonPullParser(Reader in, boolean elements, int bufferSize) {
+        this.in = in;
+        this.elements = elements;
+        this.buf = new char[bufferSize];
+        stack[0] = elements ? EMPTY_ARRAY : EMPTY_DOCUMENT;
+    }
+
+    // REQUIRES: nothing has been read yet
+    // MODIFIES: this
+    // EFFECTS: starts counting the UTF-8 length of the text read; see
+    // bytePosition
+    void countBytes() {
+        countBytes = true;
+    }
+
+    // REQUIRES: countBytes() was called
+    // MODIFIES: this
+    // EFFECTS: returns the length in UTF-8 of the text read so far. After
+    // peek returns a token that opens an object or array, that is the offset
+    // just past its '{' or '['; after a call that ends one, the offset just
+    // past its '}' or ']'.
+    long bytePosition() {
+        for (; counted < pos; counted++) {
+            char c = buf[counted];
+            bytes += c < 0x80 ? 1 : c < 0x800 || Character.isSurrogate(c) ? 2 : 3;
+        }
+        return bytes;
+    }
+
+    // MODIFIES: this
+    // EFFECTS: returns the kind of the next token without consuming it
+    Token peek() throws IOException {
+        if (peeked != null) {
+            return peeked;
+        }
+        int c;
+        switch (stack[depth - 1]) {
+            case EMPTY_ARRAY:
+                stack[depth - 1] = NONEMPTY_ARRAY;
+                c = nextNonWhitespace();
+                return peeked = isArrayEnd(c) ? Token.END_ARRAY : readValue(c);
+            case NONEMPTY_ARRAY:
+                c = nextNonWhitespace();
+                return peeked = isArrayEnd(c) ? Token.END_ARRAY : readValue(afterComma(c));
+            case EMPTY_OBJECT:
+                c = nextNonWhitespace();
+                return peeked = c == '}' ? Token.END_OBJECT : readName(c);
+            case NONEMPTY_OBJECT:
+                c = nextNonWhitespace();
+                return peeked = c == '}' ? Token.END_OBJECT : readName(afterComma(c));
+            case DANGLING_NAME:
+                if (nextNonWhitespace() != ':') {
+                    throw syntaxError("Expected ':'");
+                }
+                stack[depth - 1] = NONEMPTY_OBJECT;
+                return peeked = readValue(nextNonWhitespace());
+            case EMPTY_DOCUMENT:
+                stack[depth - 1] = NONEMPTY_DOCUMENT;
+                return peeked = readValue(nextNonWhitespace());
+            default:
+                if (nextNonWhitespace() != -1) {
+                    throw syntaxError("Unexpected text after the document");
+                }
+                return peeked = Token.END_DOCUMENT;
+        }
+    }
+
+    // EFFECTS: returns true if the current object or array has another
+    // member
+    boolean hasNext() throws IOException {
+        Token t = peek();
+        return t != Token.END_OBJECT && t != Token.END_ARRAY && t != Token.END_DOCUMENT;
+    }
+
+    // MODIFIES: this
+    // EFFECTS: consumes the start of an object
+    void beginObject() throws IOException {
+        expect(Token.BEGIN_OBJECT);
+    }
+
+    // MODIFIES: this
+    // EFFECTS: consumes the end of the current object
+    void endObject() throws IOException {
+        expect(Token.END_OBJECT);
+        depth--;
+    }
+
+    // MODIFIES: this
+    // EFFECTS: consumes the start of an array
+    void beginArray() throws IOException {
+        expect(Token.BEGIN_ARRAY);
+    }
+
+    // MODIFIES: this
+    // EFFECTS: consumes the end of the current array
+    void endArray() throws IOException {
+        expect(Token.END_ARRAY);
+        depth--;
+    }
+
+    // MODIFIES: this
+    // EFFECTS: consumes and returns the next member name
+    String nextName() throws IOException {
+        expect(Token.NAME);
+        return value;
+    }
+
+    // MODIFIES: this
+    // EFFECTS: consumes the next value, which must be a string or a number,
+    // and returns its text
+    String nextString() throws IOException {
+        Token t = peek();
+        if (t != Token.STRING && t != Token.NUMBER) {
+            throw syntaxError("Expected a string but was " + t);
+        }
+        peeked = null;
+        return value;
+    }
+
+    // MODIFIES: this
+    // EFFECTS: consumes the next value, which must be a string, number or
+    // boolean, and returns its text; consumes a null and returns null
+    String nextScalar() throws IOException {
+        Token t = peek();
+        if (t == Token.NULL) {
+            peeked = null;
+            return null;
+        }
+        if (t != Token.STRING && t != Token.NUMBER && t != Token.BOOLEAN) {
+            throw syntaxError("Expected a scalar but was " + t);
+        }
+        peeked = null;
+        return value;
+    }
+
+    // MODIFIES: this
+    // EFFECTS: consumes the next value, which must be a number or a string
+    // holding one, and returns it as an int, dropping any fraction
+    int nextInt() throws IOException {
+        String s = nextString();
+        try {
+            return Integer.parseInt(s);
+        } catch (NumberFormatException e) {
+            return toNumber(s).intValue();
+        }
+    }
+
+    // MODIFIES: this
+    // EFFECTS: consumes the next value, which must be a number or a string
+    // holding one, and returns it as a double
+    double nextDouble() throws IOException {
+        String s = nextString();
+        try {
+            return Double.parseDouble(s);
+        } catch (NumberFormatException e) {
+            throw syntaxError("Expected a number but was \"" + s + "\"");
+        }
+    }
+
+    // MODIFIES: this
+    // EFFECTS: consumes a null
+    void nextNull() throws IOException {
+        expect(Token.NULL);
+    }
+
+    // MODIFIES: this
+    // EFFECTS: consumes the next value, including everything nested in it
+    void skipValue() throws IOException {
+        int nested = 0;
+        skipping = true;
+        try {
+            do {
+                Token t = peek();
+                peeked = null;
+                if (t == Token.BEGIN_OBJECT || t == Token.BEGIN_ARRAY) {
+                    nested++;
+                } else if (t == Token.END_OBJECT || t == Token.END_ARRAY) {
+                    depth--;
+                    nested--;
+                } else if (t == Token.NAME) {
+                    continue;
+                } else if (t == Token.END_DOCUMENT) {
+                    throw syntaxError("Unexpected end of document");
+                }
+            } while (nested > 0);
+        } finally {
+            skipping = false;
+        }
+    }
+
+    // MODIFIES: this
+    // EFFECTS: closes the source of the parser
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    // MODIFIES: this
+    // EFFECTS: consumes the next token, which must be of kind t
+    private void expect(Token t) throws IOException {
+        Token next = peek();
+        if (next != t) {
+            throw syntaxError("Expected " + t + " but was " + next);
+        }
+        peeked = null;
+    }
+
+    // EFFECTS: returns true if c, read where an array element may start,
+    // ends the current array
+    private boolean isArrayEnd(int c) {
+        return elements && depth == 1 ? c == -1 : c == ']';
+    }
+
+    // MODIFIES: this
+    // EFFECTS: checks that c, read after an array element or object member,
+    // is a comma, and returns the next character that is not whitespace
+    private int afterComma(int c) throws IOException {
+        if (c != ',') {
+            throw syntaxError("Expected ','");
+        }
+        return nextNonWhitespace();
+    }
+
+    // MODIFIES: this
+    // EFFECTS: reads the name of an object member, starting with its first
+    // character c
+    private Token readName(int c) throws IOException {
+        if (c != '"') {
+            throw syntaxError("Expected a member name");
+        }
+        value = readString();
+        stack[depth - 1] = DANGLING_NAME;
+        return Token.NAME;
+    }
+
+    // MODIFIES: this
+    // EFFECTS: reads a value, starting with its first character c, up to
+    // the end of its first token, and returns that token
+    private Token readValue(int c) throws IOException {
+        switch (c) {
+            case '{':
+                push(EMPTY_OBJECT);
+                return Token.BEGIN_OBJECT;
+            case '[':
+                push(EMPTY_ARRAY);
+                return Token.BEGIN_ARRAY;
+            case '"':
+                value = readString();
+                return Token.STRING;
+            case 't':
+            case 'f':
+            case 'n':
+                return readLiteral((char) c);
+            case -1:
+                throw syntaxError("Unexpected end of document");
+            default:
+                if (c == '-' || (c >= '0' && c <= '9')) {
+                    return readNumber((char) c);
+                }
+                throw syntaxError("Unexpected character '" + (char) c + "'");
+        }
+    }
+
+    // MODIFIES: this
+    // EFFECTS: reads the rest of a string whose opening quote has been read,
+    // and returns it unescaped; returns null if skipping a value
+    private String readString() throws IOException {
+        if (skipping) {
+            skipString();
+            return null;
+        }
+        text.setLength(0);
+        while (true) {
+            int start = pos;
+            while (pos < limit) {
+                char c = buf[pos++];
+                if (c == '"') {
+                    text.append(buf, start, pos - 1 - start);
+                    return text.toString();
+                } else if (c == '\\') {
+                    text.append(buf, start, pos - 1 - start);
+                    text.append(readEscape());
+                    start = pos;
+                } else if (c < ' ') {
+                    throw syntaxError("Unescaped control character in string");
+                }
+            }
+            text.append(buf, start, pos - start);
+            if (!fill()) {
+                throw syntaxError("Unterminated string");
+            }
+        }
+    }
+
+    // MODIFIES: this
+    // EFFECTS: reads the rest of a string whose opening quote has been read
+    // without building it
+    private void skipString() throws IOException {
+        while (true) {
+            while (pos < limit) {
+                char c = buf[pos++];
+                if (c == '"') {
+                    return;
+                } else if (c == '\\') {
+                    readEscape();
+                } else if (c < ' ') {
+                    throw syntaxError("Unescaped control character in string");
+                }
+            }
+            if (!fill()) {
+                throw syntaxError("Unterminated string");
+            }
+        }
+    }
+
+    // MODIFIES: this
+    // EFFECTS: reads the rest of an escape sequence whose backslash has been
+    // read, and returns the character it stands for
+    private char readEscape() throws IOException {
+        int c = next();
+        switch (c) {
+            case '"':
+            case '\\':
+            case '/':
+                return (char) c;
+            case 'b':
+                return '\b';
+            case 'f':
+                return '\f';
+            case 'n':
+                return '\n';
+            case 'r':
+                return '\r';
+            case 't':
+                return '\t';
+            case 'u':
+                int code = 0;
+                for (int i = 0; i < 4; i++) {
+                    int digit = Character.digit(next(), 16);
+                    if (digit < 0) {
+                        throw syntaxError("Bad \\u escape");
+                    }
+                    code = code * 16 + digit;
+                }
+                return (char) code;
+            default:
+                throw syntaxError("Bad escape");
+        }
+    }
+
+    // MODIFIES: this
+    // EFFECTS: reads the rest of true, false or null, whose first character
+    // has been read
+    private Token readLiteral(char first) throws IOException {
+        text.setLength(0);
+        text.append(first);
+        while (peekChar() >= 'a' && peekChar() <= 'z') {
+            text.append((char) next());
+        }
+        String word = text.toString();
+        if (word.equals("null")) {
+            value = null;
+            return Token.NULL;
+        }
+        if (word.equals("true") || word.equals("false")) {
+            value = word;
+            return Token.BOOLEAN;
+        }
+        throw syntaxError("Unexpected literal " + word);
+    }
+
+    // MODIFIES: this
+    // EFFECTS: reads the rest of a number, whose first character has been
+    // read
+    private Token readNumber(char first) throws IOException {
+        text.setLength(0);
+        text.append(first);
+        for (int c = peekChar(); (c >= '0' && c <= '9') || c == '.' || c == 'e' || c == 'E' || c == '+' || c == '-';
+                c = peekChar()) {
+            text.append((char) next());
+        }
+        value = text.toString();
+        if (!NUMBER.matcher(value).matches()) {
+            throw syntaxError("Malformed number " + value);
+        }
+        return Token.NUMBER;
+    }
+
+    // EFFECTS: returns s as a number
+    private BigDecimal toNumber(String s) {
+        try {
+            return new BigDecimal(s.trim());
+        } catch (NumberFormatException e) {
+            throw syntaxError("Expected a number but was \"" + s + "\"");
+        }
+    }
+
+    // MODIFIES: this
+    // EFFECTS: enters a new object or array scope
+    private void push(int scope) {
+        if (depth == stack.length) {
+            stack = Arrays.copyOf(stack, depth * 2);
+        }
+        stack[depth++] = scope;
+    }
+
+    // MODIFIES: this
+    // EFFECTS: reads and returns the next character that is not whitespace,
+    // or -1 at the end of the source
+    private int nextNonWhitespace() throws IOException {
+        int c = next();
+        while (c == ' ' || c == '\n' || c == '\r' || c == '\t') {
+            c = next();
+        }
+        return c;
+    }
+
+    // MODIFIES: this
+    // EFFECTS: reads and returns the next character, or -1 at the end of the
+    // source
+    private int next() throws IOException {
+        if (pos == limit && !fill()) {
+            return -1;
+        }
+        return buf[pos++];
+    }
+
+    // MODIFIES: this
+    // EFFECTS: returns the next character without reading it, or -1 at the
+    // end of the source
+    private int peekChar() throws IOException {
+        if (pos == limit && !fill()) {
+            return -1;
+        }
+        return buf[pos];
+    }
+
+    // MODIFIES: this
+    // EFFECTS: refills the buffer from the source; returns false at the end
+    // of the source
+    private boolean fill() throws IOException {
+        if (countBytes) {
+            bytePosition();
+            counted = 0;
+        }
+        offset += limit;
+        pos = 0;
+        limit = 0;
+        int n = in.read(buf, 0, buf.length);
+        if (n <= 0) {
+            return false;
+        }
+        limit = n;
+        return true;
+    }
+
+    // EFFECTS: returns an exception reporting a syntax error at the current
+    // position
+    private JSONException syntaxError(String message) {
+        return new JSONException(message + " at character " + (offset + pos));
+    }
+}
@@ -4,98 +4,669 @@ import model.Album;
 import model.Photo;
 import model.ProblemType;
 import model.Reflection;
+import model.ReflectionLoader;
 import model.PhotoLibrary;
+import metrics.LatencyHistogram;
+import metrics.Metrics;
 
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
 import java.nio.file.Paths;
 import java.time.LocalDate;
-import java.util.stream.Stream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 import org.json.*;
 
-// Represents a reader that reads PhotoLibrary from JSON data stored in file
+// Represents a reader that reads PhotoLibrary from JSON data stored in file.
+// A large file is memory-mapped and read as a stream of tokens decoded
+// straight from the mapping, building each Photo, Reflection and Album as
+// soon as its JSON has been read, so neither the file nor a whole-document
+// tree is ever copied onto the heap. A small file is read into one buffer
+// first; see MappedFile.
+//
+// On a machine with several processors, large files have their photos
+// parsed concurrently: the file is split into runs of photos, see
+// JsonSplitter, which are parsed on the common ForkJoinPool and added to the
+// library in file order. A file that cannot be split that way is parsed on
+// one thread, which also reports any syntax error.
+//
+// Files in the binary library format, told apart by their magic header, are
+// handed to a BinaryReader, so callers read either format the same way.
+//
+// Albums in files of format version 2 refer to library photos by id, and
+// resolve to the same Photo objects the library holds. Older files embed a
+// copy of each album photo; those copies are replaced by the library photos
+// they were made from, so that old files are migrated on load.
 public class JsonReader {
+    private static final LatencyHistogram READ_TIME = Metrics.getInstance().histogram("json.read");
+    // files smaller than this are parsed on one thread
+    private static final long PARALLEL_THRESHOLD = 4L << 20;
+    private static final long MIN_CHUNK = 256L << 10;
+    private static final int CHUNKS_PER_THREAD = 4;
+    private static final int LOAD_BUFFER = 1 << 12;
+
     private String source;
+    // the size of the runs of photos parsed concurrently, or 0 to choose it
+    // from the file size and the number of processors
+    private final long chunkBytes;
+    // true if reflections are left in the file until first needed
+    private boolean lazyReflections;
+    // the journal checkpoint recorded in the last file read, or 0
+    private long checkpoint;
 
     // EFFECTS: constructs reader to read from source file
     public JsonReader(String source) {
+        this(source, 0);
+    }
+
+    // REQUIRES: chunkBytes >= 0
+    // EFFECTS: constructs reader to read from source file, parsing its
+    // photos concurrently in runs of about chunkBytes bytes, whatever the
+    // size of the file; 0 chooses as JsonReader(source) does
+    JsonReader(String source, long chunkBytes) {
         this.source = source;
+        this.chunkBytes = chunkBytes;
     }
 
-    // EFFECTS: reads PhotoLibrary from file and returns it;
-    // throws IOException if an error occurs reading data from file
+    // MODIFIES: this
+    // EFFECTS: sets whether JSON files are read with their reflections left
+    // in the file until each is first needed; see Photo.setStoredReflection.
+    // The file stays in memory while any photo read from it can still load
+    // its reflection, and libraries read this way search comments only once
+    // the first search has loaded every reflection.
+    public void setLazyReflections(boolean lazy) {
+        lazyReflections = lazy;
+    }
+
+    // EFFECTS: reads PhotoLibrary from file, in JSON or the binary format,
+    // and returns it; throws IOException if an error occurs reading data
+    // from file
     public PhotoLibrary read() throws IOException {
-        String jsonData = readFile(source);
-        JSONObject jsonObject = new JSONObject(jsonData);
-        return parsePhotoLibrary(jsonObject);
+        checkpoint = 0;
+        try (MappedFile file = new MappedFile(Paths.get(source))) {
+            if (file.startsWith(BinaryWriter.MAGIC)) {
+                BinaryReader binary = new BinaryReader(source);
+                PhotoLibrary lib = binary.read(file);
+                checkpoint = binary.getCheckpoint();
+                return lib;
+            }
+            long t = READ_TIME.start();
+            try {
+                List<JsonSplitter.Member> members = null;
+                long chunk = chunkSize(file.size());
+                if (chunk > 0) {
+                    members = JsonSplitter.split(file, chunk);
+                }
+                if (members != null) {
+                    try {
+                        return parseConcurrently(file, members);
+                    } catch (IOException | RuntimeException e) {
+                        // parsed again below, which reports the error where
+                        // it occurs in the whole file
+                        checkpoint = 0;
+                    }
+                }
+                Payloads payloads = payloads(file, 0);
+                try (JsonPullParser json = parser(file.newReader(), false, payloads)) {
+                    return parsePhotoLibrary(json, payloads);
+                }
+            } finally {
+                READ_TIME.stop(t);
+            }
+        }
     }
 
-    // EFFECTS: reads source file as string and returns it
-    private String readFile(String source) throws IOException {
-        StringBuilder contentBuilder = new StringBuilder();
+    // EFFECTS: returns the journal checkpoint recorded in the file last read,
+    // or 0 if it had none; see Journal
+    long getCheckpoint() {
+        return checkpoint;
+    }
 
-        try (Stream<String> stream = Files.lines(Paths.get(source), StandardCharsets.UTF_8)) {
-            stream.forEach(s -> contentBuilder.append(s));
+    // EFFECTS: returns the size of the chunks of photos to parse
+    // concurrently in a file of the given size, or 0 to parse the file on
+    // this thread
+    private long chunkSize(long fileSize) {
+        if (chunkBytes > 0) {
+            return chunkBytes;
         }
+        int parallelism = ForkJoinPool.getCommonPoolParallelism();
+        if (parallelism < 2 || fileSize < PARALLEL_THRESHOLD) {
+            return 0;
+        }
+        return Math.max(MIN_CHUNK, fileSize / (CHUNKS_PER_THREAD * parallelism));
+    }
 
-        return contentBuilder.toString();
+    // EFFECTS: returns where reflections parsed from the text of file that
+    // starts at byte from are left, or null if they are not left in the file
+    private Payloads payloads(MappedFile file, long from) {
+        return lazyReflections ? new Payloads(file, from) : null;
+    }
+
+    // EFFECTS: returns a parser of text, which holds array elements if
+    // elements, counting its bytes if reflections are left in payloads
+    private static JsonPullParser parser(Reader text, boolean elements, Payloads payloads) {
+        JsonPullParser json = new JsonPullParser(text, elements);
+        if (payloads != null) {
+            json.countBytes();
+        }
+        return json;
     }
 
-    // EFFECTS: parses PhotoLibrary from JSON object and returns it
-    private PhotoLibrary parsePhotoLibrary(JSONObject jsonObject) {
-        String name = jsonObject.getString("name");
-        PhotoLibrary lib = new PhotoLibrary(name);
-        addPhotos(lib, jsonObject);
-        addAlbums(lib, jsonObject);
-        return lib;
+    // EFFECTS: parses PhotoLibrary from the JSON document and returns it,
+    // leaving reflections in payloads unless it is null
+    private PhotoLibrary parsePhotoLibrary(JsonPullParser json, Payloads payloads) throws IOException {
+        Contents contents = new Contents(payloads);
+        json.beginObject();
+        while (json.hasNext()) {
+            contents.parseMember(json.nextName(), json);
+        }
+        json.endObject();
+        checkpoint = contents.checkpoint;
+        return contents.build();
     }
 
-    // MODIFIES: lib
-    // EFFECTS: parses Photos from JSON object and adds them to PhotoLibrary
-    private void addPhotos(PhotoLibrary lib, JSONObject root) {
-        JSONArray arr = root.optJSONArray("photos");
+    // EFFECTS: parses PhotoLibrary from the members of the top-level object
+    // of file and returns it. Each run of photos is parsed in its own task on
+    // the common ForkJoinPool, and the runs are added to the library in file
+    // order, so the library is the same as parsed on one thread.
+    private PhotoLibrary parseConcurrently(MappedFile file, List<JsonSplitter.Member> members)
+            throws IOException {
+        List<ForkJoinTask<Contents>> tasks = new ArrayList<>();
+        for (JsonSplitter.Member m : members) {
+            if (m.chunks != null) {
+                for (long[] chunk : m.chunks) {
+                    Payloads payloads = payloads(file, chunk[0]);
+                    tasks.add(ForkJoinPool.commonPool().submit(() -> parseChunk(file, chunk[0], chunk[1], payloads)));
+                }
+            }
+        }
+        Contents contents = new Contents(payloads(file, 0));
+        int next = 0;
+        for (JsonSplitter.Member m : members) {
+            if (m.chunks != null) {
+                for (int i = 0; i < m.chunks.size(); i++) {
+                    contents.addAll(tasks.get(next++).join());
+                }
+                continue;
+            }
+            Payloads payloads = payloads(file, m.from);
+            try (JsonPullParser json = parser(file.newReader(m.from, m.to), false, payloads)) {
+                contents.parseMember(m.name, json, payloads);
+                if (json.peek() != JsonPullParser.Token.END_DOCUMENT) {
+                    throw new JSONException("Unexpected text after member " + m.name);
+                }
+            }
+        }
+        checkpoint = contents.checkpoint;
+        return contents.build();
+    }
 
-        for (int i = 0; i < arr.length(); i++) {
-            JSONObject nextPhoto = arr.getJSONObject(i);
-            lib.addPhoto(parsePhoto(nextPhoto));
+    // EFFECTS: parses the photos in the bytes of file from from up to but not
+    // including to, which are elements of the photos array, and returns them,
+    // leaving their reflections in payloads unless it is null
+    private static Contents parseChunk(MappedFile file, long from, long to, Payloads payloads)
+            throws IOException {
+        Contents chunk = new Contents(payloads);
+        try (JsonPullParser json = parser(file.newReader(from, to), true, payloads)) {
+            while (json.hasNext()) {
+                chunk.photos.add(parsePhoto(json, chunk.byId, payloads));
+            }
         }
+        return chunk;
     }
 
-    // MODIFIES: lib
-    // EFFECTS: parses Albums from JSON object and adds them to PhotoLibrary
-    private void addAlbums(PhotoLibrary lib, JSONObject root) {
-        JSONArray arr = root.optJSONArray("albums");
-        if (arr == null) {
+    // The members of a library file, as they are parsed. Members may come in
+    // any order, so photos and albums are collected first and added to the
+    // library once its name is known, and album members are resolved once
+    // every photo id is known.
+    private static class Contents {
+        // where reflections are left, or null if they are read in full
+        private final Payloads payloads;
+        private String name;
+        private int version = 1;
+        private long checkpoint;
+        private final List<Photo> photos = new ArrayList<>();
+        private final Map<Integer, Photo> byId = new HashMap<>();
+        private final List<PendingAlbum> albums = new ArrayList<>();
+
+        Contents(Payloads payloads) {
+            this.payloads = payloads;
+        }
+
+        // MODIFIES: this
+        // EFFECTS: parses the value of the member with the given name
+        void parseMember(String member, JsonPullParser json) throws IOException {
+            parseMember(member, json, payloads);
+        }
+
+        // MODIFIES: this
+        // EFFECTS: parses the value of the member with the given name,
+        // leaving reflections in the given payloads unless it is null
+        void parseMember(String member, JsonPullParser json, Payloads payloads) throws IOException {
+            switch (member) {
+                case "name":
+                    name = json.nextString();
+                    break;
+                case "version":
+                    version = json.nextInt();
+                    break;
+                case "checkpoint":
+                    checkpoint = Long.parseLong(json.nextString());
+                    break;
+                case "photos":
+                    addPhotos(photos, byId, json, payloads);
+                    break;
+                case "albums":
+                    addAlbums(albums, json);
+                    break;
+                default:
+                    json.skipValue();
+            }
+        }
+
+        // MODIFIES: this
+        // EFFECTS: adds the photos parsed into chunk after those parsed so
+        // far; throws JSONException if a photo id was already used
+        void addAll(Contents chunk) {
+            photos.addAll(chunk.photos);
+            for (Map.Entry<Integer, Photo> e : chunk.byId.entrySet()) {
+                if (byId.putIfAbsent(e.getKey(), e.getValue()) != null) {
+                    throw new JSONException("Duplicate photo id " + e.getKey());
+                }
+            }
+        }
+
+        // EFFECTS: returns the library made of the members parsed
+        PhotoLibrary build() {
+            if (version > JsonWriter.FORMAT_VERSION) {
+                throw new JSONException("Unsupported library format version " + version);
+            }
+            PhotoLibrary lib = new PhotoLibrary(required(name, "name"));
+            lib.deferCommentIndex();
+            for (Photo p : photos) {
+                lib.addPhoto(p);
+            }
+            PhotoMatcher matcher = version < 2 ? new PhotoMatcher(photos) : null;
+            for (PendingAlbum a : albums) {
+                lib.addAlbum(a.resolve(byId, matcher));
+            }
+            if (payloads == null) {
+                lib.rebuildCommentIndex();
+            }
+            return lib;
+        }
+    }
+
+    // MODIFIES: photos, byId
+    // EFFECTS: parses an array of Photos and adds them to photos, and those
+    // with an id to byId, leaving their reflections in payloads unless it is
+    // null; a null array adds nothing
+    private static void addPhotos(List<Photo> photos, Map<Integer, Photo> byId, JsonPullParser json,
+            Payloads payloads) throws IOException {
+        if (json.peek() == JsonPullParser.Token.NULL) {
+            json.nextNull();
             return;
         }
-        for (int i = 0; i < arr.length(); i++) {
-            JSONObject nextAlbum = arr.getJSONObject(i);
-            addAlbum(lib, nextAlbum);
+        json.beginArray();
+        while (json.hasNext()) {
+            photos.add(parsePhoto(json, byId, payloads));
         }
+        json.endArray();
     }
 
-    // MODIFIES: pl
-    // EFFECTS: parses a single album from JSON object and adds it to PhotoLibrary
-    private void addAlbum(PhotoLibrary pl, JSONObject jsonObject) {
-        String albumName = jsonObject.getString("albumName");
-        Album album = new Album(albumName);
+    // MODIFIES: albums
+    // EFFECTS: parses an array of Albums and adds them to albums; a null
+    // array adds nothing
+    private static void addAlbums(List<PendingAlbum> albums, JsonPullParser json) throws IOException {
+        if (json.peek() != JsonPullParser.Token.BEGIN_ARRAY) {
+            json.skipValue();
+            return;
+        }
+        json.beginArray();
+        while (json.hasNext()) {
+            albums.add(parseAlbum(json));
+        }
+        json.endArray();
+    }
+
+    // EFFECTS: parses a single album, whose photos are ids of library photos
+    // or embedded photos, and returns it with its photos still unresolved
+    private static PendingAlbum parseAlbum(JsonPullParser json) throws IOException {
+        PendingAlbum album = new PendingAlbum();
+        json.beginObject();
+        while (json.hasNext()) {
+            switch (json.nextName()) {
+                case "albumName":
+                    album.name = json.nextString();
+                    break;
+                case "photos":
+                    addMembers(album.members, json);
+                    break;
+                default:
+                    json.skipValue();
+            }
+        }
+        json.endObject();
+        required(album.name, "albumName");
+        return album;
+    }
+
+    // MODIFIES: members
+    // EFFECTS: parses an array of album members, adding an Integer for each
+    // photo id and a Photo for each embedded photo; a null array adds
+    // nothing
+    static void addMembers(List<Object> members, JsonPullParser json) throws IOException {
+        if (json.peek() == JsonPullParser.Token.NULL) {
+            json.nextNull();
+            return;
+        }
+        json.beginArray();
+        while (json.hasNext()) {
+            JsonPullParser.Token t = json.peek();
+            if (t == JsonPullParser.Token.NUMBER) {
+                members.add(json.nextInt());
+            } else if (t == JsonPullParser.Token.NULL) {
+                json.nextNull();
+            } else {
+                members.add(parsePhoto(json, null));
+            }
+        }
+        json.endArray();
+    }
 
-        JSONArray photosArray = jsonObject.optJSONArray("photos");
-        if (photosArray != null) {
-            for (Object obj : photosArray) {
-                JSONObject nextPhoto = (JSONObject) obj;
-                Photo p = parsePhoto(nextPhoto);
+    // MODIFIES: byId
+    // EFFECTS: parses a single photo, with its reflection if it has one, and
+    // returns it; if it has an id and byId is not null, records it there
+    static Photo parsePhoto(JsonPullParser json, Map<Integer, Photo> byId) throws IOException {
+        return parsePhoto(json, byId, null);
+    }
+
+    // MODIFIES: byId
+    // EFFECTS: parses a single photo as parsePhoto(json, byId) does, but
+    // leaves its reflection in payloads, if it has one and payloads is not
+    // null
+    private static Photo parsePhoto(JsonPullParser json, Map<Integer, Photo> byId, Payloads payloads)
+            throws IOException {
+        Integer id = null;
+        String photoname = null;
+        String camera = null;
+        Integer iso = null;
+        Double aperture = null;
+        Double shutterspeed = null;
+        String date = null;
+        Reflection r = null;
+        StoredReflection stored = null;
+        json.beginObject();
+        while (json.hasNext()) {
+            switch (json.nextName()) {
+                case "id":
+                    id = json.nextInt();
+                    break;
+                case "photoname":
+                    photoname = json.nextString();
+                    break;
+                case "camera":
+                    camera = json.nextString();
+                    break;
+                case "iso":
+                    iso = json.nextInt();
+                    break;
+                case "aperture":
+                    aperture = json.nextDouble();
+                    break;
+                case "shutterspeed":
+                    shutterspeed = json.nextDouble();
+                    break;
+                case "date":
+                    date = json.nextString();
+                    break;
+                case "reflection":
+                    if (payloads != null && json.peek() == JsonPullParser.Token.BEGIN_OBJECT) {
+                        stored = payloads.skipReflection(json);
+                        r = null;
+                    } else {
+                        r = parseReflection(json);
+                        stored = null;
+                    }
+                    break;
+                default:
+                    json.skipValue();
+            }
+        }
+        json.endObject();
+        Photo p = new Photo(required(photoname, "photoname"), required(camera, "camera"), required(iso, "iso"),
+                required(aperture, "aperture"), required(shutterspeed, "shutterspeed"),
+                LocalDate.parse(required(date, "date")));
+        if (r != null) {
+            p.setReflection(r);
+        } else if (stored != null) {
+            p.setStoredReflection(stored.score, stored.problems, stored);
+        }
+        if (id != null && byId != null && byId.putIfAbsent(id, p) != null) {
+            throw new JSONException("Duplicate photo id " + id);
+        }
+        return p;
+    }
+
+    // EFFECTS: parses a Reflection object and returns it; returns null if
+    // the value is not an object
+    private static Reflection parseReflection(JsonPullParser json) throws IOException {
+        if (json.peek() != JsonPullParser.Token.BEGIN_OBJECT) {
+            json.skipValue();
+            return null;
+        }
+        Reflection r = new Reflection();
+        json.beginObject();
+        while (json.hasNext()) {
+            switch (json.nextName()) {
+                case "score":
+                    r.setScore(optInt(json, 0));
+                    break;
+                case "problems":
+                    for (String name : optStrings(json)) {
+                        r.addProblemType(ProblemType.valueOf(name));
+                    }
+                    break;
+                case "comments":
+                    for (String c : optStrings(json)) {
+                        r.addComment(c);
+                    }
+                    break;
+                default:
+                    json.skipValue();
+            }
+        }
+        json.endObject();
+        return r;
+    }
+
+    // EFFECTS: parses an int, or returns fallback if the value is not one
+    private static int optInt(JsonPullParser json, int fallback) throws IOException {
+        JsonPullParser.Token t = json.peek();
+        if (t != JsonPullParser.Token.NUMBER && t != JsonPullParser.Token.STRING) {
+            json.skipValue();
+            return fallback;
+        }
+        try {
+            return new BigDecimal(json.nextString().trim()).intValue();
+        } catch (NumberFormatException e) {
+            return fallback;
+        }
+    }
+
+    // EFFECTS: parses an array and returns the text of its scalar elements,
+    // leaving out nulls; returns an empty list if the value is not an array
+    private static List<String> optStrings(JsonPullParser json) throws IOException {
+        List<String> result = new ArrayList<>();
+        if (json.peek() != JsonPullParser.Token.BEGIN_ARRAY) {
+            json.skipValue();
+            return result;
+        }
+        json.beginArray();
+        while (json.hasNext()) {
+            JsonPullParser.Token t = json.peek();
+            if (t == JsonPullParser.Token.BEGIN_OBJECT || t == JsonPullParser.Token.BEGIN_ARRAY) {
+                json.skipValue();
+                continue;
+            }
+            String s = json.nextScalar();
+            if (s != null) {
+                result.add(s);
+            }
+        }
+        json.endArray();
+        return result;
+    }
+
+    // EFFECTS: returns value; throws JSONException if the member with the
+    // given key was missing
+    static <T> T required(T value, String key) {
+        if (value == null) {
+            throw new JSONException("JSONObject[\"" + key + "\"] not found.");
+        }
+        return value;
+    }
+
+    // Where the reflections of photos are left when they are read lazily: a
+    // mapped library file, and the offset in it of the text being parsed.
+    private static class Payloads {
+        private final MappedFile file;
+        private final long base;
+
+        Payloads(MappedFile file, long base) {
+            this.file = file;
+            this.base = base;
+        }
+
+        // REQUIRES: json counts bytes and is about to read a reflection object
+        // EFFECTS: reads the score and problems of the reflection, skipping
+        // its comments, and returns it to be loaded from the file when needed
+        StoredReflection skipReflection(JsonPullParser json) throws IOException {
+            long from = base + json.bytePosition() - 1;
+            int score = 0;
+            int problems = 0;
+            json.beginObject();
+            while (json.hasNext()) {
+                switch (json.nextName()) {
+                    case "score":
+                        score = optInt(json, 0);
+                        break;
+                    case "problems":
+                        for (String name : optStrings(json)) {
+                            problems |= ProblemType.valueOf(name).bit();
+                        }
+                        break;
+                    default:
+                        json.skipValue();
+                }
+            }
+            json.endObject();
+            return new StoredReflection(file, from, (int) (base + json.bytePosition() - from), score, problems);
+        }
+    }
+
+    // A reflection left in a mapped library file, with its score and
+    // problems.
+    private static class StoredReflection implements ReflectionLoader {
+        private final MappedFile file;
+        private final long from;
+        private final int length;
+        private final int score;
+        private final int problems;
+
+        StoredReflection(MappedFile file, long from, int length, int score, int problems) {
+            this.file = file;
+            this.from = from;
+            this.length = length;
+            this.score = score;
+            this.problems = problems;
+        }
+
+        @Override
+        public Reflection load() {
+            Reader text = file.newReader(from, from + length);
+            try (JsonPullParser json = new JsonPullParser(text, false, Math.min(length, LOAD_BUFFER))) {
+                return parseReflection(json);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    // An album as read from the file, before its photo ids are resolved.
+    private static class PendingAlbum {
+        private String name;
+        // Integer photo ids and embedded Photos, in album order
+        private final List<Object> members = new ArrayList<>();
+
+        // EFFECTS: returns the album with each id replaced by the library
+        // photo it names. Embedded photos are kept as they are unless
+        // matcher is given, in which case each is replaced by the matching
+        // library photo, if there is one.
+        Album resolve(Map<Integer, Photo> byId, PhotoMatcher matcher) {
+            Album album = new Album(name);
+            for (Object m : members) {
+                Photo p;
+                if (m instanceof Integer) {
+                    p = byId.get(m);
+                    if (p == null) {
+                        throw new JSONException("Album " + name + " refers to unknown photo id " + m);
+                    }
+                } else {
+                    p = matcher == null ? (Photo) m : matcher.match((Photo) m, album);
+                }
                 album.addPhoto(p);
             }
+            return album;
         }
+    }
+
+    // Finds the library photo an embedded album copy was made from, when
+    // migrating files written before albums referred to photos by id. A copy
+    // matches a library photo with the same name, camera, settings and date.
+    private static class PhotoMatcher {
+        private final List<Photo> photos;
+        private Map<List<Object>, List<Photo>> byKey;
 
-        pl.addAlbum(album);
+        PhotoMatcher(List<Photo> photos) {
+            this.photos = photos;
+        }
+
+        // EFFECTS: returns the first library photo matching copy that is not
+        // already in album, or copy itself if there is none
+        Photo match(Photo copy, Album album) {
+            if (byKey == null) {
+                byKey = new HashMap<>();
+                for (Photo p : photos) {
+                    byKey.computeIfAbsent(key(p), k -> new ArrayList<>(1)).add(p);
+                }
+            }
+            for (Photo p : byKey.getOrDefault(key(copy), Collections.emptyList())) {
+                if (!album.containsPhoto(p)) {
+                    return p;
+                }
+            }
+            return copy;
+        }
+
+        // EFFECTS: returns the fields that identify p
+        private static List<Object> key(Photo p) {
+            return Arrays.asList(p.getPhotoname(), p.getCamera(), p.getIso(), p.getAperture(),
+                    p.getShutterspeed(), p.getDate());
+        }
     }
 
     // EFFECTS: builds and returns a Photo from the given JSON
-    private Photo parsePhoto(JSONObject j) {
+    static Photo parsePhoto(JSONObject j) {
         String photoname = j.getString("photoname");
         String camera = j.getString("camera");
         int iso = j.getInt("iso");
@@ -111,7 +682,7 @@ public class JsonReader {
     }
 
     // EFFECTS: parses a Reflection object from JSON
-    private Reflection parseReflection(JSONObject rj) {
+    static Reflection parseReflection(JSONObject rj) {
         Reflection r = new Reflection();
         r.setScore(rj.optInt("score", 0));
         addProblemsFromJson(r, rj.optJSONArray("problems"));
@@ -121,7 +692,7 @@ public class JsonReader {
 
     // MODIFIES: r
     // EFFECTS: adds ProblemTypes from JSONArray to reflection
-    private void addProblemsFromJson(Reflection r, JSONArray probs) {
+    private static void addProblemsFromJson(Reflection r, JSONArray probs) {
         if (probs == null) {
             return;
         }
@@ -137,7 +708,7 @@ public class JsonReader {
 
     // MODIFIES: r
     // EFFECTS: adds comments from JSONArray to reflection
-    private void addCommentsFromJson(Reflection r, JSONArray comms) {
+    private static void addCommentsFromJson(Reflection r, JSONArray comms) {
         if (comms == null) {
             return;
         }
@@ -0,0 +1,255 @@
+package persistence;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+// Splits a library JSON file into pieces that can be parsed independently,
+// so that JsonReader can parse the photos concurrently. The file is scanned
+// byte by byte without decoding it: the bytes of JSON punctuation never
+// occur inside the UTF-8 encoding of other characters, so tracking strings
+// and nesting is enough to find where each value starts and ends.
+//
+// The scan checks only the shape of the top-level object. Everything inside
+// its values is left to the parsers of the pieces to check.
+class JsonSplitter {
+    private final MappedFile file;
+    private final long chunkBytes;
+    private int nextSegment;
+    private ByteBuffer segment = ByteBuffer.allocate(0);
+    private long segmentStart;
+    // a byte read by peek, or -2 if there is none
+    private int peeked = -2;
+
+    // A member of the top-level object, with the byte range of its value.
+    static class Member {
+        final String name;
+        final long from;
+        final long to;
+        // for a photos array, the byte ranges of runs of its elements
+        // without the commas between runs, in order; null otherwise
+        final List<long[]> chunks;
+
+        Member(String name, long from, long to, List<long[]> chunks) {
+            this.name = name;
+            this.from = from;
+            this.to = to;
+            this.chunks = chunks;
+        }
+    }
+
+    private JsonSplitter(MappedFile file, long chunkBytes) {
+        this.file = file;
+        this.chunkBytes = chunkBytes;
+    }
+
+    // REQUIRES: chunkBytes > 0
+    // EFFECTS: returns the members of the top-level object of file, in file
+    // order. The elements of a photos array are split into runs of about
+    // chunkBytes bytes each. Returns null if the file is not an object of
+    // members, or a member name has escapes, or a photos array has an empty
+    // element, leaving the error to be reported by parsing the whole file.
+    static List<Member> split(MappedFile file, long chunkBytes) {
+        return new JsonSplitter(file, chunkBytes).splitObject();
+    }
+
+    // EFFECTS: scans the top-level object; see split
+    private List<Member> splitObject() {
+        List<Member> members = new ArrayList<>();
+        if (nextNonWhitespace() != '{') {
+            return null;
+        }
+        int c = nextNonWhitespace();
+        if (c == '}') {
+            return nextNonWhitespace() == -1 ? members : null;
+        }
+        while (true) {
+            String name = c == '"' ? readName() : null;
+            if (name == null || nextNonWhitespace() != ':') {
+                return null;
+            }
+            skipWhitespace();
+            long from = position();
+            List<long[]> chunks = null;
+            if (name.equals("photos") && peek() == '[') {
+                next();
+                chunks = splitElements();
+                if (chunks == null) {
+                    return null;
+                }
+            } else if (!skipValue()) {
+                return null;
+            }
+            members.add(new Member(name, from, position(), chunks));
+            c = nextNonWhitespace();
+            if (c == '}') {
+                return nextNonWhitespace() == -1 ? members : null;
+            }
+            if (c != ',') {
+                return null;
+            }
+            c = nextNonWhitespace();
+        }
+    }
+
+    // EFFECTS: scans the rest of an array whose '[' has been read, up to and
+    // including its ']', and returns the runs of its elements; returns null
+    // if the array is not closed or has an empty element
+    private List<long[]> splitElements() {
+        List<long[]> chunks = new ArrayList<>();
+        long start = position();
+        boolean empty = true;
+        boolean first = true;
+        int depth = 0;
+        while (true) {
+            long at = position();
+            int c = next();
+            if (c == -1) {
+                return null;
+            } else if (c == '"') {
+                if (!skipString()) {
+                    return null;
+                }
+            } else if (c == '{' || c == '[') {
+                depth++;
+            } else if ((c == '}' || c == ']') && depth > 0) {
+                depth--;
+            } else if (depth == 0 && (c == ',' || c == ']')) {
+                if (empty && (c == ',' || !first)) {
+                    return null;
+                }
+                first = false;
+                if (c == ']') {
+                    if (!empty) {
+                        chunks.add(new long[] {start, at});
+                    }
+                    return chunks;
+                }
+                empty = true;
+                if (at - start >= chunkBytes) {
+                    chunks.add(new long[] {start, at});
+                    start = at + 1;
+                }
+                continue;
+            } else if (depth == 0 && c == '}') {
+                return null;
+            }
+            if (c != ' ' && c != '\n' && c != '\r' && c != '\t') {
+                empty = false;
+            }
+        }
+    }
+
+    // EFFECTS: skips the value starting at the next byte, including
+    // everything nested in it; returns false if it does not end before the
+    // end of the file
+    private boolean skipValue() {
+        int c = peek();
+        if (c == '"') {
+            next();
+            return skipString();
+        }
+        if (c != '{' && c != '[') {
+            while (c != -1 && c != ',' && c != '}' && c != ']' && c != ' ' && c != '\n' && c != '\r'
+                    && c != '\t') {
+                next();
+                c = peek();
+            }
+            return true;
+        }
+        int depth = 0;
+        do {
+            c = next();
+            if (c == -1) {
+                return false;
+            } else if (c == '"') {
+                if (!skipString()) {
+                    return false;
+                }
+            } else if (c == '{' || c == '[') {
+                depth++;
+            } else if (c == '}' || c == ']') {
+                depth--;
+            }
+        } while (depth > 0);
+        return true;
+    }
+
+    // EFFECTS: skips the rest of a string whose opening quote has been read;
+    // returns false if it is not closed
+    private boolean skipString() {
+        while (true) {
+            int c = next();
+            if (c == '"') {
+                return true;
+            } else if (c == '\\') {
+                next();
+            } else if (c == -1) {
+                return false;
+            }
+        }
+    }
+
+    // EFFECTS: reads the rest of a member name whose opening quote has been
+    // read, and returns it; returns null if it has escapes or is not closed
+    private String readName() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        while (true) {
+            int c = next();
+            if (c == '"') {
+                return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+            } else if (c == '\\' || c == -1) {
+                return null;
+            }
+            bytes.write(c);
+        }
+    }
+
+    // EFFECTS: skips whitespace, then reads and returns the next byte, or -1
+    // at the end of the file
+    private int nextNonWhitespace() {
+        skipWhitespace();
+        return next();
+    }
+
+    // EFFECTS: skips the whitespace at the current position
+    private void skipWhitespace() {
+        for (int c = peek(); c == ' ' || c == '\n' || c == '\r' || c == '\t'; c = peek()) {
+            next();
+        }
+    }
+
+    // EFFECTS: returns the offset in the file of the next byte
+    private long position() {
+        return segmentStart + segment.position() - (peeked >= 0 ? 1 : 0);
+    }
+
+    // EFFECTS: returns the next byte without reading it, or -1 at the end of
+    // the file
+    private int peek() {
+        if (peeked == -2) {
+            peeked = next();
+        }
+        return peeked;
+    }
+
+    // EFFECTS: reads and returns the next byte, or -1 at the end of the
+    // file
+    private int next() {
+        if (peeked != -2) {
+            int c = peeked;
+            peeked = -2;
+            return c;
+        }
+        while (!segment.hasRemaining()) {
+            if (nextSegment == file.numSegments()) {
+                return -1;
+            }
+            segmentStart += segment.limit();
+            segment = file.segment(nextSegment++);
+        }
+        return segment.get() & 0xff;
+    }
+}
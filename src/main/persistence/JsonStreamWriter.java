@@ -0,0 +1,296 @@
+package persistence;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+import org.json.JSONException;
+
+// Writes JSON text straight to an output stream as UTF-8, one token at a
+// time, so documents of any size are written without building them in
+// memory first. Text is encoded into one reusable buffer that is handed to
+// the stream whenever it fills. Commas, and the line breaks and indentation
+// of pretty-printed output, are added between tokens as needed. Strings are
+// escaped and numbers formatted the way org.json writes them.
+class JsonStreamWriter implements Closeable {
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final OutputStream out;
+    private final int indent;
+    private final byte[] buf = new byte[BUFFER_SIZE];
+    private int pos;
+
+    // for each open object or array, whether it has a member yet
+    private boolean[] nonEmpty = new boolean[32];
+    private int depth;
+    // true after a member name, until its value is written
+    private boolean afterName;
+
+    // EFFECTS: constructs a writer to out that indents nested members by
+    // indent spaces on lines of their own, or writes everything on one line
+    // if indent is 0
+    JsonStreamWriter(OutputStream out, int indent) {
+        this.out = out;
+        this.indent = indent;
+    }
+
+    // MODIFIES: this
+    // EFFECTS: writes the start of an object
+    JsonStreamWriter beginObject() throws IOException {
+        return open('{');
+    }
+
+    // MODIFIES: this
+    // EFFECTS: writes the end of the current object
+    JsonStreamWriter endObject() throws IOException {
+        return close('}');
+    }
+
+    // MODIFIES: this
+    // EFFECTS: writes the start of an array
+    JsonStreamWriter beginArray() throws IOException {
+        return open('[');
+    }
+
+    // MODIFIES: this
+    // EFFECTS: writes the end of the current array
+    JsonStreamWriter endArray() throws IOException {
+        return close(']');
+    }
+
+    // MODIFIES: this
+    // EFFECTS: writes the name of the next member of the current object
+    JsonStreamWriter name(String name) throws IOException {
+        beforeValue();
+        writeString(name);
+        writeByte(':');
+        if (indent > 0) {
+            writeByte(' ');
+        }
+        afterName = true;
+        return this;
+    }
+
+    // MODIFIES: this
+    // EFFECTS: writes a string, or null if s is null
+    JsonStreamWriter value(String s) throws IOException {
+        beforeValue();
+        if (s == null) {
+            writeAscii("null");
+        } else {
+            writeString(s);
+        }
+        return this;
+    }
+
+    // MODIFIES: this
+    // EFFECTS: writes an integer
+    JsonStreamWriter value(long n) throws IOException {
+        beforeValue();
+        writeAscii(Long.toString(n));
+        return this;
+    }
+
+    // MODIFIES: this
+    // EFFECTS: writes a number, without trailing zeros in its fraction;
+    // throws JSONException if d is not finite
+    JsonStreamWriter value(double d) throws IOException {
+        if (Double.isNaN(d) || Double.isInfinite(d)) {
+            throw new JSONException("JSON does not allow non-finite numbers.");
+        }
+        beforeValue();
+        String s = Double.toString(d);
+        if (s.indexOf('.') > 0 && s.indexOf('e') < 0 && s.indexOf('E') < 0) {
+            int end = s.length();
+            while (s.charAt(end - 1) == '0') {
+                end--;
+            }
+            if (s.charAt(end - 1) == '.') {
+                end--;
+            }
+            s = s.substring(0, end);
+        }
+        writeAscii(s);
+        return this;
+    }
+
+    // MODIFIES: this
+    // EFFECTS: writes true or false
+    JsonStreamWriter value(boolean b) throws IOException {
+        beforeValue();
+        writeAscii(b ? "true" : "false");
+        return this;
+    }
+
+    // MODIFIES: this
+    // EFFECTS: hands everything written so far to the stream and flushes it
+    void flush() throws IOException {
+        drain();
+        out.flush();
+    }
+
+    // MODIFIES: this
+    // EFFECTS: flushes and closes the stream
+    @Override
+    public void close() throws IOException {
+        try {
+            drain();
+        } finally {
+            out.close();
+        }
+    }
+
+    // MODIFIES: this
+    // EFFECTS: writes the opening bracket c and enters its scope
+    private JsonStreamWriter open(char c) throws IOException {
+        beforeValue();
+        writeByte(c);
+        if (depth == nonEmpty.length) {
+            nonEmpty = Arrays.copyOf(nonEmpty, depth * 2);
+        }
+        nonEmpty[depth++] = false;
+        return this;
+    }
+
+    // MODIFIES: this
+    // EFFECTS: leaves the current scope and writes the closing bracket c
+    private JsonStreamWriter close(char c) throws IOException {
+        depth--;
+        if (nonEmpty[depth]) {
+            newline();
+        }
+        writeByte(c);
+        return this;
+    }
+
+    // MODIFIES: this
+    // EFFECTS: writes whatever must come before the next name or value: a
+    // comma after an earlier member and, when pretty-printing, a new line
+    private void beforeValue() throws IOException {
+        if (afterName) {
+            afterName = false;
+            return;
+        }
+        if (depth == 0) {
+            return;
+        }
+        if (nonEmpty[depth - 1]) {
+            writeByte(',');
+        }
+        nonEmpty[depth - 1] = true;
+        newline();
+    }
+
+    // MODIFIES: this
+    // EFFECTS: starts a new line indented for the current depth, when
+    // pretty-printing
+    private void newline() throws IOException {
+        if (indent == 0) {
+            return;
+        }
+        writeByte('\n');
+        for (int i = depth * indent; i > 0; i--) {
+            writeByte(' ');
+        }
+    }
+
+    // MODIFIES: this
+    // EFFECTS: writes s quoted and escaped as org.json does
+    private void writeString(String s) throws IOException {
+        writeByte('"');
+        char prev = 0;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '"':
+                case '\\':
+                    writeByte('\\');
+                    writeByte(c);
+                    break;
+                case '/':
+                    if (prev == '<') {
+                        writeByte('\\');
+                    }
+                    writeByte(c);
+                    break;
+                case '\b':
+                    writeAscii("\\b");
+                    break;
+                case '\t':
+                    writeAscii("\\t");
+                    break;
+                case '\n':
+                    writeAscii("\\n");
+                    break;
+                case '\f':
+                    writeAscii("\\f");
+                    break;
+                case '\r':
+                    writeAscii("\\r");
+                    break;
+                default:
+                    if (c < 0x20 || (c >= 0x80 && c < 0xa0) || (c >= 0x2000 && c < 0x2100)) {
+                        writeAscii("\\u");
+                        for (int shift = 12; shift >= 0; shift -= 4) {
+                            writeByte(Character.forDigit((c >> shift) & 0xf, 16));
+                        }
+                    } else {
+                        i = writeChar(s, i, c);
+                    }
+            }
+            prev = c;
+        }
+        writeByte('"');
+    }
+
+    // MODIFIES: this
+    // EFFECTS: writes character c, at index i of s, as UTF-8; returns the
+    // index of the last char used, which is i + 1 for a surrogate pair
+    private int writeChar(String s, int i, char c) throws IOException {
+        if (c < 0x80) {
+            writeByte(c);
+        } else if (c < 0x800) {
+            writeByte(0xc0 | (c >> 6));
+            writeByte(0x80 | (c & 0x3f));
+        } else if (Character.isHighSurrogate(c) && i + 1 < s.length() && Character.isLowSurrogate(s.charAt(i + 1))) {
+            int cp = Character.toCodePoint(c, s.charAt(i + 1));
+            writeByte(0xf0 | (cp >> 18));
+            writeByte(0x80 | ((cp >> 12) & 0x3f));
+            writeByte(0x80 | ((cp >> 6) & 0x3f));
+            writeByte(0x80 | (cp & 0x3f));
+            return i + 1;
+        } else if (Character.isSurrogate(c)) {
+            writeByte('?');
+        } else {
+            writeByte(0xe0 | (c >> 12));
+            writeByte(0x80 | ((c >> 6) & 0x3f));
+            writeByte(0x80 | (c & 0x3f));
+        }
+        return i;
+    }
+
+    // MODIFIES: this
+    // EFFECTS: writes s, which holds only ASCII characters
+    private void writeAscii(String s) throws IOException {
+        for (int i = 0; i < s.length(); i++) {
+            writeByte(s.charAt(i));
+        }
+    }
+
+    // MODIFIES: this
+    // EFFECTS: writes one byte into the buffer, draining it first if full
+    private void writeByte(int b) throws IOException {
+        if (pos == buf.length) {
+            drain();
+        }
+        buf[pos++] = (byte) b;
+    }
+
+    // MODIFIES: this
+    // EFFECTS: hands the buffered bytes to the stream
+    private void drain() throws IOException {
+        out.write(buf, 0, pos);
+        pos = 0;
+    }
+}
@@ -1,45 +1,222 @@
 package persistence;
 
+import metrics.LatencyHistogram;
+import metrics.Metrics;
+import model.Album;
+import model.Photo;
 import model.PhotoLibrary;
-import org.json.JSONObject;
-
+import model.ProblemType;
+import model.Reflection;
 
 import java.io.*;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
 
-// Represents a writer that writes JSON representation of PhotoLibrary to file
+// Represents a writer that writes JSON representation of PhotoLibrary to file.
+// The library is walked photo by photo and written straight to a buffered
+// file stream as UTF-8, so no JSON tree or whole-document string is built.
+//
+// Each library photo is written once, with an id; albums list the ids of
+// their photos. An album photo that is not in the library is embedded in the
+// album instead.
+//
+// The destination is replaced atomically: the library is written to a
+// temporary file, which close forces to disk and renames over the
+// destination, so a crash while saving never leaves a half-written file.
 public class JsonWriter {
+    // the format version written; see JsonReader for the versions it reads
+    public static final int FORMAT_VERSION = 2;
+    private static final LatencyHistogram WRITE_TIME = Metrics.getInstance().histogram("json.write");
     private static final int TAB = 4;
-    private PrintWriter writer;
+    private JsonStreamWriter writer;
+    private AtomicFile file;
     private String destination;
+    private final boolean pretty;
+    private boolean complete;
 
-    // EFFECTS: constructs writer to write to destination file
+    // EFFECTS: constructs writer to write to destination file, pretty-printed
     public JsonWriter(String destination) {
+        this(destination, true);
+    }
+
+    // EFFECTS: constructs writer to write to destination file; if pretty,
+    // nested members are indented on lines of their own, otherwise the
+    // whole library is written on one line
+    public JsonWriter(String destination, boolean pretty) {
         this.destination = destination;
+        this.pretty = pretty;
     }
 
     // MODIFIES: this
-    // EFFECTS: opens writer; throws FileNotFoundException if destination file cannot
-    // be opened for writing
-    public void open() throws FileNotFoundException {
-        writer = new PrintWriter(new File(destination));
+    // EFFECTS: opens writer on a temporary file next to the destination;
+    // throws IOException if it cannot be created
+    public void open() throws IOException {
+        try {
+            file = new AtomicFile(Paths.get(destination));
+        } catch (InvalidPathException e) {
+            throw new FileNotFoundException(e.getMessage());
+        }
+        writer = new JsonStreamWriter(file.openStream(), pretty ? TAB : 0);
+        complete = false;
     }
 
     // MODIFIES: this
-    // EFFECTS: writes JSON representation of PhotoLibrary to file
-    public void write(PhotoLibrary wr) {
-        JSONObject json = wr.toJson();
-        saveToFile(json.toString(TAB));
+    // EFFECTS: writes JSON representation of PhotoLibrary to file; throws
+    // IOException if it cannot be written
+    public void write(PhotoLibrary wr) throws IOException {
+        write(wr, 0);
     }
 
     // MODIFIES: this
-    // EFFECTS: closes writer
-    public void close() {
-        writer.close();
+    // EFFECTS: writes JSON representation of PhotoLibrary to file, recording
+    // the given journal checkpoint unless it is 0 (see Journal); throws
+    // IOException if it cannot be written
+    void write(PhotoLibrary wr, long checkpoint) throws IOException {
+        long t = WRITE_TIME.start();
+        try {
+            writeLibrary(writer, wr, checkpoint);
+            writer.flush();
+            complete = true;
+        } finally {
+            WRITE_TIME.stop(t);
+        }
     }
 
-    // MODIFIES: this
-    // EFFECTS: writes string to file
-    private void saveToFile(String json) {
-        writer.print(json);
+    // EFFECTS: returns the bytes of the JSON representation of lib,
+    // pretty-printed if pretty and recording checkpoint as write does, so
+    // the file itself can be written later on another thread; throws
+    // IOException if it cannot be serialised
+    static byte[] toBytes(PhotoLibrary lib, long checkpoint, boolean pretty) throws IOException {
+        long t = WRITE_TIME.start();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (JsonStreamWriter w = new JsonStreamWriter(bytes, pretty ? TAB : 0)) {
+            writeLibrary(w, lib, checkpoint);
+        } finally {
+            WRITE_TIME.stop(t);
+        }
+        return bytes.toByteArray();
+    }
+
+    // MODIFIES: writer
+    // EFFECTS: writes lib with its photos and albums, recording checkpoint
+    // unless it is 0
+    private static void writeLibrary(JsonStreamWriter writer, PhotoLibrary lib, long checkpoint)
+            throws IOException {
+        Map<Integer, Integer> fileIds = new HashMap<>();
+        writer.beginObject();
+        writer.name("version").value(FORMAT_VERSION);
+        if (checkpoint != 0) {
+            writer.name("checkpoint").value(checkpoint);
+        }
+        writer.name("name").value(lib.getLibName());
+        writer.name("photos").beginArray();
+        for (Photo p : lib.getPhotos()) {
+            int id = fileIds.size();
+            fileIds.put(p.getId(), id);
+            writePhoto(writer, p, id);
+        }
+        writer.endArray();
+        writer.name("albums").beginArray();
+        for (Album a : lib.getAlbums()) {
+            writeAlbum(writer, a, fileIds);
+        }
+        writer.endArray();
+        writer.endObject();
+    }
+
+    // MODIFIES: this, filesystem
+    // EFFECTS: closes writer and, if a library was written in full, forces
+    // it to disk and renames it over the destination; otherwise leaves the
+    // destination as it was. Throws IOException if the file cannot be
+    // committed.
+    public void close() throws IOException {
+        AtomicFile written = file;
+        file = null;
+        if (!complete) {
+            written.discard();
+            return;
+        }
+        try {
+            written.commit();
+        } catch (IOException e) {
+            written.discard();
+            throw e;
+        }
+    }
+
+    // MODIFIES: writer
+    // EFFECTS: writes an album with the file id of each of its photos, taken
+    // from fileIds, embedding any photo that has none
+    private static void writeAlbum(JsonStreamWriter writer, Album a, Map<Integer, Integer> fileIds)
+            throws IOException {
+        writer.beginObject();
+        writer.name("albumName").value(a.getAlbumName());
+        writer.name("photos").beginArray();
+        for (Photo p : a.getPhotos()) {
+            Integer id = fileIds.get(p.getId());
+            if (id != null) {
+                writer.value(id);
+            } else {
+                writePhoto(writer, p, -1);
+            }
+        }
+        writer.endArray();
+        writer.endObject();
+    }
+
+    // MODIFIES: writer
+    // EFFECTS: writes a photo with the given file id, unless it is -1, and
+    // its reflection, if it has one; like Photo.toJson, fields that are null
+    // are left out
+    static void writePhoto(JsonStreamWriter writer, Photo p, long id) throws IOException {
+        writer.beginObject();
+        if (id >= 0) {
+            writer.name("id").value(id);
+        }
+        writeIfPresent(writer, "photoname", p.getPhotoname());
+        writeIfPresent(writer, "camera", p.getCamera());
+        writer.name("iso").value(p.getIso());
+        writer.name("aperture").value(p.getAperture());
+        writer.name("shutterspeed").value(p.getShutterspeed());
+        if (p.getDate() != null) {
+            writer.name("date").value(p.getDate().toString());
+        }
+        if (p.getReflect() != null) {
+            writer.name("reflect").value(p.getReflect());
+        }
+        Reflection r = p.getReflection();
+        if (r != null) {
+            writer.name("reflection");
+            writeReflection(writer, r);
+        }
+        writer.endObject();
+    }
+
+    // MODIFIES: writer
+    // EFFECTS: writes a reflection with its score, problems and comments
+    private static void writeReflection(JsonStreamWriter writer, Reflection r) throws IOException {
+        writer.beginObject();
+        writer.name("score").value(r.getScore());
+        writer.name("problems").beginArray();
+        for (int m = r.getProblemMask(); m != 0; m &= m - 1) {
+            writer.value(ProblemType.ofOrdinal(Integer.numberOfTrailingZeros(m)).name());
+        }
+        writer.endArray();
+        writer.name("comments").beginArray();
+        for (String c : r.getComments()) {
+            writer.value(c);
+        }
+        writer.endArray();
+        writer.endObject();
+    }
+
+    // MODIFIES: writer
+    // EFFECTS: writes the member key: value unless value is null
+    private static void writeIfPresent(JsonStreamWriter writer, String key, String value) throws IOException {
+        if (value != null) {
+            writer.name(key).value(value);
+        }
     }
 }
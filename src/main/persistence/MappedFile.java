@@ -0,0 +1,227 @@
+package persistence;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.MalformedInputException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+// A file mapped read-only into memory, so it can be decoded straight from
+// the page cache without first being copied onto the heap. A mapping holds
+// at most 2 GB, so the file is mapped in consecutive segments of at most
+// segmentSize bytes. Segments end on a UTF-8 character boundary, so text
+// can be decoded one segment at a time.
+//
+// The mappings are released when they are garbage collected, not when the
+// file is closed, and on Windows the file cannot be replaced until then. A
+// file smaller than mapThreshold bytes is therefore read onto the heap and
+// closed at once instead; only large files are mapped.
+public class MappedFile implements Closeable {
+    static final long SEGMENT_SIZE = 1L << 30;
+    static final long MAP_THRESHOLD = 16L << 20;
+
+    private final FileChannel channel;
+    private final List<ByteBuffer> segments = new ArrayList<>();
+    // the offset in the file of each segment
+    private final List<Long> starts = new ArrayList<>();
+    private final long size;
+
+    // EFFECTS: maps the file at path in segments of up to SEGMENT_SIZE
+    // bytes, or reads it if it is smaller than MAP_THRESHOLD; throws
+    // IOException if it cannot be opened, read or mapped
+    public MappedFile(Path path) throws IOException {
+        this(path, SEGMENT_SIZE, MAP_THRESHOLD);
+    }
+
+    // REQUIRES: segmentSize >= 4
+    // EFFECTS: maps the file at path in segments of up to segmentSize bytes,
+    // or reads it if it is smaller than mapThreshold; throws IOException if
+    // it cannot be opened, read or mapped
+    MappedFile(Path path, long segmentSize, long mapThreshold) throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            size = channel.size();
+            ByteBuffer heap = null;
+            if (size < mapThreshold) {
+                heap = readAll();
+                channel.close();
+            }
+            long start = 0;
+            while (start < size) {
+                long len = Math.min(segmentSize, size - start);
+                ByteBuffer segment = heap != null ? heap.slice((int) start, (int) len)
+                        : channel.map(FileChannel.MapMode.READ_ONLY, start, len);
+                if (start + len < size) {
+                    segment.limit(characterBoundary(segment));
+                }
+                segments.add(segment);
+                starts.add(start);
+                start += segment.limit();
+            }
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    // REQUIRES: size() < 2 GB
+    // EFFECTS: reads the whole file into a heap buffer; throws IOException
+    // if it cannot be read
+    private ByteBuffer readAll() throws IOException {
+        ByteBuffer heap = ByteBuffer.allocate((int) size);
+        while (heap.hasRemaining()) {
+            if (channel.read(heap) == -1) {
+                throw new EOFException("File shrank while being read");
+            }
+        }
+        heap.clear();
+        return heap;
+    }
+
+    // EFFECTS: returns the length of the file in bytes
+    public long size() {
+        return size;
+    }
+
+    // EFFECTS: returns the number of segments
+    public int numSegments() {
+        return segments.size();
+    }
+
+    // REQUIRES: 0 <= i < numSegments()
+    // EFFECTS: returns a new read-only buffer over segment i, positioned at
+    // its start
+    public ByteBuffer segment(int i) {
+        return segments.get(i).duplicate();
+    }
+
+    // EFFECTS: returns true if the file starts with the given bytes
+    public boolean startsWith(byte[] prefix) {
+        if (segments.isEmpty() || segments.get(0).limit() < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (segments.get(0).get(i) != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // EFFECTS: returns a reader decoding the file as UTF-8 directly from the
+    // mapped segments; malformed input is reported as an IOException
+    public Reader newReader() {
+        List<ByteBuffer> parts = new ArrayList<>();
+        for (int i = 0; i < segments.size(); i++) {
+            parts.add(segment(i));
+        }
+        return new SegmentReader(parts);
+    }
+
+    // REQUIRES: 0 <= from <= to <= size(), and neither from nor to falls
+    // inside a UTF-8 character
+    // EFFECTS: returns a reader decoding the bytes of the file from from up
+    // to but not including to, as newReader() does
+    public Reader newReader(long from, long to) {
+        List<ByteBuffer> parts = new ArrayList<>();
+        for (int i = 0; i < segments.size() && from < to; i++) {
+            long start = starts.get(i);
+            long end = start + segments.get(i).limit();
+            if (from < end) {
+                ByteBuffer part = segment(i);
+                part.position((int) (from - start));
+                part.limit((int) (Math.min(to, end) - start));
+                parts.add(part);
+                from = Math.min(to, end);
+            }
+        }
+        return new SegmentReader(parts);
+    }
+
+    // MODIFIES: this
+    // EFFECTS: closes the file; the segments stay readable, and mapped ones
+    // stay mapped until they are garbage collected
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    // EFFECTS: returns the length of the longest prefix of segment that does
+    // not end inside a UTF-8 sequence; bytes that are not valid UTF-8 are
+    // left to the decoder to report
+    private static int characterBoundary(ByteBuffer segment) {
+        int end = segment.limit();
+        for (int back = 1; back <= 3 && back <= end; back++) {
+            int b = segment.get(end - back) & 0xff;
+            if ((b & 0xc0) != 0x80) {
+                int len = b >= 0xf0 ? 4 : b >= 0xe0 ? 3 : b >= 0xc0 ? 2 : 1;
+                return len > back ? end - back : end;
+            }
+        }
+        return end;
+    }
+
+    // Decodes parts of the segments one after another, straight into the
+    // caller's character array.
+    private static class SegmentReader extends Reader {
+        private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder();
+        private final List<ByteBuffer> parts;
+        private int next;
+        private ByteBuffer current;
+        // the second half of a surrogate pair that did not fit last time
+        private final CharBuffer spill = CharBuffer.allocate(2);
+
+        SegmentReader(List<ByteBuffer> parts) {
+            this.parts = parts;
+            spill.flip();
+        }
+
+        @Override
+        public int read(char[] cbuf, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            CharBuffer out = CharBuffer.wrap(cbuf, off, len);
+            if (spill.hasRemaining()) {
+                out.put(spill.get());
+            }
+            while (out.position() == off) {
+                if (current == null || !current.hasRemaining()) {
+                    if (next == parts.size()) {
+                        return -1;
+                    }
+                    current = parts.get(next++);
+                }
+                CoderResult r = decoder.decode(current, out, next == parts.size());
+                if (r.isError()) {
+                    r.throwException();
+                } else if (r.isOverflow() && out.position() == off) {
+                    // room for one char, but the next is a surrogate pair
+                    spill.clear();
+                    decoder.decode(current, spill, next == parts.size());
+                    spill.flip();
+                    out.put(spill.get());
+                } else if (r.isUnderflow() && current.hasRemaining()) {
+                    throw new MalformedInputException(current.remaining());
+                }
+            }
+            return out.position() - off;
+        }
+
+        @Override
+        public void close() {
+            current = null;
+            next = parts.size();
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package persistence;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import metrics.Counter;
+import metrics.LatencyHistogram;
+import metrics.Metrics;
+
+// Runs saves one at a time on a background thread, so callers such as the
+// Swing event thread never wait for the disk. Saves are queued by key, the
+// file they write: a save submitted while an earlier one for the same key
+// is still waiting to start replaces it, so a burst of saves becomes one
+// write. Each caller gets a future that completes when the save it asked
+// for, or the one that replaced it, has been written.
+public class SaveQueue {
+    private static final LatencyHistogram SAVE_TIME = Metrics.getInstance().histogram("save.write");
+    private static final Counter COALESCED = Metrics.getInstance().counter("save.coalesced");
+
+    // One save, as run on the background thread.
+    public interface Task {
+        // MODIFIES: filesystem
+        // EFFECTS: performs the save; throws IOException if it fails
+        void run() throws IOException;
+
+        // EFFECTS: releases what the save holds when it is replaced by a later
+        // one before it runs
+        default void discard() {
+        }
+    }
+
+    private final ExecutorService thread = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "save-writer");
+        t.setDaemon(true);
+        return t;
+    });
+    private final Map<String, Pending> waiting = new HashMap<>();
+
+    // MODIFIES: this
+    // EFFECTS: queues task as the save for key, replacing any save for key
+    // that has not started yet, and returns the future of the save
+    public synchronized CompletableFuture<Void> submit(String key, Task task) {
+        Pending p = waiting.get(key);
+        if (p != null) {
+            p.task.discard();
+            p.task = task;
+            COALESCED.inc();
+            return p.future;
+        }
+        Pending fresh = new Pending(task);
+        waiting.put(key, fresh);
+        thread.execute(() -> run(key, fresh));
+        return fresh.future;
+    }
+
+    // EFFECTS: waits until every save submitted so far has finished
+    public void flush() throws IOException {
+        try {
+            thread.submit(() -> { }).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for saves", e);
+        } catch (ExecutionException e) {
+            throw new IOException(e.getCause());
+        }
+    }
+
+    // EFFECTS: waits for future and returns; rethrows the IOException it
+    // failed with
+    public static void await(CompletableFuture<Void> future) throws IOException {
+        try {
+            future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for a save", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+
+    // MODIFIES: this
+    // EFFECTS: runs the save waiting under key, on the background thread
+    private void run(String key, Pending p) {
+        Task task;
+        synchronized (this) {
+            waiting.remove(key, p);
+            task = p.task;
+        }
+        long t = SAVE_TIME.start();
+        try {
+            task.run();
+            p.future.complete(null);
+        } catch (IOException | RuntimeException e) {
+            p.future.completeExceptionally(e);
+        } finally {
+            SAVE_TIME.stop(t);
+        }
+    }
+
+    // A save waiting to start, and the future of everyone waiting on it.
+    private static class Pending {
+        private Task task;
+        private final CompletableFuture<Void> future = new CompletableFuture<>();
+
+        Pending(Task task) {
+            this.task = task;
+        }
+    }
+}
@@ -0,0 +1,566 @@
+package persistence;
+
+import metrics.Counter;
+import metrics.LatencyHistogram;
+import metrics.Metrics;
+import model.Album;
+import model.ChangeTracker;
+import model.Photo;
+import model.PhotoLibrary;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+import org.json.JSONException;
+
+// Keeps snapshots of a library as a directory of shard files listed by a
+// manifest, so that a save rewrites only the shards holding what changed.
+// Photos are kept in photo shards of up to shardSize photos each, in library
+// order; each album is kept in a shard of its own, listing its photos by
+// key. A key identifies a photo across shards and is stored with it, so that
+// album shards stay valid while photo shards are rewritten. The manifest
+// holds the library name, the journal checkpoint and, in order, the file of
+// every shard.
+//
+// The store follows the library it last read or saved with a ChangeTracker.
+// Preparing a save serialises the changed shards in parallel; running it
+// writes them, in parallel, to files with new names, then replaces the
+// manifest in one step and deletes the files it no longer lists. A crash
+// before the manifest is replaced leaves the previous snapshot whole. A save
+// that fails or is replaced before it runs leaves its shards to the next.
+//
+// Until the first save, a store whose manifest does not exist yet reads the
+// legacy single-file JSON snapshot given, if any, so an existing library is
+// migrated on its first save.
+public class ShardedStore implements SnapshotStore {
+    public static final int FORMAT_VERSION = 1;
+    public static final int DEFAULT_SHARD_SIZE = 1024;
+    private static final String MANIFEST = "manifest.json";
+    private static final Pattern SHARD_FILE = Pattern.compile("[pa]\\d+-\\d+\\.json");
+    private static final LatencyHistogram PREPARE_TIME = Metrics.getInstance().histogram("shards.prepare");
+    private static final Counter WRITTEN = Metrics.getInstance().counter("shards.written");
+
+    private final Path dir;
+    private final String legacy;
+    private final int shardSize;
+    private final ChangeTracker changes = new ChangeTracker();
+
+    // the library followed, and whether its next save must rewrite every shard
+    private PhotoLibrary lib;
+    private boolean full = true;
+    private long checkpoint;
+    private long generation;
+    private int nextKey;
+    private final Map<Photo, Integer> keys = new HashMap<>();
+    private final Map<Photo, PhotoShard> shardOf = new HashMap<>();
+    private final List<PhotoShard> shards = new ArrayList<>();
+    private final Map<Album, String> albumFiles = new HashMap<>();
+    // shard files prepared by a save but not yet known to be on disk
+    private final Map<String, byte[]> unwritten = new ConcurrentHashMap<>();
+
+    // EFFECTS: constructs a store in the given directory, with no legacy
+    // snapshot and the default shard size
+    public ShardedStore(String dir) {
+        this(dir, null, DEFAULT_SHARD_SIZE);
+    }
+
+    // REQUIRES: shardSize >= 1
+    // EFFECTS: constructs a store in the given directory, holding up to
+    // shardSize photos per shard, that reads the legacy JSON snapshot file,
+    // unless it is null, while it has no manifest
+    public ShardedStore(String dir, String legacy, int shardSize) {
+        this.dir = Paths.get(dir);
+        this.legacy = legacy;
+        this.shardSize = shardSize;
+    }
+
+    @Override
+    public boolean exists() {
+        return Files.exists(dir.resolve(MANIFEST)) || (legacy != null && Files.exists(Paths.get(legacy)));
+    }
+
+    @Override
+    public long getCheckpoint() {
+        return checkpoint;
+    }
+
+    @Override
+    public String getKey() {
+        return dir.toString();
+    }
+
+    // EFFECTS: returns the number of photo shards of the library followed, as
+    // of the last read or save
+    public synchronized int numPhotoShards() {
+        return shards.size();
+    }
+
+    // MODIFIES: this
+    // EFFECTS: reads the library from the manifest and its shards, or from
+    // the legacy snapshot if there is no manifest, and starts following it;
+    // throws IOException if a file cannot be read, or JSONException if a
+    // shard refers to a photo key no shard holds
+    @Override
+    public synchronized PhotoLibrary read() throws IOException {
+        if (!Files.exists(dir.resolve(MANIFEST))) {
+            JsonReader reader = new JsonReader(legacy);
+            PhotoLibrary loaded = reader.read();
+            checkpoint = reader.getCheckpoint();
+            follow(loaded);
+            return loaded;
+        }
+        reset();
+        Manifest m = new Manifest();
+        parse(dir.resolve(MANIFEST), json -> m.parse(json));
+        if (m.version > FORMAT_VERSION) {
+            throw new JSONException("Unsupported shard manifest version " + m.version);
+        }
+        PhotoLibrary loaded = new PhotoLibrary(JsonReader.required(m.name, "name"));
+        loaded.deferCommentIndex();
+        Map<Integer, Photo> byKey = new HashMap<>();
+        for (String file : m.photoFiles) {
+            PhotoShard s = new PhotoShard();
+            s.file = file;
+            readPhotoShard(s, byKey);
+            for (Photo p : s.members) {
+                loaded.addPhoto(p);
+            }
+            shards.add(s);
+        }
+        for (int i = 0; i < m.albumNames.size(); i++) {
+            Album a = readAlbumShard(m.albumNames.get(i), m.albumFiles.get(i), byKey);
+            albumFiles.put(a, m.albumFiles.get(i));
+            loaded.addAlbum(a);
+        }
+        loaded.rebuildCommentIndex();
+        checkpoint = m.checkpoint;
+        generation = m.generation;
+        follow(loaded);
+        full = false;
+        return loaded;
+    }
+
+    // MODIFIES: this
+    // EFFECTS: serialises the shards of lib that changed since the last save,
+    // or every shard if lib is not the library followed, and returns the
+    // save that writes them and a manifest recording checkpoint; lib is
+    // followed from now on
+    @Override
+    public synchronized SaveQueue.Task prepare(PhotoLibrary lib, long checkpoint) throws IOException {
+        long t = PREPARE_TIME.start();
+        if (lib != this.lib) {
+            follow(lib);
+        }
+        this.checkpoint = checkpoint;
+        generation++;
+        Set<PhotoShard> dirtyShards = new LinkedHashSet<>();
+        Set<Album> dirtyAlbums = new LinkedHashSet<>();
+        if (full) {
+            reset();
+            for (Photo p : lib.getPhotos()) {
+                place(p, dirtyShards);
+            }
+            dirtyAlbums.addAll(lib.getAlbums());
+            full = false;
+        } else {
+            collectChanges(dirtyShards, dirtyAlbums);
+        }
+        changes.clear();
+        shards.removeIf(s -> s.members.isEmpty());
+        dirtyShards.removeIf(s -> s.members.isEmpty());
+        Set<Album> live = new HashSet<>(lib.getAlbums());
+        dirtyAlbums.retainAll(live);
+        albumFiles.keySet().retainAll(live);
+        for (Album a : live) {
+            if (!albumFiles.containsKey(a)) {
+                dirtyAlbums.add(a);
+            }
+        }
+
+        Map<String, byte[]> data = serialise(dirtyShards, dirtyAlbums);
+        Set<String> listed = new HashSet<>();
+        for (PhotoShard s : shards) {
+            listed.add(s.file);
+        }
+        listed.addAll(albumFiles.values());
+        unwritten.keySet().retainAll(listed);
+        unwritten.putAll(data);
+        byte[] manifest = manifest(lib);
+        PREPARE_TIME.stop(t);
+        return () -> commit(manifest, listed);
+    }
+
+    // MODIFIES: this
+    // EFFECTS: adds to dirtyShards and dirtyAlbums the shards holding the
+    // changes recorded since the last save, placing new photos in shards and
+    // forgetting removed photos and albums
+    private void collectChanges(Set<PhotoShard> dirtyShards, Set<Album> dirtyAlbums) {
+        for (Photo p : changes.getRemovedPhotos()) {
+            PhotoShard s = shardOf.remove(p);
+            if (s != null) {
+                s.members.removeIf(m -> m == p);
+                dirtyShards.add(s);
+            }
+            keys.remove(p);
+            // albums still holding p must embed it instead of its key
+            dirtyAlbums.addAll(lib.getAlbumsContaining(p));
+        }
+        for (Photo p : changes.getChangedPhotos()) {
+            PhotoShard s = shardOf.get(p);
+            if (s == null) {
+                place(p, dirtyShards);
+                // albums that embedded p while it was out of the library
+                dirtyAlbums.addAll(lib.getAlbumsContaining(p));
+            } else {
+                dirtyShards.add(s);
+            }
+        }
+        for (Album a : changes.getRemovedAlbums()) {
+            albumFiles.remove(a);
+        }
+        dirtyAlbums.addAll(changes.getChangedAlbums());
+    }
+
+    // MODIFIES: this
+    // EFFECTS: gives photo p a key and appends it to the last photo shard,
+    // starting a new one if that is full, and adds the shard to dirtyShards
+    private void place(Photo p, Set<PhotoShard> dirtyShards) {
+        PhotoShard last = shards.isEmpty() ? null : shards.get(shards.size() - 1);
+        if (last == null || last.members.size() >= shardSize) {
+            last = new PhotoShard();
+            shards.add(last);
+        }
+        last.members.add(p);
+        shardOf.put(p, last);
+        keys.put(p, nextKey++);
+        dirtyShards.add(last);
+    }
+
+    // MODIFIES: this
+    // EFFECTS: names a new file for each dirty shard, and returns the
+    // contents of those files by name, serialised in parallel
+    private Map<String, byte[]> serialise(Set<PhotoShard> dirtyShards, Set<Album> dirtyAlbums) throws IOException {
+        int n = 0;
+        for (PhotoShard s : dirtyShards) {
+            s.file = "p" + generation + "-" + n++ + ".json";
+        }
+        Map<Album, String> named = new LinkedHashMap<>();
+        for (Album a : dirtyAlbums) {
+            String file = "a" + generation + "-" + n++ + ".json";
+            named.put(a, file);
+            albumFiles.put(a, file);
+        }
+        Map<String, byte[]> data = new ConcurrentHashMap<>();
+        try {
+            dirtyShards.parallelStream().forEach(s -> data.put(s.file, serialise(w -> writePhotoShard(w, s))));
+            named.entrySet().parallelStream().forEach(
+                    e -> data.put(e.getValue(), serialise(w -> writeAlbumShard(w, e.getKey()))));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return data;
+    }
+
+    // EFFECTS: returns the bytes body writes
+    private static byte[] serialise(Body body) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (JsonStreamWriter w = new JsonStreamWriter(bytes, 0)) {
+            body.write(w);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    // MODIFIES: w
+    // EFFECTS: writes the photos of shard s, each with its key
+    private void writePhotoShard(JsonStreamWriter w, PhotoShard s) throws IOException {
+        w.beginObject();
+        w.name("photos").beginArray();
+        for (Photo p : s.members) {
+            JsonWriter.writePhoto(w, p, keys.get(p));
+        }
+        w.endArray();
+        w.endObject();
+    }
+
+    // MODIFIES: w
+    // EFFECTS: writes the photos of album a by key, embedding any photo that
+    // is not in the library
+    private void writeAlbumShard(JsonStreamWriter w, Album a) throws IOException {
+        w.beginObject();
+        w.name("photos").beginArray();
+        for (Photo p : a.getPhotos()) {
+            Integer key = keys.get(p);
+            if (key != null) {
+                w.value(key);
+            } else {
+                JsonWriter.writePhoto(w, p, -1);
+            }
+        }
+        w.endArray();
+        w.endObject();
+    }
+
+    // EFFECTS: returns the manifest of lib as it is now
+    private byte[] manifest(PhotoLibrary lib) {
+        return serialise(w -> {
+            w.beginObject();
+            w.name("version").value(FORMAT_VERSION);
+            w.name("checkpoint").value(checkpoint);
+            w.name("generation").value(generation);
+            w.name("name").value(lib.getLibName());
+            w.name("photos").beginArray();
+            for (PhotoShard s : shards) {
+                w.value(s.file);
+            }
+            w.endArray();
+            w.name("albums").beginArray();
+            for (Album a : lib.getAlbums()) {
+                w.beginObject();
+                w.name("albumName").value(a.getAlbumName());
+                w.name("file").value(albumFiles.get(a));
+                w.endObject();
+            }
+            w.endArray();
+            w.endObject();
+        });
+    }
+
+    // MODIFIES: filesystem
+    // EFFECTS: writes, in parallel, every listed shard file not yet on disk,
+    // then replaces the manifest and deletes the shard files it does not
+    // list; throws IOException if a file cannot be written
+    private void commit(byte[] manifest, Set<String> listed) throws IOException {
+        Map<String, byte[]> pending = new HashMap<>();
+        for (String file : listed) {
+            byte[] data = unwritten.get(file);
+            if (data != null) {
+                pending.put(file, data);
+            }
+        }
+        Files.createDirectories(dir);
+        try {
+            pending.entrySet().parallelStream().forEach(e -> {
+                try {
+                    AtomicFile.write(dir.resolve(e.getKey()), e.getValue());
+                } catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        AtomicFile.write(dir.resolve(MANIFEST), manifest);
+        for (Map.Entry<String, byte[]> e : pending.entrySet()) {
+            unwritten.remove(e.getKey(), e.getValue());
+        }
+        WRITTEN.add(pending.size());
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+            for (Path f : files) {
+                String name = f.getFileName().toString();
+                if (SHARD_FILE.matcher(name).matches() && !listed.contains(name) && !unwritten.containsKey(name)) {
+                    Files.deleteIfExists(f);
+                }
+            }
+        }
+    }
+
+    // MODIFIES: this
+    // EFFECTS: stops following the previous library and follows lib, whose
+    // next save rewrites every shard
+    private void follow(PhotoLibrary lib) {
+        if (this.lib != null) {
+            this.lib.removeListener(changes);
+        }
+        lib.addListener(changes);
+        changes.clear();
+        this.lib = lib;
+        full = true;
+    }
+
+    // MODIFIES: this
+    // EFFECTS: forgets every shard and key
+    private void reset() {
+        keys.clear();
+        shardOf.clear();
+        shards.clear();
+        albumFiles.clear();
+        nextKey = 0;
+    }
+
+    // MODIFIES: this, s, byKey
+    // EFFECTS: reads the photos of shard s from its file, recording their
+    // keys
+    private void readPhotoShard(PhotoShard s, Map<Integer, Photo> byKey) throws IOException {
+        Map<Integer, Photo> read = new LinkedHashMap<>();
+        parse(dir.resolve(s.file), json -> {
+            json.beginObject();
+            while (json.hasNext()) {
+                if (json.nextName().equals("photos")) {
+                    json.beginArray();
+                    while (json.hasNext()) {
+                        JsonReader.parsePhoto(json, read);
+                    }
+                    json.endArray();
+                } else {
+                    json.skipValue();
+                }
+            }
+            json.endObject();
+        });
+        for (Map.Entry<Integer, Photo> e : read.entrySet()) {
+            if (byKey.putIfAbsent(e.getKey(), e.getValue()) != null) {
+                throw new JSONException("Duplicate photo key " + e.getKey());
+            }
+            s.members.add(e.getValue());
+            shardOf.put(e.getValue(), s);
+            keys.put(e.getValue(), e.getKey());
+            nextKey = Math.max(nextKey, e.getKey() + 1);
+        }
+    }
+
+    // EFFECTS: reads the album with the given name from its shard file,
+    // resolving its photo keys through byKey
+    private Album readAlbumShard(String name, String file, Map<Integer, Photo> byKey) throws IOException {
+        List<Object> members = new ArrayList<>();
+        parse(dir.resolve(file), json -> {
+            json.beginObject();
+            while (json.hasNext()) {
+                if (json.nextName().equals("photos")) {
+                    JsonReader.addMembers(members, json);
+                } else {
+                    json.skipValue();
+                }
+            }
+            json.endObject();
+        });
+        Album a = new Album(name);
+        for (Object m : members) {
+            Photo p = m instanceof Integer ? byKey.get(m) : (Photo) m;
+            if (p == null) {
+                throw new JSONException("Album " + name + " refers to unknown photo key " + m);
+            }
+            a.addPhoto(p);
+        }
+        return a;
+    }
+
+    // EFFECTS: parses the JSON file at path with body; the files are small,
+    // so they are read through a channel rather than mapped
+    private static void parse(Path path, ParseBody body) throws IOException {
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ);
+                JsonPullParser json = new JsonPullParser(
+                        Channels.newReader(ch, StandardCharsets.UTF_8.newDecoder(), -1))) {
+            body.parse(json);
+        }
+    }
+
+    // Writes the contents of one file.
+    private interface Body {
+        void write(JsonStreamWriter w) throws IOException;
+    }
+
+    // Reads the contents of one file.
+    private interface ParseBody {
+        void parse(JsonPullParser json) throws IOException;
+    }
+
+    // A run of photos stored together in one file.
+    private static class PhotoShard {
+        private final List<Photo> members = new ArrayList<>();
+        private String file;
+    }
+
+    // The contents of a manifest file.
+    private static class Manifest {
+        private int version = 1;
+        private long checkpoint;
+        private long generation;
+        private String name;
+        private final List<String> photoFiles = new ArrayList<>();
+        private final List<String> albumNames = new ArrayList<>();
+        private final List<String> albumFiles = new ArrayList<>();
+
+        // MODIFIES: this
+        // EFFECTS: parses the manifest object
+        void parse(JsonPullParser json) throws IOException {
+            json.beginObject();
+            while (json.hasNext()) {
+                switch (json.nextName()) {
+                    case "version":
+                        version = json.nextInt();
+                        break;
+                    case "checkpoint":
+                        checkpoint = Long.parseLong(json.nextString());
+                        break;
+                    case "generation":
+                        generation = Long.parseLong(json.nextString());
+                        break;
+                    case "name":
+                        name = json.nextString();
+                        break;
+                    case "photos":
+                        json.beginArray();
+                        while (json.hasNext()) {
+                            photoFiles.add(json.nextString());
+                        }
+                        json.endArray();
+                        break;
+                    case "albums":
+                        parseAlbums(json);
+                        break;
+                    default:
+                        json.skipValue();
+                }
+            }
+            json.endObject();
+        }
+
+        // MODIFIES: this
+        // EFFECTS: parses the array of album names and their shard files
+        private void parseAlbums(JsonPullParser json) throws IOException {
+            json.beginArray();
+            while (json.hasNext()) {
+                String albumName = null;
+                String file = null;
+                json.beginObject();
+                while (json.hasNext()) {
+                    switch (json.nextName()) {
+                        case "albumName":
+                            albumName = json.nextString();
+                            break;
+                        case "file":
+                            file = json.nextString();
+                            break;
+                        default:
+                            json.skipValue();
+                    }
+                }
+                json.endObject();
+                albumNames.add(JsonReader.required(albumName, "albumName"));
+                albumFiles.add(JsonReader.required(file, "file"));
+            }
+            json.endArray();
+        }
+    }
+}
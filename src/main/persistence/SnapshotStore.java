@@ -0,0 +1,31 @@
+package persistence;
+
+import java.io.IOException;
+
+import model.PhotoLibrary;
+
+// Where a Journal keeps the snapshots of its library. A snapshot records
+// the journal checkpoint it covers; see Journal.
+public interface SnapshotStore {
+    // EFFECTS: returns true if a snapshot has been saved
+    boolean exists() throws IOException;
+
+    // EFFECTS: reads the saved snapshot and returns its library, with its
+    // photos and albums in the order they had when it was prepared, which
+    // the journal keys rely on; throws IOException if it cannot be read
+    PhotoLibrary read() throws IOException;
+
+    // EFFECTS: returns the journal checkpoint recorded in the snapshot last
+    // read, or 0 if it had none
+    long getCheckpoint();
+
+    // MODIFIES: this
+    // EFFECTS: captures lib as it is now, to be saved as a snapshot covering
+    // the given checkpoint, and returns the save that writes it to disk;
+    // throws IOException if it cannot be captured. Runs on the thread that
+    // changes lib, so it should do as little as it can there.
+    SaveQueue.Task prepare(PhotoLibrary lib, long checkpoint) throws IOException;
+
+    // EFFECTS: returns the key under which saves of this store are queued
+    String getKey();
+}
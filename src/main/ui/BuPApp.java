@@ -13,8 +13,9 @@ import model.Photo;
 import model.PhotoLibrary;
 import model.ProblemType;
 import model.Reflection;
-import persistence.JsonReader;
-import persistence.JsonWriter;
+import persistence.Journal;
+import persistence.SaveQueue;
+import persistence.ShardedStore;
 
 
 // The app of Better Your Picture (collects photos and reflections).
@@ -22,11 +23,12 @@ import persistence.JsonWriter;
 @ExcludeFromJacocoGeneratedReport
 public class BuPApp {
     private static final String JSON_STORE = "./data/photolibrary.json";
+    private static final String LIBRARY_STORE = "./data/photolibrary";
+    private static final String JOURNAL_STORE = "./data/photolibrary.journal";
 
     private PhotoLibrary photoLibrary;
     private Scanner input;
-    private JsonWriter jsonWriter;
-    private JsonReader jsonReader;
+    private Journal journal;
     private Map<String, Runnable> handlers;
 
     // EFFECTS: constructs the app and enters main loop
@@ -57,6 +59,7 @@ public class BuPApp {
                 System.out.println("Selection not valid...");
             }
         }
+        closeJournal();
         System.out.println("\nGoodbye!");
     }
 
@@ -64,8 +67,8 @@ public class BuPApp {
     // EFFECTS: initializes library, IO objects, and scanner
     private void init() {
         input = new Scanner(System.in);
-        jsonWriter = new JsonWriter(JSON_STORE);
-        jsonReader = new JsonReader(JSON_STORE);
+        journal = new Journal(new ShardedStore(LIBRARY_STORE, JSON_STORE, ShardedStore.DEFAULT_SHARD_SIZE),
+                JOURNAL_STORE, new SaveQueue());
         photoLibrary = new PhotoLibrary("my library");
     }
 
@@ -80,6 +83,8 @@ public class BuPApp {
         handlers.put("w", this::doWriteReflection);
         handlers.put("x", this::handleDeleteComment); // delete one comment
         handlers.put("f", this::doFindCommonPhotos);
+        handlers.put("c", this::doSearchComments);
+        handlers.put("t", this::doShowStats);
         handlers.put("e", this::doEditAlbums);
     }
 
@@ -93,6 +98,8 @@ public class BuPApp {
         System.out.println("\tw -> write reflection for a photo");
         System.out.println("\tx -> delete ONE comment from a reflection");
         System.out.println("\tf -> find photos by problem type");
+        System.out.println("\tc -> search reflection comments");
+        System.out.println("\tt -> show learning statistics");
         System.out.println("\te -> edit albums");
         System.out.println("\tq -> quit");
         System.out.print("> ");
@@ -295,6 +302,21 @@ public class BuPApp {
         }
     }
 
+    // EFFECTS: finds and lists photos whose reflection comments match a search
+    private void doSearchComments() {
+        String q = readNonEmptyLine("Search comments (word, prefix*, \"a phrase\"): ");
+        var result = photoLibrary.searchComments(q);
+        System.out.println(result.size() + " photo(s) found:");
+        for (Photo p : result) {
+            System.out.println("- " + p.getPhotoname());
+        }
+    }
+
+    // EFFECTS: prints the learning statistics of the library
+    private void doShowStats() {
+        System.out.print(photoLibrary.getStats().summary());
+    }
+
     // MODIFIES: this
     // EFFECTS: lets user choose a photo, then remove exactly one comment from its
     // reflection
@@ -327,7 +349,8 @@ public class BuPApp {
         }
 
         int idx = readIndex("Enter index of comment to delete: ", ref.getComments().size());
-        String removed = ref.getComments().remove(idx);
+        String removed = ref.getComments().get(idx);
+        ref.removeComment(removed);
         System.out.println("Removed comment: \"" + removed + "\"");
     }
 
@@ -395,7 +418,8 @@ public class BuPApp {
             System.out.println(i + ": " + photoLibrary.getAlbums().get(i).getAlbumName());
         }
         int idx = readIndex("Enter index: ", photoLibrary.getAlbums().size());
-        Album removed = photoLibrary.getAlbums().remove(idx);
+        Album removed = photoLibrary.getAlbums().get(idx);
+        photoLibrary.removeAlbum(removed);
         System.out.println("Removed album: " + removed.getAlbumName());
     }
 
@@ -407,7 +431,7 @@ public class BuPApp {
         }
         System.out.println("\nAll albums:");
         for (Album a : photoLibrary.getAlbums()) {
-            System.out.println("- " + a.getAlbumName() + " (" + a.getPhotos().size() + " photos)");
+            System.out.println("- " + a.getAlbumName() + " (" + a.numPhotos() + " photos)");
         }
     }
 
@@ -492,30 +516,41 @@ public class BuPApp {
             System.out.println(i + ": " + album.getPhotos().get(i).getPhotoname());
         }
         int idx = readIndex("Enter index: ", album.getPhotos().size());
-        Photo removed = album.getPhotos().remove(idx);
+        Photo removed = album.getPhotos().get(idx);
+        album.removePhoto(removed);
         System.out.println("Deleted: " + removed.getPhotoname());
     }
 
-    // EFFECTS: saves the photoLibrary to JSON_STORE
+    // EFFECTS: saves the changes to photoLibrary to LIBRARY_STORE and
+    // empties the journal of unsaved changes
     private void savePhotoLibrary() {
         try {
-            jsonWriter.open();
-            jsonWriter.write(photoLibrary);
-            jsonWriter.close();
-            System.out.println("Saved " + photoLibrary.getLibName() + " to " + JSON_STORE);
-        } catch (FileNotFoundException e) {
-            System.out.println("Unable to write to file: " + JSON_STORE);
+            journal.save(photoLibrary);
+            System.out.println("Saved " + photoLibrary.getLibName() + " to " + LIBRARY_STORE);
+        } catch (IOException e) {
+            System.out.println("Unable to write to file: " + LIBRARY_STORE);
         }
     }
 
     // MODIFIES: this
-    // EFFECTS: loads photoLibrary from JSON_STORE and shows a brief summary
+    // EFFECTS: loads photoLibrary from LIBRARY_STORE, or from JSON_STORE if
+    // it has never been saved there, replays the changes journaled since it
+    // was saved, and shows a brief summary
     private void loadPhotoLibrary() {
         try {
-            photoLibrary = jsonReader.read();
-            System.out.println("Loaded " + photoLibrary.getLibName() + " from " + JSON_STORE);
+            photoLibrary = journal.open();
+            System.out.println("Loaded " + photoLibrary.getLibName() + " from " + LIBRARY_STORE);
+        } catch (IOException e) {
+            System.out.println("Unable to read from file: " + LIBRARY_STORE);
+        }
+    }
+
+    // EFFECTS: forces the journal of unsaved changes to disk
+    private void closeJournal() {
+        try {
+            journal.close();
         } catch (IOException e) {
-            System.out.println("Unable to read from file: " + JSON_STORE);
+            System.out.println("Unable to write to file: " + JOURNAL_STORE);
         }
     }
 
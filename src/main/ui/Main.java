@@ -1,11 +1,13 @@
 package ui;
 
 import ca.ubc.cs.ExcludeFromJacocoGeneratedReport;
+import metrics.Metrics;
 
 @ExcludeFromJacocoGeneratedReport
 
 public class Main {
     public static void main(String[] args) throws Exception {
+        Metrics.getInstance().configureFromSystemProperties();
         System.out.println("Welcome to Better Your Picture!");
         new BuPApp();
         
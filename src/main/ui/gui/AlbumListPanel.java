@@ -9,6 +9,7 @@ import ca.ubc.cs.ExcludeFromJacocoGeneratedReport;
 
 import java.awt.*;
 import java.util.List;
+import java.util.Set;
 
 // Panel that displays a list of albums and an "(All Photos)" item.
 @ExcludeFromJacocoGeneratedReport
@@ -44,6 +45,14 @@ public class AlbumListPanel extends JPanel {
     }
 
 
+    // MODIFIES: this
+    // EFFECTS: removes the albums in removed, appends those in added, and
+    // repaints those in changed, keeping the selection where possible.
+    public void applyChanges(Set<Album> removed, Set<Album> added, Set<Album> changed) {
+        ListModelDiffs.apply(model, removed, added);
+        ListModelDiffs.refresh(model, changed);
+    }
+
     // MODIFIES: this
     // EFFECTS: selects the "(All Photos)" entry at index 0.
     public void selectAllPhotosItem() {
@@ -1,5 +1,8 @@
 package ui.gui;
 
+import metrics.Counter;
+import metrics.LatencyHistogram;
+import metrics.Metrics;
 import model.Album;
 import model.Photo;
 import model.ProblemType;
@@ -16,12 +19,17 @@ import java.awt.*;
 import java.io.File;
 import java.nio.file.Files;
 import java.time.LocalDate;
+import java.util.concurrent.CompletionException;
 
 // Menu bar for the Better Your Picture GUI.
 // Provides File, Photo, and Album menus with actions for
 // loading/saving data, importing photos, and managing albums.
 @ExcludeFromJacocoGeneratedReport
 public class AppMenuBar extends JMenuBar {
+    private static final LatencyHistogram IMPORT_TIME = Metrics.getInstance().histogram("import.files");
+    private static final Counter IMPORTED = Metrics.getInstance().counter("import.photos");
+    private static final Counter IMPORT_FAILURES = Metrics.getInstance().counter("import.failures");
+
     private final MainFrame frame;
     private final LibraryAdapter adapter;
 
@@ -41,10 +49,7 @@ public class AppMenuBar extends JMenuBar {
         JMenu m = new JMenu("File");
         m.add(menuItem("Load...", this::doLoad,
                 KeyStroke.getKeyStroke('O', menuMask())));
-        m.add(menuItem("Save...", e -> {
-            adapter.saveAll();
-            info("Saved.");
-        }, KeyStroke.getKeyStroke('S', menuMask())));
+        m.add(menuItem("Save...", e -> doSave(), KeyStroke.getKeyStroke('S', menuMask())));
         m.addSeparator();
         m.add(menuItem("Exit", e -> frame.quit(),
                 KeyStroke.getKeyStroke('Q', menuMask())));
@@ -53,7 +58,7 @@ public class AppMenuBar extends JMenuBar {
 
     // EFFECTS: returns a Photo menu with items to import photos,
     // delete a photo, edit reflection, add to album,
-    // and remove from album.
+    // remove from album, and show statistics.
     private JMenu photoMenu() {
         JMenu m = new JMenu("Photo");
         m.add(menuItem("Import...", this::doImport,
@@ -67,6 +72,9 @@ public class AppMenuBar extends JMenuBar {
                 KeyStroke.getKeyStroke('A', menuMask())));
         m.add(menuItem("Remove from Album", this::doRemoveFromAlbum,
                 KeyStroke.getKeyStroke('R', menuMask())));
+        m.addSeparator();
+        m.add(menuItem("Statistics...", this::doShowStats,
+                KeyStroke.getKeyStroke('T', menuMask())));
         return m;
     }
 
@@ -111,6 +119,19 @@ public class AppMenuBar extends JMenuBar {
 
     // ====================== Actions ======================
 
+    // EFFECTS: saves the library in the background, and reports the outcome
+    // once the save has finished.
+    private void doSave() {
+        adapter.saveAll().whenComplete((v, e) -> SwingUtilities.invokeLater(() -> {
+            if (e == null) {
+                info("Saved.");
+            } else {
+                Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                error("Save failed: " + cause.getMessage());
+            }
+        }));
+    }
+
     // MODIFIES: adapter, frame
     // EFFECTS: loads data from disk, refreshes the main frame,
     // and shows an information dialog.
@@ -120,11 +141,11 @@ public class AppMenuBar extends JMenuBar {
         info("Loaded.");
     }
 
-    // MODIFIES: adapter, filesystem, frame
+    // MODIFIES: adapter, filesystem
     // EFFECTS: opens a file chooser to select image files, copies them
     // into a fixed library directory, creates Photo objects in
-    // the adapter, refreshes the main frame, and shows a dialog
-    // with the number of imported photos.
+    // the adapter, and shows a dialog with the number of imported
+    // photos; the main frame picks up the new photos in one update.
     private void doImport(java.awt.event.ActionEvent e) {
         JFileChooser fc = new JFileChooser();
         fc.setMultiSelectionEnabled(true);
@@ -139,12 +160,12 @@ public class AppMenuBar extends JMenuBar {
         libDir.mkdirs();
 
         int ok = importFiles(fc.getSelectedFiles(), libDir);
-        frame.refreshAll();
         info("Imported " + ok + " photo(s).");
     }
 
     // helper method
     private int importFiles(File[] files, File libDir) {
+        long t = IMPORT_TIME.start();
         int ok = 0;
         for (File src : files) {
             try {
@@ -156,16 +177,19 @@ public class AppMenuBar extends JMenuBar {
                         "Unknown", 100, 2.8, 0.005, LocalDate.now());
                 ok++;
             } catch (Exception ex) {
+                IMPORT_FAILURES.inc();
                 System.err.println("Import failed: " + ex.getMessage());
             }
         }
+        IMPORTED.add(ok);
+        IMPORT_TIME.stop(t);
         return ok;
     }
 
-    // MODIFIES: adapter, frame
+    // MODIFIES: adapter
     // EFFECTS: if a photo is selected, asks for confirmation and removes
-    // the photo from the library and all albums; then refreshes
-    // the main frame and shows a confirmation dialog.
+    // the photo from the library and all albums; then shows a
+    // confirmation dialog.
     private void doDeletePhoto(java.awt.event.ActionEvent e) {
         Photo p = frame.getCurrentPhoto();
         if (p == null) {
@@ -179,7 +203,6 @@ public class AppMenuBar extends JMenuBar {
             return;
         }
         adapter.removePhotoFromLibrary(p);
-        frame.refreshAll();
         info("Deleted.");
     }
 
@@ -248,7 +271,7 @@ public class AppMenuBar extends JMenuBar {
     }
 
     // EFFECTS: Handles the action of adding the current photo to an album.
-    // If successful, refreshes the frame and shows confirmation message.
+    // If successful, shows confirmation message.
     private void doAddToAlbum(java.awt.event.ActionEvent e) {
         Photo currentPhoto = frame.getCurrentPhoto();
         if (!isPhotoSelected(currentPhoto)) {
@@ -265,8 +288,7 @@ public class AppMenuBar extends JMenuBar {
             return;
         }
 
-        addPhotoToAlbum(currentPhoto, selectedAlbumName, albums);
-        frame.refreshAll();
+        addPhotoToAlbum(currentPhoto, selectedAlbumName);
         info("Added to album.");
     }
 
@@ -314,21 +336,19 @@ public class AppMenuBar extends JMenuBar {
         return selectedAlbum;
     }
 
-    // MODIFIES: the album with matching name in albums list
+    // MODIFIES: the album with the given name
     // EFFECTS: adds the photo to the album with the specified name
-    private void addPhotoToAlbum(Photo photo, String albumName, List<Album> albums) {
-        for (Album album : albums) {
-            if (album.getAlbumName().equals(albumName)) {
-                album.addPhoto(photo);
-                break;
-            }
+    private void addPhotoToAlbum(Photo photo, String albumName) {
+        Album album = adapter.findAlbum(albumName);
+        if (album != null) {
+            album.addPhoto(photo);
         }
     }
 
     // MODIFIES: adapter, current album in frame
     // EFFECTS: if both an album and a photo are selected, removes the
-    // photo from that album, refreshes the main frame, and
-    // shows a dialog; otherwise shows an informational dialog.
+    // photo from that album and shows a dialog; otherwise shows an
+    // informational dialog.
     private void doRemoveFromAlbum(java.awt.event.ActionEvent e) {
         Album a = frame.getCurrentAlbum();
         Photo p = frame.getCurrentPhoto();
@@ -337,14 +357,13 @@ public class AppMenuBar extends JMenuBar {
             return;
         }
         adapter.removePhotoFromAlbum(a, p);
-        frame.refreshAll();
         info("Removed from album.");
     }
 
-    // MODIFIES: adapter, frame
+    // MODIFIES: adapter
     // EFFECTS: prompts for a new album name, creates the album through
-    // the adapter, refreshes the frame, or shows an error if
-    // the name is invalid or already exists.
+    // the adapter, or shows an error if the name is invalid or
+    // already exists.
     private void doNewAlbum(java.awt.event.ActionEvent e) {
         String name = JOptionPane.showInputDialog(frame, "New album name:");
         if (name == null || name.isBlank()) {
@@ -352,17 +371,16 @@ public class AppMenuBar extends JMenuBar {
         }
         try {
             adapter.createAlbum(name.trim());
-            frame.refreshAll();
             info("Album created.");
         } catch (IllegalArgumentException ex) {
             error(ex.getMessage());
         }
     }
 
-    // MODIFIES: adapter, frame
+    // MODIFIES: adapter
     // EFFECTS: if an album is selected, prompts for a new name, renames
-    // the album, refreshes the frame, or shows an error; if no
-    // album is selected, shows an informational dialog.
+    // the album, or shows an error; if no album is selected, shows
+    // an informational dialog.
     private void doRenameAlbum(java.awt.event.ActionEvent e) {
         Album a = frame.getCurrentAlbum();
         if (a == null) {
@@ -375,17 +393,16 @@ public class AppMenuBar extends JMenuBar {
         }
         try {
             adapter.renameAlbum(a, newName.trim());
-            frame.refreshAll();
             info("Renamed.");
         } catch (IllegalArgumentException ex) {
             error(ex.getMessage());
         }
     }
 
-    // MODIFIES: adapter, frame
+    // MODIFIES: adapter
     // EFFECTS: if an album is selected, asks for confirmation, removes
-    // the album, refreshes the frame, and shows a dialog; if no
-    // album is selected, shows an informational dialog.
+    // the album, and shows a dialog; if no album is selected, shows
+    // an informational dialog.
     private void doDeleteAlbum(java.awt.event.ActionEvent e) {
         Album a = frame.getCurrentAlbum();
         if (a == null) {
@@ -399,10 +416,18 @@ public class AppMenuBar extends JMenuBar {
             return;
         }
         adapter.removeAlbum(a);
-        frame.refreshAll();
         info("Deleted.");
     }
 
+    // EFFECTS: shows the learning statistics of the library in a dialog.
+    private void doShowStats(java.awt.event.ActionEvent e) {
+        JTextArea text = new JTextArea(adapter.stats().summary(), 20, 50);
+        text.setEditable(false);
+        text.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 12));
+        JOptionPane.showMessageDialog(frame, new JScrollPane(text), "Statistics",
+                JOptionPane.PLAIN_MESSAGE);
+    }
+
     // EFFECTS: returns a File object in the given directory that is
     // unique by appending "(k)" before the extension if needed.
     private File uniqueName(File dir, String base) {
@@ -2,13 +2,16 @@ package ui.gui;
 
 import javax.swing.SwingUtilities;
 import ca.ubc.cs.ExcludeFromJacocoGeneratedReport;
+import metrics.Metrics;
 
 // The GUI app of Better Your Picture (collects photos and reflections).
 @ExcludeFromJacocoGeneratedReport
 public class BuPGuiApp {
     // MODIFIES: this
-    // EFFECTS:  starts the GUI on the Swing event dispatch thread.
+    // EFFECTS:  turns on metrics if asked to by system properties, then
+    //           starts the GUI on the Swing event dispatch thread.
     public static void main(String[] args) {
+        Metrics.getInstance().configureFromSystemProperties();
         SwingUtilities.invokeLater(new StartGui());
     }
 
@@ -0,0 +1,134 @@
+package ui.gui;
+
+import model.Album;
+import model.LibraryListener;
+import model.Photo;
+
+import javax.swing.SwingUtilities;
+
+import ca.ubc.cs.ExcludeFromJacocoGeneratedReport;
+
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+// Collects the changes made to the library and hands them to the main
+// frame in batches, one per turn of the Swing event queue, so that a burst
+// of changes such as a bulk import updates the views only once.
+@ExcludeFromJacocoGeneratedReport
+public class ChangeDispatcher implements LibraryListener {
+    private final MainFrame frame;
+    private Batch pending = new Batch();
+    private boolean scheduled;
+
+    // EFFECTS: constructs a dispatcher that hands batches of changes to frame
+    public ChangeDispatcher(MainFrame frame) {
+        this.frame = frame;
+    }
+
+    @Override
+    public synchronized void photoAdded(Photo p) {
+        pending.photosRemoved.remove(p);
+        pending.photosAdded.add(p);
+        schedule();
+    }
+
+    @Override
+    public synchronized void photoRemoved(Photo p) {
+        if (!pending.photosAdded.remove(p)) {
+            pending.photosRemoved.add(p);
+        }
+        schedule();
+    }
+
+    @Override
+    public synchronized void albumAdded(Album a) {
+        pending.albumsRemoved.remove(a);
+        pending.albumsAdded.add(a);
+        schedule();
+    }
+
+    @Override
+    public synchronized void albumRemoved(Album a) {
+        if (!pending.albumsAdded.remove(a)) {
+            pending.albumsRemoved.add(a);
+        }
+        schedule();
+    }
+
+    @Override
+    public synchronized void albumRenamed(Album a, String oldName) {
+        pending.albumsChanged.add(a);
+        schedule();
+    }
+
+    @Override
+    public synchronized void photoAddedToAlbum(Album a, Photo p) {
+        pending.removedFrom(a).remove(p);
+        pending.addedTo(a).add(p);
+        pending.albumsChanged.add(a);
+        schedule();
+    }
+
+    @Override
+    public synchronized void photoRemovedFromAlbum(Album a, Photo p) {
+        if (!pending.addedTo(a).remove(p)) {
+            pending.removedFrom(a).add(p);
+        }
+        pending.albumsChanged.add(a);
+        schedule();
+    }
+
+    @Override
+    public synchronized void reflectionChanged(Photo p) {
+        pending.reflectionsChanged.add(p);
+        schedule();
+    }
+
+    // MODIFIES: this
+    // EFFECTS: arranges for the pending batch to be handed over on the event
+    // dispatch thread, unless that is already arranged
+    private void schedule() {
+        if (!scheduled) {
+            scheduled = true;
+            SwingUtilities.invokeLater(this::flush);
+        }
+    }
+
+    // MODIFIES: this, frame
+    // EFFECTS: hands the pending batch to the frame and starts a new one
+    private void flush() {
+        Batch batch;
+        synchronized (this) {
+            batch = pending;
+            pending = new Batch();
+            scheduled = false;
+        }
+        frame.applyChanges(batch);
+    }
+
+    // The net changes made to the library since the last batch. A photo or
+    // album added and removed again within one batch appears in neither set.
+    static class Batch {
+        final Set<Photo> photosAdded = new LinkedHashSet<>();
+        final Set<Photo> photosRemoved = new LinkedHashSet<>();
+        final Set<Album> albumsAdded = new LinkedHashSet<>();
+        final Set<Album> albumsRemoved = new LinkedHashSet<>();
+        // albums renamed or with changed membership, whose labels are stale
+        final Set<Album> albumsChanged = new LinkedHashSet<>();
+        final Map<Album, Set<Photo>> addedToAlbum = new HashMap<>();
+        final Map<Album, Set<Photo>> removedFromAlbum = new HashMap<>();
+        final Set<Photo> reflectionsChanged = new LinkedHashSet<>();
+
+        // EFFECTS: returns the photos added to album a in this batch
+        Set<Photo> addedTo(Album a) {
+            return addedToAlbum.computeIfAbsent(a, k -> new LinkedHashSet<>());
+        }
+
+        // EFFECTS: returns the photos removed from album a in this batch
+        Set<Photo> removedFrom(Album a) {
+            return removedFromAlbum.computeIfAbsent(a, k -> new LinkedHashSet<>());
+        }
+    }
+}
@@ -3,6 +3,8 @@ package ui.gui;
 import javax.swing.*;
 
 import ca.ubc.cs.ExcludeFromJacocoGeneratedReport;
+import metrics.LatencyHistogram;
+import metrics.Metrics;
 
 import java.awt.*;
 import java.io.File;
@@ -11,6 +13,7 @@ import java.io.File;
 // message if the file cannot be loaded.
 @ExcludeFromJacocoGeneratedReport
 public class ImagePreviewPanel extends JPanel {
+    private static final LatencyHistogram SHOW_TIME = Metrics.getInstance().histogram("preview.show");
     private final JLabel image = new JLabel("No image", SwingConstants.CENTER);
 
     // MODIFIES: this
@@ -28,6 +31,17 @@ public class ImagePreviewPanel extends JPanel {
     // valid image, shows an error message; otherwise loads and
     // scales the image to a fixed height and displays it.
     public void showImage(String path) {
+        long t = SHOW_TIME.start();
+        try {
+            showImageNow(path);
+        } finally {
+            SHOW_TIME.stop(t);
+        }
+    }
+
+    // MODIFIES: this
+    // EFFECTS: does the work of showImage
+    private void showImageNow(String path) {
         if (path == null || path.trim().isEmpty()) {
             clearImage("No image");
             return;
@@ -0,0 +1,59 @@
+package ui.gui;
+
+import javax.swing.DefaultListModel;
+
+import ca.ubc.cs.ExcludeFromJacocoGeneratedReport;
+
+import java.util.Set;
+
+// Applies small changes to a list model with as few list events as
+// possible, so that the list keeps its selection and scroll position.
+@ExcludeFromJacocoGeneratedReport
+final class ListModelDiffs {
+    private ListModelDiffs() {
+    }
+
+    // MODIFIES: model
+    // EFFECTS: removes every element in gone or in added, then appends the
+    // elements of added in order; removals are made one run of adjacent
+    // elements at a time
+    static <E> void apply(DefaultListModel<? super E> model, Set<? extends E> gone, Set<? extends E> added) {
+        if (!gone.isEmpty() || !added.isEmpty()) {
+            removeRuns(model, gone, added);
+        }
+        if (!added.isEmpty()) {
+            model.addAll(added);
+        }
+    }
+
+    // MODIFIES: model
+    // EFFECTS: tells the list that the given elements need repainting
+    static <E> void refresh(DefaultListModel<E> model, Set<?> changed) {
+        if (changed.isEmpty()) {
+            return;
+        }
+        for (int i = 0; i < model.size(); i++) {
+            if (changed.contains(model.get(i))) {
+                model.set(i, model.get(i));
+            }
+        }
+    }
+
+    // MODIFIES: model
+    // EFFECTS: removes every element in a or in b, scanning from the end
+    private static void removeRuns(DefaultListModel<?> model, Set<?> a, Set<?> b) {
+        int end = model.size() - 1;
+        while (end >= 0) {
+            if (!a.contains(model.get(end)) && !b.contains(model.get(end))) {
+                end--;
+                continue;
+            }
+            int start = end;
+            while (start > 0 && (a.contains(model.get(start - 1)) || b.contains(model.get(start - 1)))) {
+                start--;
+            }
+            model.removeRange(start, end);
+            end = start - 1;
+        }
+    }
+}
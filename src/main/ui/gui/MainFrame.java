@@ -2,6 +2,7 @@ package ui.gui;
 
 import model.Album;
 import model.Photo;
+import model.ProblemType;
 import model.Reflection;
 import ui.gui.adapters.LibraryAdapter;
 
@@ -18,6 +19,8 @@ import ca.ubc.cs.ExcludeFromJacocoGeneratedReport;
 
 import java.awt.*;
 import java.io.File;
+import java.util.List;
+import java.util.Set;
 
 // Main application window for the Better Your Picture GUI.
 // It connects the album list, photo list, image preview, and
@@ -56,6 +59,7 @@ public class MainFrame extends JFrame implements ListSelectionListener {
         photoList.getList().addListSelectionListener(this);
 
         setJMenuBar(new AppMenuBar(this, adapter));
+        adapter.addLibraryListener(new ChangeDispatcher(this));
 
         addWindowListener(new WindowAdapter() {
             @Override
@@ -82,6 +86,27 @@ public class MainFrame extends JFrame implements ListSelectionListener {
         repaint();
     }
 
+    // MODIFIES: this
+    // EFFECTS: updates the album list, photo list and reflection text for
+    // one batch of library changes, keeping the current selections; if the
+    // album on view was removed, shows all photos instead.
+    void applyChanges(ChangeDispatcher.Batch b) {
+        albumList.applyChanges(b.albumsRemoved, b.albumsAdded, b.albumsChanged);
+        if (currentAlbum != null && b.albumsRemoved.contains(currentAlbum)) {
+            albumList.selectAllPhotosItem();
+            return;
+        }
+        if (currentAlbum == null) {
+            photoList.applyChanges(b.photosRemoved, b.photosAdded, b.reflectionsChanged);
+        } else {
+            photoList.applyChanges(b.removedFromAlbum.getOrDefault(currentAlbum, Set.of()),
+                    b.addedToAlbum.getOrDefault(currentAlbum, Set.of()), b.reflectionsChanged);
+        }
+        if (currentPhoto != null && b.reflectionsChanged.contains(currentPhoto)) {
+            refreshReflectionForPhoto(currentPhoto);
+        }
+    }
+
     // EFFECTS: opens a file chooser for images and returns the absolute
     // path of the selected file, or null if the user cancels.
     private String chooseImageFile() {
@@ -190,13 +215,14 @@ public class MainFrame extends JFrame implements ListSelectionListener {
     // EFFECTS: returns a line like "Problems: A, B\n"
     private String makeProblemsLine(Reflection r) {
         StringBuilder sb = new StringBuilder("Problems: ");
-        if (r.getProblems().isEmpty()) {
+        List<ProblemType> problems = r.getProblems();
+        if (problems.isEmpty()) {
             sb.append("(none)\n");
             return sb.toString();
         }
-        for (int i = 0; i < r.getProblems().size(); i++) {
-            sb.append(r.getProblems().get(i).name());
-            if (i < r.getProblems().size() - 1) {
+        for (int i = 0; i < problems.size(); i++) {
+            sb.append(problems.get(i).name());
+            if (i < problems.size() - 1) {
                 sb.append(", ");
             }
         }
@@ -232,6 +258,7 @@ public class MainFrame extends JFrame implements ListSelectionListener {
     // EFFECTS: prints all events that have been logged since the application
     // started to the console, then exits the program.
     private void printLogAndExit() {
+        adapter.close();
         for (Event ev : EventLog.getInstance()) {
             System.out.println(ev.toString());
         }
@@ -9,6 +9,7 @@ import ca.ubc.cs.ExcludeFromJacocoGeneratedReport;
 
 import java.awt.*;
 import java.util.List;
+import java.util.Set;
 
 
 // Panel that shows the list of photos for the current view
@@ -43,6 +44,16 @@ public class PhotoListPanel extends JPanel {
     }
 
 
+// MODIFIES: this
+// EFFECTS:  removes the photos in removed, appends those in added, and
+//          repaints those in changed, keeping the selection where
+//          possible.
+    public void applyChanges(Set<Photo> removed, Set<Photo> added, Set<Photo> changed) {
+        ListModelDiffs.apply(model, removed, added);
+        ListModelDiffs.refresh(model, changed);
+    }
+
+
 // EFFECTS:  returns the underlying JList of photos.
     public JList<Photo> getList() {
         return list;
@@ -1,15 +1,23 @@
 package ui.gui.adapters;
 
+import metrics.Metrics;
 import model.Album;
+import model.LibraryListener;
+import model.LibraryStats;
 import model.Photo;
 import model.PhotoLibrary;
-import persistence.JsonReader;
-import persistence.JsonWriter;
+import persistence.Journal;
+import persistence.SaveQueue;
+import persistence.ShardedStore;
 
-import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+import javax.swing.SwingUtilities;
 
 import ca.ubc.cs.ExcludeFromJacocoGeneratedReport;
 
@@ -21,30 +29,80 @@ import ca.ubc.cs.ExcludeFromJacocoGeneratedReport;
 @ExcludeFromJacocoGeneratedReport
 public class LibraryAdapter {
     private static final String JSON_STORE = "./data/photolibrary.json";
+    private static final String LIBRARY_STORE = "./data/photolibrary";
+    private static final String JOURNAL_STORE = "./data/photolibrary.journal";
 
     private PhotoLibrary lib = new PhotoLibrary("my library");
-    private final JsonReader reader = new JsonReader(JSON_STORE);
-    private final JsonWriter writer = new JsonWriter(JSON_STORE);
+    private final SaveQueue saves = new SaveQueue();
+    private final Journal journal = new Journal(
+            new ShardedStore(LIBRARY_STORE, JSON_STORE, ShardedStore.DEFAULT_SHARD_SIZE), JOURNAL_STORE, saves);
     private final SidecarStores sidecars = new SidecarStores();
+    private final List<LibraryListener> listeners = new ArrayList<>();
+
+// EFFECTS:  constructs an adapter over an empty library and publishes the
+//           size of the library and of its journal as gauges; the journal
+//           compacts as an event of its own on the event thread, after the
+//           change that triggered it.
+    public LibraryAdapter() {
+        journal.setCompactor(SwingUtilities::invokeLater);
+        Metrics m = Metrics.getInstance();
+        m.gauge("library.photos", () -> lib.numPhotos());
+        m.gauge("library.albums", () -> lib.numAlbums());
+        m.gauge("journal.bytes", this::journalBytes);
+    }
+
+// EFFECTS:  returns the length of the journal of unsaved changes, or 0 if
+//           it cannot be read.
+    private long journalBytes() {
+        try {
+            return journal.size();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
 
     // Basic view methods
 
 
 
+// MODIFIES: this
+// EFFECTS:  registers l to be told about every change to the library,
+//           including libraries loaded later.
+    public void addLibraryListener(LibraryListener l) {
+        listeners.add(l);
+        lib.addListener(l);
+    }
+
 // EFFECTS:  returns the list of albums in the library.
     public List<Album> albums() {
         return lib.getAlbums();
     }
 
+// EFFECTS:  returns the album with the given name ignoring case, or null
+//           if there is none.
+    public Album findAlbum(String name) {
+        return lib.getAlbum(name);
+    }
+
 // EFFECTS:  returns the list of all photos in the library.
     public List<Photo> allPhotos() {
         return lib.getPhotos();
     }
 
 
+// EFFECTS:  returns the albums that contain the given photo.
+    public Set<Album> albumsContaining(Photo p) {
+        return lib.getAlbumsContaining(p);
+    }
+
+// EFFECTS:  returns the learning statistics of the library.
+    public LibraryStats stats() {
+        return lib.getStats();
+    }
+
 // EFFECTS:  returns a label of the form "name (count)" for the album.
     public String albumLabel(Album a) {
-        return a.getAlbumName() + " (" + a.getPhotos().size() + ")";
+        return a.getAlbumName() + " (" + a.numPhotos() + ")";
     }
 
     // Photo path sidecar
@@ -100,10 +158,8 @@ public class LibraryAdapter {
         if (name == null || name.trim().isEmpty()) {
             throw new IllegalArgumentException("Album name cannot be empty.");
         }
-        for (Album a : lib.getAlbums()) {
-            if (a.getAlbumName().equalsIgnoreCase(name)) {
-                throw new IllegalArgumentException("Album name exists.");
-            }
+        if (lib.hasAlbumNamed(name)) {
+            throw new IllegalArgumentException("Album name exists.");
         }
         lib.addAlbum(new Album(name.trim()));
     }
@@ -119,40 +175,45 @@ public class LibraryAdapter {
 
 
 // MODIFIES: lib, sidecars
-// EFFECTS:  removes the photo from all albums and from the library,
-//            and removes its stored path from the sidecar.
+// EFFECTS:  removes the photo from the albums holding it and from the
+//            library, and removes its stored path from the sidecar.
     public void removePhotoFromLibrary(Photo p) {
-        for (Album a : lib.getAlbums()) {
-            a.removePhoto(p);
-        }
-        lib.removePhoto(p);
+        lib.deletePhoto(p);
         removePhotoPath(p);
     }
 
 
 // MODIFIES: filesystem
-// EFFECTS:  writes the current PhotoLibrary to JSON_STORE and saves all
-//            sidecar data; throws RuntimeException if the main file
-//          cannot be opened for writing.
-    public void saveAll() {
+// EFFECTS:  snapshots what changed in the current PhotoLibrary and the
+//            sidecar data, empties the journal of unsaved changes, and
+//            queues writing them to disk; returns a future that completes
+//            once everything is written, or fails with the IOException
+//            that stopped it.
+    public CompletableFuture<Void> saveAll() {
+        CompletableFuture<Void> library;
         try {
-            writer.open();
-            writer.write(lib);
-            writer.close();
-            sidecars.saveAll();
-        } catch (FileNotFoundException e) {
-            throw new RuntimeException("Save failed: " + e.getMessage(), e);
+            library = journal.saveAsync(lib);
+        } catch (IOException e) {
+            library = CompletableFuture.failedFuture(e);
         }
+        return CompletableFuture.allOf(library, sidecars.saveAll(saves));
     }
 
 
 // MODIFIES: lib, sidecars
-// EFFECTS:  loads the PhotoLibrary from JSON_STORE if possible and
-//           loads sidecar data; if the main file cannot be read, keeps
-//           an empty library and still tries to load sidecar data.
+// EFFECTS:  loads the PhotoLibrary from LIBRARY_STORE, or from JSON_STORE
+//           if it has never been saved there, if possible, replays
+//           the changes journaled since it was saved, and loads sidecar
+//           data; if the main file cannot be read, keeps an empty library
+//           and still tries to load sidecar data.
     public void loadAll() {
         try {
-            lib = reader.read();
+            PhotoLibrary loaded = journal.open();
+            for (LibraryListener l : listeners) {
+                lib.removeListener(l);
+                loaded.addListener(l);
+            }
+            lib = loaded;
             sidecars.loadAll();
         } catch (IOException e) {
             sidecars.loadAll();
@@ -161,6 +222,17 @@ public class LibraryAdapter {
 
 
 
+// MODIFIES: filesystem
+// EFFECTS:  forces the journal of unsaved changes to disk and stops
+//           journaling; errors are ignored as the app is closing.
+    public void close() {
+        try {
+            journal.close();
+        } catch (IOException e) {
+            // nothing more can be done while exiting
+        }
+    }
+
 // MODIFIES: album
 // EFFECTS:  removes the photo from the given album if present;
 //         does not modify sidecar data.
@@ -173,11 +245,10 @@ public class LibraryAdapter {
 
 
 // REQUIRES: trimmed length > 0; no other album has the same name ignoring case
-// MODIFIES: lib, sidecars
-// EFFECTS: creates a new album with the new name and the same photos,
-//          replaces the old album in the library list; throws
-//          IllegalArgumentException if the new name is invalid or
-//          already in use.
+// MODIFIES: lib
+// EFFECTS: renames the album in place, keeping its photos and position in
+//          the library list; throws IllegalArgumentException if the new
+//          name is invalid or already in use.
     public void renameAlbum(Album album, String newName) {
         if (album == null) {
             return;
@@ -187,22 +258,11 @@ public class LibraryAdapter {
         }
         String nn = newName.trim();
 
-        for (Album a : albums()) {
-            if (a != album && a.getAlbumName().equalsIgnoreCase(nn)) {
-                throw new IllegalArgumentException("Album name already exists.");
-            }
+        Album existing = lib.getAlbum(nn);
+        if (existing != null && existing != album) {
+            throw new IllegalArgumentException("Album name already exists.");
         }
 
-        Album repl = new Album(nn);
-        repl.getPhotos().addAll(album.getPhotos());
-
-        List<Album> list = albums();
-        int idx = list.indexOf(album);
-        if (idx >= 0) {
-            list.set(idx, repl);
-        } else {
-            list.add(repl);
-        }
+        lib.renameAlbum(album, nn);
     }
 }
-
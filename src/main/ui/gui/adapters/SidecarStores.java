@@ -2,18 +2,27 @@ package ui.gui.adapters;
 
 import java.io.*;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 import ca.ubc.cs.ExcludeFromJacocoGeneratedReport;
+import metrics.LatencyHistogram;
+import metrics.Metrics;
+import persistence.AtomicFile;
+import persistence.SaveQueue;
 
 // Stores extra data that is not part of the core model, such as
 // photo file paths and album reflection texts, in simple JSON files.
 @ExcludeFromJacocoGeneratedReport
 public class SidecarStores {
     private static final String PATHS_FILE = "./data/photopaths.json";
+    private static final LatencyHistogram LOAD_TIME = Metrics.getInstance().histogram("sidecars.load");
 
     private final Map<String, String> photoPath = new HashMap<>();
+    // true if photoPath changed since it was last loaded or saved
+    private volatile boolean dirty;
 
 
     // EFFECTS: returns the stored path for the given photo name, or
@@ -25,13 +34,13 @@ public class SidecarStores {
     // MODIFIES: this
     // EFFECTS: associates the given path with the given photo name.
     public void putPhotoPath(String photoName, String path) {
-        photoPath.put(photoName, path);
+        dirty |= !path.equals(photoPath.put(photoName, path));
     }
 
     // MODIFIES: this
     // EFFECTS: removes any path entry for the given photo name.
     public void removePhotoPath(String photoName) {
-        photoPath.remove(photoName);
+        dirty |= photoPath.remove(photoName) != null;
     }
 
 
@@ -41,15 +50,30 @@ public class SidecarStores {
     // if the files exist; if a file does not exist, the
     // corresponding map is left empty.
     public void loadAll() {
+        long t = LOAD_TIME.start();
         loadJson(PATHS_FILE, photoPath);
+        dirty = false;
+        LOAD_TIME.stop(t);
     }
 
-    // MODIFIES: filesystem
-    // EFFECTS: writes the photoPath and albumRefl maps to their JSON
-    // files; IOExceptions are ignored.
-    public void saveAll() {
-        saveJson(PATHS_FILE, photoPath);
-
+    // MODIFIES: this, filesystem
+    // EFFECTS: queues writing the photoPath map, as it is now, to its JSON
+    // file on saves if it changed since it was loaded or saved, and returns
+    // the future of the write.
+    public CompletableFuture<Void> saveAll(SaveQueue saves) {
+        if (!dirty) {
+            return CompletableFuture.completedFuture(null);
+        }
+        dirty = false;
+        byte[] data = toJson(photoPath).getBytes(StandardCharsets.UTF_8);
+        return saves.submit(PATHS_FILE, () -> {
+            try {
+                AtomicFile.write(Paths.get(PATHS_FILE), data);
+            } catch (IOException e) {
+                dirty = true;
+                throw e;
+            }
+        });
     }
 
     // MODIFIES: map
@@ -63,9 +87,9 @@ public class SidecarStores {
         if (!f.exists()) {
             return;
         }
-        try (BufferedReader br = new BufferedReader(
+        try (Reader in = new BufferedReader(
                 new InputStreamReader(new FileInputStream(f), StandardCharsets.UTF_8))) {
-            String json = br.lines().reduce("", (a, b) -> a + b).trim();
+            String json = readText(in).trim();
             if (json.startsWith("{") && json.endsWith("}")) {
                 json = json.substring(1, json.length() - 1).trim();
                 if (!json.isEmpty()) {
@@ -77,6 +101,20 @@ public class SidecarStores {
         }
     }
 
+    // EFFECTS: returns the text read from in with its line breaks left out
+    private static String readText(Reader in) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        char[] buf = new char[8192];
+        for (int n = in.read(buf); n != -1; n = in.read(buf)) {
+            for (int i = 0; i < n; i++) {
+                if (buf[i] != '\n' && buf[i] != '\r') {
+                    sb.append(buf[i]);
+                }
+            }
+        }
+        return sb.toString();
+    }
+
     private void fillMapFromJson(String json, Map<String, String> map) {
         String[] pairs = json.split(",(?=(?:[^\"]*\"[^\"]*\")*[^\"]*$)");
         for (String kv : pairs) {
@@ -90,27 +128,20 @@ public class SidecarStores {
         }
     }
 
-    // MODIFIES: filesystem
-    // EFFECTS: writes the map as a single JSON object into the given
-    // file; IOExceptions are ignored.
-    private void saveJson(String path, Map<String, String> map) {
-        try (BufferedWriter bw = new BufferedWriter(
-                new OutputStreamWriter(new FileOutputStream(path), StandardCharsets.UTF_8))) {
-            StringBuilder sb = new StringBuilder("{");
-            boolean first = true;
-            for (Map.Entry<String, String> e : map.entrySet()) {
-                if (!first) {
-                    sb.append(",");
-                }
-                first = false;
-                String k = e.getKey().replace("\"", "'");
-                String v = e.getValue().replace("\n", "\\n").replace("\"", "'");
-                sb.append("\"").append(k).append("\":\"").append(v).append("\"");
+    // EFFECTS: returns the map as a single JSON object
+    private String toJson(Map<String, String> map) {
+        StringBuilder sb = new StringBuilder("{");
+        boolean first = true;
+        for (Map.Entry<String, String> e : map.entrySet()) {
+            if (!first) {
+                sb.append(",");
             }
-            sb.append("}");
-            bw.write(sb.toString());
-        } catch (IOException ignored) {
-            // ignore
+            first = false;
+            String k = e.getKey().replace("\"", "'");
+            String v = e.getValue().replace("\n", "\\n").replace("\"", "'");
+            sb.append("\"").append(k).append("\":\"").append(v).append("\"");
         }
+        sb.append("}");
+        return sb.toString();
     }
 }
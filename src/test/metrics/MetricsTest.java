@@ -0,0 +1,147 @@
+package metrics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class MetricsTest {
+    @TempDir
+    Path dir;
+    private Metrics metrics;
+
+    @BeforeEach
+    void runBefore() {
+        metrics = new Metrics();
+    }
+
+    @Test
+    void testDisabledRecordsNothing() {
+        Counter c = metrics.counter("c");
+        LatencyHistogram h = metrics.histogram("h");
+        assertFalse(metrics.isEnabled());
+        c.inc();
+        c.add(5);
+        long t = h.start();
+        assertEquals(0, t);
+        h.stop(t);
+        h.record(100);
+        assertEquals(0, c.get());
+        assertEquals(0, h.getCount());
+    }
+
+    @Test
+    void testCounter() {
+        metrics.setEnabled(true);
+        Counter c = metrics.counter("c");
+        c.inc();
+        c.add(4);
+        assertEquals(5, c.get());
+        assertTrue(c == metrics.counter("c"));
+        assertEquals(5L, metrics.getCounters().get("c"));
+        metrics.reset();
+        assertEquals(0, c.get());
+    }
+
+    @Test
+    void testHistogram() {
+        metrics.setEnabled(true);
+        LatencyHistogram h = metrics.histogram("h");
+        for (int i = 1; i <= 100; i++) {
+            h.record(i * 1000L);
+        }
+        assertEquals(100, h.getCount());
+        assertEquals(50500, h.getMean(), 1e-9);
+        assertEquals(100000, h.getMax());
+        long p50 = h.getPercentile(50);
+        assertTrue(p50 >= 50000 / 2 && p50 <= 50000 * 2);
+        assertTrue(h.getPercentile(100) <= h.getMax());
+        long t = h.start();
+        assertTrue(t != 0);
+        h.stop(t);
+        assertEquals(101, h.getCount());
+        metrics.reset();
+        assertEquals(0, h.getCount());
+        assertEquals(0, h.getPercentile(99));
+    }
+
+    @Test
+    void testGauges() {
+        long[] value = {7};
+        metrics.gauge("g", () -> value[0]);
+        metrics.gauge("broken", () -> {
+            throw new IllegalStateException();
+        });
+        assertEquals(7L, metrics.getGauges().get("g"));
+        value[0] = 9;
+        assertEquals(9L, metrics.getGauges().get("g"));
+        assertFalse(metrics.getGauges().containsKey("broken"));
+        assertTrue(metrics.getGauges().containsKey("jvm.heap.used"));
+    }
+
+    @Test
+    void testDump() throws Exception {
+        metrics.setEnabled(true);
+        metrics.counter("c").inc();
+        metrics.histogram("h").record(1000);
+        metrics.gauge("g", () -> 3);
+        String text = metrics.dump();
+        assertTrue(text.contains("counter c = 1"));
+        assertTrue(text.contains("gauge g = 3"));
+        assertTrue(text.contains("latency h: count=1"));
+
+        Path file = dir.resolve("metrics.txt");
+        metrics.writeDump(file);
+        // the heap gauge moves between the two dumps
+        assertEquals(withoutHeap(text), withoutHeap(new String(Files.readAllBytes(file), StandardCharsets.UTF_8)));
+    }
+
+    // EFFECTS: returns the dump text without its jvm.heap.used line
+    private static String withoutHeap(String dump) {
+        return dump.replaceAll("(?m)^.*jvm\\.heap\\.used.*$\\R?", "");
+    }
+
+    @Test
+    void testPeriodicDump() throws Exception {
+        Path file = dir.resolve("metrics.txt");
+        metrics.startDump(file, 10);
+        try {
+            for (int i = 0; i < 500 && !Files.exists(file); i++) {
+                Thread.sleep(10);
+            }
+        } finally {
+            metrics.stopDump();
+        }
+        assertTrue(Files.exists(file));
+    }
+
+    @Test
+    void testMBean() throws Exception {
+        Metrics shared = Metrics.getInstance();
+        assertTrue(shared.registerMBean());
+        assertTrue(shared.registerMBean());
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName(Metrics.OBJECT_NAME);
+        assertTrue(server.isRegistered(name));
+        boolean was = shared.isEnabled();
+        try {
+            server.setAttribute(name, new javax.management.Attribute("Enabled", true));
+            assertTrue(shared.isEnabled());
+            shared.counter("test.mbean").inc();
+            assertTrue(server.invoke(name, "dump", null, null).toString().contains("test.mbean"));
+        } finally {
+            shared.setEnabled(was);
+        }
+    }
+}
@@ -1,14 +1,24 @@
 package model;
 
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 /**
@@ -53,4 +63,165 @@ public class EventLogTest {
         assertEquals("Event log cleared.", itr.next().getDescription());
         assertFalse(itr.hasNext());
     }
+
+    @Test
+    public void testDropOldest() {
+        EventLog el = EventLog.getInstance();
+        el.configure(3, EventLog.OverflowPolicy.DROP_OLDEST, null);
+        el.clear();
+        for (int i = 0; i < 5; i++) {
+            el.logEvent(new Event("E" + i));
+        }
+        assertEquals(List.of("E2", "E3", "E4"), descriptions(el));
+        assertEquals(3, el.getDroppedCount());
+
+        el.configure(2, EventLog.OverflowPolicy.DROP_OLDEST, null);
+        assertEquals(List.of("E3", "E4"), descriptions(el));
+        assertEquals(2, el.getCapacity());
+    }
+
+    @Test
+    public void testSpillToDisk() throws IOException {
+        File spill = File.createTempFile("events", ".log");
+        spill.deleteOnExit();
+        EventLog el = EventLog.getInstance();
+        el.configure(2, EventLog.OverflowPolicy.SPILL_TO_DISK, spill);
+        el.clear();
+        el.logEvent(new Event("two\nlines"));
+        el.logEvent(new Event("back\\slash"));
+        el.logEvent(new Event("E3"));
+        List<String> expected = List.of("Event log cleared.", "two\nlines", "back\\slash", "E3");
+        assertEquals(expected, descriptions(el));
+        assertEquals(0, el.getDroppedCount());
+        assertTrue(spill.length() > 0);
+
+        el.clear();
+        assertEquals(List.of("Event log cleared."), descriptions(el));
+    }
+
+    @Test
+    public void testIteratorIsSnapshot() {
+        EventLog el = EventLog.getInstance();
+        el.configure(2, EventLog.OverflowPolicy.DROP_OLDEST, null);
+        el.clear();
+        Iterator<Event> itr = el.iterator();
+        el.logEvent(new Event("B1"));
+        el.logEvent(new Event("B2"));
+        assertEquals("Event log cleared.", itr.next().getDescription());
+        assertFalse(itr.hasNext());
+    }
+
+    @Test
+    public void testCaptureSwitch() {
+        EventLog el = EventLog.getInstance();
+        el.clear();
+        el.setCapturing(false);
+        try {
+            assertFalse(el.isCapturing());
+            el.logEvent(new Event("ignored"));
+            el.logEvent(EventType.PHOTO_ADDED, "ignored");
+        } finally {
+            el.setCapturing(true);
+        }
+        el.logEvent(EventType.PHOTO_ADDED, "kept");
+        assertEquals(List.of("Event log cleared.", "Add photo to library: kept"), descriptions(el));
+    }
+
+    @Test
+    public void testBadCapacity() {
+        assertThrows(IllegalArgumentException.class,
+                () -> EventLog.getInstance().configure(0, EventLog.OverflowPolicy.DROP_OLDEST, null));
+    }
+
+    @Test
+    public void testConcurrentLoggingLosesNothing() throws Exception {
+        File spill = File.createTempFile("events", ".log");
+        spill.deleteOnExit();
+        EventLog el = EventLog.getInstance();
+        el.configure(64, EventLog.OverflowPolicy.SPILL_TO_DISK, spill);
+        el.clear();
+        int threads = 8;
+        int perThread = 5000;
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicBoolean writing = new AtomicBoolean(true);
+        ExecutorService pool = Executors.newFixedThreadPool(threads + 1);
+        List<Future<?>> writers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            final int id = t;
+            writers.add(pool.submit(() -> {
+                start.await();
+                for (int i = 0; i < perThread; i++) {
+                    el.logEvent(new Event("T" + id + " " + i));
+                }
+                return null;
+            }));
+        }
+        Future<Integer> reader = pool.submit(() -> {
+            start.await();
+            int snapshots = 0;
+            while (writing.get()) {
+                for (Event ignored : el) {
+                    // walk the whole snapshot while writers keep logging
+                }
+                snapshots++;
+            }
+            return snapshots;
+        });
+        start.countDown();
+        for (Future<?> w : writers) {
+            w.get(60, TimeUnit.SECONDS);
+        }
+        writing.set(false);
+        assertTrue(reader.get(60, TimeUnit.SECONDS) > 0);
+        pool.shutdown();
+
+        int[] next = new int[threads];
+        int count = 0;
+        for (Event e : el) {
+            String d = e.getDescription();
+            if (d.startsWith("T")) {
+                String[] parts = d.substring(1).split(" ");
+                int id = Integer.parseInt(parts[0]);
+                assertEquals(next[id], Integer.parseInt(parts[1]));
+                next[id]++;
+                count++;
+            }
+        }
+        assertEquals(threads * perThread, count);
+        assertEquals(0, el.getDroppedCount());
+    }
+
+    @Test
+    public void testConcurrentDropOldestKeepsNewest() throws Exception {
+        EventLog el = EventLog.getInstance();
+        el.configure(100, EventLog.OverflowPolicy.DROP_OLDEST, null);
+        el.clear();
+        Thread[] writers = new Thread[4];
+        for (int t = 0; t < writers.length; t++) {
+            writers[t] = new Thread(() -> {
+                for (int i = 0; i < 10000; i++) {
+                    el.logEvent(new Event("E"));
+                }
+            });
+            writers[t].start();
+        }
+        for (Thread w : writers) {
+            w.join();
+        }
+        assertEquals(100, descriptions(el).size());
+        assertEquals(4 * 10000 + 1 - 100, el.getDroppedCount());
+    }
+
+    @AfterEach
+    public void resetLog() {
+        EventLog.getInstance().configure(EventLog.DEFAULT_CAPACITY, EventLog.OverflowPolicy.DROP_OLDEST, null);
+    }
+
+    private List<String> descriptions(EventLog el) {
+        List<String> l = new ArrayList<String>();
+        for (Event next : el) {
+            l.add(next.getDescription());
+        }
+        return l;
+    }
 }
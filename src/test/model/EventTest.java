@@ -35,4 +35,16 @@ public class EventTest {
     public void testToString() {
         assertEquals(date.toString() + "\n" + "Sensor open at door", event.toString());
     }
+
+    @Test
+    public void testTypedEvent() {
+        Event e = new Event(EventType.ALBUM_RENAMED, "Sun", "Moon");
+        assertEquals(EventType.ALBUM_RENAMED, e.getType());
+        assertEquals("Sun", e.getArgument(1));
+        assertEquals("Moon", e.getArgument(2));
+        assertEquals("Rename album: Sun to Moon", e.getDescription());
+        assertEquals(e.getTime(), e.getDate().getTime());
+        assertEquals("Photo {x} added to album %s",
+                new Event(EventType.PHOTO_ADDED_TO_ALBUM, "{x}", "%s").getDescription());
+    }
 }
@@ -1,6 +1,7 @@
 package model;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.time.LocalDate;
@@ -84,5 +85,24 @@ public class TestAlbum {
 
     }
 
+    @Test
+    void testContainsPhoto() {
+        testAlbum.addPhoto(p1);
+        assertTrue(testAlbum.containsPhoto(p1));
+        assertFalse(testAlbum.containsPhoto(p2));
+        testAlbum.removePhoto(p1);
+        assertFalse(testAlbum.containsPhoto(p1));
+    }
+
+    @Test
+    void testReAddedPhotoGoesLast() {
+        testAlbum.addPhoto(p1);
+        testAlbum.addPhoto(p2);
+        testAlbum.removePhoto(p1);
+        testAlbum.addPhoto(p1);
+        assertEquals(2, testAlbum.numPhotos());
+        assertEquals(p2, testAlbum.getPhotos().get(0));
+        assertEquals(p1, testAlbum.getPhotos().get(1));
+    }
 
 }
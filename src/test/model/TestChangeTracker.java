@@ -0,0 +1,76 @@
+package model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class TestChangeTracker {
+    private PhotoLibrary lib;
+    private ChangeTracker changes;
+    private Photo p1;
+    private Photo p2;
+    private Album a;
+
+    @BeforeEach
+    void runBefore() {
+        lib = new PhotoLibrary("all");
+        p1 = new Photo("shine", "80D", 100, 2.8, 0.001, LocalDate.of(2020, 4, 26));
+        p2 = new Photo("dim", "80D", 1600, 5.6, 0.0125, LocalDate.of(2020, 4, 3));
+        a = new Album("Sky");
+        lib.addPhoto(p1);
+        lib.addAlbum(a);
+        changes = new ChangeTracker();
+        lib.addListener(changes);
+    }
+
+    @Test
+    void testClean() {
+        assertTrue(changes.isClean());
+        assertFalse(changes.isAlbumListChanged());
+    }
+
+    @Test
+    void testPhotos() {
+        lib.addPhoto(p2);
+        p1.setReflection(new Reflection());
+        assertEquals(List.of(p2, p1), List.copyOf(changes.getChangedPhotos()));
+        assertTrue(changes.getRemovedPhotos().isEmpty());
+
+        lib.removePhoto(p2);
+        assertEquals(Set.of(p1), changes.getChangedPhotos());
+        assertEquals(Set.of(p2), changes.getRemovedPhotos());
+
+        lib.addPhoto(p2);
+        assertEquals(List.of(p1, p2), List.copyOf(changes.getChangedPhotos()));
+        assertEquals(Set.of(p2), changes.getRemovedPhotos());
+        assertFalse(changes.isClean());
+
+        changes.clear();
+        assertTrue(changes.isClean());
+    }
+
+    @Test
+    void testAlbums() {
+        a.addPhoto(p1);
+        assertEquals(Set.of(a), changes.getChangedAlbums());
+        assertFalse(changes.isAlbumListChanged());
+
+        changes.clear();
+        lib.renameAlbum(a, "Clouds");
+        assertTrue(changes.isAlbumListChanged());
+        assertTrue(changes.getChangedAlbums().isEmpty());
+
+        Album b = new Album("New");
+        lib.addAlbum(b);
+        lib.removeAlbum(a);
+        assertEquals(Set.of(b), changes.getChangedAlbums());
+        assertEquals(Set.of(a), changes.getRemovedAlbums());
+    }
+}
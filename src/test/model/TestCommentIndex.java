@@ -0,0 +1,108 @@
+package model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class TestCommentIndex {
+    private PhotoLibrary lib;
+    private Photo p1;
+    private Photo p2;
+    private Photo p3;
+    private Reflection r1;
+    private Reflection r2;
+
+    @BeforeEach
+    void runBefore() {
+        lib = new PhotoLibrary("all");
+        p1 = new Photo("shine", "80D", 100, 2.8, 0.001, LocalDate.of(2020, 4, 26));
+        p2 = new Photo("dim", "80D", 1600, 5.6, 0.0125, LocalDate.of(2021, 4, 26));
+        p3 = new Photo("rain", "XT5", 800, 4.0, 0.01, LocalDate.of(2022, 1, 3));
+        r1 = new Reflection();
+        r1.addComment("Backlit subject, focus hunting in low light.");
+        r2 = new Reflection();
+        r2.addComment("Focus was fine but the light was hunting for contrast");
+        r2.addComment("backlit again; backlit sky blown out");
+        p1.setReflection(r1);
+        p2.setReflection(r2);
+        lib.addPhoto(p1);
+        lib.addPhoto(p2);
+        lib.addPhoto(p3);
+    }
+
+    @Test
+    void testTokenize() {
+        assertEquals(List.of("focus", "hunting", "f2", "8"), CommentIndex.tokenize("Focus-hunting, f2.8!"));
+        assertTrue(CommentIndex.tokenize("  ...  ").isEmpty());
+    }
+
+    @Test
+    void testSearchWordRanked() {
+        assertEquals(list(p2, p1), lib.searchComments("BACKLIT"));
+        assertTrue(lib.searchComments("tripod").isEmpty());
+        assertTrue(lib.searchComments("").isEmpty());
+    }
+
+    @Test
+    void testSearchAllWords() {
+        assertEquals(list(p1), lib.searchComments("backlit low"));
+        assertEquals(2, lib.searchComments("focus hunting").size());
+    }
+
+    @Test
+    void testSearchPrefix() {
+        assertEquals(list(p2), lib.searchComments("contr*"));
+        assertEquals(2, lib.searchComments("hunt*").size());
+    }
+
+    @Test
+    void testSearchPhrase() {
+        assertEquals(list(p1), lib.searchComments("\"focus hunting\""));
+        assertEquals(list(p2), lib.searchComments("\"sky blown\" backlit"));
+        assertTrue(lib.searchComments("\"hunting focus\"").isEmpty());
+    }
+
+    @Test
+    void testSearchAfterCommentChanges() {
+        Reflection r3 = new Reflection();
+        p3.setReflection(r3);
+        r3.addComment("Tripod would have helped");
+        assertEquals(list(p3), lib.searchComments("tripod"));
+        r3.removeComment("Tripod would have helped");
+        assertTrue(lib.searchComments("tripod").isEmpty());
+
+        r1.removeComment("Backlit subject, focus hunting in low light.");
+        assertEquals(list(p2), lib.searchComments("backlit"));
+        p2.setReflection(new Reflection());
+        assertTrue(lib.searchComments("backlit").isEmpty());
+        lib.removePhoto(p1);
+        r1.addComment("backlit");
+        assertTrue(lib.searchComments("backlit").isEmpty());
+    }
+
+    @Test
+    void testDeferredIndexRebuiltOnSearch() {
+        lib.deferCommentIndex();
+        Reflection r3 = new Reflection();
+        r3.addComment("Tripod would have helped");
+        p3.setReflection(r3);
+        assertEquals(list(p3), lib.searchComments("tripod"));
+        assertEquals(list(p2, p1), lib.searchComments("backlit"));
+        r3.addComment("backlit");
+        assertEquals(3, lib.searchComments("backlit").size());
+    }
+
+    private ArrayList<Photo> list(Photo... photos) {
+        ArrayList<Photo> result = new ArrayList<>();
+        for (Photo p : photos) {
+            result.add(p);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,134 @@
+package model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class TestLibraryStats {
+    private PhotoLibrary lib;
+    private LibraryStats stats;
+    private Photo p1;
+    private Photo p2;
+    private Photo p3;
+
+    @BeforeEach
+    void runBefore() {
+        lib = new PhotoLibrary("all");
+        stats = lib.getStats();
+        p1 = new Photo("shine", "80D", 100, 2.8, 0.001, LocalDate.of(2020, 4, 26));
+        p2 = new Photo("dim", "80D", 1600, 5.6, 0.0125, LocalDate.of(2020, 4, 3));
+        p3 = new Photo("rain", "XT5", 800, 4.2, 0.01, LocalDate.of(2022, 1, 3));
+        lib.addPhoto(p1);
+        lib.addPhoto(p2);
+        lib.addPhoto(p3);
+    }
+
+    @Test
+    void testBuckets() {
+        assertEquals(0, LibraryStats.isoBucket(50));
+        assertEquals(100, LibraryStats.isoBucket(100));
+        assertEquals(100, LibraryStats.isoBucket(160));
+        assertEquals(800, LibraryStats.isoBucket(1250));
+        assertEquals(1.0, LibraryStats.apertureBucket(0.95));
+        assertEquals(2.8, LibraryStats.apertureBucket(3.2));
+        assertEquals(4.0, LibraryStats.apertureBucket(4.2));
+        assertEquals(22.0, LibraryStats.apertureBucket(22));
+    }
+
+    @Test
+    void testNoReflections() {
+        assertEquals(0, stats.getScores().getCount());
+        assertEquals(0, stats.getProblemCount(ProblemType.EXPOSURE));
+        assertTrue(stats.getScoresByCamera().isEmpty());
+        assertTrue(stats.getProblemCountsByMonth().isEmpty());
+    }
+
+    @Test
+    void testFollowsReflections() {
+        Reflection r1 = new Reflection();
+        r1.setScore(40);
+        r1.addProblemType(ProblemType.EXPOSURE);
+        p1.setReflection(r1);
+        Reflection r2 = new Reflection();
+        r2.setScore(80);
+        r2.addProblemType(ProblemType.EXPOSURE);
+        r2.addProblemType(ProblemType.COLOR);
+        p2.setReflection(r2);
+        Reflection r3 = new Reflection();
+        r3.setScore(90);
+        p3.setReflection(r3);
+
+        assertEquals(3, stats.getScores().getCount());
+        assertEquals(70.0, stats.getScores().getMean(), 1e-9);
+        assertEquals(80, stats.getScores().getMedian());
+        assertEquals(2, stats.getProblemCount(ProblemType.EXPOSURE));
+        assertEquals(1, stats.getProblemCount(ProblemType.COLOR));
+        assertEquals(2, stats.getScoresForCamera("80D").getCount());
+        assertEquals(60.0, stats.getScoresForCamera("80D").getMean(), 1e-9);
+        assertEquals(1, stats.getScoresByIsoBucket().get(800).getCount());
+        assertEquals(90, stats.getScoresByApertureBucket().get(4.0).getMedian());
+        assertEquals(2, stats.getProblemCount(YearMonth.of(2020, 4), ProblemType.EXPOSURE));
+        assertEquals(0, stats.getProblemCount(YearMonth.of(2022, 1), ProblemType.EXPOSURE));
+
+        r1.setScore(100);
+        r2.removeProblemType(ProblemType.EXPOSURE);
+        r3.addProblemType(ProblemType.COMPOSITION);
+        assertEquals(90.0, stats.getScoresForCamera("80D").getMean(), 1e-9);
+        assertEquals(1, stats.getProblemCount(ProblemType.EXPOSURE));
+        assertEquals(1, stats.getProblemCount(YearMonth.of(2022, 1), ProblemType.COMPOSITION));
+
+        lib.removePhoto(p3);
+        assertNull(stats.getScoresForCamera("XT5"));
+        assertFalse(stats.getProblemCountsByMonth().containsKey(YearMonth.of(2022, 1)));
+        assertEquals(2, stats.getScores().getCount());
+    }
+
+    @Test
+    void testReplaceReflection() {
+        Reflection r1 = new Reflection();
+        r1.setScore(30);
+        r1.addProblemType(ProblemType.OTHER);
+        p1.setReflection(r1);
+        Reflection r2 = new Reflection();
+        r2.setScore(70);
+        p1.setReflection(r2);
+        assertEquals(1, stats.getScores().getCount());
+        assertEquals(70, stats.getScores().getMedian());
+        assertEquals(0, stats.getProblemCount(ProblemType.OTHER));
+        r1.setScore(10);
+        assertEquals(70, stats.getScores().getMedian());
+    }
+
+    @Test
+    void testPercentiles() {
+        ScoreStats s = new ScoreStats();
+        for (int i = 1; i <= 10; i++) {
+            s.add(i * 10);
+        }
+        assertEquals(50, s.getMedian());
+        assertEquals(90, s.getPercentile(90));
+        assertEquals(10, s.getPercentile(0));
+        assertEquals(100, s.getPercentile(100));
+        s.remove(100);
+        assertEquals(9, s.getCount());
+        assertEquals(50.0, s.getMean(), 1e-9);
+    }
+
+    @Test
+    void testSummary() {
+        Reflection r = new Reflection();
+        r.setScore(55);
+        p2.setReflection(r);
+        String text = stats.summary();
+        assertTrue(text.contains("Reflected photos: 1"));
+        assertTrue(text.contains("80D"));
+        assertTrue(text.contains("ISO 1600+"));
+    }
+}
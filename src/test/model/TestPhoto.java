@@ -1,9 +1,12 @@
 package model;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.time.LocalDate;
+import java.util.List;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -31,6 +34,12 @@ public class TestPhoto {
 
     }
 
+    @Test
+    void testIdsAreUnique() {
+        Photo other = new Photo("flower", "a6300", 400, 6.3, 1 / 400, LocalDate.of(2001, 1, 20));
+        assertNotEquals(testPhoto.getId(), other.getId());
+    }
+
     @Test
     void testSetReflection() {
         testPhoto.setReflection(ref);
@@ -38,4 +47,47 @@ public class TestPhoto {
 
     }
 
+    @Test
+    void testStoredReflectionLoadsWhenNeeded() {
+        int[] loads = new int[1];
+        testPhoto.setStoredReflection(70, ProblemType.COLOR.bit(), () -> {
+            loads[0]++;
+            Reflection r = new Reflection();
+            r.setScore(70);
+            r.addProblemType(ProblemType.COLOR);
+            r.addComment("too warm");
+            return r;
+        });
+        assertTrue(testPhoto.getReflect());
+        PhotoLibrary lib = new PhotoLibrary("lib");
+        lib.deferCommentIndex();
+        lib.addPhoto(testPhoto);
+        assertEquals(1, lib.findCommonPhotos(ProblemType.COLOR).size());
+        assertEquals(70.0, lib.getStats().getScores().getMean(), 1e-9);
+        assertEquals(0, loads[0]);
+
+        Reflection loaded = testPhoto.getReflection();
+        assertEquals(List.of("too warm"), loaded.getComments());
+        assertSame(loaded, testPhoto.getReflection());
+        assertEquals(1, loads[0]);
+        assertEquals(1, lib.searchComments("warm").size());
+    }
+
+    @Test
+    void testChangedStoredReflectionIsKept() {
+        testPhoto.setStoredReflection(0, 0, Reflection::new);
+        PhotoLibrary lib = new PhotoLibrary("lib");
+        lib.addPhoto(testPhoto);
+        testPhoto.getReflection().setScore(90);
+        testPhoto.getReflection().addProblemType(ProblemType.EXPOSURE);
+        assertEquals(90, testPhoto.getReflection().getScore());
+        assertEquals(90.0, lib.getStats().getScores().getMean(), 1e-9);
+        assertEquals(1, lib.findCommonPhotos(ProblemType.EXPOSURE).size());
+
+        testPhoto.setReflection(ref);
+        assertSame(ref, testPhoto.getReflection());
+        assertEquals(0, lib.findCommonPhotos(ProblemType.EXPOSURE).size());
+        assertEquals(0.0, lib.getStats().getScores().getMean(), 1e-9);
+    }
+
 }
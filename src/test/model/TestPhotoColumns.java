@@ -0,0 +1,147 @@
+package model;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class TestPhotoColumns {
+    private PhotoLibrary lib;
+    private Photo p1;
+    private Photo p2;
+    private Photo p3;
+
+    @BeforeEach
+    void runBefore() {
+        lib = new PhotoLibrary("all");
+        p1 = new Photo("shine", "80D", 100, 2.8, 0.001, LocalDate.of(2020, 4, 26));
+        p2 = new Photo("dim", "80D", 1600, 5.6, 0.0125, LocalDate.of(2021, 4, 26));
+        p3 = new Photo("rain", "XT5", 800, 4.0, 0.01, LocalDate.of(2022, 1, 3));
+        lib.addPhoto(p1);
+        lib.addPhoto(p2);
+        lib.addPhoto(p3);
+        Reflection r = new Reflection();
+        r.setScore(60);
+        r.addProblemType(ProblemType.COLOR);
+        p2.setReflection(r);
+    }
+
+    @Test
+    void testColumns() {
+        PhotoColumns cols = lib.columns();
+        assertEquals(3, cols.size());
+        assertEquals(p2, cols.getPhoto(1));
+        assertEquals(1600, cols.getIso(1));
+        assertEquals(5.6, cols.getAperture(1));
+        assertEquals(0.0125, cols.getShutterspeed(1));
+        assertEquals(LocalDate.of(2021, 4, 26).toEpochDay(), cols.getEpochDay(1));
+        assertEquals(2, cols.numCameras());
+        assertEquals("80D", cols.cameraName(cols.getCameraCode(1)));
+        assertEquals(cols.getCameraCode(0), cols.getCameraCode(1));
+        assertEquals(PhotoColumns.NO_CAMERA, cols.cameraCode("R5"));
+        assertEquals(60, cols.getScore(1));
+        assertEquals(PhotoColumns.NO_SCORE, cols.getScore(0));
+        assertEquals(ProblemType.COLOR.bit(), cols.getProblemMask(1));
+    }
+
+    @Test
+    void testFilters() {
+        PhotoColumns cols = lib.columns();
+        boolean[] mask = cols.allRows();
+        cols.keepCamera(mask, "80D");
+        assertEquals(list(p1, p2), cols.photos(mask));
+        cols.keepReflected(mask, true);
+        assertEquals(list(p2), cols.photos(mask));
+
+        mask = cols.allRows();
+        cols.keepDateBetween(mask, LocalDate.of(2021, 1, 1), LocalDate.of(2023, 1, 1));
+        cols.keepIsoBetween(mask, 800, 800);
+        assertEquals(list(p3), cols.photos(mask));
+
+        mask = cols.allRows();
+        cols.keepCamera(mask, "R5");
+        assertEquals(0, cols.count(mask));
+    }
+
+    @Test
+    void testSnapshotDoesNotFollowLibrary() {
+        PhotoColumns cols = lib.columns();
+        lib.removePhoto(p1);
+        p2.getReflection().setScore(10);
+        assertEquals(3, cols.size());
+        assertEquals(60, cols.getScore(1));
+    }
+
+    @Test
+    void testAggregatesMatchScan() {
+        PhotoLibrary big = new PhotoLibrary("big");
+        Random rand = new Random(10);
+        String[] cameras = {"80D", "XT5", "R5", "a6300"};
+        for (int i = 0; i < 3000; i++) {
+            Photo p = new Photo("p" + i, cameras[rand.nextInt(cameras.length)],
+                    50 << rand.nextInt(8), 1.4 + rand.nextInt(10), 1.0 / (1 + rand.nextInt(1000)),
+                    LocalDate.of(2015, 1, 1).plusDays(rand.nextInt(3000)));
+            if (rand.nextInt(2) == 0) {
+                Reflection r = new Reflection();
+                r.setScore(rand.nextInt(101));
+                r.addProblemType(ProblemType.ofOrdinal(rand.nextInt(5)));
+                r.addProblemType(ProblemType.ofOrdinal(rand.nextInt(5)));
+                p.setReflection(r);
+            }
+            big.addPhoto(p);
+        }
+        PhotoColumns cols = big.columns();
+        boolean[] mask = cols.allRows();
+        cols.keepApertureBetween(mask, 2, 8);
+        cols.keepShutterspeedBetween(mask, 0, 0.1);
+        cols.keepScoreBetween(mask, 20, 90);
+        cols.keepAnyProblem(mask, ProblemType.EXPOSURE, ProblemType.COLOR);
+
+        List<Photo> expected = new ArrayList<>();
+        long sum = 0;
+        int[] problemCounts = new int[ProblemType.values().length];
+        for (Photo p : big.getPhotos()) {
+            Reflection r = p.getReflection();
+            if (p.getAperture() >= 2 && p.getAperture() <= 8 && p.getShutterspeed() <= 0.1
+                    && r != null && r.getScore() >= 20 && r.getScore() <= 90
+                    && (r.hasProblem(ProblemType.EXPOSURE) || r.hasProblem(ProblemType.COLOR))) {
+                expected.add(p);
+                sum += r.getScore();
+                for (ProblemType t : r.getProblems()) {
+                    problemCounts[t.ordinal()]++;
+                }
+            }
+        }
+        assertTrue(expected.size() > 0);
+        assertEquals(expected, cols.photos(mask));
+        assertEquals(expected.size(), cols.count(mask));
+        assertEquals((double) sum / expected.size(), cols.meanScore(mask), 1e-9);
+        assertArrayEquals(problemCounts, cols.problemCounts(mask));
+
+        Map<Integer, Double> byIso = cols.meanScoreByIsoBucket(cols.allRows());
+        for (Map.Entry<Integer, ScoreStats> e : big.getStats().getScoresByIsoBucket().entrySet()) {
+            assertEquals(e.getValue().getMean(), byIso.get(e.getKey()), 1e-9);
+        }
+        Map<String, Double> byCamera = cols.meanScoreByCamera(cols.allRows());
+        for (Map.Entry<String, ScoreStats> e : big.getStats().getScoresByCamera().entrySet()) {
+            assertEquals(e.getValue().getMean(), byCamera.get(e.getKey()), 1e-9);
+        }
+        assertEquals(big.getStats().getScoresByCamera().keySet(), byCamera.keySet());
+    }
+
+    private List<Photo> list(Photo... photos) {
+        List<Photo> result = new ArrayList<>();
+        for (Photo p : photos) {
+            result.add(p);
+        }
+        return result;
+    }
+}
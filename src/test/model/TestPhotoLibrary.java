@@ -3,6 +3,8 @@ package model;
 import org.junit.jupiter.api.Test;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.time.LocalDate;
@@ -87,6 +89,89 @@ public class TestPhotoLibrary {
 
 
 
+    @Test
+    void testGetAlbumsContaining() {
+        a1.addPhoto(p1);
+        testPhotoLibrary.addPhoto(p1);
+        testPhotoLibrary.addPhoto(p2);
+        testPhotoLibrary.addAlbum(a1);
+        testPhotoLibrary.addAlbum(a2);
+        a2.addPhoto(p1);
+        a2.addPhoto(p2);
+        assertEquals(2, testPhotoLibrary.getAlbumsContaining(p1).size());
+        assertTrue(testPhotoLibrary.getAlbumsContaining(p1).contains(a1));
+        assertTrue(testPhotoLibrary.getAlbumsContaining(p2).contains(a2));
+        assertTrue(testPhotoLibrary.getAlbumsContaining(p3).isEmpty());
+
+        a2.removePhoto(p1);
+        assertFalse(testPhotoLibrary.getAlbumsContaining(p1).contains(a2));
+        testPhotoLibrary.removeAlbum(a1);
+        assertTrue(testPhotoLibrary.getAlbumsContaining(p1).isEmpty());
+        a1.addPhoto(p2);
+        assertEquals(1, testPhotoLibrary.getAlbumsContaining(p2).size());
+    }
+
+    @Test
+    void testDeletePhoto() {
+        testPhotoLibrary.addPhoto(p1);
+        testPhotoLibrary.addPhoto(p2);
+        testPhotoLibrary.addAlbum(a1);
+        testPhotoLibrary.addAlbum(a2);
+        a1.addPhoto(p1);
+        a1.addPhoto(p2);
+        a2.addPhoto(p1);
+        testPhotoLibrary.deletePhoto(p1);
+        assertFalse(testPhotoLibrary.containsPhoto(p1));
+        assertFalse(a1.containsPhoto(p1));
+        assertFalse(a2.containsPhoto(p1));
+        assertTrue(a1.containsPhoto(p2));
+        assertTrue(testPhotoLibrary.getAlbumsContaining(p1).isEmpty());
+    }
+
+    @Test
+    void testRenameAlbum() {
+        testPhotoLibrary.addAlbum(a1);
+        testPhotoLibrary.addAlbum(a2);
+        a1.addPhoto(p1);
+        testPhotoLibrary.renameAlbum(a1, "Trip");
+        assertEquals("Trip", testPhotoLibrary.getAlbums().get(0).getAlbumName());
+        assertEquals(a1, testPhotoLibrary.getAlbums().get(0));
+        assertTrue(testPhotoLibrary.getAlbumsContaining(p1).contains(a1));
+    }
+
+    @Test
+    void testGetAlbumByName() {
+        testPhotoLibrary.addAlbum(a1);
+        testPhotoLibrary.addAlbum(a2);
+        assertEquals(a1, testPhotoLibrary.getAlbum("a1"));
+        assertEquals(a2, testPhotoLibrary.getAlbum("  A2 "));
+        assertTrue(testPhotoLibrary.hasAlbumNamed("A1"));
+        assertNull(testPhotoLibrary.getAlbum("A3"));
+        testPhotoLibrary.removeAlbum(a1);
+        assertFalse(testPhotoLibrary.hasAlbumNamed("a1"));
+    }
+
+    @Test
+    void testGetAlbumByNameAfterRename() {
+        testPhotoLibrary.addAlbum(a1);
+        testPhotoLibrary.renameAlbum(a1, "Trip");
+        assertNull(testPhotoLibrary.getAlbum("A1"));
+        assertEquals(a1, testPhotoLibrary.getAlbum("TRIP"));
+        testPhotoLibrary.renameAlbum(a2, "Other");
+        assertFalse(testPhotoLibrary.hasAlbumNamed("Other"));
+    }
+
+    @Test
+    void testGetAlbumByNameWithSameNames() {
+        Album again = new Album("a1");
+        testPhotoLibrary.addAlbum(a1);
+        testPhotoLibrary.addAlbum(again);
+        assertEquals(2, testPhotoLibrary.numAlbums());
+        assertEquals(a1, testPhotoLibrary.getAlbum("A1"));
+        testPhotoLibrary.removeAlbum(a1);
+        assertEquals(again, testPhotoLibrary.getAlbum("A1"));
+    }
+
     @Test
     void testFindCommonPhotos() {
         testPhotoLibrary.addPhoto(p1);
@@ -104,6 +189,109 @@ public class TestPhotoLibrary {
 
     }
 
+    @Test
+    void testFindCommonPhotosAfterReflectionChanges() {
+        testPhotoLibrary.addPhoto(p1);
+        testPhotoLibrary.addPhoto(p2);
+        Reflection r1 = new Reflection();
+        p1.setReflection(r1);
+        p2.setReflection(r1);
+        r1.addProblemType(ProblemType.COLOR);
+        ArrayList<Photo> expected = new ArrayList<Photo>();
+        expected.add(p1);
+        expected.add(p2);
+        assertEquals(expected, testPhotoLibrary.findCommonPhotos(ProblemType.COLOR));
+
+        Reflection r2 = new Reflection();
+        r2.addProblemType(ProblemType.SHARPNESS);
+        p1.setReflection(r2);
+        r1.addProblemType(ProblemType.OTHER);
+        expected.remove(p1);
+        assertEquals(expected, testPhotoLibrary.findCommonPhotos(ProblemType.COLOR));
+        assertEquals(expected, testPhotoLibrary.findCommonPhotos(ProblemType.OTHER));
+        assertEquals(p1, testPhotoLibrary.findCommonPhotos(ProblemType.SHARPNESS).get(0));
+    }
+
+    @Test
+    void testFindCommonPhotosAfterProblemRemoved() {
+        testPhotoLibrary.addPhoto(p1);
+        Reflection r1 = new Reflection();
+        r1.addProblemType(ProblemType.EXPOSURE);
+        r1.addProblemType(ProblemType.COLOR);
+        p1.setReflection(r1);
+        r1.removeProblemType(ProblemType.EXPOSURE);
+        assertTrue(testPhotoLibrary.findCommonPhotos(ProblemType.EXPOSURE).isEmpty());
+        assertEquals(p1, testPhotoLibrary.findCommonPhotos(ProblemType.COLOR).get(0));
+    }
+
+    @Test
+    void testFindCommonPhotosAddedWithReflection() {
+        Reflection r1 = new Reflection();
+        r1.addProblemType(ProblemType.EXPOSURE);
+        p2.setReflection(r1);
+        testPhotoLibrary.addPhoto(p1);
+        testPhotoLibrary.addPhoto(p2);
+        assertEquals(p2, testPhotoLibrary.findCommonPhotos(ProblemType.EXPOSURE).get(0));
+        testPhotoLibrary.removePhoto(p2);
+        assertTrue(testPhotoLibrary.findCommonPhotos(ProblemType.EXPOSURE).isEmpty());
+        r1.addProblemType(ProblemType.COLOR);
+        assertTrue(testPhotoLibrary.findCommonPhotos(ProblemType.COLOR).isEmpty());
+    }
+
+    @Test
+    void testFindPhotosWithAllAndAnyProblems() {
+        testPhotoLibrary.addPhoto(p1);
+        testPhotoLibrary.addPhoto(p2);
+        testPhotoLibrary.addPhoto(p3);
+        testPhotoLibrary.addPhoto(p4);
+        Reflection r1 = new Reflection();
+        r1.addProblemType(ProblemType.EXPOSURE);
+        r1.addProblemType(ProblemType.COLOR);
+        Reflection r2 = new Reflection();
+        r2.addProblemType(ProblemType.COLOR);
+        Reflection r3 = new Reflection();
+        r3.addProblemType(ProblemType.SHARPNESS);
+        p1.setReflection(r2);
+        p2.setReflection(r1);
+        p4.setReflection(r3);
+
+        ArrayList<Photo> expected = new ArrayList<Photo>();
+        expected.add(p2);
+        assertEquals(expected,
+                testPhotoLibrary.findPhotosWithAllProblems(ProblemType.EXPOSURE, ProblemType.COLOR));
+
+        expected.clear();
+        expected.add(p1);
+        expected.add(p2);
+        expected.add(p4);
+        assertEquals(expected,
+                testPhotoLibrary.findPhotosWithAnyProblem(ProblemType.COLOR, ProblemType.SHARPNESS));
+        assertEquals(4, testPhotoLibrary.findPhotosWithAllProblems().size());
+        assertTrue(testPhotoLibrary.findPhotosWithAnyProblem().isEmpty());
+    }
+
+    @Test
+    void testFindCommonPhotosAfterCompaction() {
+        Reflection r1 = new Reflection();
+        r1.addProblemType(ProblemType.EXPOSURE);
+        ArrayList<Photo> added = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            Photo p = new Photo("p" + i, "80D", 100, 2.8, 0.01, LocalDate.of(2021, 1, 1));
+            if (i % 2 == 0) {
+                p.setReflection(r1);
+            }
+            added.add(p);
+            testPhotoLibrary.addPhoto(p);
+        }
+        for (int i = 0; i < 150; i++) {
+            testPhotoLibrary.removePhoto(added.get(i));
+        }
+        ArrayList<Photo> found = testPhotoLibrary.findCommonPhotos(ProblemType.EXPOSURE);
+        assertEquals(25, found.size());
+        assertEquals(added.get(150), found.get(0));
+        assertEquals(added.get(198), found.get(24));
+    }
+
     @Test
     void testAddSamePhoto() {
         testPhotoLibrary.addPhoto(p1);
@@ -119,6 +307,64 @@ public class TestPhotoLibrary {
         assertEquals(0, testPhotoLibrary.getPhotos().size());
     }
 
+    @Test
+    void testRemovePhotoKeepsOrder() {
+        testPhotoLibrary.addPhoto(p1);
+        testPhotoLibrary.addPhoto(p2);
+        testPhotoLibrary.addPhoto(p3);
+        testPhotoLibrary.removePhoto(p2);
+        testPhotoLibrary.addPhoto(p2);
+        assertEquals(3, testPhotoLibrary.numPhotos());
+        assertEquals(p1, testPhotoLibrary.getPhotos().get(0));
+        assertEquals(p3, testPhotoLibrary.getPhotos().get(1));
+        assertEquals(p2, testPhotoLibrary.getPhotos().get(2));
+    }
+
+    @Test
+    void testRemovePhotoNotInLibrary() {
+        testPhotoLibrary.addPhoto(p1);
+        testPhotoLibrary.removePhoto(p2);
+        assertEquals(1, testPhotoLibrary.numPhotos());
+        assertTrue(testPhotoLibrary.containsPhoto(p1));
+        assertFalse(testPhotoLibrary.containsPhoto(p2));
+    }
+
+    @Test
+    void testRemoveManyPhotosKeepsOrder() {
+        ArrayList<Photo> added = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            Photo p = new Photo("p" + i, "80D", 100, 2.8, 0.01, LocalDate.of(2021, 1, 1));
+            added.add(p);
+            testPhotoLibrary.addPhoto(p);
+        }
+        for (int i = 0; i < 300; i++) {
+            if (i % 3 != 0) {
+                testPhotoLibrary.removePhoto(added.get(i));
+            }
+        }
+        assertEquals(100, testPhotoLibrary.numPhotos());
+        for (int i = 0; i < 100; i++) {
+            assertEquals(added.get(i * 3), testPhotoLibrary.getPhotos().get(i));
+        }
+        testPhotoLibrary.addPhoto(added.get(1));
+        assertEquals(added.get(1), testPhotoLibrary.getPhotos().get(100));
+    }
+
+    @Test
+    void testGetPhotoByName() {
+        Photo sameName = new Photo("shine", "R5", 100, 4, 0.01, LocalDate.of(2022, 1, 1));
+        testPhotoLibrary.addPhoto(p1);
+        testPhotoLibrary.addPhoto(sameName);
+        testPhotoLibrary.addPhoto(p2);
+        assertEquals(p1, testPhotoLibrary.getPhoto("shine"));
+        assertEquals(p2, testPhotoLibrary.getPhoto("dim"));
+        assertNull(testPhotoLibrary.getPhoto("rain"));
+        testPhotoLibrary.removePhoto(p1);
+        assertEquals(sameName, testPhotoLibrary.getPhoto("shine"));
+        testPhotoLibrary.removePhoto(sameName);
+        assertNull(testPhotoLibrary.getPhoto("shine"));
+    }
+
     @Test
     void testFindCommonPhotosNull() {
         ArrayList<Photo> expected = new ArrayList<Photo>();
@@ -0,0 +1,174 @@
+package model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Random;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class TestPhotoQuery {
+    private PhotoLibrary lib;
+    private Photo p1;
+    private Photo p2;
+    private Photo p3;
+    private Photo p4;
+
+    @BeforeEach
+    void runBefore() {
+        lib = new PhotoLibrary("all");
+        p1 = new Photo("shine", "80D", 100, 2.8, 0.001, LocalDate.of(2020, 4, 26));
+        p2 = new Photo("dim", "80D", 1600, 5.6, 0.0125, LocalDate.of(2021, 4, 26));
+        p3 = new Photo("rain", "XT5", 800, 4.0, 0.01, LocalDate.of(2022, 1, 3));
+        p4 = new Photo("wind", "XT5", 3200, 8.0, 0.5, LocalDate.of(2023, 7, 9));
+        lib.addPhoto(p1);
+        lib.addPhoto(p2);
+        lib.addPhoto(p3);
+        lib.addPhoto(p4);
+    }
+
+    @Test
+    void testEmptyQueryMatchesAll() {
+        assertEquals(lib.getPhotos(), lib.query(new PhotoQuery()));
+    }
+
+    @Test
+    void testOpenDateRange() {
+        lib.addPhoto(new Photo("undated", "80D", 100, 2.8, 0.001, null));
+        assertEquals(list(p3, p4), lib.query(new PhotoQuery().dateBetween(LocalDate.of(2022, 1, 3), null)));
+        assertEquals(list(p1, p2), lib.query(new PhotoQuery().dateBetween(null, LocalDate.of(2021, 4, 26))));
+        assertEquals(lib.getPhotos(), lib.query(new PhotoQuery().dateBetween(null, null)));
+    }
+
+    @Test
+    void testSingleCriteria() {
+        assertEquals(list(p3, p4), lib.query(new PhotoQuery().camera("XT5")));
+        assertEquals(list(p2, p3), lib.query(new PhotoQuery().isoBetween(800, 1600)));
+        assertEquals(list(p1, p3), lib.query(new PhotoQuery().apertureBetween(2.0, 4.0)));
+        assertEquals(list(p4), lib.query(new PhotoQuery().shutterspeedBetween(0.1, 1)));
+        assertEquals(list(p2, p3), lib.query(new PhotoQuery()
+                .dateBetween(LocalDate.of(2021, 1, 1), LocalDate.of(2022, 12, 31))));
+        assertTrue(lib.query(new PhotoQuery().camera("R5")).isEmpty());
+        assertTrue(lib.query(new PhotoQuery().isoBetween(1600, 800)).isEmpty());
+    }
+
+    @Test
+    void testReflectionCriteria() {
+        Reflection r1 = new Reflection();
+        r1.setScore(40);
+        r1.addProblemType(ProblemType.EXPOSURE);
+        Reflection r2 = new Reflection();
+        r2.setScore(90);
+        r2.addProblemType(ProblemType.EXPOSURE);
+        r2.addProblemType(ProblemType.COLOR);
+        p2.setReflection(r1);
+        p4.setReflection(r2);
+
+        assertEquals(list(p2, p4), lib.query(new PhotoQuery().reflected(true)));
+        assertEquals(list(p1, p3), lib.query(new PhotoQuery().reflected(false)));
+        assertEquals(list(p4), lib.query(new PhotoQuery().scoreBetween(50, 100)));
+        assertEquals(list(p4), lib.query(new PhotoQuery()
+                .withAllProblems(ProblemType.EXPOSURE, ProblemType.COLOR)));
+        assertEquals(list(p2, p4), lib.query(new PhotoQuery()
+                .withAnyProblem(ProblemType.COLOR, ProblemType.EXPOSURE)));
+
+        r1.setScore(75);
+        p4.setReflect(false);
+        assertEquals(list(p2, p4), lib.query(new PhotoQuery().scoreBetween(50, 100)));
+        assertEquals(list(p2), lib.query(new PhotoQuery().reflected(true)));
+    }
+
+    @Test
+    void testCombinedCriteria() {
+        Reflection r1 = new Reflection();
+        r1.setScore(60);
+        p3.setReflection(r1);
+        p4.setReflection(r1);
+        assertEquals(list(p3), lib.query(new PhotoQuery()
+                .camera("XT5")
+                .isoBetween(0, 1000)
+                .scoreBetween(50, 70)));
+        lib.removePhoto(p3);
+        assertTrue(lib.query(new PhotoQuery().camera("XT5").isoBetween(0, 1000)).isEmpty());
+    }
+
+    @Test
+    void testLargeLibraryMatchesScan() {
+        PhotoLibrary big = new PhotoLibrary("big");
+        Random rand = new Random(210);
+        String[] cameras = {"80D", "XT5", "R5", "a6300"};
+        for (int i = 0; i < 5000; i++) {
+            Photo p = new Photo("p" + i, cameras[rand.nextInt(cameras.length)],
+                    100 << rand.nextInt(6), 1.4 + rand.nextInt(10), 1.0 / (1 + rand.nextInt(1000)),
+                    LocalDate.of(2015, 1, 1).plusDays(rand.nextInt(3000)));
+            if (rand.nextInt(3) == 0) {
+                Reflection r = new Reflection();
+                r.setScore(rand.nextInt(101));
+                r.addProblemType(ProblemType.ofOrdinal(rand.nextInt(5)));
+                p.setReflection(r);
+            }
+            big.addPhoto(p);
+        }
+        PhotoQuery narrow = new PhotoQuery().camera("R5").isoBetween(200, 800)
+                .dateBetween(LocalDate.of(2016, 1, 1), LocalDate.of(2020, 1, 1))
+                .scoreBetween(30, 80);
+        PhotoQuery wide = new PhotoQuery().isoBetween(100, 3200).apertureBetween(1, 20)
+                .reflected(false);
+        PhotoQuery problems = new PhotoQuery().withAnyProblem(ProblemType.COLOR, ProblemType.OTHER)
+                .shutterspeedBetween(0, 0.01);
+        assertEquals(scan(big, narrow), big.query(narrow));
+        assertEquals(scan(big, wide), big.query(wide));
+        assertEquals(scan(big, problems), big.query(problems));
+        assertTrue(big.query(narrow).size() > 0);
+    }
+
+    // EFFECTS: filters every photo of lib by the criteria of the large-library
+    // test queries, without using any index
+    private ArrayList<Photo> scan(PhotoLibrary lib, PhotoQuery q) {
+        ArrayList<Photo> result = new ArrayList<>();
+        for (Photo p : lib.getPhotos()) {
+            if (q.getCamera() != null && !q.getCamera().equals(p.getCamera())) {
+                continue;
+            }
+            if (q.getMinIso() != null && (p.getIso() < q.getMinIso() || p.getIso() > q.getMaxIso())) {
+                continue;
+            }
+            if (q.getMinAperture() != null
+                    && (p.getAperture() < q.getMinAperture() || p.getAperture() > q.getMaxAperture())) {
+                continue;
+            }
+            if (q.getMinShutterspeed() != null && (p.getShutterspeed() < q.getMinShutterspeed()
+                    || p.getShutterspeed() > q.getMaxShutterspeed())) {
+                continue;
+            }
+            if (q.getFromDate() != null
+                    && (p.getDate().isBefore(q.getFromDate()) || p.getDate().isAfter(q.getToDate()))) {
+                continue;
+            }
+            Reflection r = p.getReflection();
+            if (q.getMinScore() != null
+                    && (r == null || r.getScore() < q.getMinScore() || r.getScore() > q.getMaxScore())) {
+                continue;
+            }
+            if (q.getReflected() != null && q.getReflected() != p.getReflect()) {
+                continue;
+            }
+            if (q.getAnyProblems() != 0 && (r == null || (r.getProblemMask() & q.getAnyProblems()) == 0)) {
+                continue;
+            }
+            result.add(p);
+        }
+        return result;
+    }
+
+    private ArrayList<Photo> list(Photo... photos) {
+        ArrayList<Photo> result = new ArrayList<>();
+        for (Photo p : photos) {
+            result.add(p);
+        }
+        return result;
+    }
+}
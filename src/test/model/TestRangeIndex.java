@@ -0,0 +1,70 @@
+package model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.BitSet;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class TestRangeIndex {
+    private RangeIndex<Integer> index;
+
+    @BeforeEach
+    void runBefore() {
+        index = new RangeIndex<>();
+    }
+
+    @Test
+    void testAddOutOfOrder() {
+        int[] slots = {40, 3, 17, 99, 0, 17, 64, 3, 2};
+        for (int slot : slots) {
+            index.add(5, slot);
+        }
+        index.add(7, 1);
+        index.add(null, 8);
+        assertEquals(bits(0, 2, 3, 17, 40, 64, 99), index.match(5, 5));
+        assertEquals(7, index.count(5, 5));
+        assertEquals(bits(0, 1, 2, 3, 17, 40, 64, 99), index.match(1, 10));
+        assertEquals(8, index.count(1, 10));
+        assertEquals(new BitSet(), index.match(10, 1));
+    }
+
+    @Test
+    void testRemove() {
+        for (int slot = 0; slot < 100; slot++) {
+            index.add(slot % 2, slot);
+        }
+        for (int slot = 0; slot < 100; slot += 2) {
+            if (slot != 50) {
+                index.remove(0, slot);
+            }
+        }
+        index.remove(0, 51);
+        index.remove(3, 1);
+        index.remove(null, 1);
+        assertEquals(bits(50), index.match(0, 0));
+        assertEquals(51, index.count(0, 1));
+
+        index.remove(0, 50);
+        assertEquals(0, index.count(0, 0));
+        index.add(0, 7);
+        assertEquals(bits(7), index.match(0, 0));
+    }
+
+    @Test
+    void testClear() {
+        index.add(1, 1);
+        index.clear();
+        assertEquals(0, index.count(0, 5));
+        assertEquals(new BitSet(), index.match(0, 5));
+    }
+
+    private static BitSet bits(int... slots) {
+        BitSet b = new BitSet();
+        for (int s : slots) {
+            b.set(s);
+        }
+        return b;
+    }
+}
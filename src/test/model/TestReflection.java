@@ -1,6 +1,8 @@
 package model;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import java.util.ArrayList;
 import org.junit.jupiter.api.BeforeEach;
@@ -125,7 +127,34 @@ public class TestReflection {
         assertEquals(2, testReflection.getProblems().size());
     }
 
+    @Test
+    void testAddSameProblemTypeTwice() {
+        testReflection.addProblemType(ProblemType.COLOR);
+        testReflection.addProblemType(ProblemType.COLOR);
+        assertEquals(1, testReflection.getProblems().size());
+        assertTrue(testReflection.hasProblem(ProblemType.COLOR));
+    }
 
+    @Test
+    void testProblemsInDeclarationOrder() {
+        testReflection.addProblemType(ProblemType.OTHER);
+        testReflection.addProblemType(ProblemType.EXPOSURE);
+        assertEquals(ProblemType.EXPOSURE, testReflection.getProblems().get(0));
+        assertEquals(ProblemType.OTHER, testReflection.getProblems().get(1));
+        assertEquals(ProblemType.EXPOSURE.bit() | ProblemType.OTHER.bit(),
+                testReflection.getProblemMask());
+        assertThrows(IndexOutOfBoundsException.class, () -> testReflection.getProblems().get(2));
+    }
 
+    @Test
+    void testRemoveProblemType() {
+        testReflection.addProblemType(ProblemType.COLOR);
+        testReflection.addProblemType(ProblemType.SHARPNESS);
+        testReflection.removeProblemType(ProblemType.COLOR);
+        testReflection.removeProblemType(ProblemType.OTHER);
+        assertFalse(testReflection.hasProblem(ProblemType.COLOR));
+        assertTrue(testReflection.getProblems().contains(ProblemType.SHARPNESS));
+        assertEquals(1, testReflection.getProblems().size());
+    }
 
 }
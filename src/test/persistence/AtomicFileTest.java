@@ -0,0 +1,73 @@
+package persistence;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import ca.ubc.cs.ExcludeFromJacocoGeneratedReport;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@ExcludeFromJacocoGeneratedReport
+
+class AtomicFileTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void testWriteReplaces() throws IOException {
+        Path target = dir.resolve("a.json");
+        Files.writeString(target, "old contents that are longer");
+        AtomicFile.write(target, "new".getBytes(StandardCharsets.UTF_8));
+        assertEquals("new", Files.readString(target));
+        assertEquals(1, countFiles());
+    }
+
+    @Test
+    void testWriteCreatesDirectories() throws IOException {
+        Path target = dir.resolve("sub").resolve("a.json");
+        AtomicFile.write(target, "x".getBytes(StandardCharsets.UTF_8));
+        assertEquals("x", Files.readString(target));
+    }
+
+    @Test
+    void testTargetUntouchedUntilCommit() throws IOException {
+        Path target = dir.resolve("a.json");
+        Files.writeString(target, "old");
+        AtomicFile f = new AtomicFile(target);
+        OutputStream out = f.openStream();
+        out.write("new".getBytes(StandardCharsets.UTF_8));
+        f.closeStream();
+        assertEquals("old", Files.readString(target));
+        assertEquals(2, countFiles());
+
+        f.commit();
+        assertEquals("new", Files.readString(target));
+        assertEquals(1, countFiles());
+    }
+
+    @Test
+    void testDiscard() throws IOException {
+        Path target = dir.resolve("a.json");
+        Files.writeString(target, "old");
+        AtomicFile f = new AtomicFile(target);
+        f.openStream().write(1);
+        f.discard();
+        assertEquals("old", Files.readString(target));
+        assertEquals(1, countFiles());
+        assertEquals(target, f.getTarget());
+    }
+
+    // EFFECTS: returns the number of files in dir
+    private long countFiles() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.count();
+        }
+    }
+}
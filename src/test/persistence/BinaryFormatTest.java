@@ -0,0 +1,188 @@
+package persistence;
+
+import model.Album;
+import model.Photo;
+import model.PhotoLibrary;
+import model.ProblemType;
+import model.Reflection;
+
+import org.json.JSONException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import ca.ubc.cs.ExcludeFromJacocoGeneratedReport;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@ExcludeFromJacocoGeneratedReport
+
+class BinaryFormatTest extends JsonTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void testRoundTripsFixturesExactly() throws IOException {
+        for (String fixture : new String[] {"testReaderMatchesTreeParse", "testReaderFullReflection",
+                "testReaderAlbumsShareLibraryPhotos", "testReaderEmptyPhotoLibrary", "testWriterPhotoLibrary",
+                "testReaderMigratesEmbeddedAlbumPhotos", "testReaderReflectionOnlyScore"}) {
+            PhotoLibrary lib = new JsonReader("./data/" + fixture + ".json").read();
+            byte[] json = writeJson(lib, "direct.json");
+            Path bin = writeBinary(lib, "lib.bup");
+            assertTrue(BinaryReader.isBinary(bin));
+
+            PhotoLibrary read = new JsonReader(bin.toString()).read();
+            assertArrayEquals(json, writeJson(read, "viaBinary.json"), fixture);
+        }
+    }
+
+    @Test
+    void testReadsAcrossSegments() throws IOException {
+        PhotoLibrary lib = new JsonReader("./data/testReaderMatchesTreeParse.json").read();
+        Path bin = writeBinary(lib, "lib.bup");
+        for (int segmentSize : new int[] {4, 5, 7, 64}) {
+            try (MappedFile file = new MappedFile(bin, segmentSize, 0)) {
+                assertTrue(file.numSegments() > 1);
+                PhotoLibrary read = new BinaryReader(bin.toString()).read(file);
+                assertArrayEquals(writeJson(lib, "direct.json"), writeJson(read, "viaSegments.json"));
+            }
+        }
+    }
+
+    @Test
+    void testSmallerThanJson() throws IOException {
+        PhotoLibrary lib = new PhotoLibrary("Big");
+        for (int i = 0; i < 500; i++) {
+            Photo p = new Photo("photo" + i, "Canon EOS 80D", 100 << (i % 6), 2.8, 0.004,
+                    LocalDate.of(2020, 1, 1).plusDays(i));
+            Reflection r = new Reflection();
+            r.setScore(i % 100);
+            r.addProblemType(ProblemType.values()[i % ProblemType.values().length]);
+            r.addComment("slightly underexposed");
+            p.setReflection(r);
+            lib.addPhoto(p);
+        }
+        long json = writeJson(lib, "big.json").length;
+        long bin = Files.size(writeBinary(lib, "big.bup"));
+        assertTrue(bin * 3 < json, bin + " vs " + json);
+    }
+
+    @Test
+    void testUnusualValues() throws IOException {
+        PhotoLibrary lib = new PhotoLibrary("Unusual é世 😀");
+        Photo p = new Photo("neg", null, -5, Double.MIN_VALUE, 1e300, null);
+        Reflection r = new Reflection();
+        r.setScore(-3);
+        r.addComment("");
+        r.addComment(String.join("", java.util.Collections.nCopies(70000, "x")));
+        p.setReflection(r);
+        lib.addPhoto(p);
+        Photo outside = new Photo("outside", "XT5", 200, 4, 0.5, LocalDate.of(1900, 1, 1));
+        Album a = new Album("Mixed");
+        a.addPhoto(p);
+        a.addPhoto(outside);
+        lib.addAlbum(a);
+
+        PhotoLibrary read = new BinaryReader(writeBinary(lib, "odd.bup").toString()).read();
+        assertEquals(lib.getLibName(), read.getLibName());
+        Photo q = read.getPhotos().get(0);
+        checkPhoto("neg", null, -5, Double.MIN_VALUE, 1e300, null, q);
+        assertEquals(-3, q.getReflection().getScore());
+        assertEquals(r.getComments(), q.getReflection().getComments());
+        Album b = read.getAlbum("Mixed");
+        assertSame(q, b.getPhotos().get(0));
+        checkPhoto("outside", "XT5", 200, 4, 0.5, LocalDate.of(1900, 1, 1), b.getPhotos().get(1));
+        assertFalse(read.containsPhoto(b.getPhotos().get(1)));
+    }
+
+    @Test
+    void testMalformed() throws IOException {
+        byte[] good = Files.readAllBytes(writeBinary(new JsonReader("./data/testWriterPhotoLibrary.json").read(),
+                "good.bup"));
+        Path truncated = dir.resolve("truncated.bup");
+        Files.write(truncated, Arrays.copyOf(good, good.length / 2));
+        assertThrows(IOException.class, () -> new BinaryReader(truncated.toString()).read());
+
+        Path future = dir.resolve("future.bup");
+        byte[] newer = good.clone();
+        newer[4] = (byte) (BinaryWriter.FORMAT_VERSION + 1);
+        Files.write(future, newer);
+        assertThrows(JSONException.class, () -> new JsonReader(future.toString()).read());
+
+        assertFalse(BinaryReader.isBinary(Path.of("./data/testWriterPhotoLibrary.json")));
+    }
+
+    @Test
+    void testMalformedCountsAndMasks() throws IOException {
+        ByteArrayOutputStream huge = header();
+        huge.write(new byte[] {(byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, 0x07});
+        Path counted = dir.resolve("counted.bup");
+        Files.write(counted, huge.toByteArray());
+        assertThrows(JSONException.class, () -> new BinaryReader(counted.toString()).read());
+
+        Path valid = photoWithMask(0x01);
+        assertEquals(1, new BinaryReader(valid.toString()).read().getPhotos().get(0).getReflection().getProblems()
+                .size());
+        Path masked = photoWithMask(0x40);
+        assertThrows(JSONException.class, () -> new BinaryReader(masked.toString()).read());
+    }
+
+    // EFFECTS: writes a binary library holding one photo, named "p", whose
+    // reflection has the given problem mask, and returns its path
+    private Path photoWithMask(int mask) throws IOException {
+        ByteArrayOutputStream bytes = header();
+        // no strings, then one photo with a reflection and no camera
+        bytes.write(new byte[] {0, 1, BinaryWriter.HAS_REFLECTION, 2, 'p', 0, 0});
+        bytes.write(new byte[16]);
+        // score 0, the mask, no comments, then no albums
+        bytes.write(new byte[] {0, (byte) mask, 0, 0});
+        Path path = dir.resolve("mask" + mask + ".bup");
+        Files.write(path, bytes.toByteArray());
+        return path;
+    }
+
+    @Test
+    void testCheckpoint() throws IOException {
+        BinaryWriter writer = new BinaryWriter(dir.resolve("cp.bup").toString());
+        writer.open();
+        writer.write(new PhotoLibrary("cp"), 42);
+        writer.close();
+        JsonReader reader = new JsonReader(dir.resolve("cp.bup").toString());
+        reader.read();
+        assertEquals(42, reader.getCheckpoint());
+    }
+
+    // EFFECTS: returns a stream holding the header of a binary library named
+    // "L" with no checkpoint
+    private ByteArrayOutputStream header() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        bytes.write(BinaryWriter.MAGIC);
+        bytes.write(new byte[] {BinaryWriter.FORMAT_VERSION, 0, 2, 'L'});
+        return bytes;
+    }
+
+    // EFFECTS: writes lib as JSON to the named file and returns its bytes
+    private byte[] writeJson(PhotoLibrary lib, String name) throws IOException {
+        JsonWriter writer = new JsonWriter(dir.resolve(name).toString());
+        writer.open();
+        writer.write(lib);
+        writer.close();
+        return Files.readAllBytes(dir.resolve(name));
+    }
+
+    // EFFECTS: writes lib in the binary format to the named file and returns
+    // its path
+    private Path writeBinary(PhotoLibrary lib, String name) throws IOException {
+        BinaryWriter writer = new BinaryWriter(dir.resolve(name).toString());
+        writer.open();
+        writer.write(lib);
+        writer.close();
+        return dir.resolve(name);
+    }
+}
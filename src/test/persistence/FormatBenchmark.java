@@ -0,0 +1,103 @@
+package persistence;
+
+import model.Album;
+import model.Photo;
+import model.PhotoLibrary;
+import model.ProblemType;
+import model.Reflection;
+
+import ca.ubc.cs.ExcludeFromJacocoGeneratedReport;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.Random;
+
+// Compares the size of a generated library in the JSON and binary formats,
+// and how long each takes to write and to read back. Not run as a test; run
+// its main method, optionally with the number of photos to generate.
+@ExcludeFromJacocoGeneratedReport
+public class FormatBenchmark {
+    private static final String[] CAMERAS = {"Canon EOS 80D", "Fujifilm X-T5", "Sony a6300", "Nikon Z6 II"};
+    private static final String[] COMMENTS = {"slightly underexposed", "horizon tilted", "nice bokeh",
+        "too warm", "subject out of focus", "crop tighter next time"};
+    private static final int ROUNDS = 5;
+
+    public static void main(String[] args) throws IOException {
+        int photos = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+        PhotoLibrary lib = generate(photos, new Random(210));
+        Path dir = Files.createTempDirectory("bup-bench");
+        String json = dir.resolve("lib.json").toString();
+        String bin = dir.resolve("lib.bup").toString();
+
+        long jsonWrite = best(() -> {
+            JsonWriter w = new JsonWriter(json, false);
+            w.open();
+            w.write(lib);
+            w.close();
+        });
+        long binWrite = best(() -> {
+            BinaryWriter w = new BinaryWriter(bin);
+            w.open();
+            w.write(lib);
+            w.close();
+        });
+        long jsonRead = best(() -> new JsonReader(json).read());
+        long binRead = best(() -> new JsonReader(bin).read());
+
+        System.out.printf("%d photos%n", photos);
+        System.out.printf("size:  json %,d bytes, binary %,d bytes (%.1fx smaller)%n",
+                Files.size(Path.of(json)), Files.size(Path.of(bin)),
+                (double) Files.size(Path.of(json)) / Files.size(Path.of(bin)));
+        System.out.printf("write: json %d ms, binary %d ms%n", jsonWrite, binWrite);
+        System.out.printf("read:  json %d ms, binary %d ms (%.1fx faster)%n", jsonRead, binRead,
+                (double) jsonRead / binRead);
+        Files.delete(Path.of(json));
+        Files.delete(Path.of(bin));
+        Files.delete(dir);
+    }
+
+    // EFFECTS: returns a library of n photos with reflections and a few albums
+    private static PhotoLibrary generate(int n, Random rnd) {
+        PhotoLibrary lib = new PhotoLibrary("Benchmark");
+        Album[] albums = {new Album("Favourites"), new Album("Portraits"), new Album("Travel")};
+        for (int i = 0; i < n; i++) {
+            Photo p = new Photo("IMG_" + i, CAMERAS[rnd.nextInt(CAMERAS.length)], 100 << rnd.nextInt(6),
+                    1.4 + rnd.nextInt(20) / 2.0, 1.0 / (1 << rnd.nextInt(12)),
+                    LocalDate.of(2015, 1, 1).plusDays(rnd.nextInt(3000)));
+            Reflection r = new Reflection();
+            r.setScore(rnd.nextInt(101));
+            r.addProblemType(ProblemType.values()[rnd.nextInt(ProblemType.values().length)]);
+            for (int c = rnd.nextInt(4); c > 0; c--) {
+                r.addComment(COMMENTS[rnd.nextInt(COMMENTS.length)]);
+            }
+            p.setReflection(r);
+            lib.addPhoto(p);
+            if (i % 7 == 0) {
+                albums[i % albums.length].addPhoto(p);
+            }
+        }
+        for (Album a : albums) {
+            lib.addAlbum(a);
+        }
+        return lib;
+    }
+
+    // EFFECTS: returns the fastest of ROUNDS runs of task, in milliseconds,
+    // after one warm-up run
+    private static long best(Task task) throws IOException {
+        task.run();
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < ROUNDS; i++) {
+            long t = System.nanoTime();
+            task.run();
+            best = Math.min(best, System.nanoTime() - t);
+        }
+        return best / 1000000;
+    }
+
+    private interface Task {
+        void run() throws IOException;
+    }
+}
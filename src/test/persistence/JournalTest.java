@@ -0,0 +1,348 @@
+package persistence;
+
+import model.Album;
+import model.Photo;
+import model.PhotoLibrary;
+import model.ProblemType;
+import model.Reflection;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import ca.ubc.cs.ExcludeFromJacocoGeneratedReport;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@ExcludeFromJacocoGeneratedReport
+
+class JournalTest extends JsonTest {
+    @TempDir
+    Path dir;
+    private String snapshot;
+    private String journal;
+
+    @BeforeEach
+    void runBefore() {
+        snapshot = dir.resolve("lib.json").toString();
+        journal = dir.resolve("lib.journal").toString();
+    }
+
+    @Test
+    void testReplayWithoutSave() throws IOException {
+        Journal j = new Journal(snapshot, journal);
+        PhotoLibrary pl = j.open();
+        makeChanges(pl);
+        j.sync();
+
+        // the first journal is never closed, as after a crash
+        PhotoLibrary replayed = new Journal(snapshot, journal).open();
+        checkChanges(replayed);
+    }
+
+    @Test
+    void testReplayOnSnapshot() throws IOException {
+        Journal j = new Journal(snapshot, journal);
+        PhotoLibrary pl = new PhotoLibrary("Saved");
+        pl.addPhoto(new Photo("old", "80D", 100, 2.8, 0.01, LocalDate.of(2019, 5, 1)));
+        j.save(pl);
+        assertEquals(0, Files.size(Path.of(journal)));
+        makeChanges(pl);
+        j.close();
+
+        PhotoLibrary replayed = new Journal(snapshot, journal).open();
+        assertEquals("Saved", replayed.getLibName());
+        assertNotNull(replayed.getPhoto("old"));
+        checkChanges(replayed);
+    }
+
+    @Test
+    void testTornRecordDiscarded() throws IOException {
+        Journal j = new Journal(snapshot, journal);
+        PhotoLibrary pl = j.open();
+        pl.addPhoto(new Photo("kept", "80D", 100, 2.8, 0.01, LocalDate.of(2019, 5, 1)));
+        j.close();
+        Files.write(Path.of(journal), "{\"op\":\"addPho".getBytes(StandardCharsets.UTF_8),
+                StandardOpenOption.APPEND);
+
+        Journal j2 = new Journal(snapshot, journal);
+        PhotoLibrary replayed = j2.open();
+        assertEquals(1, replayed.numPhotos());
+        replayed.addPhoto(new Photo("after", "80D", 100, 2.8, 0.01, LocalDate.of(2019, 5, 1)));
+        j2.close();
+
+        PhotoLibrary again = new Journal(snapshot, journal).open();
+        assertEquals(2, again.numPhotos());
+        assertNotNull(again.getPhoto("after"));
+    }
+
+    @Test
+    void testBadRecordFailsOpen() throws IOException {
+        Journal j = new Journal(snapshot, journal);
+        PhotoLibrary pl = j.open();
+        pl.addPhoto(new Photo("kept", "80D", 100, 2.8, 0.01, LocalDate.of(2019, 5, 1)));
+        j.close();
+        String bad = "{\"op\":\"removePhoto\",\"key\":\"kept\"}\n";
+        String later = "{\"op\":\"removePhoto\",\"key\":0}\n";
+        Files.write(Path.of(journal), (bad + later).getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+        long size = Files.size(Path.of(journal));
+
+        assertThrows(IOException.class, () -> new Journal(snapshot, journal).open());
+        assertEquals(size, Files.size(Path.of(journal)));
+    }
+
+    @Test
+    void testBatching() throws IOException {
+        Journal j = new Journal(snapshot, journal, 3, 60000, Long.MAX_VALUE);
+        PhotoLibrary pl = j.open();
+        pl.addPhoto(new Photo("a", "80D", 100, 2.8, 0.01, LocalDate.of(2019, 5, 1)));
+        pl.addPhoto(new Photo("b", "80D", 100, 2.8, 0.01, LocalDate.of(2019, 5, 1)));
+        assertEquals(0, Files.size(Path.of(journal)));
+        assertTrue(j.size() > 0);
+        pl.addPhoto(new Photo("c", "80D", 100, 2.8, 0.01, LocalDate.of(2019, 5, 1)));
+        assertEquals(3, Files.readAllLines(Path.of(journal)).size());
+        j.close();
+    }
+
+    @Test
+    void testCompaction() throws IOException {
+        Journal j = new Journal(snapshot, journal, 1, 60000, 2000);
+        PhotoLibrary pl = j.open();
+        for (int i = 0; i < 50; i++) {
+            pl.addPhoto(new Photo("p" + i, "80D", 100, 2.8, 0.01, LocalDate.of(2019, 5, 1)));
+        }
+        j.close();
+        assertTrue(Files.exists(Path.of(snapshot)));
+        assertTrue(Files.size(Path.of(journal)) < 2000);
+
+        PhotoLibrary replayed = new Journal(snapshot, journal).open();
+        assertEquals(50, replayed.numPhotos());
+        assertEquals("p49", replayed.getPhotos().get(49).getPhotoname());
+    }
+
+    @Test
+    void testCompactionHandedToCompactor() throws IOException {
+        Journal j = new Journal(snapshot, journal, 1, 60000, 2000);
+        List<Runnable> waiting = new ArrayList<>();
+        j.setCompactor(waiting::add);
+        PhotoLibrary pl = j.open();
+        for (int i = 0; i < 50; i++) {
+            pl.addPhoto(new Photo("p" + i, "80D", 100, 2.8, 0.01, LocalDate.of(2019, 5, 1)));
+        }
+        assertEquals(1, waiting.size());
+        assertFalse(Files.exists(Path.of(snapshot)));
+        assertTrue(Files.size(Path.of(journal)) >= 2000);
+
+        waiting.get(0).run();
+        j.close();
+        assertTrue(Files.exists(Path.of(snapshot)));
+        assertEquals(0, Files.size(Path.of(journal)));
+        assertEquals(50, new Journal(snapshot, journal).open().numPhotos());
+    }
+
+    @Test
+    void testSaveLeavesNoSegments() throws IOException {
+        Journal j = new Journal(snapshot, journal);
+        PhotoLibrary pl = j.open();
+        makeChanges(pl);
+        j.save(pl);
+        j.save(pl);
+        j.close();
+        assertFalse(Files.exists(Path.of(journal + ".1")));
+        assertFalse(Files.exists(Path.of(journal + ".2")));
+        assertTrue(Files.readString(Path.of(snapshot)).contains("\"checkpoint\": 2"));
+
+        checkChanges(new Journal(snapshot, journal).open());
+    }
+
+    @Test
+    void testCrashBeforeSnapshotInPlace() throws IOException {
+        Journal saved = new Journal(snapshot, journal);
+        PhotoLibrary pl = saved.open();
+        pl.addPhoto(new Photo("old", "80D", 100, 2.8, 0.01, LocalDate.of(2019, 5, 1)));
+        saved.save(pl);
+        saved.close();
+
+        // a queue that never runs its saves, as if the process died first
+        SaveQueue stalled = new SaveQueue() {
+            @Override
+            public synchronized CompletableFuture<Void> submit(String key, Task task) {
+                return new CompletableFuture<>();
+            }
+        };
+        Journal j = new Journal(snapshot, journal, stalled);
+        pl = j.open();
+        makeChanges(pl);
+        j.saveAsync(pl);
+        pl.addPhoto(new Photo("after", "80D", 100, 2.8, 0.01, LocalDate.of(2019, 5, 1)));
+        j.sync();
+        assertTrue(Files.exists(Path.of(journal + ".2")));
+
+        Journal reopened = new Journal(snapshot, journal);
+        PhotoLibrary replayed = reopened.open();
+        checkChanges(replayed);
+        assertEquals("old", replayed.getPhotos().get(0).getPhotoname());
+        assertEquals("after", replayed.getPhotos().get(replayed.numPhotos() - 1).getPhotoname());
+
+        // the next save covers the segment, which is then deleted
+        reopened.save(replayed);
+        reopened.close();
+        assertFalse(Files.exists(Path.of(journal + ".2")));
+        assertTrue(Files.readString(Path.of(snapshot)).contains("\"checkpoint\": 3"));
+    }
+
+    @Test
+    void testDuplicateNamesReplayOntoTheirOwnPhotos() throws IOException {
+        Journal j = new Journal(snapshot, journal);
+        PhotoLibrary pl = j.open();
+        Photo first = new Photo("twin", "80D", 100, 2.8, 0.01, LocalDate.of(2019, 5, 1));
+        Photo second = new Photo("twin", "XT5", 800, 4.0, 0.02, LocalDate.of(2020, 6, 2));
+        Photo third = new Photo("twin", "a6300", 200, 5.6, 0.004, LocalDate.of(2021, 7, 3));
+        pl.addPhoto(first);
+        pl.addPhoto(second);
+        pl.addPhoto(third);
+        Album a = new Album("Twins");
+        a.addPhoto(first);
+        a.addPhoto(second);
+        pl.addAlbum(a);
+        pl.addAlbum(new Album("twins"));
+        j.save(pl);
+
+        Reflection r = new Reflection();
+        r.setScore(90);
+        second.setReflection(r);
+        pl.removePhoto(first);
+        a.removePhoto(second);
+        pl.getAlbums().get(1).addPhoto(third);
+        pl.removeAlbum(a);
+        pl.renameAlbum(pl.getAlbums().get(0), "Trio");
+        j.sync();
+
+        PhotoLibrary replayed = new Journal(snapshot, journal).open();
+        assertEquals(2, replayed.numPhotos());
+        Photo p2 = replayed.getPhotos().get(0);
+        Photo p3 = replayed.getPhotos().get(1);
+        assertEquals("XT5", p2.getCamera());
+        assertEquals(90, p2.getReflection().getScore());
+        assertEquals("a6300", p3.getCamera());
+        assertNull(p3.getReflection());
+        assertEquals(1, replayed.numAlbums());
+        Album trio = replayed.getAlbums().get(0);
+        assertEquals("Trio", trio.getAlbumName());
+        assertEquals(List.of(p3), trio.getPhotos());
+    }
+
+    @Test
+    void testKeysSurviveReopenAfterRemoval() throws IOException {
+        Journal j = new Journal(snapshot, journal);
+        PhotoLibrary pl = j.open();
+        pl.addPhoto(new Photo("a", "80D", 100, 2.8, 0.01, LocalDate.of(2019, 5, 1)));
+        pl.addPhoto(new Photo("b", "80D", 100, 2.8, 0.01, LocalDate.of(2019, 5, 1)));
+        pl.addAlbum(new Album("First"));
+        pl.addAlbum(new Album("Second"));
+        j.close();
+
+        j = new Journal(snapshot, journal);
+        pl = j.open();
+        pl.removePhoto(pl.getPhoto("a"));
+        pl.removeAlbum(pl.getAlbum("First"));
+        j.close();
+
+        j = new Journal(snapshot, journal);
+        pl = j.open();
+        Reflection r = new Reflection();
+        r.setScore(55);
+        pl.getPhoto("b").setReflection(r);
+        Photo c = new Photo("c", "80D", 100, 2.8, 0.01, LocalDate.of(2019, 5, 1));
+        pl.addPhoto(c);
+        c.setReflection(new Reflection());
+        pl.renameAlbum(pl.getAlbum("Second"), "Renamed");
+        pl.getAlbum("Renamed").addPhoto(c);
+        j.close();
+
+        PhotoLibrary replayed = new Journal(snapshot, journal).open();
+        assertEquals(2, replayed.numPhotos());
+        assertEquals(55, replayed.getPhoto("b").getReflection().getScore());
+        assertEquals(0, replayed.getPhoto("c").getReflection().getScore());
+        assertEquals(1, replayed.numAlbums());
+        assertEquals(List.of(replayed.getPhoto("c")), replayed.getAlbum("Renamed").getPhotos());
+    }
+
+    @Test
+    void testRemoveEmbeddedAlbumPhoto() throws IOException {
+        Journal j = new Journal(snapshot, journal);
+        PhotoLibrary pl = j.open();
+        Photo outside = new Photo("loose", "80D", 100, 2.8, 0.01, LocalDate.of(2019, 5, 1));
+        Photo kept = new Photo("loose", "XT5", 800, 4.0, 0.02, LocalDate.of(2020, 6, 2));
+        Album a = new Album("Loose");
+        pl.addAlbum(a);
+        a.addPhoto(outside);
+        a.addPhoto(kept);
+        j.save(pl);
+        a.removePhoto(outside);
+        j.sync();
+
+        Album replayed = new Journal(snapshot, journal).open().getAlbum("Loose");
+        assertEquals(1, replayed.numPhotos());
+        assertEquals("XT5", replayed.getPhotos().get(0).getCamera());
+    }
+
+    @Test
+    void testChangesAfterCloseNotJournaled() throws IOException {
+        Journal j = new Journal(snapshot, journal);
+        PhotoLibrary pl = j.open();
+        j.close();
+        pl.addPhoto(new Photo("late", "80D", 100, 2.8, 0.01, LocalDate.of(2019, 5, 1)));
+        assertEquals(0, new Journal(snapshot, journal).open().numPhotos());
+    }
+
+    // MODIFIES: pl
+    // EFFECTS: makes one change of every kind to pl
+    private void makeChanges(PhotoLibrary pl) {
+        Photo p1 = new Photo("flower", "a6300", 400, 6.3, 0.0025, LocalDate.of(2004, 1, 2));
+        Photo p2 = new Photo("cloud", "XT5", 200, 2.8, 0.001, LocalDate.of(2001, 1, 20));
+        Photo p3 = new Photo("gone", "XT5", 200, 2.8, 0.001, LocalDate.of(2001, 1, 20));
+        pl.addPhoto(p1);
+        pl.addPhoto(p2);
+        pl.addPhoto(p3);
+        Reflection r = new Reflection();
+        p1.setReflection(r);
+        r.setScore(72);
+        r.addProblemType(ProblemType.COLOR);
+        r.addComment("too warm");
+        Album a = new Album("Sky");
+        pl.addAlbum(a);
+        a.addPhoto(p2);
+        a.addPhoto(p3);
+        pl.deletePhoto(p3);
+        pl.renameAlbum(a, "Heaven");
+        pl.addAlbum(new Album("Temp"));
+        pl.removeAlbum(pl.getAlbum("Temp"));
+    }
+
+    // EFFECTS: checks that pl shows every change made by makeChanges
+    private void checkChanges(PhotoLibrary pl) {
+        Photo p1 = pl.getPhoto("flower");
+        checkPhoto("flower", "a6300", 400, 6.3, 0.0025, LocalDate.of(2004, 1, 2), p1);
+        assertNotNull(pl.getPhoto("cloud"));
+        assertNull(pl.getPhoto("gone"));
+        assertEquals(72, p1.getReflection().getScore());
+        assertEquals(List.of(ProblemType.COLOR), p1.getReflection().getProblems());
+        assertEquals(List.of("too warm"), p1.getReflection().getComments());
+        assertNull(pl.getAlbum("Temp"));
+        assertNull(pl.getAlbum("Sky"));
+        Album a = pl.getAlbum("Heaven");
+        assertEquals(1, a.numPhotos());
+        assertSame(pl.getPhoto("cloud"), a.getPhotos().get(0));
+    }
+}
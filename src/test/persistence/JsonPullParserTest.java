@@ -0,0 +1,170 @@
+package persistence;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+
+import ca.ubc.cs.ExcludeFromJacocoGeneratedReport;
+
+import persistence.JsonPullParser.Token;
+
+@ExcludeFromJacocoGeneratedReport
+
+class JsonPullParserTest {
+    @Test
+    void testTokens() throws IOException {
+        JsonPullParser json = parser(" {\"a\": [1, -2.5e3, \"s\", true, false, null], \"b\": {}}\n");
+        json.beginObject();
+        assertEquals("a", json.nextName());
+        json.beginArray();
+        assertEquals(1, json.nextInt());
+        assertEquals(-2500.0, json.nextDouble());
+        assertEquals(Token.STRING, json.peek());
+        assertEquals("s", json.nextString());
+        assertEquals(Token.BOOLEAN, json.peek());
+        assertEquals("true", json.nextScalar());
+        assertEquals("false", json.nextScalar());
+        assertNull(json.nextScalar());
+        assertFalse(json.hasNext());
+        json.endArray();
+        assertEquals("b", json.nextName());
+        json.beginObject();
+        assertFalse(json.hasNext());
+        json.endObject();
+        json.endObject();
+        assertEquals(Token.END_DOCUMENT, json.peek());
+    }
+
+    @Test
+    void testEscapes() throws IOException {
+        String original = "q\" b\\ s/ \b\f\n\r\t \u00e9 \ud83d\udcf7 \u0001";
+        JsonPullParser json = parser(JSONObject.quote(original));
+        assertEquals(original, json.nextString());
+    }
+
+    @Test
+    void testStringAcrossBuffers() throws IOException {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 200000; i++) {
+            sb.append((char) ('a' + i % 26));
+            if (i % 1000 == 0) {
+                sb.append('\n');
+            }
+        }
+        String big = sb.toString();
+        JsonPullParser json = parser("[" + JSONObject.quote(big) + ", 7]");
+        json.beginArray();
+        assertEquals(big, json.nextString());
+        assertEquals(7, json.nextInt());
+        json.endArray();
+    }
+
+    @Test
+    void testSkipValue() throws IOException {
+        JsonPullParser json = parser("{\"skip\": {\"x\": [1, {\"y\": [[]]}], \"z\": null}, \"keep\": \"k\"}");
+        json.beginObject();
+        assertEquals("skip", json.nextName());
+        json.skipValue();
+        assertEquals("keep", json.nextName());
+        assertEquals("k", json.nextString());
+        json.endObject();
+        assertEquals(Token.END_DOCUMENT, json.peek());
+    }
+
+    @Test
+    void testDeepNesting() throws IOException {
+        int depth = 100;
+        JsonPullParser json = parser("[".repeat(depth) + "]".repeat(depth));
+        for (int i = 0; i < depth; i++) {
+            json.beginArray();
+        }
+        for (int i = 0; i < depth; i++) {
+            json.endArray();
+        }
+        assertTrue(json.peek() == Token.END_DOCUMENT);
+    }
+
+    @Test
+    void testNumbersFromStrings() throws IOException {
+        JsonPullParser json = parser("[\"12\", 2.9, \"0.25\"]");
+        json.beginArray();
+        assertEquals(12, json.nextInt());
+        assertEquals(2, json.nextInt());
+        assertEquals(0.25, json.nextDouble());
+    }
+
+    @Test
+    void testSyntaxErrors() {
+        assertThrows(JSONException.class, () -> parser("{\"a\" 1}").nextName());
+        assertThrows(JSONException.class, () -> syntax("{\"a\": 1 \"b\": 2}"));
+        assertThrows(JSONException.class, () -> syntax("[01]"));
+        assertThrows(JSONException.class, () -> syntax("[nul]"));
+        assertThrows(JSONException.class, () -> syntax("[\"open"));
+        assertThrows(JSONException.class, () -> syntax("[\"bad \\x\"]"));
+        assertThrows(JSONException.class, () -> syntax("[1] 2"));
+        assertThrows(JSONException.class, () -> syntax("[1,"));
+        assertThrows(JSONException.class, () -> parser("[\"x\"]").beginObject());
+    }
+
+    @Test
+    void testBytePosition() throws IOException {
+        String text = "[\"caf\u00e9 \u5199 \ud83d\udcf7\", {\"a\": \"\\\"\"}]";
+        JsonPullParser json = new JsonPullParser(new StringReader(text), false, 3);
+        json.countBytes();
+        json.beginArray();
+        json.skipValue();
+        assertEquals(Token.BEGIN_OBJECT, json.peek());
+        int open = text.indexOf('{');
+        assertEquals(text.substring(0, open + 1).getBytes(StandardCharsets.UTF_8).length, json.bytePosition());
+        json.skipValue();
+        int close = text.indexOf('}');
+        assertEquals(text.substring(0, close + 1).getBytes(StandardCharsets.UTF_8).length, json.bytePosition());
+        json.endArray();
+        assertEquals(text.getBytes(StandardCharsets.UTF_8).length, json.bytePosition());
+    }
+
+    @Test
+    void testElements() throws IOException {
+        JsonPullParser json = new JsonPullParser(new StringReader(" {\"a\": [1]}, 2 ,\"x\" "), true);
+        json.beginObject();
+        assertEquals("a", json.nextName());
+        json.skipValue();
+        json.endObject();
+        assertEquals(2, json.nextInt());
+        assertEquals("x", json.nextString());
+        assertFalse(json.hasNext());
+        assertFalse(new JsonPullParser(new StringReader(""), true).hasNext());
+        assertThrows(JSONException.class, () -> elements("1]"));
+        assertThrows(JSONException.class, () -> elements("1,"));
+        assertThrows(JSONException.class, () -> elements("1 2"));
+    }
+
+    // EFFECTS: reads every element of text, read as array elements
+    private void elements(String text) throws IOException {
+        JsonPullParser json = new JsonPullParser(new StringReader(text), true);
+        while (json.hasNext()) {
+            json.skipValue();
+        }
+    }
+
+    // EFFECTS: reads every token of text
+    private void syntax(String text) throws IOException {
+        JsonPullParser json = parser(text);
+        json.skipValue();
+        json.peek();
+    }
+
+    private JsonPullParser parser(String text) {
+        return new JsonPullParser(new StringReader(text));
+    }
+}
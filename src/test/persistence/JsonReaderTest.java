@@ -1,18 +1,30 @@
 package persistence;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
 
 import java.io.File;
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
+import model.Album;
 import model.Photo;
 import model.PhotoLibrary;
 import model.ProblemType;
+import model.Reflection;
 import org.json.JSONArray;
+import org.json.JSONException;
 import org.json.JSONObject;
 import org.junit.jupiter.api.Test;
 
@@ -231,6 +243,248 @@ class JsonReaderTest extends JsonTest {
         }
     }
 
+    @Test
+    void testReaderMatchesTreeParse() throws IOException {
+        PhotoLibrary lib = new PhotoLibrary("Big \"quoted\" Lib");
+        Album a = new Album("Trip \"summer\"");
+        for (int i = 0; i < 50; i++) {
+            Photo p = new Photo("p" + i + "\t\\.jpg", "Cam" + (i % 3), 100 << (i % 5), 1.4 + i / 10.0,
+                    1.0 / (i + 1), LocalDate.of(2024, 1 + i % 12, 1 + i % 28));
+            if (i % 2 == 0) {
+                Reflection r = new Reflection();
+                r.setScore(i);
+                r.addProblemType(ProblemType.values()[i % ProblemType.values().length]);
+                r.addComment("comment " + i + "\nsecond line \ud83d\udcf7");
+                p.setReflection(r);
+            }
+            lib.addPhoto(p);
+            if (i % 4 == 0) {
+                a.addPhoto(p);
+            }
+        }
+        lib.addAlbum(a);
+        String path = "./data/testReaderMatchesTreeParse.json";
+        JsonWriter writer = new JsonWriter(path);
+        writer.open();
+        writer.write(lib);
+        writer.close();
+
+        PhotoLibrary streamed = new JsonReader(path).read();
+        assertTrue(treeParse(path).toJson().similar(streamed.toJson()));
+        assertEquals(lib.getLibName(), streamed.getLibName());
+        assertEquals(50, streamed.numPhotos());
+        assertEquals(13, streamed.getAlbum(a.getAlbumName()).getPhotos().size());
+    }
+
+    @Test
+    void testReaderAnyMemberOrder() throws IOException {
+        String path = "./data/testReaderAnyMemberOrder.json";
+        String json = "{\"albums\":[{\"photos\":[{\"date\":\"2025-01-02\",\"photoname\":\"a.jpg\","
+                + "\"camera\":\"X\",\"iso\":\"200\",\"aperture\":2,\"shutterspeed\":1e-2}],"
+                + "\"albumName\":\"Al\"}],\n  \"extra\": {\"nested\": [1, [true, null]]},\n"
+                + "\"photos\" : [ {\"reflection\":{\"comments\":[\"caf\\u00e9\"],\"score\":\"x\"},"
+                + "\"photoname\":\"b.jpg\",\"camera\":\"Y\",\"iso\":400,\"aperture\":4.0,"
+                + "\"shutterspeed\":0.5,\"date\":\"2025-03-04\",\"reflect\":true} ],\"name\":\"Lib\"}";
+        Files.write(Paths.get(path), json.getBytes(StandardCharsets.UTF_8));
+
+        PhotoLibrary lib = new JsonReader(path).read();
+        assertEquals("Lib", lib.getLibName());
+        assertEquals(1, lib.numPhotos());
+        Photo b = lib.getPhotos().get(0);
+        checkPhoto("b.jpg", "Y", 400, 4.0, 0.5, LocalDate.of(2025, 3, 4), b);
+        assertEquals(0, b.getReflection().getScore());
+        assertTrue(b.getReflection().getComments().contains("caf\u00e9"));
+        Photo a = lib.getAlbum("Al").getPhotos().get(0);
+        checkPhoto("a.jpg", "X", 200, 2.0, 0.01, LocalDate.of(2025, 1, 2), a);
+        assertTrue(treeParse(path).toJson().similar(lib.toJson()));
+    }
+
+    @Test
+    void testReaderMalformed() throws IOException {
+        String path = "./data/testReaderMalformed.json";
+        Files.write(Paths.get(path), "{\"name\":\"Lib\",\"photos\":[{\"photoname\":".getBytes(StandardCharsets.UTF_8));
+        assertThrows(JSONException.class, () -> new JsonReader(path).read());
+        Files.write(Paths.get(path), "{\"photos\":[]}".getBytes(StandardCharsets.UTF_8));
+        assertThrows(JSONException.class, () -> new JsonReader(path).read());
+    }
+
+    @Test
+    void testReaderAlbumsShareLibraryPhotos() throws IOException {
+        PhotoLibrary lib = new PhotoLibrary("Lib");
+        Photo p = new Photo("a.jpg", "XT5", 200, 2.8, 0.01, LocalDate.parse("2025-01-01"));
+        Photo stray = new Photo("stray.jpg", "XT5", 400, 4.0, 0.02, LocalDate.parse("2025-01-02"));
+        lib.addPhoto(p);
+        Album a = new Album("A");
+        a.addPhoto(stray);
+        a.addPhoto(p);
+        lib.addAlbum(a);
+        lib.addAlbum(new Album("B"));
+        lib.getAlbum("B").addPhoto(p);
+        String path = "./data/testReaderAlbumsShareLibraryPhotos.json";
+        JsonWriter w = new JsonWriter(path);
+        w.open();
+        w.write(lib);
+        w.close();
+
+        PhotoLibrary loaded = new JsonReader(path).read();
+        Photo shared = loaded.getPhotos().get(0);
+        List<Photo> inA = loaded.getAlbum("A").getPhotos();
+        assertEquals("stray.jpg", inA.get(0).getPhotoname());
+        assertSame(shared, inA.get(1));
+        assertSame(shared, loaded.getAlbum("B").getPhotos().get(0));
+        assertEquals(1, loaded.numPhotos());
+        shared.setReflection(new Reflection());
+        assertSame(shared.getReflection(), loaded.getAlbum("A").getPhotos().get(1).getReflection());
+    }
+
+    @Test
+    void testReaderMigratesEmbeddedAlbumPhotos() throws IOException {
+        JSONObject p1 = photoJson("same.jpg", "XT5", 100, 2.8, 0.01, "2025-10-26");
+        JSONObject p2 = photoJson("same.jpg", "XT5", 100, 2.8, 0.01, "2025-10-26");
+        JSONObject other = photoJson("other.jpg", "XT5", 100, 2.8, 0.01, "2025-10-26");
+        p1.put("reflection", refl(90, List.of("COLOR"), List.of("library copy")));
+        JSONObject copy = new JSONObject(p1.toString());
+        copy.put("reflection", refl(10, List.of(), List.of("stale album copy")));
+        JSONObject album = new JSONObject().put("albumName", "Old")
+                .put("photos", new JSONArray().put(copy).put(new JSONObject(p2.toString())).put(other));
+        JSONObject root = new JSONObject()
+                .put("name", "Lib")
+                .put("photos", new JSONArray().put(p1).put(p2))
+                .put("albums", new JSONArray().put(album));
+        String path = "./data/testReaderMigratesEmbeddedAlbumPhotos.json";
+        writeJson(path, root);
+
+        PhotoLibrary lib = new JsonReader(path).read();
+        List<Photo> members = lib.getAlbum("Old").getPhotos();
+        assertEquals(3, members.size());
+        assertSame(lib.getPhotos().get(0), members.get(0));
+        assertSame(lib.getPhotos().get(1), members.get(1));
+        assertEquals(90, members.get(0).getReflection().getScore());
+        assertEquals("other.jpg", members.get(2).getPhotoname());
+        assertEquals(2, lib.numPhotos());
+        for (Photo p : lib.getPhotos()) {
+            assertNotSame(p, members.get(2));
+        }
+    }
+
+    @Test
+    void testReaderBadPhotoReferences() throws IOException {
+        String path = "./data/testReaderBadPhotoReferences.json";
+        JSONObject p = photoJson("a.jpg", "XT5", 100, 2.8, 0.01, "2025-10-26").put("id", 0);
+        JSONObject root = new JSONObject()
+                .put("version", 2)
+                .put("name", "Lib")
+                .put("photos", new JSONArray().put(p))
+                .put("albums", new JSONArray().put(new JSONObject().put("albumName", "A")
+                        .put("photos", new JSONArray().put(0).put(7))));
+        writeJson(path, root);
+        assertThrows(JSONException.class, () -> new JsonReader(path).read());
+
+        root.put("version", JsonWriter.FORMAT_VERSION + 1);
+        root.getJSONArray("albums").getJSONObject(0).put("photos", new JSONArray().put(0));
+        writeJson(path, root);
+        assertThrows(JSONException.class, () -> new JsonReader(path).read());
+    }
+
+    @Test
+    void testReaderConcurrentMatchesSequential() throws IOException {
+        PhotoLibrary lib = new PhotoLibrary("Lib \"quoted\" {[,]}");
+        Album album = new Album("Every third");
+        for (int i = 0; i < 300; i++) {
+            Photo p = new Photo("p" + i + (i % 7 == 0 ? " 写真 📷, {x}" : ".jpg"), "XT5", 100 + i, 2.8, 0.01,
+                    LocalDate.of(2025, 1, 1).plusDays(i));
+            if (i % 2 == 0) {
+                Reflection r = new Reflection();
+                r.setScore(i % 100);
+                r.addProblemType(ProblemType.values()[i % ProblemType.values().length]);
+                r.addComment("comment \"" + i + "\" ]}");
+                p.setReflection(r);
+            }
+            lib.addPhoto(p);
+            if (i % 3 == 0) {
+                album.addPhoto(p);
+            }
+        }
+        lib.addAlbum(album);
+        String path = "./data/testReaderConcurrent.json";
+        JsonWriter w = new JsonWriter(path);
+        w.open();
+        w.write(lib);
+        w.close();
+
+        JSONObject expected = new JsonReader(path).read().toJson();
+        for (long chunk : new long[] {1, 100, 5000, 1L << 30}) {
+            PhotoLibrary read = new JsonReader(path, chunk).read();
+            assertTrue(expected.similar(read.toJson()), "chunk " + chunk);
+            assertEquals(300, read.numPhotos());
+            assertSame(read.getPhotos().get(3), read.getAlbum("Every third").getPhotos().get(1));
+        }
+    }
+
+    @Test
+    void testReaderConcurrentErrors() throws IOException {
+        String path = "./data/testReaderMalformed.json";
+        String photo = photoJson("a.jpg", "XT5", 100, 2.8, 0.01, "2025-10-26").toString();
+        for (String text : new String[] {
+                "{\"name\":\"Lib\",\"photos\":[" + photo + "," + photo + ",{\"photoname\":",
+                "{\"name\":\"Lib\",\"photos\":[" + photo + ",," + photo + "]}",
+                "{\"name\":\"Lib\",\"photos\":[" + photo + "," + photo + ",]}",
+                "{\"name\":\"Lib\",\"photos\":[" + photo + " " + photo + "]}",
+                "{\"name\":\"Lib\" \"photos\":[" + photo + "]}",
+                "{\"photos\":[" + photo + "]}"}) {
+            Files.write(Paths.get(path), text.getBytes(StandardCharsets.UTF_8));
+            JSONException sequential = assertThrows(JSONException.class, () -> new JsonReader(path).read());
+            JSONException concurrent = assertThrows(JSONException.class, () -> new JsonReader(path, 1).read());
+            assertEquals(sequential.getMessage(), concurrent.getMessage(), text);
+        }
+
+        JSONObject p = new JSONObject(photo).put("id", 0);
+        JSONObject root = new JSONObject().put("version", 2).put("name", "Lib")
+                .put("photos", new JSONArray().put(p).put(p));
+        writeJson(path, root);
+        assertThrows(JSONException.class, () -> new JsonReader(path, 1).read());
+    }
+
+    @Test
+    void testReaderLazyReflections() throws IOException {
+        PhotoLibrary lib = new PhotoLibrary("Lazy");
+        for (int i = 0; i < 50; i++) {
+            Photo p = new Photo("写真 📷 " + i, "XT5", 100 + i, 2.8, 0.01, LocalDate.of(2025, 1, 1).plusDays(i));
+            if (i % 3 != 0) {
+                Reflection r = new Reflection();
+                r.setScore(i);
+                r.addProblemType(ProblemType.values()[i % ProblemType.values().length]);
+                r.addComment("comment " + i + " \"é\" ✓");
+                r.addComment(i % 2 == 0 ? "even" : "odd");
+                p.setReflection(r);
+            }
+            lib.addPhoto(p);
+        }
+        String path = "./data/testReaderLazyReflections.json";
+        JsonWriter w = new JsonWriter(path);
+        w.open();
+        w.write(lib);
+        w.close();
+
+        PhotoLibrary eager = new JsonReader(path).read();
+        for (long chunk : new long[] {1L << 30, 1}) {
+            JsonReader reader = new JsonReader(path, chunk);
+            reader.setLazyReflections(true);
+            PhotoLibrary lazy = reader.read();
+            assertEquals(eager.findCommonPhotos(ProblemType.COLOR).size(),
+                    lazy.findCommonPhotos(ProblemType.COLOR).size());
+            assertEquals(eager.getStats().getScores().getMean(), lazy.getStats().getScores().getMean(), 1e-9);
+            assertTrue(eager.toJson().similar(lazy.toJson()));
+            assertEquals(eager.searchComments("even").size(), lazy.searchComments("even").size());
+
+            Reflection r = lazy.getPhotos().get(1).getReflection();
+            r.addComment("added later");
+            assertEquals(List.of("comment 1 \"é\" ✓", "odd", "added later"),
+                    lazy.getPhotos().get(1).getReflection().getComments());
+            assertEquals(1, lazy.searchComments("later").size());
+        }
+    }
+
     // HELPER ----------------------------------------------------
 
     private void writeJson(String path, JSONObject obj) throws IOException {
@@ -264,4 +518,32 @@ class JsonReaderTest extends JsonTest {
         }
         return r;
     }
+
+    // EFFECTS: parses the library in path through an org.json tree, as the
+    // reader did before it streamed; album photo ids are resolved and
+    // embedded album photos are kept as copies
+    private PhotoLibrary treeParse(String path) throws IOException {
+        JSONObject root = new JSONObject(new String(Files.readAllBytes(Paths.get(path)), StandardCharsets.UTF_8));
+        PhotoLibrary lib = new PhotoLibrary(root.getString("name"));
+        JSONArray photos = root.getJSONArray("photos");
+        Map<Integer, Photo> byId = new HashMap<>();
+        for (int i = 0; i < photos.length(); i++) {
+            Photo p = JsonReader.parsePhoto(photos.getJSONObject(i));
+            byId.put(photos.getJSONObject(i).optInt("id", -1), p);
+            lib.addPhoto(p);
+        }
+        JSONArray albums = root.optJSONArray("albums");
+        for (int i = 0; albums != null && i < albums.length(); i++) {
+            JSONObject aj = albums.getJSONObject(i);
+            Album album = new Album(aj.getString("albumName"));
+            JSONArray ap = aj.optJSONArray("photos");
+            for (int k = 0; ap != null && k < ap.length(); k++) {
+                Object m = ap.get(k);
+                album.addPhoto(m instanceof Number ? byId.get(((Number) m).intValue())
+                        : JsonReader.parsePhoto((JSONObject) m));
+            }
+            lib.addAlbum(album);
+        }
+        return lib;
+    }
 }
@@ -9,10 +9,15 @@ import model.Reflection;
 import org.json.JSONArray;
 import org.json.JSONObject;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 import ca.ubc.cs.ExcludeFromJacocoGeneratedReport;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.time.LocalDate;
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -86,6 +91,26 @@ class JsonWriterTest extends JsonTest {
     
 
 
+    @Test
+    void testWriterOverFileJustRead(@TempDir Path dir) throws IOException {
+        String path = dir.resolve("library.json").toString();
+        PhotoLibrary lib = new PhotoLibrary("My photo library");
+        lib.addPhoto(new Photo("cream.jpg", "XT5", 200, 5.6, 0.01, LocalDate.parse("2025-10-21")));
+        JsonWriter w = new JsonWriter(path);
+        w.open();
+        w.write(lib);
+        w.close();
+
+        PhotoLibrary loaded = new JsonReader(path).read();
+        loaded.addPhoto(new Photo("moss.jpg", "XT5", 400, 4.0, 0.02, LocalDate.parse("2025-10-22")));
+        w = new JsonWriter(path);
+        w.open();
+        w.write(loaded);
+        w.close();
+
+        assertEquals(2, new JsonReader(path).read().numPhotos());
+    }
+
     @Test
     void testAddReflectionIfPresentWithProblemsAndComments() {
         Photo p = new Photo("flower.jpg", "XT5", 100, 2.8, 0.005, LocalDate.now());
@@ -109,6 +134,62 @@ class JsonWriterTest extends JsonTest {
         assertTrue(comms.toList().contains("Too bright"));
         assertTrue(comms.toList().contains("Focus slightly off"));
     }
-    
 
+    @Test
+    void testWriterMatchesTreeOutput() throws IOException {
+        PhotoLibrary lib = new PhotoLibrary("Lib </script> \"q\"");
+        Album a = new Album("Caf\u00e9 \ud83d\udcf7");
+        for (int i = 0; i < 20; i++) {
+            Photo p = new Photo("p" + i + "\n.jpg", "Cam\t" + i, 100 * i, 1.0 + i / 4.0,
+                    1.0 / (1 << i), LocalDate.of(2025, 1, 1 + i));
+            if (i % 3 == 0) {
+                Reflection r = new Reflection();
+                r.setScore(i * 5);
+                r.addProblemType(ProblemType.COLOR);
+                r.addProblemType(ProblemType.EXPOSURE);
+                r.addComment("\u2028 line \u0001 \u0085 end");
+                p.setReflection(r);
+                p.setReflect(i % 2 == 0);
+            }
+            lib.addPhoto(p);
+            a.addPhoto(p);
+        }
+        lib.addAlbum(a);
+        lib.addAlbum(new Album("Empty"));
+
+        for (boolean pretty : new boolean[] {true, false}) {
+            String path = "./data/testWriterMatchesTreeOutput.json";
+            JsonWriter w = new JsonWriter(path, pretty);
+            w.open();
+            w.write(lib);
+            w.close();
+
+            String text = new String(Files.readAllBytes(Paths.get(path)), StandardCharsets.UTF_8);
+            assertTrue(new JSONObject(text).similar(new JSONObject(lib.toJson().toString())));
+            assertEquals(pretty, text.contains("\n"));
+            PhotoLibrary loaded = new JsonReader(path).read();
+            assertEquals(lib.getLibName(), loaded.getLibName());
+            assertEquals(20, loaded.numPhotos());
+            assertEquals("Caf\u00e9 \ud83d\udcf7", loaded.getAlbums().get(0).getAlbumName());
+        }
+    }
+
+    @Test
+    void testWriterPrettyLayoutMatchesTree() throws IOException {
+        PhotoLibrary lib = new PhotoLibrary("Lib");
+        lib.addPhoto(new Photo("a.jpg", "XT5", 200, 2.0, 0.01, LocalDate.parse("2025-10-21")));
+        String path = "./data/testWriterPrettyLayout.json";
+        JsonWriter w = new JsonWriter(path);
+        w.open();
+        w.write(lib);
+        w.close();
+
+        String text = new String(Files.readAllBytes(Paths.get(path)), StandardCharsets.UTF_8);
+        assertTrue(new JSONObject(lib.toJson().toString()).similar(new JSONObject(text)));
+        assertEquals("{\n    \"version\": 2,\n    \"name\": \"Lib\",\n    \"photos\": [\n        {\n"
+                + "            \"id\": 0,\n            \"photoname\": \"a.jpg\",\n            \"camera\": \"XT5\",\n"
+                + "            \"iso\": 200,\n            \"aperture\": 2,\n            \"shutterspeed\": 0.01,\n"
+                + "            \"date\": \"2025-10-21\",\n            \"reflect\": false\n        }\n    ],\n"
+                + "    \"albums\": []\n}", text);
+    }
 }
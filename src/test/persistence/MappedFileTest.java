@@ -0,0 +1,127 @@
+package persistence;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import ca.ubc.cs.ExcludeFromJacocoGeneratedReport;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@ExcludeFromJacocoGeneratedReport
+
+class MappedFileTest {
+    // one-, two-, three- and four-byte characters, the last a surrogate pair
+    private static final String TEXT = "{\"name\":\"café 写真 📷\",\"x\":1}";
+    // map thresholds that read the file onto the heap and that map it
+    private static final long[] THRESHOLDS = {Long.MAX_VALUE, 0};
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void testSegmentsEndOnCharacters() throws IOException {
+        Path path = write(TEXT.getBytes(StandardCharsets.UTF_8));
+        for (long threshold : THRESHOLDS) {
+            for (int segmentSize = 4; segmentSize <= 9; segmentSize++) {
+                try (MappedFile file = new MappedFile(path, segmentSize, threshold)) {
+                    long total = 0;
+                    for (int i = 0; i < file.numSegments(); i++) {
+                        ByteBuffer segment = file.segment(i);
+                        assertTrue(segment.remaining() <= segmentSize);
+                        byte[] bytes = new byte[segment.remaining()];
+                        segment.get(bytes);
+                        assertEquals(bytes.length, new String(bytes, StandardCharsets.UTF_8)
+                                .getBytes(StandardCharsets.UTF_8).length);
+                        total += bytes.length;
+                    }
+                    assertEquals(file.size(), total);
+                }
+            }
+        }
+    }
+
+    @Test
+    void testReaderDecodesAcrossSegments() throws IOException {
+        Path path = write(TEXT.getBytes(StandardCharsets.UTF_8));
+        for (long threshold : THRESHOLDS) {
+            for (int segmentSize = 4; segmentSize <= 9; segmentSize++) {
+                for (int bufferSize = 1; bufferSize <= 3; bufferSize++) {
+                    try (MappedFile file = new MappedFile(path, segmentSize, threshold)) {
+                        assertEquals(TEXT, readAll(file.newReader(), bufferSize));
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void testWholeFileInOneSegment() throws IOException {
+        Path path = write(TEXT.getBytes(StandardCharsets.UTF_8));
+        try (MappedFile file = new MappedFile(path)) {
+            assertEquals(1, file.numSegments());
+            assertTrue(file.startsWith("{\"name".getBytes(StandardCharsets.UTF_8)));
+            assertFalse(file.startsWith(BinaryWriter.MAGIC));
+            assertEquals(TEXT, readAll(file.newReader(), 8192));
+        }
+    }
+
+    @Test
+    void testEmptyFile() throws IOException {
+        Path path = write(new byte[0]);
+        try (MappedFile file = new MappedFile(path)) {
+            assertEquals(0, file.size());
+            assertEquals(0, file.numSegments());
+            assertFalse(file.startsWith(BinaryWriter.MAGIC));
+            assertEquals(-1, file.newReader().read());
+        }
+    }
+
+    @Test
+    void testMalformed() throws IOException {
+        Path path = write(new byte[] {'{', '"', (byte) 0xc3, '"', '}'});
+        try (MappedFile file = new MappedFile(path)) {
+            assertThrows(IOException.class, () -> readAll(file.newReader(), 16));
+        }
+        Path truncated = write(new byte[] {'"', 'a', (byte) 0xe5, (byte) 0x86});
+        try (MappedFile file = new MappedFile(truncated, 4, 0)) {
+            assertThrows(IOException.class, () -> readAll(file.newReader(), 16));
+        }
+    }
+
+    @Test
+    void testReplaceSmallFileWhileOpen() throws IOException {
+        Path path = write(TEXT.getBytes(StandardCharsets.UTF_8));
+        try (MappedFile file = new MappedFile(path)) {
+            AtomicFile.write(path, "{}".getBytes(StandardCharsets.UTF_8));
+            assertEquals(TEXT, readAll(file.newReader(), 8192));
+        }
+        assertEquals("{}", new String(Files.readAllBytes(path), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void testMissingFile() {
+        assertThrows(IOException.class, () -> new MappedFile(dir.resolve("missing.json")));
+    }
+
+    private Path write(byte[] bytes) throws IOException {
+        Path path = Files.createTempFile(dir, "mapped", ".json");
+        Files.write(path, bytes);
+        return path;
+    }
+
+    private static String readAll(Reader in, int bufferSize) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        char[] buf = new char[bufferSize];
+        for (int n = in.read(buf); n != -1; n = in.read(buf)) {
+            sb.append(buf, 0, n);
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,81 @@
+package persistence;
+
+import org.junit.jupiter.api.Test;
+
+import ca.ubc.cs.ExcludeFromJacocoGeneratedReport;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@ExcludeFromJacocoGeneratedReport
+
+class SaveQueueTest {
+    private final SaveQueue saves = new SaveQueue();
+    private final List<String> ran = Collections.synchronizedList(new ArrayList<>());
+
+    @Test
+    void testCoalescesWaitingSaves() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        saves.submit("block", () -> await(release));
+        List<String> discarded = new ArrayList<>();
+        CompletableFuture<Void> first = saves.submit("a", task("a1", discarded));
+        CompletableFuture<Void> second = saves.submit("a", task("a2", discarded));
+        CompletableFuture<Void> other = saves.submit("b", task("b1", discarded));
+        assertSame(first, second);
+        assertNotSame(first, other);
+        assertEquals(List.of("a1"), discarded);
+
+        release.countDown();
+        saves.flush();
+        assertTrue(first.isDone());
+        assertTrue(other.isDone());
+        assertEquals(List.of("a2", "b1"), ran);
+    }
+
+    @Test
+    void testFailure() {
+        CompletableFuture<Void> f = saves.submit("a", () -> {
+            throw new IOException("disk full");
+        });
+        IOException e = assertThrows(IOException.class, () -> SaveQueue.await(f));
+        assertEquals("disk full", e.getMessage());
+    }
+
+    @Test
+    void testRunsAgainAfterStart() throws IOException {
+        SaveQueue.await(saves.submit("a", task("a1", null)));
+        SaveQueue.await(saves.submit("a", task("a2", null)));
+        assertEquals(List.of("a1", "a2"), ran);
+    }
+
+    // EFFECTS: returns a save that records name when it runs, and in
+    // discarded when it is replaced
+    private SaveQueue.Task task(String name, List<String> discarded) {
+        return new SaveQueue.Task() {
+            @Override
+            public void run() {
+                ran.add(name);
+            }
+
+            @Override
+            public void discard() {
+                discarded.add(name);
+            }
+        };
+    }
+
+    // EFFECTS: waits until latch is released
+    private void await(CountDownLatch latch) throws IOException {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            throw new IOException(e);
+        }
+    }
+}
@@ -0,0 +1,237 @@
+package persistence;
+
+import model.Album;
+import model.Photo;
+import model.PhotoLibrary;
+import model.ProblemType;
+import model.Reflection;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import ca.ubc.cs.ExcludeFromJacocoGeneratedReport;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.json.JSONObject;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@ExcludeFromJacocoGeneratedReport
+
+class ShardedStoreTest extends JsonTest {
+    @TempDir
+    Path dir;
+    private Path store;
+    private PhotoLibrary lib;
+
+    @BeforeEach
+    void runBefore() {
+        store = dir.resolve("lib");
+        lib = new PhotoLibrary("Shards");
+        for (int i = 0; i < 10; i++) {
+            lib.addPhoto(new Photo("p" + i, "80D", 100 + i, 2.8, 0.01, LocalDate.of(2019, 5, 1 + i)));
+        }
+        Album a = new Album("Sky");
+        a.addPhoto(lib.getPhoto("p1"));
+        a.addPhoto(lib.getPhoto("p8"));
+        lib.addAlbum(a);
+        lib.addAlbum(new Album("Empty"));
+    }
+
+    @Test
+    void testRoundTrip() throws IOException {
+        lib.getPhoto("p3").setReflection(reflection(60));
+        ShardedStore s = new ShardedStore(store.toString(), null, 4);
+        assertFalse(s.exists());
+        s.prepare(lib, 7).run();
+        assertTrue(s.exists());
+        assertEquals(3, s.numPhotoShards());
+        assertEquals(6, files().size());
+
+        ShardedStore reader = new ShardedStore(store.toString(), null, 4);
+        PhotoLibrary read = reader.read();
+        assertEquals(7, reader.getCheckpoint());
+        assertSameLibrary(lib, read);
+    }
+
+    @Test
+    void testSaveRewritesOnlyChangedShards() throws IOException {
+        ShardedStore s = new ShardedStore(store.toString(), null, 4);
+        s.prepare(lib, 1).run();
+        Set<String> before = files();
+
+        lib.getPhoto("p5").setReflection(reflection(80));
+        s.prepare(lib, 2).run();
+        Set<String> after = files();
+        after.removeAll(before);
+        assertEquals(1, after.size());
+        assertEquals(6, files().size());
+
+        lib.getAlbum("Sky").removePhoto(lib.getPhoto("p1"));
+        lib.addPhoto(new Photo("p10", "XT5", 200, 4, 0.02, LocalDate.of(2020, 1, 1)));
+        lib.deletePhoto(lib.getPhoto("p0"));
+        lib.renameAlbum(lib.getAlbum("Empty"), "Still empty");
+        s.prepare(lib, 3).run();
+
+        PhotoLibrary read = new ShardedStore(store.toString(), null, 4).read();
+        assertSameLibrary(lib, read);
+        assertEquals(80, read.getPhoto("p5").getReflection().getScore());
+    }
+
+    @Test
+    void testCleanSaveWritesOnlyManifest() throws IOException {
+        ShardedStore s = new ShardedStore(store.toString(), null, 4);
+        s.prepare(lib, 1).run();
+        Set<String> before = files();
+        s.prepare(lib, 2).run();
+        assertEquals(before, files());
+        assertEquals(2, new JSONObject(Files.readString(store.resolve("manifest.json"))).getLong("checkpoint"));
+    }
+
+    @Test
+    void testReplacedSaveLeavesShardsToNext() throws IOException {
+        ShardedStore s = new ShardedStore(store.toString(), null, 4);
+        s.prepare(lib, 1).run();
+        lib.getPhoto("p2").setReflection(reflection(30));
+        SaveQueue.Task replaced = s.prepare(lib, 2);
+        replaced.discard();
+        lib.getPhoto("p9").setReflection(reflection(40));
+        s.prepare(lib, 3).run();
+
+        PhotoLibrary read = new ShardedStore(store.toString(), null, 4).read();
+        assertEquals(30, read.getPhoto("p2").getReflection().getScore());
+        assertEquals(40, read.getPhoto("p9").getReflection().getScore());
+    }
+
+    @Test
+    void testSaveOverFilesJustRead() throws IOException {
+        new ShardedStore(store.toString(), null, 4).prepare(lib, 1).run();
+        ShardedStore s = new ShardedStore(store.toString(), null, 4);
+        PhotoLibrary read = s.read();
+        for (Photo p : read.getPhotos()) {
+            p.setReflection(reflection(50));
+        }
+        s.prepare(read, 2).run();
+
+        PhotoLibrary reread = new ShardedStore(store.toString(), null, 4).read();
+        for (Photo p : reread.getPhotos()) {
+            assertEquals(50, p.getReflection().getScore());
+        }
+    }
+
+    @Test
+    void testAlbumPhotoOutsideLibrary() throws IOException {
+        ShardedStore s = new ShardedStore(store.toString(), null, 4);
+        s.prepare(lib, 1).run();
+        lib.removePhoto(lib.getPhoto("p8"));
+        s.prepare(lib, 2).run();
+
+        PhotoLibrary read = new ShardedStore(store.toString(), null, 4).read();
+        assertEquals(9, read.numPhotos());
+        Photo embedded = read.getAlbum("Sky").getPhotos().get(1);
+        assertEquals("p8", embedded.getPhotoname());
+        assertFalse(read.containsPhoto(embedded));
+    }
+
+    @Test
+    void testMigratesLegacySnapshot() throws IOException {
+        String legacy = dir.resolve("lib.json").toString();
+        JsonWriter writer = new JsonWriter(legacy);
+        writer.open();
+        writer.write(lib);
+        writer.close();
+
+        ShardedStore s = new ShardedStore(store.toString(), legacy, 4);
+        assertTrue(s.exists());
+        PhotoLibrary read = s.read();
+        s.prepare(read, 1).run();
+        assertSameLibrary(lib, new ShardedStore(store.toString()).read());
+    }
+
+    @Test
+    void testJournalOverShards() throws IOException {
+        String journal = dir.resolve("lib.journal").toString();
+        Journal j = new Journal(new ShardedStore(store.toString(), null, 4), journal, new SaveQueue());
+        PhotoLibrary pl = j.open();
+        pl.addPhoto(new Photo("saved", "80D", 100, 2.8, 0.01, LocalDate.of(2019, 5, 1)));
+        j.save(pl);
+        pl.addPhoto(new Photo("journaled", "80D", 100, 2.8, 0.01, LocalDate.of(2019, 5, 1)));
+        j.close();
+
+        PhotoLibrary replayed = new Journal(new ShardedStore(store.toString()), journal, new SaveQueue()).open();
+        assertEquals(2, replayed.numPhotos());
+        assertEquals("journaled", replayed.getPhotos().get(1).getPhotoname());
+    }
+
+    @Test
+    void testJournalKeysOverShards() throws IOException {
+        String journal = dir.resolve("lib.journal").toString();
+        Journal j = new Journal(new ShardedStore(store.toString(), null, 4), journal, new SaveQueue());
+        PhotoLibrary pl = j.open();
+        for (Photo p : lib.getPhotos()) {
+            pl.addPhoto(p);
+        }
+        j.save(pl);
+        pl.removePhoto(pl.getPhotos().get(3));
+        Photo twin = new Photo("p5", "XT5", 800, 4.0, 0.02, LocalDate.of(2020, 6, 2));
+        pl.addPhoto(twin);
+        j.save(pl);
+        twin.setReflection(reflection(70));
+        pl.removePhoto(pl.getPhotos().get(4));
+        j.close();
+
+        PhotoLibrary replayed = new Journal(new ShardedStore(store.toString()), journal, new SaveQueue()).open();
+        assertEquals(9, replayed.numPhotos());
+        Photo last = replayed.getPhotos().get(8);
+        assertEquals("XT5", last.getCamera());
+        assertEquals(70, last.getReflection().getScore());
+        assertSame(last, replayed.getPhoto("p5"));
+        assertEquals("p6", replayed.getPhotos().get(4).getPhotoname());
+    }
+
+    // EFFECTS: returns a reflection with the given score and one problem
+    private Reflection reflection(int score) {
+        Reflection r = new Reflection();
+        r.setScore(score);
+        r.addProblemType(ProblemType.COLOR);
+        return r;
+    }
+
+    // EFFECTS: checks that read holds the same photos and albums as lib
+    private void assertSameLibrary(PhotoLibrary lib, PhotoLibrary read) {
+        assertEquals(lib.getLibName(), read.getLibName());
+        assertEquals(lib.numPhotos(), read.numPhotos());
+        for (int i = 0; i < lib.numPhotos(); i++) {
+            Photo p = lib.getPhotos().get(i);
+            Photo q = read.getPhotos().get(i);
+            checkPhoto(p.getPhotoname(), p.getCamera(), p.getIso(), p.getAperture(), p.getShutterspeed(),
+                    p.getDate(), q);
+            assertEquals(p.getReflection() == null, q.getReflection() == null);
+        }
+        assertEquals(lib.numAlbums(), read.numAlbums());
+        for (int i = 0; i < lib.numAlbums(); i++) {
+            Album a = lib.getAlbums().get(i);
+            Album b = read.getAlbums().get(i);
+            assertEquals(a.getAlbumName(), b.getAlbumName());
+            assertEquals(a.numPhotos(), b.numPhotos());
+            for (int k = 0; k < a.numPhotos(); k++) {
+                assertEquals(a.getPhotos().get(k).getPhotoname(), b.getPhotos().get(k).getPhotoname());
+            }
+        }
+    }
+
+    // EFFECTS: returns the names of the files in the store
+    private Set<String> files() throws IOException {
+        try (Stream<Path> files = Files.list(store)) {
+            return files.map(f -> f.getFileName().toString()).collect(Collectors.toSet());
+        }
+    }
+}